@@ -0,0 +1,95 @@
+package org.xero1425.misc;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/// \file
+
+/// \brief Compares the allocation free number formatting used by the MessageLogger with String.format(), and
+/// measures a complete message with several fields.  Run with 'gradlew jmh', adding profilers = ['gc'] to the jmh
+/// block in build.gradle shows the bytes allocated per operation.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageLoggerBenchmark {
+
+    // A destination that consumes the text without keeping it, so only the logger itself is measured
+    private static class NullDestination implements MessageDestination {
+        public int length_ ;
+
+        public void displayMessage(MessageType type, int subsystem, String msg) {
+            length_ += msg.length() ;
+        }
+
+        public void displayMessage(MessageType type, int subsystem, CharSequence msg) {
+            length_ += msg.length() ;
+        }
+    }
+
+    private StringBuilder bld_ ;
+    private double value_ ;
+    private MessageLogger logger_ ;
+    private NullDestination dest_ ;
+    private int id_ ;
+
+    @Setup
+    public void setup() {
+        bld_ = new StringBuilder(64) ;
+        value_ = 1234.56789 ;
+
+        logger_ = new MessageLogger() ;
+        logger_.setTimeSource(() -> 12.345) ;
+        dest_ = new NullDestination() ;
+        logger_.addDestination(dest_) ;
+        id_ = logger_.registerSubsystem("benchmark") ;
+        logger_.enableSubsystem("benchmark") ;
+    }
+
+    @Benchmark
+    public String stringFormatSignificant() {
+        return String.format(Locale.US, "%.4g", value_) ;
+    }
+
+    @Benchmark
+    public StringBuilder doubleFormatterSignificant() {
+        bld_.setLength(0) ;
+        return DoubleFormatter.appendSignificant(bld_, value_, 4) ;
+    }
+
+    @Benchmark
+    public String stringFormatFixed() {
+        return String.format(Locale.US, "%.4f", value_) ;
+    }
+
+    @Benchmark
+    public StringBuilder doubleFormatterFixed() {
+        bld_.setLength(0) ;
+        return DoubleFormatter.appendFixed(bld_, value_, 4) ;
+    }
+
+    @Benchmark
+    public void logMessage(Blackhole bh) {
+        logger_.startMessage(MessageType.Debug, id_) ;
+        logger_.add("position", value_) ;
+        logger_.add("velocity", value_ * 0.5) ;
+        logger_.add("count", 42) ;
+        logger_.add("enabled", true) ;
+        logger_.endMessage() ;
+        bh.consume(dest_.length_) ;
+    }
+}
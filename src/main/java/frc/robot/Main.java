@@ -4,6 +4,9 @@
 
 package frc.robot;
 
+import org.xero1425.misc.SimArgs;
+import org.xero1425.simulator.engine.SimulationEngine;
+
 import edu.wpi.first.wpilibj.RobotBase;
 
 /**
@@ -20,6 +23,12 @@ public final class Main {
    * <p>If you change your main robot class, change the parameter type.
    */
   public static void main(String... args) {
+    // The simulation arguments are only parsed in simulation, so an unexpected argument from the
+    // roboRIO launcher can never stop the robot program from starting
+    if (RobotBase.isSimulation()) {
+      SimArgs.processArgs(args);
+      SimulationEngine.startNetworkTables();
+    }
     RobotBase.startRobot(Allegro2024::new);
   }
 }
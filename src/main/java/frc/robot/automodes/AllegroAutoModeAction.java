@@ -11,7 +11,6 @@ import org.xero1425.misc.XeroMath;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.geometry.Translation2d;
 import frc.robot.subsystems.intake_shooter.IntakeAutoShootAction;
 import frc.robot.subsystems.intake_shooter.IntakeGotoNamedPositionAction;
 import frc.robot.subsystems.intake_shooter.IntakeManualShootAction;
@@ -133,6 +132,29 @@ public abstract class AllegroAutoModeAction extends Action {
         return new SwerveHolonomicDynamicPathAction(robot_.getSwerve(), name, maxv, maxa, 0.2, pre, post, allpts) ;
     }
 
+    /// \brief generate the trajectory for a path ahead of time.  This is called while the robot is disabled.
+    /// A path always starts from the measured robot pose, so the trajectory is only taken from the cache when
+    /// the robot pose rounds to the same cache key as the from pose.  Otherwise the trajectory is generated
+    /// when the path is created, and the path waits for it.
+    /// \param from the pose the path is expected to start from
+    /// \param maxv the maximum velocity for the path
+    /// \param maxa the maximum acceleration for the path
+    /// \param pts the points for the path after the start
+    protected void prewarmPath(Pose2dWithRotation from, double maxv, double maxa, Pose2dWithRotation... pts) {
+        Pose2dWithRotation allpts[] = new Pose2dWithRotation[pts.length + 1] ;
+        allpts[0] = from ;
+        for(int i = 0 ; i < pts.length ; i++) {
+            allpts[i + 1] = pts[i] ;
+        }
+
+        SwerveHolonomicDynamicPathAction.prewarm(robot_.getSwerve(), maxv, maxa, allpts) ;
+    }
+
+    /// \brief generate the trajectories for the paths this action expects to drive, ahead of time.  This is
+    /// called while the robot is disabled, when the automode is selected or the alliance changes.
+    public void prewarm() {
+    }
+
     protected boolean gotoPoseWithRotation(String name, double maxv, double maxa, double pre, double post, Pose2dWithRotation pts[]) {
         boolean ret = true ;
         try {
@@ -1,5 +1,7 @@
 package frc.robot.automodes;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.xero1425.base.XeroRobot;
@@ -16,9 +18,49 @@ public class AllegroRobotAutoController extends AutoController {
 
     private AllegroTestAutoMode test_mode_;
     private Alliance prev_alliance_ ;
-    
+
+    //
+    // The automodes for each alliance, built once when the controller is created so that a change
+    // of alliance only selects the other list.  The lists are unmodifiable once they are built.
+    //
+    private List<AutoMode> blue_modes_ ;
+    private List<AutoMode> red_modes_ ;
+
     public AllegroRobotAutoController(XeroRobot robot) throws MissingParameterException, BadParameterTypeException {
         super(robot, "AllegroRobotAutoController");
+
+        MessageLogger logger = getRobot().getMessageLogger() ;
+
+        List<AutoMode> blue = new ArrayList<AutoMode>() ;
+        List<AutoMode> red = new ArrayList<AutoMode>() ;
+
+        try {
+            test_mode_ = new AllegroTestAutoMode(this);
+
+            createAutoModes(blue, false, 0.0) ;
+            createAutoModes(red, true, getRobot().getFieldSize().getX()) ;
+        }
+        catch(Exception ex) {
+            logger.startMessage(MessageType.Error).add("Exception thrown creating automodes - ") ;
+            logger.add(ex.getMessage()).endMessage();
+            getRobot().logStackTrace(ex.getStackTrace());
+        }
+
+        blue_modes_ = Collections.unmodifiableList(blue) ;
+        red_modes_ = Collections.unmodifiableList(red) ;
+
+        //
+        // No automodes are available until the alliance is known
+        //
+        setAutomodes(Collections.emptyList()) ;
+    }
+
+    private void createAutoModes(List<AutoMode> modes, boolean mirror, double mvalue) throws Exception {
+        modes.add(new Start2Shoot4DynamicAutoMode(this, mirror, mvalue)) ;
+        modes.add(new Start3Shoot2AutoMode(this, 0, mirror, mvalue));
+        modes.add(new Start3Shoot2AutoMode(this, 1, mirror, mvalue));
+        modes.add(new JustShootAutoMode(this, "subwoofer-center")) ;
+        modes.add(new NothingAutoMode(this, mirror, mvalue)) ;
     }
 
     private String allianceString(Alliance a) {
@@ -34,38 +76,14 @@ public class AllegroRobotAutoController extends AutoController {
 
             logger.startMessage(MessageType.Info) ;
             logger.add("alliance changed:" + allianceString(prev_alliance_) + " -> " + allianceString(alliance)) ;
-            logger.add(": recreated auto modes for new alliance value").endMessage();
-
-            prev_alliance_ = alliance ;            
-
-            try {
-                //
-                // The alliance has changed, clear the automodes and add the new ones
-                // based on the new alliance.
-                //
-                clearAutomodes() ;
-                
-                boolean mirror = false ;
-                double mvalue = 0.0 ;
-
-                if (alliance == Alliance.Red) {
-                    mirror = true ;
-                    mvalue = getRobot().getFieldSize().getX() ;
-                }
-
-                test_mode_ = new AllegroTestAutoMode(this);
-
-                addAutoMode(new Start2Shoot4DynamicAutoMode(this, mirror, mvalue)) ;   
-                addAutoMode(new Start3Shoot2AutoMode(this, 0, mirror, mvalue));
-                addAutoMode(new Start3Shoot2AutoMode(this, 1, mirror, mvalue));                
-                addAutoMode(new JustShootAutoMode(this, "subwoofer-center")) ;     
-                addAutoMode(new NothingAutoMode(this, mirror, mvalue)) ;                            
-            }
-            catch(Exception ex) {
-                logger.startMessage(MessageType.Error).add("Exception thrown creating automodes - ") ;
-                logger.add(ex.getMessage()).endMessage();                                             
-                getRobot().logStackTrace(ex.getStackTrace());
-            }
+            logger.add(": selected auto modes for new alliance value").endMessage();
+
+            prev_alliance_ = alliance ;
+
+            //
+            // The alliance has changed, switch to the automodes built for the new alliance
+            //
+            setAutomodes((alliance == Alliance.Red) ? red_modes_ : blue_modes_) ;
         }
 
         if (isTestMode()) {
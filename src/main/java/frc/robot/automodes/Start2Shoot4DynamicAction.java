@@ -199,6 +199,36 @@ public class Start2Shoot4DynamicAction extends AllegroAutoModeAction {
         }        
     }
 
+    //
+    // The paths that start where an earlier path ends are generated ahead of time from the end of the
+    // earlier path.  Each path starts from the measured robot pose when it runs, so its trajectory is
+    // taken from the cache when the robot ends the earlier path close enough to the planned pose, and is
+    // generated then otherwise.  The first path starts wherever the robot was placed, so it is generated
+    // while the first note is shot.
+    //
+    @Override
+    public void prewarm() {
+        prewarmPath(kCollect1Pose, kPathMaxVelocity[1], kPathMaxAccel[1], kShootPose) ;
+        prewarmPath(kCollect1Pose, kPathMaxVelocity[2], kPathMaxAccel[2], kCollect2Pose) ;
+        prewarmPath(kCollect2Pose, kPathMaxVelocity[3], kPathMaxAccel[3], kShootPose) ;
+        prewarmPath(kCollect2Pose, kPathMaxVelocity[4], kPathMaxAccel[4], kCollect3SkipPose) ;
+        prewarmPath(kShootPose, kPathMaxVelocity[4], kPathMaxAccel[4], kCollect3Pose) ;
+        prewarmPath(kCollect3Pose, kPathMaxVelocity[5], kPathMaxAccel[5], kShootPose) ;
+
+        switch(finish_) {
+            case Stop:
+                break ;
+
+            case NearSide:
+                prewarmPath(kShootPose, kPathMaxVelocity[6], kPathMaxAccel[6], kNearSidePose) ;
+                break ;
+
+            case FarSide:
+                prewarmPath(kShootPose, kPathMaxVelocity[6], kPathMaxAccel[6], kFarSidePose1, kFarSidePose2) ;
+                break ;
+        }
+    }
+
     @Override
     public String toString(int indent) {
         return spaces(indent) + "Start2Shoot4DynamicAction" ;
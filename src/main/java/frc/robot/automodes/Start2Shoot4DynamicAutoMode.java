@@ -1,17 +1,23 @@
 package frc.robot.automodes;
 
-import org.xero1425.base.actions.Action;
 import org.xero1425.base.controllers.AutoController;
 
 import frc.robot.automodes.Start2Shoot4DynamicAction.FinishStrategy;
 import frc.robot.subsystems.toplevel.AllegroRobot2024;
 
 public class Start2Shoot4DynamicAutoMode extends AllegroGameAutoMode {
+    private Start2Shoot4DynamicAction action_ ;
+
     public Start2Shoot4DynamicAutoMode(AutoController ctrl, boolean mirror, double mvalue) throws Exception {
         super(ctrl, "FourNote-Dynamic") ;
 
         AllegroRobot2024 robot = (AllegroRobot2024)ctrl.getRobot().getRobotSubsystem() ;
-        Action action = new Start2Shoot4DynamicAction(robot, mirror, mvalue, FinishStrategy.Stop) ;
-        addSubActionPair(robot, action, true);
+        action_ = new Start2Shoot4DynamicAction(robot, mirror, mvalue, FinishStrategy.Stop) ;
+        addSubActionPair(robot, action_, true);
+    }
+
+    @Override
+    public void prewarm() throws Exception {
+        action_.prewarm() ;
     }    
 }
@@ -81,7 +81,7 @@ public class IntakeAutoShootAction extends Action {
     private int plot_id_ ;
 
     // Data for each loop of the plot
-    private Double data_[] ;
+    private double data_[] ;
 
     // The columns to plot
     private static String [] columns_ = { 
@@ -157,7 +157,7 @@ public class IntakeAutoShootAction extends Action {
 
         if (verbose_) {
             plot_id_ = sub_.initPlot("AutoShoot") ;
-            data_ = new Double[columns_.length] ;
+            data_ = new double[columns_.length] ;
         } else {
             plot_id_ = -1 ;
         }
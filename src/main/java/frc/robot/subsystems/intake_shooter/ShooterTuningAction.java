@@ -57,7 +57,7 @@ public class ShooterTuningAction extends Action {
 
     private double current_tilt_ ;
     private double current_velocity_ ;
-    private Double [] plot_data_ ;
+    private double [] plot_data_ ;
 
     private double updown_ ;
     private boolean wait_tilt_ ;
@@ -85,7 +85,7 @@ public class ShooterTuningAction extends Action {
         feeder_stop_action_ = new MotorEncoderPowerAction(sub_.getFeeder(), 0.0);
         updown_action_ = new MCTrackPosAction(sub_.getUpDown(), "pids:position", updown_, 2, 1, false) ;
 
-        plot_data_ = new Double[plot_columns_.length] ;
+        plot_data_ = new double[plot_columns_.length] ;
     }
 
     @Override
@@ -5,8 +5,11 @@ import edu.wpi.first.math.geometry.Pose3d;
 
 public interface IVisionLocalization {
     public class LocationData {
-        public Pose3d location ;
-        public double when ;
+        public Pose3d location ;            // The robot pose in field coordinates
+        public double when ;                // The robot time when the image was captured
+        public int tagCount ;               // The number of april tags used for the pose
+        public double distance ;            // The average distance from the robot to the april tags, in meters
+        public double ambiguity ;           // The largest pose ambiguity of the april tags, zero to one
     }
 
     int getTagCount();
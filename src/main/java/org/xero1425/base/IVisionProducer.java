@@ -0,0 +1,26 @@
+package org.xero1425.base;
+
+import org.xero1425.base.IVisionLocalization.LocationData;
+
+/// \file
+
+/// \brief This interface is implemented by a vision system that can produce its samples on the vision
+/// worker thread rather than being polled by the robot loop.
+///
+/// The vision system arranges to call the wakeup function, usually from a network tables listener, each
+/// time it may have a new sample.  The vision worker thread then calls produce() to get the sample.  Both
+/// produce() and the wakeup function must only use state that is not shared with the robot loop.
+public interface IVisionProducer {
+    /// \brief start producing samples on the vision worker thread
+    /// \param wakeup the function to call when there may be a new sample, this may be called from any thread
+    /// \returns true if the samples will be produced on the worker thread, false if the vision system must be
+    /// polled by the robot loop instead
+    boolean startProducing(Runnable wakeup) ;
+
+    /// \brief stop producing samples on the vision worker thread
+    void stopProducing() ;
+
+    /// \brief returns the new sample, called on the vision worker thread after a wakeup
+    /// \returns the new sample, or null if there is no new sample
+    LocationData produce() ;
+}
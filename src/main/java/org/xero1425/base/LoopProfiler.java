@@ -0,0 +1,173 @@
+package org.xero1425.base ;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.xero1425.misc.LoopHistogram;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringArrayPublisher;
+
+/// \file
+
+/// \brief This class collects the loop time histograms for the robot.
+///
+/// Each subsystem registers histograms for the time spent in computeMyState(), in run(), and in the
+/// run() method of its current action.  The robot registers histograms for the whole robot loop and
+/// for the part of the loop spent in the simulation engine.  The histograms can be read with
+/// getHistograms() and are published to the network table once every few robot loops.  Each
+/// histogram is published as an array under /XeroProfile/<name>, holding the count followed by the
+/// minimum, mean, 50th, 90th, and 99th percentile, and maximum times in milliseconds.
+public class LoopProfiler
+{
+    /// \brief the name of the histogram for the whole robot loop
+    public static final String LoopName = "robot/loop" ;
+
+    /// \brief the name of the histogram for the simulation engine
+    public static final String SimulationName = "robot/simulation" ;
+
+    // The names of the values in each published array
+    private static final String[] FieldNames = { "count", "min", "mean", "p50", "p90", "p99", "max" } ;
+
+    private static final String TableName = "/XeroProfile" ;
+
+    // The number of calls to update() between publishing the histograms
+    private static final int PublishInterval = 50 ;
+
+    private List<LoopHistogram> histograms_ ;
+    private List<DoubleArrayPublisher> publishers_ ;
+    private double[] values_ ;
+    private StringArrayPublisher fields_pub_ ;
+    private DoublePublisher sim_share_pub_ ;
+    private LoopHistogram loop_ ;
+    private LoopHistogram sim_ ;
+    private boolean enabled_ ;
+    private int loops_ ;
+
+    /// \brief create a new loop profiler
+    public LoopProfiler() {
+        histograms_ = new ArrayList<LoopHistogram>() ;
+        publishers_ = new ArrayList<DoubleArrayPublisher>() ;
+        values_ = new double[FieldNames.length] ;
+        enabled_ = true ;
+        loops_ = 0 ;
+
+        loop_ = register(LoopName) ;
+        sim_ = register(SimulationName) ;
+    }
+
+    /// \brief returns true if the histograms are published to the network table
+    /// \returns true if the histograms are published to the network table
+    public boolean isEnabled() {
+        return enabled_ ;
+    }
+
+    /// \brief enable or disable publishing the histograms to the network table
+    /// \param enabled if true, the histograms are published to the network table
+    public void setEnabled(boolean enabled) {
+        enabled_ = enabled ;
+    }
+
+    /// \brief create a new histogram that is published with the others
+    /// \param name the name of the histogram
+    /// \returns the new histogram
+    public LoopHistogram register(String name) {
+        LoopHistogram h = new LoopHistogram(name) ;
+        histograms_.add(h) ;
+        publishers_.add(null) ;
+        return h ;
+    }
+
+    /// \brief returns all of the histograms
+    /// \returns all of the histograms
+    public List<LoopHistogram> getHistograms() {
+        return Collections.unmodifiableList(histograms_) ;
+    }
+
+    /// \brief returns the histogram with the name given
+    /// \param name the name of the histogram
+    /// \returns the histogram with the name given, or null if there is no histogram with this name
+    public LoopHistogram getHistogram(String name) {
+        for(LoopHistogram h : histograms_) {
+            if (h.getName().equals(name))
+                return h ;
+        }
+
+        return null ;
+    }
+
+    /// \brief returns the histogram for the whole robot loop
+    /// \returns the histogram for the whole robot loop
+    public LoopHistogram getLoopHistogram() {
+        return loop_ ;
+    }
+
+    /// \brief returns the histogram for the simulation engine
+    /// \returns the histogram for the simulation engine
+    public LoopHistogram getSimulationHistogram() {
+        return sim_ ;
+    }
+
+    /// \brief returns the fraction of the robot loop time spent in the simulation engine
+    /// \returns the fraction of the robot loop time spent in the simulation engine
+    public double getSimulationShare() {
+        if (loop_.getTotal() == 0)
+            return 0.0 ;
+
+        return (double)sim_.getTotal() / (double)loop_.getTotal() ;
+    }
+
+    /// \brief remove all recorded times from all histograms
+    public void reset() {
+        for(LoopHistogram h : histograms_)
+            h.reset() ;
+    }
+
+    /// \brief called once per robot loop, publishes the histograms to the network table periodically
+    public void update() {
+        if (!enabled_)
+            return ;
+
+        loops_++ ;
+        if (loops_ < PublishInterval)
+            return ;
+
+        loops_ = 0 ;
+        publish() ;
+    }
+
+    /// \brief publish all of the histograms to the network table
+    public void publish() {
+        NetworkTableInstance inst = NetworkTableInstance.getDefault() ;
+
+        if (fields_pub_ == null) {
+            fields_pub_ = inst.getStringArrayTopic(TableName + "/fields").publish() ;
+            fields_pub_.set(FieldNames) ;
+            sim_share_pub_ = inst.getDoubleTopic(TableName + "/simulation-share").publish() ;
+        }
+
+        for(int i = 0 ; i < histograms_.size() ; i++) {
+            LoopHistogram h = histograms_.get(i) ;
+            DoubleArrayPublisher pub = publishers_.get(i) ;
+
+            if (pub == null) {
+                pub = inst.getDoubleArrayTopic(TableName + "/" + h.getName()).publish() ;
+                publishers_.set(i, pub) ;
+            }
+
+            values_[0] = h.getCount() ;
+            values_[1] = h.getMin() / 1.0e6 ;
+            values_[2] = h.getMean() / 1.0e6 ;
+            values_[3] = h.getValueAtPercentile(50.0) / 1.0e6 ;
+            values_[4] = h.getValueAtPercentile(90.0) / 1.0e6 ;
+            values_[5] = h.getValueAtPercentile(99.0) / 1.0e6 ;
+            values_[6] = h.getMax() / 1.0e6 ;
+            pub.set(values_) ;
+        }
+
+        sim_share_pub_.set(getSimulationShare()) ;
+    }
+}
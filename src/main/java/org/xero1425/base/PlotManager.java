@@ -83,7 +83,7 @@ public class PlotManager extends PlotManagerBase
         inst.flush() ;
     }
 
-    public void addPlotData(int id, Double[] data)
+    public void addPlotData(int id, double[] data)
     {
         PlotInfo info = plots_.get(id) ;
         if (info == null || !isPlotEnabled(info.name_))
@@ -94,7 +94,7 @@ public class PlotManager extends PlotManagerBase
             NetworkTableInstance inst = NetworkTableInstance.getDefault() ;
             NetworkTable table = inst.getTable(getKeyForPlot(id)) ;
             NetworkTableEntry entry = table.getEntry(DataEntry + "/" + Integer.toString(info.index_)) ;
-            entry.setNumberArray(data) ;
+            entry.setDoubleArray(data) ;
             entry = table.getEntry(PointsEntry) ;
             info.index_++ ;
             entry.setNumber(info.index_) ;
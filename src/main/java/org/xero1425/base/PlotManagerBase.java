@@ -11,17 +11,37 @@ public abstract class PlotManagerBase {
     private List<String> enabled_plots_ ;
     private XeroRobot robot_ ;
     private boolean enabled_ ;
+    private double[] unboxed_ ;
 
     public PlotManagerBase(XeroRobot robot) {
         enabled_plots_ = new ArrayList<String>() ;
         robot_ = robot ;
+        unboxed_ = new double[0] ;
     }
 
     public abstract int initPlot(String name) ;
     public abstract void startPlot(int id, String[] cols) ;
-    public abstract void addPlotData(int id, Double[] data) ;
+    public abstract void addPlotData(int id, double[] data) ;
     public abstract void endPlot(int id) ;
 
+    public void addPlotData(int id, PlotRow row) {
+        addPlotData(id, row.getData()) ;
+    }
+
+    //
+    // Kept for callers that still build boxed rows, the values are copied into a reused
+    // primitive array so the plot managers only deal with double[]
+    //
+    public void addPlotData(int id, Double[] data) {
+        if (unboxed_.length != data.length)
+            unboxed_ = new double[data.length] ;
+
+        for(int i = 0 ; i < data.length ; i++)
+            unboxed_[i] = data[i] ;
+
+        addPlotData(id, unboxed_) ;
+    }
+
     public void enable(boolean value) {
         enabled_ = value ;
     }
@@ -0,0 +1,251 @@
+package org.xero1425.base ;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xero1425.misc.MessageLogger;
+import org.xero1425.misc.MessageType;
+
+/// \file
+
+/// \brief This class manages "plots" by storing them in local files.
+///
+/// Each plot is written to its own file in a directory, named after the plot with the extension
+/// .xplot.  The file is memory mapped and rows are appended to the mapping, so adding a row is
+/// a handful of memory stores with no system calls and no network traffic.  This is intended for
+/// simulation runs, where the plots can be kept with the other test output and loaded by offline
+/// tools.
+///
+/// The file starts with a header, followed by the rows of the plot.  All values are big endian.
+///
+///     offset 0:  'XPLT'
+///     offset 4:  u16 version
+///     offset 6:  u16 number of columns
+///     offset 8:  i64 number of rows written
+///     offset 16: u8 one if the plot is complete, otherwise zero
+///     offset 20: u32 offset of the first row
+///     offset 24: the column names, each a u16 length followed by that many ASCII bytes
+///
+/// Each row is one f64 per column, and the rows are stored one after the other starting at the
+/// offset of the first row, so a single column can be read by stepping through the file by the
+/// size of a row.  The file is grown in fixed size pieces, so it may be longer than the data.  The
+/// row count in the header gives the number of valid rows.
+public class PlotManagerFile extends PlotManagerBase
+{
+    private class PlotFile
+    {
+        public final String name_ ;
+        public int columns_ ;
+        public FileChannel channel_ ;
+        public MappedByteBuffer header_ ;
+        public MappedByteBuffer data_ ;
+        public long mapped_end_ ;
+        public long rows_ ;
+
+        public PlotFile(String name) {
+            name_ = name ;
+            columns_ = -1 ;
+            channel_ = null ;
+            header_ = null ;
+            data_ = null ;
+            rows_ = 0 ;
+        }
+    } ;
+
+    static private final byte[] Magic = { 'X', 'P', 'L', 'T' } ;
+    static private final short Version = 1 ;
+    static private final String Extension = ".xplot" ;
+
+    static private final int RowsOffset = 8 ;
+    static private final int CompleteOffset = 16 ;
+    static private final int DataOffsetOffset = 20 ;
+    static private final int NamesOffset = 24 ;
+
+    // The size of each piece of the file that is mapped for rows
+    static private final int MapSize = 256 * 1024 ;
+
+    private XeroRobot robot_ ;
+    private int next_plot_id_ ;
+    private String directory_ ;
+    private Map<Integer, PlotFile> plots_ ;
+
+    /// \brief create a new plot manager
+    /// \param robot the robot this plot manager belongs to
+    /// \param dir the directory to hold the plot files
+    public PlotManagerFile(XeroRobot robot, String dir)
+    {
+        super(robot) ;
+
+        robot_ = robot ;
+        plots_ = new HashMap<Integer, PlotFile>() ;
+        next_plot_id_ = 0 ;
+        directory_ = dir ;
+    }
+
+    public int initPlot(String name)
+    {
+        if (!isPlotEnabled(name))
+            return -1 ;
+
+        for(int key : plots_.keySet())
+        {
+            if (plots_.get(key).name_.equals(name))
+                return key ;
+        }
+
+        int id = next_plot_id_++ ;
+        plots_.put(id, new PlotFile(name)) ;
+
+        return id ;
+    }
+
+    public void startPlot(int id, String[] cols)
+    {
+        PlotFile p = plots_.get(id) ;
+        if (p == null || !isPlotEnabled(p.name_))
+            return ;
+
+        close(p) ;
+
+        try {
+            Files.createDirectories(Paths.get(directory_)) ;
+            Path path = Paths.get(directory_, fileName(p.name_)) ;
+            p.channel_ = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) ;
+
+            int hsize = NamesOffset ;
+            for(String col : cols)
+                hsize += 2 + col.length() ;
+            hsize = (hsize + 7) & ~7 ;
+
+            p.header_ = p.channel_.map(FileChannel.MapMode.READ_WRITE, 0, hsize) ;
+            p.header_.put(Magic) ;
+            p.header_.putShort(Version) ;
+            p.header_.putShort((short)cols.length) ;
+            p.header_.putLong(RowsOffset, 0) ;
+            p.header_.put(CompleteOffset, (byte)0) ;
+            p.header_.putInt(DataOffsetOffset, hsize) ;
+            p.header_.position(NamesOffset) ;
+            for(String col : cols) {
+                p.header_.putShort((short)col.length()) ;
+                for(int i = 0 ; i < col.length() ; i++) {
+                    char ch = col.charAt(i) ;
+                    p.header_.put(ch < 128 ? (byte)ch : (byte)'?') ;
+                }
+            }
+
+            p.columns_ = cols.length ;
+            p.rows_ = 0 ;
+            p.mapped_end_ = hsize ;
+            p.data_ = null ;
+        }
+        catch(IOException ex) {
+            MessageLogger logger = robot_.getMessageLogger() ;
+            logger.startMessage(MessageType.Error) ;
+            logger.add("cannot create plot file for plot") ;
+            logger.addQuoted(p.name_) ;
+            logger.add(" - ").add(ex.getMessage()) ;
+            logger.endMessage() ;
+            close(p) ;
+        }
+    }
+
+    public void addPlotData(int id, double[] data)
+    {
+        PlotFile p = plots_.get(id) ;
+        if (p == null || p.channel_ == null || !isPlotEnabled(p.name_))
+            return ;
+
+        if (data.length != p.columns_ || p.columns_ == 0)
+            return ;
+
+        if (p.data_ == null || p.data_.remaining() < data.length * 8) {
+            if (!mapMore(p))
+                return ;
+        }
+
+        for(int i = 0 ; i < data.length ; i++)
+            p.data_.putDouble(data[i]) ;
+
+        p.rows_++ ;
+        p.header_.putLong(RowsOffset, p.rows_) ;
+    }
+
+    public void endPlot(int id)
+    {
+        PlotFile p = plots_.get(id) ;
+        if (p == null || p.channel_ == null || !isPlotEnabled(p.name_))
+            return ;
+
+        p.header_.put(CompleteOffset, (byte)1) ;
+        close(p) ;
+    }
+
+    //
+    // Map the next piece of the file for rows.  Each piece holds a whole number of rows so
+    // a row never spans two mappings.
+    //
+    private boolean mapMore(PlotFile p)
+    {
+        long rowsize = p.columns_ * 8L ;
+        long size = Math.max(MapSize / rowsize, 1) * rowsize ;
+
+        try {
+            p.data_ = p.channel_.map(FileChannel.MapMode.READ_WRITE, p.mapped_end_, size) ;
+            p.mapped_end_ += size ;
+        }
+        catch(IOException ex) {
+            MessageLogger logger = robot_.getMessageLogger() ;
+            logger.startMessage(MessageType.Error) ;
+            logger.add("cannot extend plot file for plot") ;
+            logger.addQuoted(p.name_) ;
+            logger.add(" - ").add(ex.getMessage()) ;
+            logger.endMessage() ;
+            close(p) ;
+            return false ;
+        }
+
+        return true ;
+    }
+
+    private void close(PlotFile p)
+    {
+        if (p.channel_ != null) {
+            try {
+                p.channel_.close() ;
+            }
+            catch(IOException ex) {
+            }
+        }
+
+        //
+        // The mappings stay valid after the channel is closed, and are released when they are
+        // no longer referenced
+        //
+        p.channel_ = null ;
+        p.header_ = null ;
+        p.data_ = null ;
+    }
+
+    private static String fileName(String name)
+    {
+        StringBuilder bld = new StringBuilder() ;
+
+        for(int i = 0 ; i < name.length() ; i++) {
+            char ch = name.charAt(i) ;
+            if (Character.isLetterOrDigit(ch) || ch == '-' || ch == '_' || ch == '.')
+                bld.append(ch) ;
+            else
+                bld.append('_') ;
+        }
+
+        bld.append(Extension) ;
+        return bld.toString() ;
+    }
+}
@@ -2,6 +2,8 @@ package org.xero1425.base ;
 
 import edu.wpi.first.networktables.BooleanPublisher;
 import edu.wpi.first.networktables.BooleanTopic;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoubleArrayTopic;
 import edu.wpi.first.networktables.DoublePublisher;
 import edu.wpi.first.networktables.DoubleTopic;
 import edu.wpi.first.networktables.IntegerPublisher;
@@ -10,6 +12,7 @@ import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.networktables.PubSubOption;
 import edu.wpi.first.networktables.StringArrayPublisher;
 import edu.wpi.first.networktables.StringArrayTopic;
+import java.util.Arrays ;
 import java.util.Map ;
 import java.util.HashMap ;
 
@@ -22,6 +25,13 @@ import java.util.HashMap ;
 /// the plot is ednabled.  A plot is defined by a name and a set of named columns.  Each named
 /// column has a value for each robot loop.
 /// This data can be processed by the xerotune toon located here <a href="https://www.mewserver.org/xeroprogs/" here </a>
+///
+/// The plot manager has two modes.  In the version 4 mode, each column is a separate double topic that is
+/// set on every robot loop.  In the batched version 5 mode, rows are collected into a single array and the
+/// array is published to one double array topic each time a fixed number of rows has been collected.  Each
+/// value published to the data topic holds one or more rows, stored row after row, so the number of rows in
+/// a value is its length divided by the number of columns.  The count topic holds the number of rows
+/// published so far.  In this mode, the network table is not flushed for each row.
 public class PlotManagerNT4 extends PlotManagerBase
 {
     private class PlotTable
@@ -38,6 +48,10 @@ public class PlotManagerNT4 extends PlotManagerBase
         public IntegerPublisher versionPublisher_ ;
         public DoubleTopic [] dataTopics_ ;
         public DoublePublisher [] dataPublishers_ ;
+        public DoubleArrayTopic batchTopic_ ;
+        public DoubleArrayPublisher batchPublisher_ ;
+        public double [] batch_ ;
+        public int rows_ ;
         public int count_ ;
 
         public PlotTable(int id, String name) {
@@ -49,6 +63,10 @@ public class PlotManagerNT4 extends PlotManagerBase
             columnNamesPublisher_ = null ;
             dataTopics_ = null ;
             dataPublishers_ = null ;
+            batchTopic_ = null ;
+            batchPublisher_ = null ;
+            batch_ = null ;
+            rows_ = 0 ;
             count_ = 0 ;
         }
     } ;
@@ -58,20 +76,33 @@ public class PlotManagerNT4 extends PlotManagerBase
     static private final String DataEntry = "data" ;
     static private final String CountEntry = "count" ;
     static private final String VersionEntry = "version" ;
+
+    static private final int UnbatchedVersion = 4 ;
+    static private final int BatchedVersion = 5 ;
     
     private int next_plot_id_ ;
     private String plot_table_ ;
     private Map<Integer, PlotTable> plots_ ;
+    private int batch_rows_ ;
 
-    /// \brief create a new plot manager
+    /// \brief create a new plot manager that publishes each column of each row as it is added
     /// \param key the name of the key in the network table to hold plot data
     public PlotManagerNT4(XeroRobot robot, String key)
+    {
+        this(robot, key, 0) ;
+    }
+
+    /// \brief create a new plot manager
+    /// \param key the name of the key in the network table to hold plot data
+    /// \param batch the number of rows published together, or zero to publish each column of each row as it is added
+    public PlotManagerNT4(XeroRobot robot, String key, int batch)
     {
         super(robot);
 
         plots_ = new HashMap<Integer, PlotTable>() ;
         next_plot_id_ = 0 ;
         plot_table_ = key ;
+        batch_rows_ = batch ;
     }
 
     public int initPlot(String name)
@@ -126,22 +157,32 @@ public class PlotManagerNT4 extends PlotManagerBase
         p.countPublisher_.set(0) ;
 
         p.versionPublisher_ = p.versionTopic_.publish() ;
-        p.versionPublisher_.set(4) ;
-
-        p.dataTopics_ = new DoubleTopic[cols.length] ;
-        p.dataPublishers_ = new DoublePublisher[cols.length] ;
-        for(int i = 0 ; i < cols.length ; i++) {
-            String dataname = plotkey + "/" + DataEntry + "/" + Integer.toString(i) ;
-            p.dataTopics_[i] = inst.getDoubleTopic(dataname) ;
-            p.dataPublishers_[i] = p.dataTopics_[i].publish(PubSubOption.keepDuplicates(true), PubSubOption.sendAll(true), PubSubOption.periodic(0.02)) ;
+        p.versionPublisher_.set(batch_rows_ > 0 ? BatchedVersion : UnbatchedVersion) ;
+
+        if (batch_rows_ > 0) {
+            if (p.batchPublisher_ == null) {
+                p.batchTopic_ = inst.getDoubleArrayTopic(plotkey + "/" + DataEntry) ;
+                p.batchPublisher_ = p.batchTopic_.publish(PubSubOption.keepDuplicates(true), PubSubOption.sendAll(true)) ;
+            }
+            p.batch_ = new double[batch_rows_ * cols.length] ;
+        }
+        else {
+            p.dataTopics_ = new DoubleTopic[cols.length] ;
+            p.dataPublishers_ = new DoublePublisher[cols.length] ;
+            for(int i = 0 ; i < cols.length ; i++) {
+                String dataname = plotkey + "/" + DataEntry + "/" + Integer.toString(i) ;
+                p.dataTopics_[i] = inst.getDoubleTopic(dataname) ;
+                p.dataPublishers_[i] = p.dataTopics_[i].publish(PubSubOption.keepDuplicates(true), PubSubOption.sendAll(true), PubSubOption.periodic(0.02)) ;
+            }
         }
 
+        p.rows_ = 0 ;
         p.count_ = 0 ;
         
         inst.flush() ;
     }
 
-    public void addPlotData(int id, Double[] data)
+    public void addPlotData(int id, double[] data)
     {
         PlotTable p = plots_.get(id) ;
         if (!isPlotEnabled(p.name_))
@@ -150,6 +191,19 @@ public class PlotManagerNT4 extends PlotManagerBase
         if (data.length != p.columns_)
             return ;
 
+        if (p.batch_ != null) {
+            int base = p.rows_ * p.columns_ ;
+            for(int i = 0 ; i < p.columns_ ; i++) {
+                p.batch_[base + i] = data[i] ;
+            }
+
+            p.rows_++ ;
+            if (p.rows_ == batch_rows_)
+                publishBatch(p) ;
+
+            return ;
+        }
+
         for(int i = 0 ; i < p.columns_ ; i++) {
             p.dataPublishers_[i].set(data[i]) ;
         }
@@ -167,7 +221,35 @@ public class PlotManagerNT4 extends PlotManagerBase
         if (!isPlotEnabled(p.name_))
             return ;
 
+        if (p.batch_ != null && p.rows_ > 0) {
+            publishBatch(p) ;
+        }
+
         p.completePublisher_.set(true) ;
+
+        if (p.batch_ != null) {
+            NetworkTableInstance.getDefault().flush() ;
+        }
+    }
+
+    //
+    // Publish the rows collected for a plot as a single value and update the count of rows published
+    //
+    private void publishBatch(PlotTable p)
+    {
+        if (p.rows_ == batch_rows_) {
+            p.batchPublisher_.set(p.batch_) ;
+        }
+        else {
+            //
+            // Only the last block of a plot can be partial
+            //
+            p.batchPublisher_.set(Arrays.copyOf(p.batch_, p.rows_ * p.columns_)) ;
+        }
+
+        p.count_ += p.rows_ ;
+        p.rows_ = 0 ;
+        p.countPublisher_.set(p.count_) ;
     }
 
     private String getKeyForPlot(int id)
@@ -0,0 +1,66 @@
+package org.xero1425.base;
+
+import edu.wpi.first.math.geometry.Pose2d;
+
+/// \file
+
+/// \brief This class builds one row of plot data at a time.
+///
+/// The row is stored in a primitive array that is allocated once and reused for every row, so
+/// building a row and passing it to the plot manager does not create any garbage.  A row is
+/// built by calling reset() and then add() once for each column, in column order.
+///
+///     row_.reset().add(time).add(target).add(actual) ;
+///     getSubsystem().addPlotData(plot_id_, row_) ;
+///
+public class PlotRow
+{
+    private double[] data_ ;
+    private int index_ ;
+
+    /// \brief create a new row builder
+    /// \param columns the number of columns in the plot
+    public PlotRow(int columns) {
+        data_ = new double[columns] ;
+        index_ = 0 ;
+    }
+
+    /// \brief start a new row
+    /// \returns the row builder
+    public PlotRow reset() {
+        index_ = 0 ;
+        return this ;
+    }
+
+    /// \brief add the value for the next column
+    /// \param v the value for the column
+    /// \returns the row builder
+    public PlotRow add(double v) {
+        if (index_ < data_.length)
+            data_[index_++] = v ;
+
+        return this ;
+    }
+
+    /// \brief add the X, Y, and rotation in degrees of a pose as the next three columns
+    /// \param p the pose to add
+    /// \returns the row builder
+    public PlotRow add(Pose2d p) {
+        add(p.getX()) ;
+        add(p.getY()) ;
+        add(p.getRotation().getDegrees()) ;
+        return this ;
+    }
+
+    /// \brief returns the number of columns added since the last reset()
+    /// \returns the number of columns added since the last reset()
+    public int size() {
+        return index_ ;
+    }
+
+    /// \brief returns the data for the row
+    /// \returns the data for the row
+    public double[] getData() {
+        return data_ ;
+    }
+}
@@ -9,6 +9,7 @@ public class RobotPaths
 {
     private String log_file_directory_ ;
     private String deploy_directory_ ;
+    private String path_cache_directory_ ;
 
     /// \brief create the robot paths object
     /// \param simulator if true we are running under the simulator
@@ -18,11 +19,13 @@ public class RobotPaths
         {
             log_file_directory_ = "logs" ;
             deploy_directory_ = "src/main/deploy/" ;
+            path_cache_directory_ = "build/pathcache" ;
         }
         else
         {
             log_file_directory_ = "/u" ;
             deploy_directory_ = Filesystem.getDeployDirectory().getPath() + "/" ;
+            path_cache_directory_ = Filesystem.getOperatingDirectory().getPath() + "/pathcache" ;
         }
     }
 
@@ -44,4 +47,10 @@ public class RobotPaths
         return deploy_directory_ + "/paths" ;
     }
 
+    /// \brief return the directory that holds the binary copies of the paths
+    /// \returns the directory that holds the binary copies of the paths
+    String pathCacheDirectory() {
+        return path_cache_directory_ ;
+    }
+
 } ;
\ No newline at end of file
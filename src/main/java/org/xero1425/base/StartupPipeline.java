@@ -0,0 +1,288 @@
+package org.xero1425.base ;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.xero1425.misc.MessageLogger;
+import org.xero1425.misc.MessageType;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringArrayPublisher;
+
+/// \file
+
+/// \brief This class runs the stages of robot startup, running stages that do not depend on each other
+/// at the same time.
+///
+/// Each stage has a name and a list of the stages it depends on.  A stage is either submitted, in which
+/// case it runs on a worker thread as soon as the stages it depends on are complete, or it is run, in
+/// which case the calling thread waits for the stages it depends on and then runs the stage itself.  Stages
+/// that must run on the main robot thread, such as creating the robot hardware, are run.  Stages that only
+/// read files, such as reading the settings file or the path files, are submitted.
+///
+/// When startup is complete, finish() waits for any stages still running, logs the time for each stage, and
+/// publishes the times to the network table under /XeroStartup.  Each stage is published as an array
+/// holding the time the stage started, relative to the creation of the pipeline, and the time the stage took,
+/// both in milliseconds.  A stage may add details, such as the time to configure each motor, which are reported
+/// under the stage and published under /XeroStartup/<stage>/<detail> in the same form.
+public class StartupPipeline
+{
+    /// \brief the work done by a single stage of the startup pipeline
+    public interface Stage
+    {
+        /// \brief run the stage
+        void run() throws Exception ;
+    }
+
+    private class DetailRecord
+    {
+        public final String name_ ;
+        public final long start_ ;
+        public final long end_ ;
+        public final String thread_ ;
+
+        public DetailRecord(String name, long start, long end, String thread) {
+            name_ = name ;
+            start_ = start ;
+            end_ = end ;
+            thread_ = thread ;
+        }
+    } ;
+
+    private class StageRecord
+    {
+        public final String name_ ;
+        public CompletableFuture<Void> future_ ;
+        public long start_ ;
+        public long end_ ;
+        public String thread_ ;
+        public volatile Thread worker_ ;
+        public final List<DetailRecord> details_ ;
+
+        public StageRecord(String name) {
+            name_ = name ;
+            future_ = null ;
+            start_ = 0 ;
+            end_ = 0 ;
+            thread_ = null ;
+            worker_ = null ;
+            details_ = new ArrayList<DetailRecord>() ;
+        }
+    } ;
+
+    private static final String TableName = "/XeroStartup" ;
+
+    // The largest number of worker threads for the submitted stages
+    private static final int kMaxThreads = 4 ;
+
+    private Supplier<MessageLogger> logger_ ;
+    private long created_ ;
+    private long finished_ ;
+    private ExecutorService pool_ ;
+    private List<StageRecord> order_ ;
+    private Map<String, StageRecord> stages_ ;
+    private List<Object> publishers_ ;
+
+    /// \brief create a new startup pipeline
+    /// \param logger supplies the message logger, which may itself be created by the first stage
+    public StartupPipeline(Supplier<MessageLogger> logger) {
+        logger_ = logger ;
+        created_ = System.nanoTime() ;
+        finished_ = 0 ;
+        order_ = new ArrayList<StageRecord>() ;
+        stages_ = new HashMap<String, StageRecord>() ;
+        publishers_ = new ArrayList<Object>() ;
+
+        int threads = Math.min(Math.max(Runtime.getRuntime().availableProcessors(), 2), kMaxThreads) ;
+        AtomicInteger index = new AtomicInteger(1) ;
+        pool_ = Executors.newFixedThreadPool(threads, (r) -> {
+            Thread t = new Thread(r, "startup-" + index.getAndIncrement()) ;
+            t.setDaemon(true) ;
+            return t ;
+        }) ;
+    }
+
+    /// \brief run a stage on a worker thread once the stages it depends on are complete
+    /// \param name the name of the stage
+    /// \param work the work for the stage
+    /// \param deps the names of the stages this stage depends on
+    public void submit(String name, Stage work, String... deps) {
+        StageRecord rec = addStage(name) ;
+        rec.future_ = dependencies(deps).thenRunAsync(() -> execute(rec, work), pool_) ;
+    }
+
+    /// \brief run a stage on the calling thread after waiting for the stages it depends on
+    /// \param name the name of the stage
+    /// \param work the work for the stage
+    /// \param deps the names of the stages this stage depends on
+    public void run(String name, Stage work, String... deps) {
+        StageRecord rec = addStage(name) ;
+        dependencies(deps).join() ;
+        execute(rec, work) ;
+        rec.future_ = CompletableFuture.completedFuture(null) ;
+    }
+
+    /// \brief wait for a stage to complete.  If there is no stage with the name given, or if this is called
+    /// from the stage itself, this returns immediately.
+    /// \param name the name of the stage
+    public void await(String name) {
+        StageRecord rec = stages_.get(name) ;
+        if (rec != null && rec.future_ != null && rec.worker_ != Thread.currentThread())
+            rec.future_.join() ;
+    }
+
+    /// \brief add a detail to a stage, reported and published with the stage.  This may be called from
+    /// any thread while the stage is running.
+    /// \param stage the name of the stage
+    /// \param name the name of the detail
+    /// \param start the time the work for the detail started, from System.nanoTime()
+    /// \param end the time the work for the detail was complete, from System.nanoTime()
+    /// \param thread the name of the thread that did the work for the detail
+    public void addDetail(String stage, String name, long start, long end, String thread) {
+        StageRecord rec = stages_.get(stage) ;
+        if (rec != null) {
+            synchronized(rec.details_) {
+                rec.details_.add(new DetailRecord(name, start, end, thread)) ;
+            }
+        }
+    }
+
+    /// \brief returns true if all stages are complete and the report has been generated
+    /// \returns true if all stages are complete and the report has been generated
+    public boolean isFinished() {
+        return finished_ != 0 ;
+    }
+
+    /// \brief returns the time from the creation of the pipeline to the completion of all stages in seconds
+    /// \returns the total startup time in seconds, or zero if the pipeline is not finished
+    public double getTotalTime() {
+        return finished_ == 0 ? 0.0 : (finished_ - created_) / 1.0e9 ;
+    }
+
+    /// \brief wait for all stages to complete, then log and publish the time for each stage
+    public void finish() {
+        if (finished_ != 0)
+            return ;
+
+        for(StageRecord rec : order_)
+            rec.future_.join() ;
+
+        finished_ = System.nanoTime() ;
+        pool_.shutdown() ;
+
+        report() ;
+        publish() ;
+    }
+
+    private StageRecord addStage(String name) {
+        StageRecord rec = new StageRecord(name) ;
+        order_.add(rec) ;
+        stages_.put(name, rec) ;
+        return rec ;
+    }
+
+    private CompletableFuture<Void> dependencies(String[] deps) {
+        List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>() ;
+
+        for(String dep : deps) {
+            StageRecord rec = stages_.get(dep) ;
+            if (rec == null) {
+                MessageLogger logger = logger_.get() ;
+                logger.startMessage(MessageType.Error) ;
+                logger.add("startup stage depends on unknown stage ").addQuoted(dep) ;
+                logger.endMessage() ;
+            }
+            else {
+                futures.add(rec.future_) ;
+            }
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])) ;
+    }
+
+    //
+    // Run the work for a stage.  An exception thrown by a stage is logged, and the stages that depend
+    // on it are still run, as each stage is expected to handle its own errors.
+    //
+    private void execute(StageRecord rec, Stage work) {
+        rec.worker_ = Thread.currentThread() ;
+        rec.thread_ = rec.worker_.getName() ;
+        rec.start_ = System.nanoTime() ;
+
+        try {
+            work.run() ;
+        }
+        catch(Exception ex) {
+            MessageLogger logger = logger_.get() ;
+            logger.startMessage(MessageType.Error) ;
+            logger.add("exception caught in startup stage ").addQuoted(rec.name_) ;
+            logger.add(" - ").add(ex.toString()) ;
+            logger.endMessage() ;
+            logger.logStackTrace(ex.getStackTrace()) ;
+        }
+
+        rec.end_ = System.nanoTime() ;
+        rec.worker_ = null ;
+    }
+
+    private void report() {
+        MessageLogger logger = logger_.get() ;
+
+        logger.startMessage(MessageType.Info).add("startup stages:").endMessage() ;
+        for(StageRecord rec : order_) {
+            logger.startMessage(MessageType.Info) ;
+            logger.add("    stage ").addQuoted(rec.name_) ;
+            logger.add("start", (rec.start_ - created_) / 1.0e6) ;
+            logger.add("duration", (rec.end_ - rec.start_) / 1.0e6) ;
+            logger.add("thread", rec.thread_, false) ;
+            logger.endMessage() ;
+
+            for(DetailRecord detail : rec.details_) {
+                logger.startMessage(MessageType.Info) ;
+                logger.add("        ").addQuoted(detail.name_) ;
+                logger.add("start", (detail.start_ - created_) / 1.0e6) ;
+                logger.add("duration", (detail.end_ - detail.start_) / 1.0e6) ;
+                logger.add("thread", detail.thread_, false) ;
+                logger.endMessage() ;
+            }
+        }
+        logger.startMessage(MessageType.Info).add("startup total time", getTotalTime()).endMessage() ;
+    }
+
+    private void publish() {
+        NetworkTableInstance inst = NetworkTableInstance.getDefault() ;
+        String[] names = new String[order_.size()] ;
+
+        for(int i = 0 ; i < order_.size() ; i++) {
+            StageRecord rec = order_.get(i) ;
+            names[i] = rec.name_ ;
+
+            DoubleArrayPublisher pub = inst.getDoubleArrayTopic(TableName + "/" + rec.name_).publish() ;
+            pub.set(new double[] { (rec.start_ - created_) / 1.0e6, (rec.end_ - rec.start_) / 1.0e6 }) ;
+            publishers_.add(pub) ;
+
+            for(DetailRecord detail : rec.details_) {
+                pub = inst.getDoubleArrayTopic(TableName + "/" + rec.name_ + "/" + detail.name_).publish() ;
+                pub.set(new double[] { (detail.start_ - created_) / 1.0e6, (detail.end_ - detail.start_) / 1.0e6 }) ;
+                publishers_.add(pub) ;
+            }
+        }
+
+        StringArrayPublisher stages = inst.getStringArrayTopic(TableName + "/stages").publish() ;
+        stages.set(names) ;
+        publishers_.add(stages) ;
+
+        DoublePublisher total = inst.getDoubleTopic(TableName + "/total").publish() ;
+        total.set(getTotalTime() * 1000.0) ;
+        publishers_.add(total) ;
+    }
+}
@@ -0,0 +1,246 @@
+package org.xero1425.base ;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import org.xero1425.misc.MessageLogger;
+import org.xero1425.misc.MessageType;
+import org.xero1425.misc.XeroMath;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+
+/// \file
+
+/// \brief This class generates trajectories on a worker thread so that the robot loop is never blocked
+/// fitting splines and time parameterizing a path.
+///
+/// A request for a trajectory returns a future right away.  The caller checks the future each robot loop
+/// and uses the trajectory once the future is complete.  Requests are handled one at a time in the order
+/// they are made.
+///
+/// Trajectories are remembered in a cache that holds the most recently used trajectories.  The cache is keyed
+/// on the poses of the trajectory, rounded to kPositionQuantum meters and kAngleQuantum degrees, and on the
+/// velocity and acceleration constraints.  A request whose poses round to the same values as an earlier
+/// request gets the earlier trajectory, which may start up to half of kPositionQuantum from the requested
+/// start.  The path following controller removes this small error.  Trajectories with extra constraints
+/// added to the configuration are not cached.
+///
+/// Rounding alone does not make a request from a measured pose likely to hit the cache, since a pose a few
+/// centimeters from a cell boundary rounds either way.  A path prewarmed while the robot is disabled is only
+/// found when the measured start rounds to the same values.  Callers must not move the start of a path to a
+/// prewarmed pose to get a cache hit, as the robot would then drive a path that does not start where it is.
+public class TrajectoryService
+{
+    //
+    // The key for a trajectory in the cache, the rounded poses followed by the constraints
+    //
+    private static class Key
+    {
+        private final long[] values_ ;
+        private final int hash_ ;
+
+        public Key(long[] values) {
+            values_ = values ;
+            hash_ = Arrays.hashCode(values) ;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash_ ;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return (other instanceof Key) && Arrays.equals(values_, ((Key)other).values_) ;
+        }
+    } ;
+
+    /// \brief the size of the grid, in meters, that positions are rounded to for the cache
+    public static final double kPositionQuantum = 0.05 ;
+
+    /// \brief the size of the steps, in degrees, that headings are rounded to for the cache
+    public static final double kAngleQuantum = 2.0 ;
+
+    // The number of trajectories held in the cache
+    private static final int kDefaultCacheSize = 32 ;
+
+    private Supplier<MessageLogger> logger_ ;
+    private IntSupplier logger_id_ ;
+    private ExecutorService worker_ ;
+    private boolean synchronous_ ;
+    private LinkedHashMap<Key, CompletableFuture<Trajectory>> cache_ ;
+    private int hits_ ;
+    private int misses_ ;
+
+    /// \brief create a new trajectory service
+    /// \param robot the robot that owns the service
+    public TrajectoryService(XeroRobot robot) {
+        this(robot, kDefaultCacheSize) ;
+    }
+
+    /// \brief create a new trajectory service
+    /// \param robot the robot that owns the service
+    /// \param capacity the number of trajectories held in the cache
+    public TrajectoryService(XeroRobot robot, int capacity) {
+        this(() -> robot.getMessageLogger(), () -> robot.getLoggerID(), capacity) ;
+    }
+
+    //
+    // Create a trajectory service that logs to the logger given, the logger is not created until after the
+    // robot creates the service
+    //
+    TrajectoryService(Supplier<MessageLogger> logger, IntSupplier loggerid, int capacity) {
+        logger_ = logger ;
+        logger_id_ = loggerid ;
+        hits_ = 0 ;
+        misses_ = 0 ;
+        synchronous_ = false ;
+
+        worker_ = Executors.newSingleThreadExecutor((r) -> {
+            Thread t = new Thread(r, "trajectory") ;
+            t.setDaemon(true) ;
+            return t ;
+        }) ;
+
+        cache_ = new LinkedHashMap<Key, CompletableFuture<Trajectory>>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<Trajectory>> eldest) {
+                return size() > capacity ;
+            }
+        } ;
+    }
+
+    /// \brief generate a trajectory on the worker thread, or return the trajectory from the cache
+    /// \param poses the poses the trajectory passes through, the list is copied so it may be changed after this call
+    /// \param config the constraints for the trajectory
+    /// \returns a future that is completed with the trajectory, or completed exceptionally if the trajectory cannot be generated
+    public CompletableFuture<Trajectory> generate(List<? extends Pose2d> poses, TrajectoryConfig config) {
+        return lookup(poses, config, true) ;
+    }
+
+    /// \brief generate a trajectory on the worker thread if it is not in the cache, so that a later call
+    /// to generate() with the same poses and constraints finds it in the cache.  This is intended to be called
+    /// while the robot is disabled.
+    /// \param poses the poses the trajectory passes through
+    /// \param config the constraints for the trajectory
+    public void prewarm(List<? extends Pose2d> poses, TrajectoryConfig config) {
+        lookup(poses, config, false) ;
+    }
+
+    /// \brief generate trajectories on the thread that requests them instead of the worker thread.  The
+    /// future returned by generate() is then complete when generate() returns.  This is used by the stepped
+    /// simulation, where the time a trajectory takes to generate must not change when it is used.
+    /// \param sync if true, generate trajectories on the thread that requests them
+    public synchronized void setSynchronous(boolean sync) {
+        synchronous_ = sync ;
+    }
+
+    /// \brief returns the number of requests to generate() that were found in the cache
+    /// \returns the number of requests to generate() that were found in the cache
+    public synchronized int getCacheHits() {
+        return hits_ ;
+    }
+
+    /// \brief returns the number of requests to generate() that were not found in the cache
+    /// \returns the number of requests to generate() that were not found in the cache
+    public synchronized int getCacheMisses() {
+        return misses_ ;
+    }
+
+    /// \brief remove all trajectories from the cache
+    public synchronized void clearCache() {
+        cache_.clear() ;
+    }
+
+    private CompletableFuture<Trajectory> lookup(List<? extends Pose2d> poses, TrajectoryConfig config, boolean count) {
+        List<Pose2d> copy = new ArrayList<Pose2d>(poses) ;
+        Key key = createKey(copy, config) ;
+
+        if (key == null)
+            return CompletableFuture.supplyAsync(() -> compute(copy, config), executor()) ;
+
+        CompletableFuture<Trajectory> ret ;
+        synchronized(this) {
+            ret = cache_.get(key) ;
+            if (ret != null) {
+                if (count)
+                    hits_++ ;
+                return ret ;
+            }
+
+            if (count)
+                misses_++ ;
+
+            ret = CompletableFuture.supplyAsync(() -> compute(copy, config), executor()) ;
+            cache_.put(key, ret) ;
+        }
+
+        //
+        // A trajectory that could not be generated is not kept, so that a later request tries again
+        //
+        final CompletableFuture<Trajectory> future = ret ;
+        ret.whenComplete((traj, ex) -> {
+            if (ex != null) {
+                synchronized(this) {
+                    cache_.remove(key, future) ;
+                }
+            }
+        }) ;
+
+        return ret ;
+    }
+
+    private synchronized Executor executor() {
+        return synchronous_ ? (r) -> r.run() : worker_ ;
+    }
+
+    private static Key createKey(List<Pose2d> poses, TrajectoryConfig config) {
+        if (!config.getConstraints().isEmpty())
+            return null ;
+
+        long angles = Math.round(360.0 / kAngleQuantum) ;
+        long[] values = new long[poses.size() * 3 + 5] ;
+        int i = 0 ;
+
+        for(Pose2d pose : poses) {
+            values[i++] = Math.round(pose.getX() / kPositionQuantum) ;
+            values[i++] = Math.round(pose.getY() / kPositionQuantum) ;
+            values[i++] = Math.floorMod(Math.round(XeroMath.normalizeAngleDegrees(pose.getRotation().getDegrees()) / kAngleQuantum), angles) ;
+        }
+
+        values[i++] = Double.doubleToLongBits(config.getMaxVelocity()) ;
+        values[i++] = Double.doubleToLongBits(config.getMaxAcceleration()) ;
+        values[i++] = Double.doubleToLongBits(config.getStartVelocity()) ;
+        values[i++] = Double.doubleToLongBits(config.getEndVelocity()) ;
+        values[i++] = config.isReversed() ? 1 : 0 ;
+
+        return new Key(values) ;
+    }
+
+    private Trajectory compute(List<Pose2d> poses, TrajectoryConfig config) {
+        long start = System.nanoTime() ;
+        Trajectory traj = TrajectoryGenerator.generateTrajectory(poses, config) ;
+
+        MessageLogger logger = logger_.get() ;
+        logger.startMessage(MessageType.Debug, logger_id_.getAsInt()) ;
+        logger.add("generated trajectory") ;
+        logger.add("poses", poses.size()) ;
+        logger.add("duration", traj.getTotalTimeSeconds()) ;
+        logger.add("elapsed", (System.nanoTime() - start) / 1.0e6) ;
+        logger.endMessage() ;
+
+        return traj ;
+    }
+}
@@ -33,8 +33,8 @@ import org.xero1425.misc.MessageLogger;
 import org.xero1425.misc.BadParameterTypeException;
 import org.xero1425.misc.ISettingsSupplier;
 import org.xero1425.misc.JsonSettingsParser;
-import org.xero1425.misc.MessageDestination;
-import org.xero1425.misc.MessageDestinationFile;
+import org.xero1425.misc.MessageDestinationAsync;
+import org.xero1425.misc.MessageDestinationBinary;
 import org.xero1425.misc.MessageDestinationThumbFile;
 import org.xero1425.misc.SimArgs;
 import org.xero1425.misc.XeroPathManager;
@@ -96,6 +96,10 @@ public abstract class XeroRobot extends TimedRobot {
     // The alliance for the current match
     private Alliance alliance_ ;
 
+    // The automode, and the alliance, the last prewarm was done for
+    private AutoMode prewarmed_mode_ ;
+    private Alliance prewarmed_alliance_ ;
+
     // if true, we have an FMS connection.  If true, the ploting manager is
     // disabled.
     private boolean fms_connection_ ;
@@ -138,11 +142,34 @@ public abstract class XeroRobot extends TimedRobot {
 
     private Translation2d field_size_ ;
 
+    // The loop time histograms for the robot and its subsystems
+    private LoopProfiler profiler_ ;
+
+    // The stages of robot startup, some of which run on worker threads
+    private StartupPipeline startup_ ;
+
+    // Generates trajectories for paths computed while the robot is running
+    private TrajectoryService trajectories_ ;
+
+    // The name of the text log file, or null if there is no log file
+    private String log_file_name_ ;
+
+    // The destination writing the text log file
+    private MessageDestinationAsync log_file_dest_ ;
+
     /// \brief The "subsystem" name for the message logger for this class
     public static final String LoggerName = "xerorobot" ;
 
     private static final String PDPPropertyName = "system:pdp:type" ;
 
+    private static final String BinaryLogPropertyName = "system:logging:binary" ;
+
+    // The number of log messages that can be waiting for the log file writer thread
+    private static final int kLogBufferSize = 4096 ;
+
+    // The default number of plot rows published together by the batched plot manager
+    private static final int kPlotBatchRows = 10 ;
+
     public static XeroRobot theOne ;
 
     /// \brief Create a new XeroRobot robot
@@ -151,7 +178,6 @@ public abstract class XeroRobot extends TimedRobot {
         super(period);
 
         theOne = this ;
-        double start ;
 
         // Generate the paths to the various important places (logfile directory, settings file, path follow paths directoryh, etc.)
         robot_paths_ = new RobotPaths(RobotBase.isSimulation(), getName());
@@ -159,9 +185,18 @@ public abstract class XeroRobot extends TimedRobot {
         loop_type_history_ = new ArrayList<LoopType>() ;
         loop_type_history_.add(LoopType.Initialization);
 
+        profiler_ = new LoopProfiler() ;
+        trajectories_ = new TrajectoryService(this) ;
+
+        //
+        // The startup work is split into stages.  The stages that only read files (the settings file, the
+        // path files, and the april tag layout) run on worker threads while the main thread does the rest.
+        // The stages are timed and the times are logged and published when robotInit() completes.
+        //
+        startup_ = new StartupPipeline(() -> getMessageLogger()) ;
+
         // Setup the mesasge logger to log messages
-        start = getTime() ;
-        enableMessageLogger();
+        startup_.run("logger", () -> enableMessageLogger()) ;
         String snum ;
         
         if (XeroRobot.isSimulation()) {
@@ -174,93 +209,85 @@ public abstract class XeroRobot extends TimedRobot {
         logger_.startMessage(MessageType.Info).add("============================================================").endMessage();
         logger_.startMessage(MessageType.Info).add("robot code starting").endMessage();
         logger_.startMessage(MessageType.Info).add("SerialNumber", snum, true).endMessage();
-        logger_.startMessage(MessageType.Info).add("enableMessageLogger time", getTime() - start).endMessage();
         logger_.startMessage(MessageType.Info).add("============================================================").endMessage();
 
-        if (RobotBase.isSimulation()) {
-            String str = SimArgs.InputFileName;
-            if (str == null)
-                str = getSimulationFileName() ;
+        // Read the parameters file.  Finding out which robot this is reads the serial number through the
+        // HAL, which is done here on the main thread rather than on the worker reading the file.
+        final boolean practice = isPracticeBot() ;
+        startup_.submit("settings", () -> readParamsFile(practice), "logger") ;
 
-            if (str == null) {
-                System.out.println("The code is setup to simulate, but the derived robot class did not provide a stimulus file") ;
-                System.out.println("Not initializing the Xero1425 Simulation engine - assuming Romi robot") ;
-            }
-            else {
-                SimulationEngine.initializeSimulator(this, logger_);
-                addRobotSimulationModels() ;
-                SimulationEngine.getInstance().initAll(str) ;
+        // Read the paths files needed
+        startup_.submit("paths", () -> {
+            paths_ = new XeroPathManager(logger_, robot_paths_.pathsDirectory(), getPathType(), robot_paths_.pathCacheDirectory());
+            try {
+                loadPathsFile();
+            } catch (Exception ex) {
+                logger_.startMessage(MessageType.Error) ;
+                logger_.add("caught exception reading path files -").add(ex.getMessage()).endMessage();
             }
-        }
-
-        start = getTime() ;
+        }, "logger") ;
 
-        // Read the parameters file
-        start = getTime() ;
-        readParamsFile();
-        logger_.startMessage(MessageType.Info).add("readParamsFile time", getTime() - start).endMessage() ;
+        // Read the april tag layout for the field
+        startup_.submit("apriltags", () -> {
+            layout_ = AprilTagFields.k2024Crescendo.loadAprilTagLayoutField() ;
+        }) ;
 
-        double x, y;
-        try {
-            x = settings_.get("field:x").getDouble() ;
-            y = settings_.get("field:y").getDouble() ;
-        }
-        catch (Exception ex) {
-            logger_.startMessage(MessageType.Error).add("missing field size in settings file 'field:width' and 'field:length'").endMessage() ;
-            x = 16.541 ;
-            y = 8.211 ;
+        if (RobotBase.isSimulation()) {
+            startup_.run("simulator", () -> {
+                String str = SimArgs.InputFileName;
+                if (str == null)
+                    str = getSimulationFileName() ;
+
+                if (str == null) {
+                    System.out.println("The code is setup to simulate, but the derived robot class did not provide a stimulus file") ;
+                    System.out.println("Not initializing the Xero1425 Simulation engine - assuming Romi robot") ;
+                }
+                else {
+                    SimulationEngine.initializeSimulator(this, logger_);
+                    addRobotSimulationModels() ;
+                    SimulationEngine.getInstance().initAll(str) ;
+                }
+            }, "logger") ;
         }
-        field_size_ = new Translation2d(x, y) ;
 
-        // Enable messages in the message logger based on params file values
-        start = getTime() ;
-        enableMessagesFromSettingsFile() ;
-        logger_.startMessage(MessageType.Info).add("enableMessagesFromSettingsFile time", getTime() - start).endMessage() ;
+        startup_.run("messages", () -> {
+            // Switch to the binary log file if the settings file asks for it
+            enableBinaryLogFile() ;
 
-        // Read the paths files needed
-        start = getTime() ;
-        paths_ = new XeroPathManager(logger_, robot_paths_.pathsDirectory(), getPathType());
-        try {
-            loadPathsFile();
-        } catch (Exception ex) {
-            logger_.startMessage(MessageType.Error) ;
-            logger_.add("caught exception reading path files -").add(ex.getMessage()).endMessage();
-        }
-        logger_.startMessage(MessageType.Info).add("loadPathsFiles time", getTime() - start).endMessage() ;
+            // Enable messages in the message logger based on params file values
+            enableMessagesFromSettingsFile() ;
+        }, "settings") ;
 
-        // Create the motor factor
-        motors_ = new MotorFactory(logger_, settings_);
+        startup_.run("config", () -> {
+            double x, y;
+            try {
+                x = settings_.get("field:x").getDouble() ;
+                y = settings_.get("field:y").getDouble() ;
+            }
+            catch (Exception ex) {
+                logger_.startMessage(MessageType.Error).add("missing field size in settings file 'field:width' and 'field:length'").endMessage() ;
+                x = 16.541 ;
+                y = 8.211 ;
+            }
+            field_size_ = new Translation2d(x, y) ;
 
-        // Create the plot manager
-        int ver ;
-        
-        try {
-            ver = settings_.get("system:plotting:version").getInteger() ;
-        }
-        catch(Exception ex) {
-            ver = 3 ;
-        }
+            // Create the motor factor
+            motors_ = new MotorFactory(logger_, settings_);
 
-        if (ver == 4) {
-            plot_mgr_ = new PlotManagerNT4(this, "/XeroPlot") ;
-        }
-        else {
-            //
-            // In all cases fall back to the proven plotting unless the version
-            // is explictly 4
-            //
-            plot_mgr_ = new PlotManager(this, "/XeroPlot");
-        }
+            // Create the plot manager
+            createPlotManager() ;
+        }, "settings") ;
 
         // Store the initial time
         last_time_ = getTime();
 
         automode_ = -1;
 
-        layout_ = AprilTagFields.k2024Crescendo.loadAprilTagLayoutField() ;
         motors_in_coast_mode_ = true ;
 
         alliance_ = null ;
+        prewarmed_mode_ = null ;
+        prewarmed_alliance_ = null ;
     }
 
     public Translation2d getFieldSize() {
@@ -404,9 +431,6 @@ public abstract class XeroRobot extends TimedRobot {
     /// \brief Initialize the robot
     @Override
     public void robotInit() {
-        boolean v;
-        double start ;
-
         logger_.startMessage(MessageType.Info).add("initializing robot") ;
         if (DriverStation.isFMSAttached())
             logger_.add(" - FMS connected") ;
@@ -414,128 +438,156 @@ public abstract class XeroRobot extends TimedRobot {
             logger_.add(" - no FMS") ;
         logger_.endMessage();
 
-        if (settings_.isDefined(PDPPropertyName)) {
-            try {
-                String pdptype = settings_.get(PDPPropertyName).getString() ;
-                if (pdptype.equals("rev")) {
-                    pdp_ = new PowerDistribution(1, ModuleType.kRev);
+        startup_.run("pdp", () -> {
+            if (settings_.isDefined(PDPPropertyName)) {
+                try {
+                    String pdptype = settings_.get(PDPPropertyName).getString() ;
+                    if (pdptype.equals("rev")) {
+                        pdp_ = new PowerDistribution(1, ModuleType.kRev);
+                    }
+                    else if (pdptype.equals("ctre")) {
+                        pdp_ = new PowerDistribution(0, ModuleType.kCTRE);
+                    }
                 }
-                else if (pdptype.equals("ctre")) {
-                    pdp_ = new PowerDistribution(0, ModuleType.kCTRE);
+                catch(Exception ex) {
+                    logger_.startMessage(MessageType.Error);
+                    logger_.add("error initialzing PDP - " + ex.getMessage());
+                    logger_.endMessage();
                 }
             }
-            catch(Exception ex) {
-                logger_.startMessage(MessageType.Error);
-                logger_.add("error initialzing PDP - " + ex.getMessage());
-                logger_.endMessage();
-            }
-        }
+        }, "settings") ;
 
         /// Initialize the plotting subsystem
-        start = getTime() ;
-        try {
-            v = settings_.get("system:plotting:enabled").getBoolean();
-            if (v == true)
-                plot_mgr_.enable(true);
-            else
+        startup_.run("plotting", () -> {
+            boolean v ;
+            try {
+                v = settings_.get("system:plotting:enabled").getBoolean();
+                if (v == true)
+                    plot_mgr_.enable(true);
+                else
+                    plot_mgr_.enable(false);
+            } catch (Exception ex) {
+                //
+                // Either the parameter is missing, or is not a boolean. In either
+                // case we just turn off plotting
                 plot_mgr_.enable(false);
-        } catch (Exception ex) {
-            //
-            // Either the parameter is missing, or is not a boolean. In either
-            // case we just turn off plotting
-            plot_mgr_.enable(false);
-        }
-        logger_.startMessage(MessageType.Info).add("plotMgrInit time", getTime() - start).endMessage() ;
+            }
+        }, "config") ;
 
         //
-        // initialize the basic hardware
+        // initialize the basic hardware.  The subsystems may look up april tags, so that stage
+        // must be complete first.
         //
-        try {
-            // Create the robot hardware
-            start = getTime() ;
-            hardwareInit();
-            logger_.startMessage(MessageType.Info).add("hardwareInit time", getTime() - start).endMessage() ;
+        startup_.run("hardware", () -> {
+            //
+            // The motors created by the subsystems are configured together once all of them exist
+            //
+            motors_.beginConfigurationBatch() ;
 
-            if (RobotBase.isSimulation() && SimulationEngine.getInstance() != null)
-            {
-                //
-                // If we are simulating, create the simulation modules required
-                //
-                SimulationEngine.getInstance().createModels() ;
-            }
-        } catch (Exception ex) {
-            logger_.startMessage(MessageType.Error);
-            logger_.add("exception thrown in hardwareInit() - ").add(ex.getMessage()).add("\n").add(ex.getStackTrace().toString()) ;
-            logger_.endMessage();
+            try {
+                try {
+                    // Create the robot hardware
+                    hardwareInit();
+                }
+                finally {
+                    //
+                    // The motors are configured before the simulation models are created, so the models
+                    // see the configured motors
+                    //
+                    for(MotorFactory.ConfigurationRecord rec : motors_.applyConfigurationBatch()) {
+                        startup_.addDetail("hardware", "motor-" + rec.name_, rec.start_, rec.end_, rec.thread_) ;
+                    }
+                }
 
-            logStackTrace(ex.getStackTrace());
+                if (RobotBase.isSimulation() && SimulationEngine.getInstance() != null)
+                {
+                    //
+                    // If we are simulating, create the simulation modules required
+                    //
+                    SimulationEngine.getInstance().createModels() ;
+                }
+            } catch (Exception ex) {
+                logger_.startMessage(MessageType.Error);
+                logger_.add("exception thrown in hardwareInit() - ").add(ex.getMessage()).add("\n").add(ex.getStackTrace().toString()) ;
+                logger_.endMessage();
 
-            signalHardwareInitFailure() ;
+                logStackTrace(ex.getStackTrace());
 
-            robot_subsystem_ = null;
-        }
+                signalHardwareInitFailure() ;
+
+                robot_subsystem_ = null;
+            }
+        }, "messages", "config", "apriltags") ;
 
         if (robot_subsystem_ == null) {
             logger_.startMessage(MessageType.Error);
             logger_.add("the robot subsystem was not set in hardwareInit()");
             logger_.endMessage();
 
+            startup_.finish() ;
             return;
         }
 
         // Now that all subsystem are in place, compute the initial state of the robot
         delta_time_ = getPeriod();
-        start = getTime() ;
-        try {
-            robot_subsystem_.computeState();
-        } catch (Exception ex) {
-            logger_.startMessage(MessageType.Error);
-            logger_.add("Exception caught in computeState() - ").add(ex.getMessage());
-            logger_.endMessage();
-            ;
-        }
-        logger_.startMessage(MessageType.Info).add("computeInitalState time", getTime() - start).endMessage() ;
+        startup_.run("initial-state", () -> {
+            try {
+                robot_subsystem_.computeState();
+            } catch (Exception ex) {
+                logger_.startMessage(MessageType.Error);
+                logger_.add("Exception caught in computeState() - ").add(ex.getMessage());
+                logger_.endMessage();
+                ;
+            }
+        }, "hardware") ;
 
         // Now perform any initialization that might depend on the subsystem hierarchy
         // being in place or the initial state of the subsystems being ready.
-        start = getTime() ;
-        try {
-            robot_subsystem_.postHWInit();
-        } catch (Exception ex) {
-            logger_.startMessage(MessageType.Error);
-            logger_.add("Exception caught in postHWInit() - ").add(ex.toString());
-            logger_.endMessage();
+        startup_.run("post-hardware", () -> {
+            try {
+                robot_subsystem_.postHWInit();
+            } catch (Exception ex) {
+                logger_.startMessage(MessageType.Error);
+                logger_.add("Exception caught in postHWInit() - ").add(ex.toString());
+                logger_.endMessage();
 
-            logStackTrace(ex.getStackTrace());
-        }
-        logger_.startMessage(MessageType.Info).add("postHWInit time", getTime() - start).endMessage() ;
+                logStackTrace(ex.getStackTrace());
+            }
+        }, "initial-state") ;
 
-        // Create the auto mode controller
-        try {
-            auto_controller_ = createAutoController();
-            if (auto_controller_ != null && isSimulation()) {
-                checkPaths() ;
+        // Create the auto mode controller, the automodes need the paths
+        startup_.run("automodes", () -> {
+            try {
+                auto_controller_ = createAutoController();
+                if (auto_controller_ != null && isSimulation()) {
+                    checkPaths() ;
+                }
             }
-        }
-        catch(Exception ex) {
-            logger_.startMessage(MessageType.Error);
-            logger_.add("Exception caught creating automode controller - ").add(ex.getMessage());
-            logger_.endMessage();
+            catch(Exception ex) {
+                logger_.startMessage(MessageType.Error);
+                logger_.add("Exception caught creating automode controller - ").add(ex.getMessage());
+                logger_.endMessage();
 
-            logStackTrace(ex.getStackTrace());
-        }
+                logStackTrace(ex.getStackTrace());
+            }
+        }, "post-hardware", "paths") ;
 
         // Create the teleop controller
-        try {
-            teleop_controller_ = createTeleopController();
-        }
-        catch(Exception ex) {
-            logger_.startMessage(MessageType.Error);
-            logger_.add("Exception caught creating teleop controller - ").add(ex.getMessage());
-            logger_.endMessage();
+        startup_.run("teleop", () -> {
+            try {
+                teleop_controller_ = createTeleopController();
+            }
+            catch(Exception ex) {
+                logger_.startMessage(MessageType.Error);
+                logger_.add("Exception caught creating teleop controller - ").add(ex.getMessage());
+                logger_.endMessage();
 
-            logStackTrace(ex.getStackTrace());
-        }
+                logStackTrace(ex.getStackTrace());
+            }
+        }, "post-hardware") ;
+
+        // Log and publish the time taken by each stage of startup
+        startup_.finish() ;
     }
 
     public double getCurrent(int channel) {
@@ -650,9 +702,26 @@ public abstract class XeroRobot extends TimedRobot {
         loop_count_++ ;
     }
 
-    /// \brief Called from the base class to indicate we are a simulation
+    /// \brief Called from the base class to indicate we are a simulation, just before the first robot loop
     @Override
     public void simulationInit() {
+        SimulationEngine engine = SimulationEngine.getInstance() ;
+        if (engine != null && isSimulationStepped()) {
+            //
+            // The trajectories are generated in the robot loop, so a path is ready in the same robot loop
+            // on every run
+            //
+            trajectories_.setSynchronous(true) ;
+            engine.startStepping(getPeriod()) ;
+        }
+    }
+
+    /// \brief returns true if the simulation steps the robot time one robot loop at a time.  Work that is
+    /// normally done on other threads, such as generating trajectories and processing vision samples, is done
+    /// in the robot loop instead so that each run gives the same results.
+    /// \returns true if the simulation steps the robot time one robot loop at a time
+    public boolean isSimulationStepped() {
+        return RobotBase.isSimulation() && SimArgs.Stepped ;
     }
 
     /// \brief Called from the base class each robot loop while in simulation
@@ -684,13 +753,17 @@ public abstract class XeroRobot extends TimedRobot {
         if (robot_subsystem_ == null)
             return;
 
+        long loopstart = System.nanoTime() ;
         double initial_time = getTime();
         delta_time_ = initial_time - last_time_;
 
         if (!loop_type_history_.contains(LoopType.Autonomous)) {
             updateAutoMode();
+            prewarmAutoMode();
         }
 
+        refreshMotorSignals() ;
+
         try {
             robot_subsystem_.computeState();
         } catch (Exception ex) {
@@ -701,13 +774,23 @@ public abstract class XeroRobot extends TimedRobot {
         }
         if (isSimulation()) {
             SimulationEngine engine = SimulationEngine.getInstance() ;
-            if (engine != null)
+            if (engine != null) {
+                long simstart = System.nanoTime() ;
                 engine.run(getDeltaTime());
+                profiler_.getSimulationHistogram().record(System.nanoTime() - simstart) ;
+            }
         }
 
         last_time_ = initial_time;
         loop_count_++ ;
 
+        //
+        // The simulation time above is recorded while disabled, so the loop time is too, or the
+        // simulation share would be measured against a loop total that leaves out the disabled loops
+        //
+        profiler_.getLoopHistogram().record(System.nanoTime() - loopstart) ;
+        profiler_.update() ;
+
         if (!motors_in_coast_mode_ && isCoastMode() && !isRealEvent()) {
             motors_.setAllCoastMode() ;
             motors_in_coast_mode_ = true ;
@@ -719,6 +802,19 @@ public abstract class XeroRobot extends TimedRobot {
     public void robotPeriodic() {
     }
 
+    /// \brief stop the threads started by the subsystems.  This is called when the robot program ends.
+    public void shutdown() {
+        if (robot_subsystem_ != null)
+            robot_subsystem_.shutdown() ;
+    }
+
+    /// \brief stop the subsystem threads and release the robot loop
+    @Override
+    public void close() {
+        shutdown() ;
+        super.close() ;
+    }
+
     /// \brief Returns the top level robot subsystem
     /// \returns the top level robot subsystem
     public RobotSubsystem getRobotSubsystem() {
@@ -746,21 +842,41 @@ public abstract class XeroRobot extends TimedRobot {
     /// \brief Returns the settings supplier
     /// \returns the setting supplier
     public ISettingsSupplier getSettingsSupplier() {
+        startup_.await("settings") ;
         return settings_;
     }
 
     /// \brief Returns the path following path manager
     /// \returns the path following path manager
     public XeroPathManager getPathManager() {
+        startup_.await("paths") ;
         return paths_;
     }
 
+    /// \brief Returns the service that generates trajectories on a worker thread
+    /// \returns the trajectory service
+    public TrajectoryService getTrajectoryService() {
+        return trajectories_ ;
+    }
+
     /// \brief Returns the motor factory
     /// \returns the motor factory
     public MotorFactory getMotorFactory() {
         return motors_;
     }
 
+    /// \brief Returns the pipeline that runs and times the stages of robot startup
+    /// \returns the startup pipeline
+    public StartupPipeline getStartupPipeline() {
+        return startup_ ;
+    }
+
+    /// \brief Returns the loop profiler that holds the loop time histograms
+    /// \returns the loop profiler
+    public LoopProfiler getLoopProfiler() {
+        return profiler_ ;
+    }
+
     /// \brief Returns the mesasge logger
     /// \returns the message logger
     public PlotManagerBase getPlotManager() {
@@ -819,20 +935,22 @@ public abstract class XeroRobot extends TimedRobot {
         return robot_subsystem_.getOI().getAutoModeSelector() ;
     }
 
-    /// \brief load the paths file from the paths file directory
+    /// \brief load the paths file from the paths file directory.  The paths are loaded using multiple threads.
     protected void loadPathsFile() throws Exception {
         XeroPathManager mgr = getPathManager() ;
 
         try (Stream<Path> walk = Files.walk(Paths.get(mgr.getBaseDir()))) {
             List<String> result = walk.map(x -> x.toString()).filter(f -> f.endsWith("-main.csv")).collect(Collectors.toList());
+            List<String> names = new ArrayList<String>() ;
             for(String name : result) {
                 int index = name.lastIndexOf(File.separator) ;
                 if (index != -1) {
                     name = name.substring(index + 1) ;
                     name = name.substring(0, name.length() - 9) ;
-                    mgr.loadPath(name) ;
+                    names.add(name) ;
                 }
             }
+            mgr.loadPaths(names) ;
         }
         catch(IOException ex) {
         }
@@ -862,7 +980,16 @@ public abstract class XeroRobot extends TimedRobot {
         }
     }
 
+    //
+    // Read the motor status signals on every CAN bus in one batch before the subsystems compute their state
+    //
+    private void refreshMotorSignals() {
+        if (motors_ != null)
+            motors_.refreshSignals() ;
+    }
+
     private void robotLoop(LoopType ltype) {
+        long loopstart = System.nanoTime() ;
         double initial_time = getTime() ;
         delta_time_ = initial_time - last_time_ ;
 
@@ -882,19 +1009,25 @@ public abstract class XeroRobot extends TimedRobot {
             return ;
         }
 
-        logger_.startMessage(MessageType.Debug, logger_id_) ;
-        logger_.add("xerorobot: starting loop,") ;
-        logger_.add("time", initial_time) ;
-        logger_.add("delta", delta_time_) ;
-        logger_.endMessage() ;
+        if (logger_.isEnabled(MessageType.Debug, logger_id_)) {
+            logger_.startMessage(MessageType.Debug, logger_id_) ;
+            logger_.add("xerorobot: starting loop,") ;
+            logger_.add("time", initial_time) ;
+            logger_.add("delta", delta_time_) ;
+            logger_.endMessage() ;
+        }
 
         if (isSimulation()) {
             SimulationEngine engine = SimulationEngine.getInstance() ;
             if (engine != null) {
-                 engine.run(getDeltaTime()) ;
+                long simstart = System.nanoTime() ;
+                engine.run(getDeltaTime()) ;
+                profiler_.getSimulationHistogram().record(System.nanoTime() - simstart) ;
             }
         }
 
+        refreshMotorSignals() ;
+
         try {
             robot_subsystem_.computeState();
         }
@@ -911,7 +1044,7 @@ public abstract class XeroRobot extends TimedRobot {
             current_controller_.run() ;
 
         try {
-            robot_subsystem_.run();
+            robot_subsystem_.runProfiled();
         }
         catch(Exception ex) {
             logger_.startMessage(MessageType.Error) ;
@@ -923,6 +1056,9 @@ public abstract class XeroRobot extends TimedRobot {
         }
 
         last_time_ = initial_time ;
+
+        profiler_.getLoopHistogram().record(System.nanoTime() - loopstart) ;
+        profiler_.update() ;
     }
 
     public void logStackTrace(StackTraceElement [] trace) {
@@ -937,7 +1073,7 @@ public abstract class XeroRobot extends TimedRobot {
     }
 
     public AprilTagFieldLayout getAprilTags() {
-
+        startup_.await("apriltags") ;
         return layout_ ;
     }
 
@@ -1062,32 +1198,132 @@ public abstract class XeroRobot extends TimedRobot {
         }
     }
 
+    //
+    // Let the selected automode do work ahead of time, such as generating the trajectories it will need.  This
+    // is only done when the selected automode or the alliance changes, not every robot loop.
+    //
+    private void prewarmAutoMode() {
+        if (auto_controller_ == null || auto_controller_.getAutoMode() == null)
+            return ;
+
+        AutoMode mode = auto_controller_.getAutoMode() ;
+        if (mode == prewarmed_mode_ && alliance_ == prewarmed_alliance_)
+            return ;
+
+        prewarmed_mode_ = mode ;
+        prewarmed_alliance_ = alliance_ ;
+
+        try {
+            mode.prewarm() ;
+        }
+        catch(Exception ex) {
+            logger_.startMessage(MessageType.Error).add("Exception thrown in prewarmAutoMode - ").add(ex.getMessage()).endMessage();
+            logStackTrace(ex.getStackTrace());
+        }
+    }
+
     public boolean isTestMode() {
         return auto_controller_.isTestMode() ;
     }
 
     private void enableMessageLogger() {
         String logfile = SimArgs.LogFileName ;
-        MessageDestination dest ;
 
         logger_ = new MessageLogger();
         logger_.setTimeSource(new RobotTimeSource());
 
+        if (logfile == null) {
+            logfile = MessageDestinationThumbFile.findLogFileName(robot_paths_.logFileDirectory(), 250, RobotBase.isSimulation());
+        }
+
+        //
+        // The log file is written by a background thread so the robot loop never
+        // waits on the file system
+        //
         if (logfile != null) {
-            dest = new MessageDestinationFile(logfile) ;
+            log_file_name_ = logfile ;
+            log_file_dest_ = new MessageDestinationAsync(logfile, kLogBufferSize) ;
+            logger_.addDestination(log_file_dest_);
+        }
+        enableMessages();
+    }
+
+    private void enableBinaryLogFile() {
+        boolean binary = false ;
+
+        if (settings_ == null || log_file_dest_ == null)
+            return ;
+
+        try {
+            if (settings_.isDefined(BinaryLogPropertyName))
+                binary = settings_.get(BinaryLogPropertyName).getBoolean() ;
+        }
+        catch(Exception ex) {
+            logger_.startMessage(MessageType.Error).add("settings value").addQuoted(BinaryLogPropertyName).add(" is not a boolean").endMessage();
+        }
+
+        if (!binary)
+            return ;
+
+        //
+        // The text log file holds the messages written before the settings file was read.  Everything
+        // after this is written to the binary log file, which can be decoded with MessageLogDecoder
+        //
+        String binfile = log_file_name_ + ".xlog" ;
+        logger_.startMessage(MessageType.Info).add("switching to binary log file").addQuoted(binfile).endMessage();
+
+        logger_.removeDestination(log_file_dest_);
+        log_file_dest_.close() ;
+        log_file_dest_ = null ;
+
+        logger_.addDestination(new MessageDestinationBinary(binfile));
+    }
+
+    private void createPlotManager() {
+        int ver ;
+        
+        try {
+            ver = settings_.get("system:plotting:version").getInteger() ;
+        }
+        catch(Exception ex) {
+            ver = 3 ;
+        }
+
+        if (SimArgs.PlotDirectory != null) {
+            //
+            // Plots are written to local files, used for simulation runs where nothing is
+            // listening on the network table
+            //
+            plot_mgr_ = new PlotManagerFile(this, SimArgs.PlotDirectory) ;
+        }
+        else if (ver == 4) {
+            plot_mgr_ = new PlotManagerNT4(this, "/XeroPlot") ;
+        }
+        else if (ver == 5) {
+            int rows ;
+
+            try {
+                rows = settings_.get("system:plotting:batch").getInteger() ;
+            }
+            catch(Exception ex) {
+                rows = kPlotBatchRows ;
+            }
+            plot_mgr_ = new PlotManagerNT4(this, "/XeroPlot", Math.max(rows, 1)) ;
         }
         else {
-            dest = new MessageDestinationThumbFile(robot_paths_.logFileDirectory(), 250, RobotBase.isSimulation());
+            //
+            // In all cases fall back to the proven plotting unless the version
+            // is explictly 4 or 5
+            //
+            plot_mgr_ = new PlotManager(this, "/XeroPlot");
         }
-        logger_.addDestination(dest);
-        enableMessages();
     }
 
-    private void readParamsFile() {
+    private void readParamsFile(boolean practice) {
         JsonSettingsParser file = new JsonSettingsParser(logger_);
 
         String bot ;
-        if (isPracticeBot())
+        if (practice)
             bot = "PRACTICE" ;
         else if (RobotBase.isSimulation())
             bot = "SIMULATION" ;
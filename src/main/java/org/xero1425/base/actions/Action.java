@@ -47,11 +47,13 @@ public abstract class Action
     /// This method is typically overridden by any derived class.  The derived version
     /// this method should call the base class method.
     public void start() throws Exception {
-        robot_.getMessageLogger().startMessage(MessageType.Debug, logger_id_) ;
-        robot_.getMessageLogger().add(getID()).add(":");
-        robot_.getMessageLogger().add("starting action: ") ;
-        addActionToMessage() ;
-        robot_.getMessageLogger().endMessage();
+        if (robot_.getMessageLogger().isEnabled(MessageType.Debug, logger_id_)) {
+            robot_.getMessageLogger().startMessage(MessageType.Debug, logger_id_) ;
+            robot_.getMessageLogger().add(getID()).add(":");
+            robot_.getMessageLogger().add("starting action: ") ;
+            addActionToMessage() ;
+            robot_.getMessageLogger().endMessage();
+        }
 
         start_ = robot_.getTime() ;
         done_ = false ;
@@ -99,12 +101,14 @@ public abstract class Action
     /// this method should call the base class method.
     public void cancel() {
         if (!isDone()) {
-            robot_.getMessageLogger().startMessage(MessageType.Debug, logger_id_) ;
-            robot_.getMessageLogger().add(getID()).add(":");
-            robot_.getMessageLogger().add("duration", robot_.getTime() - start_) ;       
-            robot_.getMessageLogger().add(": canceling action: ") ;
-            addActionToMessage() ;
-            robot_.getMessageLogger().endMessage();
+            if (robot_.getMessageLogger().isEnabled(MessageType.Debug, logger_id_)) {
+                robot_.getMessageLogger().startMessage(MessageType.Debug, logger_id_) ;
+                robot_.getMessageLogger().add(getID()).add(":");
+                robot_.getMessageLogger().add("duration", robot_.getTime() - start_) ;       
+                robot_.getMessageLogger().add(": canceling action: ") ;
+                addActionToMessage() ;
+                robot_.getMessageLogger().endMessage();
+            }
             done_ = true ;
             canceled_ = true ;
         }
@@ -126,12 +130,14 @@ public abstract class Action
     /// Called from a derived class when the action is complete.  This sets the
     /// action done state to true.
     protected void setDone() {
-        robot_.getMessageLogger().startMessage(MessageType.Debug, logger_id_) ;
-        robot_.getMessageLogger().add(getID()).add(":");      
-        robot_.getMessageLogger().add("duration", robot_.getTime() - start_) ;          
-        robot_.getMessageLogger().add(": completing action: ") ;
-        addActionToMessage() ;   
-        robot_.getMessageLogger().endMessage();
+        if (robot_.getMessageLogger().isEnabled(MessageType.Debug, logger_id_)) {
+            robot_.getMessageLogger().startMessage(MessageType.Debug, logger_id_) ;
+            robot_.getMessageLogger().add(getID()).add(":");      
+            robot_.getMessageLogger().add("duration", robot_.getTime() - start_) ;          
+            robot_.getMessageLogger().add(": completing action: ") ;
+            addActionToMessage() ;   
+            robot_.getMessageLogger().endMessage();
+        }
         done_ = true ;
     }
 
@@ -160,6 +166,6 @@ public abstract class Action
             robot_.getMessageLogger().add("\n") ;
         }
 
-        robot_.getMessageLogger().add(toString(0)) ;
+        robot_.getMessageLogger().add(msg) ;
     }    
 }
@@ -60,6 +60,15 @@ public abstract class AutoController extends BaseController {
         automodes_.clear() ;
     }
 
+    /// \brief Replace the list of automodes available.  The list given is used directly, not copied, so a
+    /// derived class can build several lists of automodes once and switch between them without allocating.
+    /// A list that is switched in this way should be unmodifiable, so addAutoMode() or clearAutomodes() cannot
+    /// change it.
+    /// \param modes the list of automodes to make available
+    protected void setAutomodes(List<AutoMode> modes) {
+        automodes_ = modes ;
+    }
+
     /// \brief initialize the automode
     @Override
     public void init() {
@@ -39,6 +39,12 @@ public class AutoMode extends SequenceAction {
     public void update(String gamedata) throws Exception {
     }
 
+    /// \brief Prepare the automode to run.  This is called while the robot is disabled when this
+    /// automode is selected, and again if the alliance changes, and is where work that would otherwise
+    /// be done while the automode runs, such as generating trajectories, can be done ahead of time.
+    public void prewarm() throws Exception {
+    }
+
     public Pose2d getInitialPose() {
         return new Pose2d() ;
     }
@@ -4,6 +4,10 @@ import java.util.Map;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.xero1425.misc.BadParameterTypeException;
 import org.xero1425.misc.ISettingsSupplier;
@@ -12,6 +16,8 @@ import org.xero1425.misc.MessageType;
 import org.xero1425.misc.SettingsValue;
 import org.xero1425.misc.SettingsValue.SettingsType;
 
+import com.ctre.phoenix6.StatusCode;
+
 /// \file
 /// This file contains the implementation of the MotorFactory.
 /// The motor factory is used to create and initialize motors for all subsystems
@@ -30,14 +36,54 @@ import org.xero1425.misc.SettingsValue.SettingsType;
 /// motor controllers
 ///
 public class MotorFactory {
+    /// \brief the time taken to send the configuration to a single motor in a configuration batch
+    public static class ConfigurationRecord {
+        /// \brief the name of the motor
+        public final String name_ ;
+
+        /// \brief the CAN bus for the motor
+        public final String bus_ ;
+
+        /// \brief the CAN id of the motor
+        public final int canid_ ;
+
+        /// \brief the time the configuration was started, from System.nanoTime()
+        public final long start_ ;
+
+        /// \brief the time the configuration was complete, from System.nanoTime()
+        public final long end_ ;
+
+        /// \brief the name of the thread that configured the motor
+        public final String thread_ ;
+
+        /// \brief the error sending the configuration, or null if the configuration was sent
+        public final String error_ ;
+
+        public ConfigurationRecord(String name, String bus, int canid, long start, long end, String thread, String error) {
+            name_ = name ;
+            bus_ = bus ;
+            canid_ = canid ;
+            start_ = start ;
+            end_ = end ;
+            thread_ = thread ;
+            error_ = error ;
+        }
+    } ;
+
     private MessageLogger logger_;                                  // The system wide message logger
     private ISettingsSupplier settings_;                            // The system wide settings file
     private Map<String, Map<Integer, IMotorController>> motors_;     // The map of motors
     private List<IMotorController> motor_list_ ;
+    private Map<String, TalonFXSignalRegistry> signals_ ;           // The signals refreshed each robot loop, by CAN bus
+    private boolean signal_error_ ;
+    private List<TalonFXMotorController> batch_ ;                   // The motors waiting for their configuration, or null if not batching
 
     private static final String BrakeMode = "brake" ;
     private static final String CoastMode = "coast" ;
 
+    // The largest number of threads sending motor configurations at the same time
+    private static final int kMaxConfigThreads = 8 ;
+
     /// \brief This method creates a new motor factory.
     /// \param logger the message logger for the robot
     /// \param settings the settings file for the robot
@@ -48,6 +94,128 @@ public class MotorFactory {
         motors_.put("", new HashMap<Integer, IMotorController>()) ;
 
         motor_list_ = new ArrayList<IMotorController>() ;
+        signals_ = new HashMap<String, TalonFXSignalRegistry>() ;
+        signal_error_ = false ;
+        batch_ = null ;
+    }
+
+    /// \brief Start a configuration batch.  The CTRE motors created after this call keep their configuration
+    /// until applyConfigurationBatch() is called, so that each motor is configured with a single apply and the
+    /// motors are configured at the same time rather than one after another.
+    public void beginConfigurationBatch() {
+        if (batch_ == null)
+            batch_ = new ArrayList<TalonFXMotorController>() ;
+    }
+
+    /// \brief Send the configuration to each motor created since beginConfigurationBatch() was called.  The
+    /// motors are configured at the same time on a set of worker threads, and this method returns when every
+    /// motor is configured.  Motors created after this call are configured as they are created.
+    /// \returns the time taken to configure each motor, in the order the motors were created
+    public List<ConfigurationRecord> applyConfigurationBatch() {
+        List<ConfigurationRecord> ret = new ArrayList<ConfigurationRecord>() ;
+        List<TalonFXMotorController> batch = batch_ ;
+        batch_ = null ;
+
+        if (batch == null || batch.isEmpty())
+            return ret ;
+
+        long start = System.nanoTime() ;
+        AtomicInteger index = new AtomicInteger(1) ;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(batch.size(), kMaxConfigThreads), (r) -> {
+            Thread t = new Thread(r, "motor-config-" + index.getAndIncrement()) ;
+            t.setDaemon(true) ;
+            return t ;
+        }) ;
+
+        List<CompletableFuture<ConfigurationRecord>> futures = new ArrayList<CompletableFuture<ConfigurationRecord>>() ;
+        for(TalonFXMotorController ctrl : batch) {
+            futures.add(CompletableFuture.supplyAsync(() -> applyConfiguration(ctrl), pool)) ;
+        }
+
+        for(CompletableFuture<ConfigurationRecord> future : futures) {
+            ret.add(future.join()) ;
+        }
+        pool.shutdown() ;
+
+        //
+        // The errors are logged here, on the calling thread, once all of the motors are done
+        //
+        for(ConfigurationRecord rec : ret) {
+            if (rec.error_ != null) {
+                logger_.startMessage(MessageType.Error) ;
+                logger_.add("could not configure motor ").addQuoted(rec.name_) ;
+                logger_.add("bus", rec.bus_, true) ;
+                logger_.add("id", rec.canid_) ;
+                logger_.add(" - ").add(rec.error_) ;
+                logger_.endMessage() ;
+            }
+        }
+
+        logger_.startMessage(MessageType.Info) ;
+        logger_.add("configured motors") ;
+        logger_.add("count", ret.size()) ;
+        logger_.add("elapsed", (System.nanoTime() - start) / 1.0e6) ;
+        logger_.endMessage() ;
+
+        return ret ;
+    }
+
+    //
+    // Send the configuration to a single motor, this runs on a configuration worker thread
+    //
+    private static ConfigurationRecord applyConfiguration(TalonFXMotorController ctrl) {
+        long start = System.nanoTime() ;
+        String bus = "" ;
+        int canid = -1 ;
+        String error = null ;
+
+        try {
+            bus = ctrl.getBus() ;
+            canid = ctrl.getCanID() ;
+            ctrl.applyConfiguration() ;
+        }
+        catch(Exception ex) {
+            error = ex.getMessage() ;
+        }
+
+        return new ConfigurationRecord(ctrl.getName(), bus, canid, start, System.nanoTime(), Thread.currentThread().getName(), error) ;
+    }
+
+    /// \brief Returns the registry for the status signals on a CAN bus, creating it if needed
+    /// \param bus the name of the CAN bus, an empty string is the roborio bus
+    /// \returns the registry for the status signals on the CAN bus
+    public synchronized TalonFXSignalRegistry getSignalRegistry(String bus) {
+        TalonFXSignalRegistry ret = signals_.get(bus) ;
+        if (ret == null) {
+            ret = new TalonFXSignalRegistry(bus) ;
+            signals_.put(bus, ret) ;
+        }
+
+        return ret ;
+    }
+
+    /// \brief Refresh the status signals for the motors on every CAN bus.  This is called once at the start
+    /// of each robot loop so that the motor values read during the loop are all from the same point in time.
+    public synchronized void refreshSignals() {
+        boolean error = false ;
+
+        for(TalonFXSignalRegistry reg : signals_.values()) {
+            StatusCode code = reg.refresh() ;
+            if (!code.isOK()) {
+                //
+                // Only log when the signals go bad, not every robot loop while they stay bad
+                //
+                if (!signal_error_) {
+                    logger_.startMessage(MessageType.Error) ;
+                    logger_.add("could not refresh motor status signals on bus ").addQuoted(reg.getBus()) ;
+                    logger_.add(" - ").add(code.toString()) ;
+                    logger_.endMessage() ;
+                }
+                error = true ;
+            }
+        }
+
+        signal_error_ = error ;
     }
 
     public void setAllCoastMode() {
@@ -312,7 +480,10 @@ public class MotorFactory {
         // Create the motor controller object based on its type
         //
         if (isCTREMotor(type)) {
-            ctrl = new TalonFXMotorController(name, bus, canid, leader, type);
+            TalonFXMotorController fx = new TalonFXMotorController(name, bus, canid, leader, type, getSignalRegistry(bus), batch_ != null) ;
+            if (batch_ != null)
+                batch_.add(fx) ;
+            ctrl = fx ;
         } else if (type.equals("sparkmax-brushless")) {
             ctrl = new SparkMaxMotorController(name, canid, true, leader);
         } else if (type.equals("sparmmax-brushed")) {
@@ -52,7 +52,32 @@ public class TalonFXMotorController extends MotorController
     private int build_ ;
     private String type_ ;
 
+    private TalonFXSignalRegistry signals_ ;
+    private StatusSignal<Double> position_ ;
+    private StatusSignal<Double> velocity_ ;
+
+    private boolean deferred_ ;
+    private double pending_position_ ;
+
     public TalonFXMotorController(String name, String bus, int canid, boolean leader, String type) throws MotorRequestFailedException, BadMotorRequestException {
+        this(name, bus, canid, leader, type, null, false) ;
+    }
+
+    public TalonFXMotorController(String name, String bus, int canid, boolean leader, String type, TalonFXSignalRegistry signals) throws MotorRequestFailedException, BadMotorRequestException {
+        this(name, bus, canid, leader, type, signals, false) ;
+    }
+
+    /// \brief create a new TalonFX motor controller
+    /// \param name the name of the motor
+    /// \param bus the CAN bus for the motor, an empty string is the roborio bus
+    /// \param canid the CAN id of the motor
+    /// \param leader if true, the motor is the leader of a group of motors
+    /// \param type the type of the motor
+    /// \param signals the registry that refreshes the position and velocity each robot loop.  If null,
+    /// the position and velocity are read from the bus each time they are requested.
+    /// \param deferred if true, configuration changes are kept until applyConfiguration() is called and are
+    /// then sent to the motor with a single apply.  If false, each change is sent to the motor as it is made.
+    public TalonFXMotorController(String name, String bus, int canid, boolean leader, String type, TalonFXSignalRegistry signals, boolean deferred) throws MotorRequestFailedException, BadMotorRequestException {
         super(name) ;
 
         bus_ = bus ;
@@ -61,14 +86,58 @@ public class TalonFXMotorController extends MotorController
         ctrl_ = new TalonFX(canid, bus_);
         cfg_ = new TalonFXConfiguration() ;
 
+        signals_ = signals ;
+        position_ = ctrl_.getPosition() ;
+        velocity_ = ctrl_.getVelocity() ;
+        if (signals_ != null)
+            signals_.register(position_, velocity_) ;
+
         major_ = -1 ;
         minor_ = -1 ;
         bugfix_ = -1 ;
         build_ = -1 ;
 
+        deferred_ = deferred ;
+        pending_position_ = 0.0 ;
+
+        if (!deferred)
+            sendConfiguration() ;
+    }
+
+    /// \brief returns true if configuration changes are being kept until applyConfiguration() is called
+    /// \returns true if configuration changes are being kept until applyConfiguration() is called
+    public boolean isConfigurationDeferred() {
+        return deferred_ ;
+    }
+
+    /// \brief send the complete configuration for the motor with a single apply, then set the encoder position.
+    /// After this call, each configuration change is sent to the motor as it is made.  This method blocks until
+    /// the motor acknowledges the configuration, and may be called on a thread other than the robot thread as
+    /// long as no other method is called on this motor until it returns.
+    public void applyConfiguration() throws MotorRequestFailedException, BadMotorRequestException {
+        if (!deferred_)
+            return ;
+
+        deferred_ = false ;
+        sendConfiguration() ;
+    }
+
+    //
+    // Send the complete configuration to the motor, then set the encoder position
+    //
+    private void sendConfiguration() throws MotorRequestFailedException, BadMotorRequestException {
         checkError("TalonFXMotorController - apply configuration", () -> ctrl_.getConfigurator().apply(cfg_));
         checkError("TalonFXMotorController - optimize bus", () -> ctrl_.optimizeBusUtilization()) ;
-        setPosition(0.0);
+        setPosition(pending_position_) ;
+    }
+
+    //
+    // Send part of the configuration to the motor, unless configuration is deferred in which case
+    // the change is sent with the rest of the configuration by applyConfiguration()
+    //
+    private void configure(String msg, Supplier<StatusCode> toApply) throws MotorRequestFailedException {
+        if (!deferred_)
+            checkError(msg, toApply) ;
     }
 
     private void checkError(String msg, Supplier<StatusCode> toApply) throws MotorRequestFailedException {
@@ -86,12 +155,12 @@ public class TalonFXMotorController extends MotorController
 
     public void setPIDv(double v) throws MotorRequestFailedException {
         cfg_.Slot0.kV = v ;
-        checkError("setPID()", () -> ctrl_.getConfigurator().apply(cfg_.Slot0));        
+        configure("setPID()", () -> ctrl_.getConfigurator().apply(cfg_.Slot0));        
     }
 
     public void setPIDp(double v) throws MotorRequestFailedException {
         cfg_.Slot0.kP = v ;
-        checkError("setPID()", () -> ctrl_.getConfigurator().apply(cfg_.Slot0));        
+        configure("setPID()", () -> ctrl_.getConfigurator().apply(cfg_.Slot0));        
     }    
 
     /// \brief Returns the CAN ID of the motor
@@ -353,7 +422,7 @@ public class TalonFXMotorController extends MotorController
         cfgs.SupplyCurrentLimitEnable = true ;
         cfgs.SupplyCurrentThreshold = limit ;
         cfgs.SupplyTimeThreshold = 0.1 ;
-        checkError("setCurrentLimit", () -> ctrl_.getConfigurator().apply(cfgs)) ;
+        configure("setCurrentLimit", () -> ctrl_.getConfigurator().apply(cfgs)) ;
     }
 
     /// \brief Returns the current limit for the current supplied to the motor
@@ -373,7 +442,7 @@ public class TalonFXMotorController extends MotorController
     public void setNeutralDeadband(double value) throws BadMotorRequestException, MotorRequestFailedException {
         MotorOutputConfigs cfgs = cfg_.MotorOutput ;
         cfgs.DutyCycleNeutralDeadband = value ;
-        checkError("setNeutralDeadband", () -> ctrl_.getConfigurator().apply(cfgs)) ;
+        configure("setNeutralDeadband", () -> ctrl_.getConfigurator().apply(cfgs)) ;
     } 
 
     /// \brief Get the deadband value for the motor
@@ -387,7 +456,7 @@ public class TalonFXMotorController extends MotorController
     public void setNeutralMode(XeroNeutralMode mode) throws BadMotorRequestException, MotorRequestFailedException {
         MotorOutputConfigs cfgs = cfg_.MotorOutput ;
         cfgs.NeutralMode = (mode == XeroNeutralMode.Brake) ? NeutralModeValue.Brake : NeutralModeValue.Coast ;
-        checkError("setNeutralMode", () -> ctrl_.getConfigurator().apply(cfgs)) ;        
+        configure("setNeutralMode", () -> ctrl_.getConfigurator().apply(cfgs)) ;        
     }
     
     /// \brief Get the neutral mode for the motor
@@ -406,7 +475,7 @@ public class TalonFXMotorController extends MotorController
     public void setInverted(boolean inverted) throws BadMotorRequestException , MotorRequestFailedException {
         MotorOutputConfigs cfgs = cfg_.MotorOutput ;
         cfgs.Inverted = (inverted ? InvertedValue.CounterClockwise_Positive : InvertedValue.Clockwise_Positive) ;
-        checkError("setInverted", () -> ctrl_.getConfigurator().apply(cfgs)) ;  
+        configure("setInverted", () -> ctrl_.getConfigurator().apply(cfgs)) ;  
     }
 
     /// \brief Returns true if the motor is inverted
@@ -447,12 +516,12 @@ public class TalonFXMotorController extends MotorController
         cfg.kA = a * kTicksPerRevolution ;
         cfg.kG = g ;
         cfg.kS = s ;
-        checkError("setPID()", () -> ctrl_.getConfigurator().apply(cfg));
+        configure("setPID()", () -> ctrl_.getConfigurator().apply(cfg));
 
         VoltageConfigs mo = cfg_.Voltage ;
         mo.PeakForwardVoltage = outmax * 12.0 ;
         mo.PeakReverseVoltage = -outmax * 12.0 ;
-        checkError("setPID()", () -> ctrl_.getConfigurator().apply(mo));
+        configure("setPID()", () -> ctrl_.getConfigurator().apply(mo));
     }
 
     /// \brief Set the parameters for motion magic
@@ -465,7 +534,7 @@ public class TalonFXMotorController extends MotorController
         cfg.MotionMagicCruiseVelocity = v  / kTicksPerRevolution;
         cfg.MotionMagicJerk = j / kTicksPerRevolution;
 
-        checkError("setMotionMagicParams()", () -> ctrl_.getConfigurator().apply(cfg));
+        configure("setMotionMagicParams()", () -> ctrl_.getConfigurator().apply(cfg));
     }        
 
     /// \brief Set the motor target.  What the target is depends on the mode.
@@ -532,7 +601,7 @@ public class TalonFXMotorController extends MotorController
                 break ;                  
         }
         final double tfreq = freq ;
-        checkError("setPositionImportant()", () -> ctrl_.getPosition().setUpdateFrequency(tfreq)) ;
+        checkError("setPositionImportant()", () -> position_.setUpdateFrequency(tfreq)) ;
     }
     
     /// \brief If value is true, the motor controller will consider velocity data as important and update
@@ -555,7 +624,7 @@ public class TalonFXMotorController extends MotorController
                 break ;                
         }
         final double tfreq = freq ;        
-        checkError("setVelocityImportant error", () -> ctrl_.getVelocity().setUpdateFrequency(tfreq)) ;
+        checkError("setVelocityImportant error", () -> velocity_.setUpdateFrequency(tfreq)) ;
     }
     
     /// \brief If value is true, the motor controller will consider acceleration data as important and update
@@ -585,7 +654,7 @@ public class TalonFXMotorController extends MotorController
     /// have an attached encoder, an exception is thrown.
     /// \returns the position of the motor in encoder ticks
     public double getPosition() throws BadMotorRequestException, MotorRequestFailedException {          
-        return ctrl_.getPosition().getValue() * kTicksPerRevolution ;
+        return currentValue(position_) * kTicksPerRevolution ;
     }
     
     /// \brief Return the velocity of the motor if there is PID control in the motor controller.   If the motor does not
@@ -594,11 +663,23 @@ public class TalonFXMotorController extends MotorController
     public double getVelocity() throws BadMotorRequestException, MotorRequestFailedException {
         double ret = 0.0 ;
 
-        ret = ctrl_.getVelocity().getValue() * kTicksPerRevolution ;
+        ret = currentValue(velocity_) * kTicksPerRevolution ;
 
         return ret;
     }
 
+    //
+    // If the signal is refreshed by the signal registry, the value from the last refresh is used.  Otherwise the
+    // signal is refreshed from the bus.  This is also done before the registry has refreshed the signal for the
+    // first time, for instance when the robot is initializing, since until then the value is stale.
+    //
+    private double currentValue(StatusSignal<Double> sig) {
+        if (signals_ == null || !signals_.isRefreshed())
+            sig.refresh() ;
+
+        return sig.getValue() ;
+    }
+
     /// \brief Return the acceleration of the motor if there is PID control in the motor controller.   If the motor does not
     /// have an attached encoder, an exception is thrown.
     /// \returns the acceleration of the motor in ticks per second squared
@@ -612,13 +693,25 @@ public class TalonFXMotorController extends MotorController
 
     /// \brief Reset the encoder values to zero    
     public void resetEncoder() throws BadMotorRequestException, MotorRequestFailedException {
+        if (deferred_) {
+            pending_position_ = 0.0 ;
+            return ;
+        }
+
         checkError("resetEncoder", () -> ctrl_.setPosition(0.0)) ;
+        position_.refresh() ;
     }
 
      /// \brief Set the encoder to a specific value in ticks
      /// \param pos the new value for the encoder in ticks
      public void setPosition(double value) throws BadMotorRequestException, MotorRequestFailedException {
+        if (deferred_) {
+            pending_position_ = value ;
+            return ;
+        }
+
         checkError("setPosition", () -> ctrl_.setPosition(value / kTicksPerRevolution)) ;
+        position_.refresh() ;
      }    
 
     /// \brief Enable voltage compensation for the given motor
@@ -656,22 +749,22 @@ public class TalonFXMotorController extends MotorController
     public void enableSoftForwardLimit(double value) throws BadMotorRequestException, MotorRequestFailedException {
         cfg_.SoftwareLimitSwitch.ForwardSoftLimitEnable = true ;
         cfg_.SoftwareLimitSwitch.ForwardSoftLimitThreshold = value / kTicksPerRevolution ;
-        checkError("enableSoftForwardLimit", () -> ctrl_.getConfigurator().apply(cfg_.SoftwareLimitSwitch)) ;
+        configure("enableSoftForwardLimit", () -> ctrl_.getConfigurator().apply(cfg_.SoftwareLimitSwitch)) ;
     }
 
     public void disableSoftForwardLimit() throws BadMotorRequestException, MotorRequestFailedException {
         cfg_.SoftwareLimitSwitch.ForwardSoftLimitEnable = false ;
-        checkError("disableSoftForwardLimit", () -> ctrl_.getConfigurator().apply(cfg_.SoftwareLimitSwitch)) ;
+        configure("disableSoftForwardLimit", () -> ctrl_.getConfigurator().apply(cfg_.SoftwareLimitSwitch)) ;
     }
 
     public void enableSoftReverseLimit(double value) throws BadMotorRequestException, MotorRequestFailedException {
         cfg_.SoftwareLimitSwitch.ReverseSoftLimitEnable = true ;
         cfg_.SoftwareLimitSwitch.ReverseSoftLimitThreshold = value / kTicksPerRevolution ;
-        checkError("enableSoftReverseLimit", () -> ctrl_.getConfigurator().apply(cfg_.SoftwareLimitSwitch)) ;
+        configure("enableSoftReverseLimit", () -> ctrl_.getConfigurator().apply(cfg_.SoftwareLimitSwitch)) ;
     }
 
     public void disableSoftReverseLimit() throws BadMotorRequestException, MotorRequestFailedException {
         cfg_.SoftwareLimitSwitch.ReverseSoftLimitEnable = false ;
-        checkError("disableSoftReverseLimit", () -> ctrl_.getConfigurator().apply(cfg_.SoftwareLimitSwitch)) ;
+        configure("disableSoftReverseLimit", () -> ctrl_.getConfigurator().apply(cfg_.SoftwareLimitSwitch)) ;
     }
 } ;
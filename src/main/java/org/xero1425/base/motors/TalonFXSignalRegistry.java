@@ -0,0 +1,99 @@
+package org.xero1425.base.motors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/// \file
+/// This file contains the implementation of the TalonFXSignalRegistry class.
+///
+
+/// \brief This class holds the status signals for the CTRE motors on a single CAN bus that are read
+/// every robot loop.  Once per robot loop all of the signals are refreshed together with a single call,
+/// and the motor controllers then read the values from the signals without going to the bus again.  This
+/// means all of the values read in a robot loop, for instance the positions of the four swerve modules,
+/// were captured at the same time.
+public class TalonFXSignalRegistry {
+    private String bus_ ;
+    private List<BaseStatusSignal> signals_ ;
+    private BaseStatusSignal[] batch_ ;
+    private StatusCode status_ ;
+    private double timestamp_ ;
+
+    //
+    // True once every signal in the registry has been refreshed.  This is read without the lock by the
+    // motor controllers on every read, so it is volatile.
+    //
+    private volatile boolean refreshed_ ;
+
+    /// \brief create a new registry for a CAN bus
+    /// \param bus the name of the CAN bus, an empty string is the roborio bus
+    public TalonFXSignalRegistry(String bus) {
+        bus_ = bus ;
+        signals_ = new ArrayList<BaseStatusSignal>() ;
+        batch_ = new BaseStatusSignal[0] ;
+        status_ = StatusCode.OK ;
+        timestamp_ = 0.0 ;
+        refreshed_ = false ;
+    }
+
+    /// \brief returns the name of the CAN bus for this registry
+    /// \returns the name of the CAN bus for this registry
+    public String getBus() {
+        return bus_ ;
+    }
+
+    /// \brief add signals to the set of signals refreshed each robot loop.  Until the next refresh, the
+    /// registry is not considered refreshed, since the new signals have not been read.
+    /// \param signals the signals to add
+    public synchronized void register(BaseStatusSignal... signals) {
+        for(BaseStatusSignal sig : signals) {
+            if (!signals_.contains(sig))
+                signals_.add(sig) ;
+        }
+        batch_ = signals_.toArray(new BaseStatusSignal[signals_.size()]) ;
+        refreshed_ = false ;
+    }
+
+    /// \brief returns true if every signal in the registry has been refreshed at least once.  Before this,
+    /// for instance while the robot is initializing, the values of the signals are stale and must be
+    /// refreshed directly.
+    /// \returns true if every signal in the registry has been refreshed at least once
+    public boolean isRefreshed() {
+        return refreshed_ ;
+    }
+
+    /// \brief returns the number of signals in the registry
+    /// \returns the number of signals in the registry
+    public synchronized int size() {
+        return batch_.length ;
+    }
+
+    /// \brief refresh all of the signals in the registry with a single call
+    /// \returns the status of the refresh, which is the worst status of any of the signals
+    public synchronized StatusCode refresh() {
+        if (batch_.length > 0) {
+            status_ = BaseStatusSignal.refreshAll(batch_) ;
+            timestamp_ = Timer.getFPGATimestamp() ;
+            refreshed_ = true ;
+        }
+
+        return status_ ;
+    }
+
+    /// \brief returns the status of the last refresh
+    /// \returns the status of the last refresh
+    public synchronized StatusCode getStatus() {
+        return status_ ;
+    }
+
+    /// \brief returns the robot time when the signals were last refreshed
+    /// \returns the robot time when the signals were last refreshed
+    public synchronized double getTimestamp() {
+        return timestamp_ ;
+    }
+}
@@ -1,14 +1,15 @@
 package org.xero1425.base.subsystems;
 
 import java.util.List;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 
 import org.xero1425.base.LoopType;
+import org.xero1425.base.PlotRow;
 import org.xero1425.base.XeroRobot;
 import org.xero1425.base.actions.Action;
 import org.xero1425.misc.BadParameterTypeException;
 import org.xero1425.misc.ISettingsSupplier;
+import org.xero1425.misc.LoopHistogram;
 import org.xero1425.misc.MessageLogger;
 import org.xero1425.misc.MessageType;
 import org.xero1425.misc.MissingParameterException;
@@ -80,30 +81,19 @@ public class Subsystem {
     private boolean finished_default_ ;
 
     //
-    // The total time spent running code in this subsystem.  This captures the compute state
-    // run time since this is the method that takes a lot of time in time critical subsystem code.
+    // The times spent in computeMyState() for this subsystem, not including its children
     //
-    private double total_time_ ;
+    private LoopHistogram compute_time_ ;
 
     //
-    // The number of times this subsystem has been run
+    // The times spent in run() for this subsystem, including its children
     //
-    private int total_cnt_ ;
+    private LoopHistogram run_time_ ;
 
     //
-    // The maximum time spent on any one robot loop in the code for this subsystem
+    // The times spent in the run() method of the action assigned to this subsystem
     //
-    private double max_time_ ;
-
-    //
-    // The output format for logging information about the subsystem run times
-    //
-    private DecimalFormat fmt_ ;
-
-    //
-    // The minimum time spend on any one robot loop in the code for this subsystem
-    //
-    private double min_time_ ;
+    private LoopHistogram action_time_ ;
 
     //
     // If true, this subsystem logs much information
@@ -133,11 +123,9 @@ public class Subsystem {
 
         if (timing_)
         {
-            total_time_ = 0.0;
-            total_cnt_ = 0;
-            min_time_ = Double.MAX_VALUE;
-            max_time_ = 0.0;
-            fmt_ = new DecimalFormat("00.000");
+            compute_time_ = robot.getLoopProfiler().register("subsystem/" + name + "/compute") ;
+            run_time_ = robot.getLoopProfiler().register("subsystem/" + name + "/run") ;
+            action_time_ = robot.getLoopProfiler().register("subsystem/" + name + "/action") ;
         }
         try {
             ISettingsSupplier p = getRobot().getSettingsSupplier();
@@ -317,6 +305,13 @@ public class Subsystem {
             sub.reset() ; 
     }
 
+    /// \brief This method is called when the robot program ends.  It is used to stop any
+    /// threads the subsystem started.
+    public void shutdown() {
+        for(Subsystem sub : children_)
+            sub.shutdown() ;
+    }
+
     /// \brief reservered for future use
     public void selfTest() {
     }
@@ -338,35 +333,32 @@ public class Subsystem {
     /// the exception from propogating up and crashing the robot code.
     ///
     public void computeState() {
-        double start = 0.0 ;
+        long start ;
         for(Subsystem sub : children_) {
             sub.computeState();
         }
 
         try {
-            start = getRobot().getTime() ;
+            start = System.nanoTime() ;
 
             computeMyState() ;
             
             if (timing_)
             {
-                double elapsed = getRobot().getTime() - start ;
-                total_time_ += elapsed ;
-                total_cnt_++ ;
-
-                min_time_ = Math.min(min_time_, elapsed) ;
-                max_time_ = Math.max(max_time_, elapsed) ;
+                compute_time_.record(System.nanoTime() - start) ;
                 
                 // Turn this on to see where execution time is going
                 
-                if (total_cnt_ > 0 && (total_cnt_ % 50) == 0) {
+                long count = compute_time_.getCount() ;
+                if ((count % 50) == 0 && getRobot().getMessageLogger().isEnabled(MessageType.Debug, getRobot().getLoggerID())) {
                     MessageLogger logger = getRobot().getMessageLogger() ;
                     logger.startMessage(MessageType.Debug, getRobot().getLoggerID()) ;
                     logger.add("subsystem ").addQuoted(getName()) ;
-                    logger.add("count", total_cnt_) ;
-                    logger.add("min", fmt_.format(min_time_ * 1000)) ;
-                    logger.add("average", fmt_.format(total_time_ / total_cnt_ * 1000)) ;
-                    logger.add("max", fmt_.format(max_time_ * 1000)) ;
+                    logger.add("count", (int)count) ;
+                    logger.add("min", compute_time_.getMin() / 1.0e6) ;
+                    logger.add("average", compute_time_.getMean() / 1.0e6) ;
+                    logger.add("p99", compute_time_.getValueAtPercentile(99.0) / 1.0e6) ;
+                    logger.add("max", compute_time_.getMax() / 1.0e6) ;
                     logger.endMessage();
                 }
             }
@@ -392,7 +384,11 @@ public class Subsystem {
         {
             try {
                 if (!action_.isDone()) {
+                    long start = System.nanoTime() ;
                     action_.run() ;
+                    if (timing_)
+                        action_time_.record(System.nanoTime() - start) ;
+
                     if (action_.isDone()) {
                         if (action_ == default_action_)
                             finished_default_ = true ;
@@ -435,7 +431,17 @@ public class Subsystem {
         }
 
         for(Subsystem sub : children_)
-            sub.run();        
+            sub.runProfiled();
+    }
+
+    /// \brief call run() and record the time it takes in the run time histogram for this subsystem
+    /// This is how the robot and parent subsystems run a subsystem, so the time recorded includes the
+    /// run() method of any derived class and the time spent running the children of this subsystem.
+    public void runProfiled() throws Exception {
+        long start = System.nanoTime() ;
+        run() ;
+        if (timing_)
+            run_time_.record(System.nanoTime() - start) ;
     }
 
     /// \brief set the current action for the subsystem
@@ -687,6 +693,20 @@ public class Subsystem {
         getRobot().getPlotManager().startPlot(id, cols) ;
     }
 
+    /// \brief add data to a plot
+    /// \param id the handle for a plot returned by initPlot()
+    /// \param data the data for the plot, should be the same size as the cols array in startPlot()
+    public void addPlotData(int id, double[] data) {
+        getRobot().getPlotManager().addPlotData(id, data) ;
+    }
+
+    /// \brief add data to a plot
+    /// \param id the handle for a plot returned by initPlot()
+    /// \param row the row of data for the plot, should have the same number of columns as the cols array in startPlot()
+    public void addPlotData(int id, PlotRow row) {
+        getRobot().getPlotManager().addPlotData(id, row) ;
+    }
+
     /// \brief add data to a plot
     /// \param id the handle for a plot returned by initPlot()
     /// \param data the data for the plot, should be the same size as the cols array in startPlot()
@@ -12,7 +12,7 @@ public class MCMotionMagicAction extends MotorAction {
     private int plot_id_ ;
 
     // Data for each loop of the plot
-    private Double data_[] ;
+    private double data_[] ;
 
     // The columns to plot
     private static String [] columns_ = { 
@@ -49,7 +49,7 @@ public class MCMotionMagicAction extends MotorAction {
         vel_threshold_ = velthresh ;
 
         plot_id_ = sub.initPlot(toString(0) + "-" + String.valueOf(which_++)) ;     
-        data_ = new Double[columns_.length] ;
+        data_ = new double[columns_.length] ;
     }
 
     @Override
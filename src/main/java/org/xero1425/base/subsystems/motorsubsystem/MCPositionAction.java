@@ -20,6 +20,9 @@ public class MCPositionAction extends MotorAction {
     private String name_ ;
     private double plot_duration_ ;
 
+    // The data for each row of the plot
+    private double[] plot_data_ ;
+
     private String [] columns_ = new String[] {
         "time (s)",
         "position (%%posunits%%)",
@@ -66,6 +69,7 @@ public class MCPositionAction extends MotorAction {
        super.start() ;
 
         if (plot_id_ != -1) {
+            plot_data_ = new double[columns_.length] ;
             getSubsystem().startPlot(plot_id_, columns_) ;
             plot_timer_.start() ;
         }
@@ -98,11 +102,10 @@ public class MCPositionAction extends MotorAction {
         MotorEncoderSubsystem me = (MotorEncoderSubsystem)getSubsystem() ;
 
         if (plot_id_ != -1) {
-            Double[] data = new Double[columns_.length] ;
-            data[0] = getSubsystem().getRobot().getTime() - start_ ;
-            data[1] = target_ ;
-            data[2] = me.getVelocity() ;
-            getSubsystem().addPlotData(plot_id_, data);
+            plot_data_[0] = getSubsystem().getRobot().getTime() - start_ ;
+            plot_data_[1] = target_ ;
+            plot_data_[2] = me.getVelocity() ;
+            getSubsystem().addPlotData(plot_id_, plot_data_);
 
             if (plot_timer_.isExpired()) {
                 getSubsystem().endPlot(plot_id_) ;
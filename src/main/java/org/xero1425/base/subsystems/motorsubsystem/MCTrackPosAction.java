@@ -10,7 +10,7 @@ public class MCTrackPosAction extends MotorAction {
     private int plot_id_ ;
 
     // Data for each loop of the plot
-    private Double data_[] ;
+    private double data_[] ;
 
     // The columns to plot
     private static String [] columns_ = { 
@@ -52,7 +52,7 @@ public class MCTrackPosAction extends MotorAction {
         else {
             plot_id_ = -1 ;
         }
-        data_ = new Double[columns_.length] ;
+        data_ = new double[columns_.length] ;
     }
 
     @Override
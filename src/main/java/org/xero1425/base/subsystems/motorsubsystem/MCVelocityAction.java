@@ -46,7 +46,7 @@ public class MCVelocityAction extends MotorAction {
     private XeroTimer plot_timer_ ;
 
     // Data for each loop of the plot
-    private Double data_[] ;
+    private double data_[] ;
 
     // The columns to plot
     private static String [] columns_ = { 
@@ -81,7 +81,7 @@ public class MCVelocityAction extends MotorAction {
                 plot_duration_ = settings.get(pidname + ":plot-duration").getDouble() ;
             }
             plot_timer_ = new XeroTimer(sub.getRobot(), "velocity-action-plot", plot_duration_) ;
-            data_ = new Double[columns_.length] ;
+            data_ = new double[columns_.length] ;
         }
         else {
             plot_id_ = -1 ;
@@ -18,7 +18,7 @@ public class MotorEncoderPowerAction extends MotorPowerAction
     // The plot ID for the action
     private int plot_id_ ;
 
-    private Double data_[] ;
+    private double data_[] ;
 
     // The columns to plot
     private static final String[] plot_columns_ = { 
@@ -56,7 +56,7 @@ public class MotorEncoderPowerAction extends MotorPowerAction
     public MotorEncoderPowerAction(MotorEncoderSubsystem motor, double power, double duration) {
         super(motor, power, duration);
         plot_id_ = motor.initPlot(toString(0)) ;
-        data_ = new Double[plot_columns_.length] ;
+        data_ = new double[plot_columns_.length] ;
     }
 
     /// \brief Create the MotorEncoderPowerAction that applies the power for a fixed 
@@ -69,7 +69,7 @@ public class MotorEncoderPowerAction extends MotorPowerAction
 
         super(motor, power, duration);
         plot_id_ = motor.initPlot(toString(0)) ;
-        data_ = new Double[plot_columns_.length] ;        
+        data_ = new double[plot_columns_.length] ;        
     }
 
     /// \brief Start the action by applying the power requested
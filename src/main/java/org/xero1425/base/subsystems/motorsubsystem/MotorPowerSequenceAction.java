@@ -23,7 +23,7 @@ public class MotorPowerSequenceAction extends MotorAction {
     // The plot ID for the action
     private int plot_id_ ;
 
-    private Double data_[] ;
+    private double data_[] ;
 
     // The columns to plot
     private static final String[] plot_columns_ = { 
@@ -49,7 +49,7 @@ public class MotorPowerSequenceAction extends MotorAction {
             throw new Exception("invalid arguments to MotorPowerSequenceAction action");
 
         plot_id_ = sub.initPlot(toString(0)) ;
-        data_ = new Double[plot_columns_.length] ;            
+        data_ = new double[plot_columns_.length] ;            
     }
 
     /// \brief Start the action
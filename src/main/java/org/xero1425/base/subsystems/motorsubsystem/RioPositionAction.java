@@ -90,6 +90,9 @@ public class RioPositionAction extends MotorAction {
 
     static int name_id_ = 0 ;
 
+    // The data for each row of the plot
+    private double[] plot_data_ ;
+
     // The columns to plot
     private static final String [] plot_columns_ = 
     { 
@@ -230,6 +233,7 @@ public class RioPositionAction extends MotorAction {
         super.start() ;
         setTarget() ;
         MotorEncoderSubsystem sub = (MotorEncoderSubsystem)getSubsystem();
+        plot_data_ = new double[plot_columns_.length] ;
         getSubsystem().startPlot(plot_id_, convertUnits(plot_columns_, sub.getUnits()));
     }
 
@@ -260,15 +264,14 @@ public class RioPositionAction extends MotorAction {
             double out = ctrl_.getOutput(targetAcc, targetVel, targetDist, traveled, dt) ;
             sub.setPower(out) ;
 
-            Double[] data = new Double[plot_columns_.length] ;
-            data[0] = elapsed ;
-            data[1] = start_position_ + targetDist ;
-            data[2] = position ;
-            data[3] = targetVel ;
-            data[4] = sub.getVelocity() ;
-            data[5] = out ;
-            data[6] = sub.getTotalCurrent();
-            sub.addPlotData(plot_id_, data);
+            plot_data_[0] = elapsed ;
+            plot_data_[1] = start_position_ + targetDist ;
+            plot_data_[2] = position ;
+            plot_data_[3] = targetVel ;
+            plot_data_[4] = sub.getVelocity() ;
+            plot_data_[5] = out ;
+            plot_data_[6] = sub.getTotalCurrent();
+            sub.addPlotData(plot_id_, plot_data_);
         }
     }
 
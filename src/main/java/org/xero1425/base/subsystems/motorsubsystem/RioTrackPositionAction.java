@@ -22,6 +22,9 @@ public class RioTrackPositionAction extends MotorAction {
     // The plot ID for the action
     private int plot_id_ ;
 
+    // The data for each row of the plot
+    private double[] plot_data_ ;
+
     // The columns to plot
     private String [] columns_ = { "time", "target(%%posunits%%)", "actual(%%posunits%%)", "error", "power"}  ;
 
@@ -55,6 +58,7 @@ public class RioTrackPositionAction extends MotorAction {
 
         if (plot_id_ != -1) {
             MotorEncoderSubsystem sub = (MotorEncoderSubsystem)getSubsystem();
+            plot_data_ = new double[columns_.length] ;
             getSubsystem().startPlot(plot_id_, convertUnits(columns_, sub.getUnits())) ;
         }
     }
@@ -90,13 +94,12 @@ public class RioTrackPositionAction extends MotorAction {
         error_ = Math.abs(target_ - sub.getPosition()) ;
 
         if (plot_id_ != -1) {
-            Double[] data = new Double[columns_.length] ;
-            data[0] = getSubsystem().getRobot().getTime() - start_ ;
-            data[1] = target_ ;
-            data[2] = sub.getPosition() ;
-            data[3] = error_ ;
-            data[4] = out ;
-            getSubsystem().addPlotData(plot_id_, data);
+            plot_data_[0] = getSubsystem().getRobot().getTime() - start_ ;
+            plot_data_[1] = target_ ;
+            plot_data_[2] = sub.getPosition() ;
+            plot_data_[3] = error_ ;
+            plot_data_[4] = out ;
+            getSubsystem().addPlotData(plot_id_, plot_data_);
 
             if (getSubsystem().getRobot().getTime() - start_ > 2.5)
             {
@@ -55,6 +55,19 @@ public class SDSSwerveDriveSubsystem extends SwerveBaseSubsystem {
 
     private int module_pos_ = 0 ;
 
+    //
+    // The module states, positions and targets returned to callers.  These are filled in place each time
+    // they are read so that reading the modules does not allocate memory.  The rotations are only replaced
+    // when the angle of a module changes.
+    //
+    private SwerveModuleState [] states_ ;
+    private SwerveModulePosition [] positions_ ;
+    private SwerveModuleState [] targets_ ;
+    private double [] state_angles_ ;
+    private Rotation2d [] state_rotations_ ;
+    private double [] target_angles_ ;
+    private Rotation2d [] target_rotations_ ;
+
     public SDSSwerveDriveSubsystem(Subsystem parent, String name) throws Exception {
         super(parent, name) ;
 
@@ -71,6 +84,23 @@ public class SDSSwerveDriveSubsystem extends SwerveBaseSubsystem {
         history_[BL] = new MinMaxData(10) ;
         history_[BR] = new MinMaxData(10) ;
 
+        states_ = new SwerveModuleState[4] ;
+        positions_ = new SwerveModulePosition[4] ;
+        targets_ = new SwerveModuleState[4] ;
+        state_angles_ = new double[4] ;
+        state_rotations_ = new Rotation2d[4] ;
+        target_angles_ = new double[4] ;
+        target_rotations_ = new Rotation2d[4] ;
+        for(int i = 0 ; i < 4 ; i++) {
+            states_[i] = new SwerveModuleState() ;
+            positions_[i] = new SwerveModulePosition() ;
+            targets_[i] = new SwerveModuleState() ;
+            state_angles_[i] = 0.0 ;
+            state_rotations_[i] = new Rotation2d() ;
+            target_angles_[i] = 0.0 ;
+            target_rotations_[i] = new Rotation2d() ;
+        }
+
         String mtype = getSettingsValue("hw:modules:type").getString() ;
         String mratio = getSettingsValue("hw:modules:ratio").getString() ;
         SwerveModuleConfig cfg = getConfiguration(mtype, mratio) ;
@@ -105,6 +135,18 @@ public class SDSSwerveDriveSubsystem extends SwerveBaseSubsystem {
             logger.startMessage(MessageType.Error).add("exception thrown while synchronizing angle in swerve modules").endMessage();
             logger.logStackTrace(ex.getStackTrace());
         }
+
+        try {
+            //
+            // The odometry thread is started once the steer encoders are synchronized
+            //
+            startOdometryThread(new SwerveModule[] { modules_[FL].hw, modules_[FR].hw, modules_[BL].hw, modules_[BR].hw }) ;
+        }
+        catch(Exception ex) {
+            MessageLogger logger = getRobot().getMessageLogger() ;
+            logger.startMessage(MessageType.Error).add("exception thrown starting the odometry thread - " + ex.getMessage()).endMessage();
+            logger.logStackTrace(ex.getStackTrace());
+        }
     }
 
     public SwerveModule getModule(int which) {
@@ -144,51 +186,35 @@ public class SDSSwerveDriveSubsystem extends SwerveBaseSubsystem {
         return new PIDCtrl(getRobot().getSettingsSupplier(), pidname, false) ;
     }    
 
-    public SwerveModuleState getModuleState(int which) throws BadMotorRequestException, MotorRequestFailedException {
-        SwerveModuleState st = null ;
-
-        switch(which) {
-            case FL:
-                st = new SwerveModuleState(modules_[FL].hw.getDriveVelocity(), new Rotation2d(modules_[FL].hw.getStateAngle())) ;
-                break ;
-
-            case FR:
-                st = new SwerveModuleState(modules_[FR].hw.getDriveVelocity(), new Rotation2d(modules_[FR].hw.getStateAngle())) ;
-                break ;
-                
-            case BL:
-                st = new SwerveModuleState(modules_[BL].hw.getDriveVelocity(), new Rotation2d(modules_[BL].hw.getStateAngle())) ;
-                break ;
-                
-            case BR:
-                st = new SwerveModuleState(modules_[BR].hw.getDriveVelocity(), new Rotation2d(modules_[BR].hw.getStateAngle())) ;
-                break ;
+    //
+    // Returns the rotation for the current angle of a module, replacing it only if the angle changed
+    //
+    private Rotation2d stateRotation(int which, double radians) {
+        if (radians != state_angles_[which]) {
+            state_angles_[which] = radians ;
+            state_rotations_[which] = new Rotation2d(radians) ;
         }
 
+        return state_rotations_[which] ;
+    }
+
+    public SwerveModuleState getModuleState(int which) throws BadMotorRequestException, MotorRequestFailedException {
+        SwerveModule hw = modules_[which].hw ;
+        SwerveModuleState st = states_[which] ;
+
+        st.speedMetersPerSecond = hw.getDriveVelocity() ;
+        st.angle = stateRotation(which, hw.getStateAngle()) ;
+
         return st ;
     }
 
     public SwerveModulePosition getModulePosition(int which) {
-        SwerveModulePosition st = null ;
+        SwerveModulePosition st = positions_[which] ;
 
         try {
-            switch(which) {
-                case FL:
-                    st = new SwerveModulePosition(modules_[FL].hw.getDistance(), new Rotation2d(modules_[FL].hw.getStateAngle())) ;
-                    break ;
-
-                case FR:
-                    st = new SwerveModulePosition(modules_[FR].hw.getDistance(), new Rotation2d(modules_[FR].hw.getStateAngle())) ;
-                    break ;
-                    
-                case BL:
-                    st = new SwerveModulePosition(modules_[BL].hw.getDistance(), new Rotation2d(modules_[BL].hw.getStateAngle())) ;
-                    break ;
-                    
-                case BR:
-                    st = new SwerveModulePosition(modules_[BR].hw.getDistance(), new Rotation2d(modules_[BR].hw.getStateAngle())) ;
-                    break ;
-            }
+            SwerveModule hw = modules_[which].hw ;
+            st.distanceMeters = hw.getDistance() ;
+            st.angle = stateRotation(which, hw.getStateAngle()) ;
         }
         catch(Exception ex) {
             MessageLogger logger = getRobot().getMessageLogger() ;
@@ -200,9 +226,15 @@ public class SDSSwerveDriveSubsystem extends SwerveBaseSubsystem {
     }
 
     public SwerveModuleState getModuleTarget(int which) {
-        SwerveModuleState st = null ;
+        SwerveModuleState st = targets_[which] ;
+
+        if (angles_[which] != target_angles_[which]) {
+            target_angles_[which] = angles_[which] ;
+            target_rotations_[which] = Rotation2d.fromDegrees(angles_[which]) ;
+        }
 
-        st = new SwerveModuleState(speeds_[which], Rotation2d.fromDegrees(angles_[which])) ;
+        st.speedMetersPerSecond = speeds_[which] ;
+        st.angle = target_rotations_[which] ;
         return st ;
     }
 
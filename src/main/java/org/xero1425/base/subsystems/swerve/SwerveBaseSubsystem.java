@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.xero1425.base.IVisionLocalization;
+import org.xero1425.base.PlotRow;
 import org.xero1425.base.motors.BadMotorRequestException;
 import org.xero1425.base.motors.MotorRequestFailedException;
 import org.xero1425.base.subsystems.DriveBaseSubsystem;
@@ -34,7 +35,7 @@ public abstract class SwerveBaseSubsystem extends DriveBaseSubsystem {
 
     private int plotid_ ;
     private double plotstart_ ;
-    private Double[] plotdata_ ;
+    private PlotRow plotrow_ ;
     private static final String [] columns_ = {
         "time",
         "fl-ang-t (deg)", "fl-ang-a (deg)","fl-drv-t (m/s)","fl-drv-a (m/s)",
@@ -42,13 +43,20 @@ public abstract class SwerveBaseSubsystem extends DriveBaseSubsystem {
         "bl-ang-t (deg)", "bl-ang-a (deg)","bl-drv-t (m/s)","bl-drv-a (m/s)",
         "br-ang-t (deg)", "br-ang-a (deg)","br-drv-t (m/s)","br-drv-a (m/s)",
     } ;
-    
-    private int index_ ;
 
     private SwerveVisionProcessing vision_ ;
     private SwerveDriveKinematics kinematics_ ;
     private SwerveDrivePoseEstimator estimator_ ;
 
+    // Guards the pose estimator, which is updated by the odometry thread when it is running
+    private Object estimator_lock_ ;
+    private SwerveOdometryThread odometry_ ;
+    private SwerveModulePosition [] odometry_positions_ ;
+    private Rotation2d odometry_yaw_ ;
+
+    // The module positions given to the pose estimator from the robot loop, reused each loop
+    private SwerveModulePosition [] module_positions_ ;
+
     private double [] angles_ ;
     private double [] powers_ ;
 
@@ -76,6 +84,15 @@ public abstract class SwerveBaseSubsystem extends DriveBaseSubsystem {
         angles_ = new double[4] ;
         powers_ = new double[4] ;
 
+        estimator_lock_ = new Object() ;
+        odometry_ = null ;
+        odometry_yaw_ = null ;
+        module_positions_ = new SwerveModulePosition[4] ;
+        odometry_positions_ = new SwerveModulePosition[4] ;
+        for(int i = 0 ; i < 4 ; i++) {
+            odometry_positions_[i] = new SwerveModulePosition() ;
+        }
+
         // Note: Change to 1 to get previous behavior
         velocity_ = new MinMaxData(10) ;
         rotational_velocity_ = new MinMaxData(10) ;
@@ -85,7 +102,7 @@ public abstract class SwerveBaseSubsystem extends DriveBaseSubsystem {
             powers_[i] = 0.0 ;
         }
 
-        plotdata_ = new Double[columns_.length] ;
+        plotrow_ = new PlotRow(columns_.length) ;
         plotid_ = -1 ;
        
         width_ = getSettingsValue("physical:width").getDouble() ;
@@ -152,17 +169,38 @@ public abstract class SwerveBaseSubsystem extends DriveBaseSubsystem {
         }
     }
 
+    /// \brief add another camera to the vision system.  The samples from all of the cameras are
+    /// given to the pose estimator in the order the images were captured.  If there is no vision
+    /// system, this is the same as setVision().
+    /// \param vision the camera to add
+    public void addVision(IVisionLocalization vision) {
+        if (vision_ == null) {
+            setVision(vision) ;
+            return ;
+        }
+
+        vision_.addCamera(vision) ;
+    }
+
     public String getStatus() {
         String st = "Current Pose " + getPose().toString() ;
         return st ;
     }
 
+    //
+    // Read the positions of the modules into the array that is reused each robot loop.  The pose estimator
+    // copies the positions it keeps, so the array and the positions in it can be reused.
+    //
+    private SwerveModulePosition [] getModulePositions() throws BadMotorRequestException, MotorRequestFailedException {
+        module_positions_[FL] = getModulePosition(FL) ;
+        module_positions_[FR] = getModulePosition(FR) ;
+        module_positions_[BL] = getModulePosition(BL) ;
+        module_positions_[BR] = getModulePosition(BR) ;
+        return module_positions_ ;
+    }
+
     protected void createOdometry() throws Exception {
-        SwerveModulePosition [] poss = new SwerveModulePosition[4] ;
-        poss[0] = getModulePosition(FL) ;
-        poss[1] = getModulePosition(FR) ;
-        poss[2] = getModulePosition(BL) ;
-        poss[3] = getModulePosition(BR) ;
+        SwerveModulePosition [] poss = getModulePositions() ;
 
         Rotation2d heading = Rotation2d.fromDegrees(gyro().getYaw()) ;
         
@@ -199,6 +237,89 @@ public abstract class SwerveBaseSubsystem extends DriveBaseSubsystem {
         }        
     }
 
+    //
+    // Start sampling the modules and gyro on the odometry thread.  The rate comes from the setting
+    // estimator:odometry-frequency, and if the setting is missing or zero the pose estimator is
+    // updated once per robot loop as before.  The setting is left out of the robot settings until
+    // the CAN bus load at the sample rate has been measured.  A stepped simulation always updates
+    // the pose estimator in the robot loop, since the odometry thread runs on the wall clock.
+    //
+    protected void startOdometryThread(SwerveModule [] modules) throws Exception {
+        if (!isSettingDefined("estimator:odometry-frequency") || getRobot().isSimulationStepped())
+            return ;
+
+        double freq = getSettingsValue("estimator:odometry-frequency").getDouble() ;
+        if (freq <= 0.0)
+            return ;
+
+        MessageLogger logger = getRobot().getMessageLogger() ;
+        SwerveOdometryThread odometry = SwerveOdometryThread.create(this, modules, freq) ;
+        if (odometry == null) {
+            logger.startMessage(MessageType.Warning) ;
+            logger.add("odometry thread not started, the swerve modules or gyro cannot be sampled from another thread") ;
+            logger.endMessage() ;
+            return ;
+        }
+
+        synchronized(estimator_lock_) {
+            odometry_ = odometry ;
+        }
+        odometry_.start() ;
+
+        logger.startMessage(MessageType.Info) ;
+        logger.add("odometry thread started") ;
+        logger.add("frequency", freq) ;
+        logger.endMessage() ;
+    }
+
+    /// \brief returns the odometry thread
+    /// \returns the odometry thread, or null if the pose estimator is updated in the robot loop
+    public SwerveOdometryThread getOdometryThread() {
+        return odometry_ ;
+    }
+
+    //
+    // Called by the odometry thread with each sample of the modules and gyro
+    //
+    void updateOdometry(double when, Rotation2d yaw, SwerveModulePosition [] poss) {
+        synchronized(estimator_lock_) {
+            estimator_.updateWithTime(when, yaw, poss) ;
+
+            for(int i = 0 ; i < poss.length ; i++) {
+                odometry_positions_[i].distanceMeters = poss[i].distanceMeters ;
+                odometry_positions_[i].angle = poss[i].angle ;
+            }
+            odometry_yaw_ = yaw ;
+        }
+    }
+
+    /// \brief add a vision measurement to the pose estimator
+    /// \param pose the robot pose from the vision system
+    /// \param when the time the vision measurement was taken
+    public void addVisionMeasurement(Pose2d pose, double when) {
+        synchronized(estimator_lock_) {
+            estimator_.addVisionMeasurement(pose, when) ;
+        }
+    }
+
+    /// \brief set the standard deviations used by the pose estimator for vision measurements
+    /// \param stddevs the standard deviations for x, y, and heading
+    public void setVisionMeasurementStdDevs(Vector<N3> stddevs) {
+        synchronized(estimator_lock_) {
+            estimator_.setVisionMeasurementStdDevs(stddevs) ;
+        }
+    }
+
+    /// \brief add a vision measurement to the pose estimator with its own standard deviations
+    /// \param pose the robot pose from the vision system
+    /// \param when the time the vision measurement was taken
+    /// \param stddevs the standard deviations for x, y, and heading for this measurement
+    public void addVisionMeasurement(Pose2d pose, double when, Vector<N3> stddevs) {
+        synchronized(estimator_lock_) {
+            estimator_.addVisionMeasurement(pose, when, stddevs) ;
+        }
+    }
+
     // Control the swerve drive by settings a ChassisSppeds object
     public abstract void drive(ChassisSpeeds speeds) ;
 
@@ -208,16 +329,40 @@ public abstract class SwerveBaseSubsystem extends DriveBaseSubsystem {
     // for the modules.
     public abstract void setRawTargets(boolean power, double [] angles, double [] speeds_powers) ;
 
+    /// \brief returns the current state of a module.  The object returned may be reused by the next call for the
+    /// same module, so copy it if it must be kept.
+    /// \param which the module
+    /// \returns the current state of the module
     public abstract SwerveModuleState getModuleState(int which) throws BadMotorRequestException, MotorRequestFailedException ;
 
+    /// \brief returns the current position of a module.  The object returned may be reused by the next call for the
+    /// same module, so copy it if it must be kept.
+    /// \param which the module
+    /// \returns the current position of the module
     public abstract SwerveModulePosition getModulePosition(int which) throws BadMotorRequestException, MotorRequestFailedException;
 
+    /// \brief returns the target state of a module.  The object returned may be reused by the next call for the
+    /// same module, so copy it if it must be kept.
+    /// \param which the module
+    /// \returns the target state of the module
     public abstract SwerveModuleState getModuleTarget(int which) throws BadMotorRequestException, MotorRequestFailedException;
 
     public void stop() throws BadMotorRequestException, MotorRequestFailedException {
         setRawTargets(false, powers_, angles_);
     }
 
+    /// \brief stop the odometry and vision threads
+    @Override
+    public void shutdown() {
+        if (odometry_ != null)
+            odometry_.stop() ;
+
+        if (vision_ != null)
+            vision_.stop() ;
+
+        super.shutdown() ;
+    }
+
     @Override
     public void computeMyState() throws Exception {
         super.computeMyState();
@@ -226,16 +371,19 @@ public abstract class SwerveBaseSubsystem extends DriveBaseSubsystem {
         putDashboard("g-pitch", DisplayType.Verbose, gyro().getPitch());
         putDashboard("g-roll", DisplayType.Verbose, gyro().getRoll());
 
-        SwerveModulePosition [] poss = new SwerveModulePosition[4] ;
-        poss[0] = getModulePosition(FL) ;
-        poss[1] = getModulePosition(FR) ;
-        poss[2] = getModulePosition(BL) ;
-        poss[3] = getModulePosition(BR) ;
-        estimator_.update(Rotation2d.fromDegrees(gyro().getYaw()), poss) ;
+        if (odometry_ == null) {
+            SwerveModulePosition [] poss = getModulePositions() ;
+            synchronized(estimator_lock_) {
+                estimator_.update(Rotation2d.fromDegrees(gyro().getYaw()), poss) ;
+            }
+        }
 
         if (vision_ != null && vision_enabled_) {
             vision_.processVision();
         }
+        else if (vision_ != null) {
+            vision_.discardVision() ;
+        }
 
         Pose2d p = getPose() ;
         double dist = p.getTranslation().getDistance(last_pose_.getTranslation()) ;
@@ -269,23 +417,37 @@ public abstract class SwerveBaseSubsystem extends DriveBaseSubsystem {
         return kinematics_ ;
     }
 
+    /// \brief returns the pose estimator.  When the odometry thread is running the estimator is updated on
+    /// that thread, so use addVisionMeasurement(), setVisionMeasurementStdDevs(), getPose() and setPose() instead.
+    /// \returns the pose estimator
     public SwerveDrivePoseEstimator getEstimator() {
         return estimator_;
     }
 
     public Pose2d getPose() {
-        return estimator_.getEstimatedPosition() ;
+        synchronized(estimator_lock_) {
+            return estimator_.getEstimatedPosition() ;
+        }
     }
 
     public void setPose(Pose2d pose) throws BadMotorRequestException, MotorRequestFailedException {
+        synchronized(estimator_lock_) {
+            if (odometry_ != null && odometry_yaw_ != null) {
+                //
+                // Reset using the last sample from the odometry thread so that the next sample is measured
+                // from the same module positions
+                //
+                estimator_.resetPosition(odometry_yaw_, odometry_positions_, pose) ;
+                return ;
+            }
+        }
+
         Rotation2d rot = Rotation2d.fromDegrees(gyro().getYaw()) ;
         
-        SwerveModulePosition [] poss = new SwerveModulePosition[4] ;
-        poss[0] = getModulePosition(FL) ;
-        poss[1] = getModulePosition(FR) ;
-        poss[2] = getModulePosition(BL) ;
-        poss[3] = getModulePosition(BR) ;
-        estimator_.resetPosition(rot, poss, pose) ;
+        SwerveModulePosition [] poss = getModulePositions() ;
+        synchronized(estimator_lock_) {
+            estimator_.resetPosition(rot, poss, pose) ;
+        }
     }
 
     // This is a hack for this one event.  Need to rethink this after block party
@@ -374,38 +536,34 @@ public abstract class SwerveBaseSubsystem extends DriveBaseSubsystem {
     }
 
     protected void newPlotData() {
-        index_ = 0 ;
+        plotrow_.reset() ;
         
-        putData(getRobot().getTime() - plotstart_) ;
+        plotrow_.add(getRobot().getTime() - plotstart_) ;
 
         try {
-            putData(getModuleTarget(FL).angle.getDegrees()) ;
-            putData(getModuleState(FL).angle.getDegrees()) ;
-            putData(getModuleTarget(FL).speedMetersPerSecond) ;
-            putData(getModuleState(FL).speedMetersPerSecond) ;
-
-            putData(getModuleTarget(FR).angle.getDegrees()) ;
-            putData(getModuleState(FR).angle.getDegrees()) ;
-            putData(getModuleTarget(FR).speedMetersPerSecond) ;
-            putData(getModuleState(FR).speedMetersPerSecond) ;
-
-            putData(getModuleTarget(BL).angle.getDegrees()) ;
-            putData(getModuleState(BL).angle.getDegrees()) ;
-            putData(getModuleTarget(BL).speedMetersPerSecond) ;
-            putData(getModuleState(BL).speedMetersPerSecond) ;
+            plotrow_.add(getModuleTarget(FL).angle.getDegrees()) ;
+            plotrow_.add(getModuleState(FL).angle.getDegrees()) ;
+            plotrow_.add(getModuleTarget(FL).speedMetersPerSecond) ;
+            plotrow_.add(getModuleState(FL).speedMetersPerSecond) ;
+
+            plotrow_.add(getModuleTarget(FR).angle.getDegrees()) ;
+            plotrow_.add(getModuleState(FR).angle.getDegrees()) ;
+            plotrow_.add(getModuleTarget(FR).speedMetersPerSecond) ;
+            plotrow_.add(getModuleState(FR).speedMetersPerSecond) ;
+
+            plotrow_.add(getModuleTarget(BL).angle.getDegrees()) ;
+            plotrow_.add(getModuleState(BL).angle.getDegrees()) ;
+            plotrow_.add(getModuleTarget(BL).speedMetersPerSecond) ;
+            plotrow_.add(getModuleState(BL).speedMetersPerSecond) ;
             
-            putData(getModuleTarget(BR).angle.getDegrees()) ;
-            putData(getModuleState(BR).angle.getDegrees()) ;
-            putData(getModuleTarget(BR).speedMetersPerSecond) ;
-            putData(getModuleState(BR).speedMetersPerSecond) ;
+            plotrow_.add(getModuleTarget(BR).angle.getDegrees()) ;
+            plotrow_.add(getModuleState(BR).angle.getDegrees()) ;
+            plotrow_.add(getModuleTarget(BR).speedMetersPerSecond) ;
+            plotrow_.add(getModuleState(BR).speedMetersPerSecond) ;
         }
         catch(Exception ex) {
         }
 
-        addPlotData(plotid_, plotdata_);
-    }
-
-    private void putData(double d) {
-        plotdata_[index_++] = d ;
+        addPlotData(plotid_, plotrow_);
     }
 }
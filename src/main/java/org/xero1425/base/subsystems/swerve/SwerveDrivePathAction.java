@@ -28,7 +28,7 @@ public class SwerveDrivePathAction extends SwerveHolonomicControllerAction {
     private double maxv_ ;
 
     private int plot_id_ ;
-    private Double[] plot_data_ ;
+    private double[] plot_data_ ;
 
     private static final String [] columns_ = {
         "time",
@@ -55,7 +55,7 @@ public class SwerveDrivePathAction extends SwerveHolonomicControllerAction {
         facing_ = facing;
         timer_ = new XeroTimer(sub.getRobot(), "drivetimer", 0.2);
 
-        plot_data_ = new Double[columns_.length] ;
+        plot_data_ = new double[columns_.length] ;
         plot_id_ = getSubsystem().initPlot("SwerveDrivePathAction") ;
 
         start_ = start ;
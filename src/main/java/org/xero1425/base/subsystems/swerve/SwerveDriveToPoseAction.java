@@ -23,7 +23,7 @@ public class SwerveDriveToPoseAction extends SwerveHolonomicControllerAction {
     private double maxv_ ;
 
     private int plot_id_ ;
-    private Double[] plot_data_ ;
+    private double[] plot_data_ ;
 
     private static final String [] columns_ = {
         "time",
@@ -37,7 +37,7 @@ public class SwerveDriveToPoseAction extends SwerveHolonomicControllerAction {
 
         start_position_ = subsys.getPose();
         target_position_ = pose2d ;
-        plot_data_ = new Double[columns_.length] ;
+        plot_data_ = new double[columns_.length] ;
         plot_id_ = getSubsystem().initPlot("DriveToPose") ;
         maxa_ = maxa ;
         maxv_ = maxv ;
@@ -50,7 +50,7 @@ public class SwerveDriveToPoseAction extends SwerveHolonomicControllerAction {
 
         start_position_ = subsys.getPose();
         target_position_ = pose2d ;
-        plot_data_ = new Double[columns_.length] ;
+        plot_data_ = new double[columns_.length] ;
         plot_id_ = getSubsystem().initPlot("DriveToPose") ;
         maxa_ = Double.MAX_VALUE;
         maxv_ = Double.MAX_VALUE;
@@ -64,7 +64,7 @@ public class SwerveDriveToPoseAction extends SwerveHolonomicControllerAction {
         start_position_ = endpoints[0];
         target_position_ = endpoints[1];
         facing_ = facing ;
-        plot_data_ = new Double[columns_.length] ;
+        plot_data_ = new double[columns_.length] ;
         plot_id_ = getSubsystem().initPlot("DriveToPose") ;
 
         maxa_ = Double.MAX_VALUE;
@@ -79,7 +79,7 @@ public class SwerveDriveToPoseAction extends SwerveHolonomicControllerAction {
         start_position_ = endpoints[0];
         target_position_ = endpoints[1];
         facing_ = facing ;
-        plot_data_ = new Double[columns_.length] ;
+        plot_data_ = new double[columns_.length] ;
         plot_id_ = getSubsystem().initPlot("DriveToPose") ;
 
         maxa_ = maxa ;
@@ -3,6 +3,7 @@ package org.xero1425.base.subsystems.swerve;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.xero1425.base.misc.XeroTimer;
 import org.xero1425.base.utils.Pose2dWithRotation;
@@ -16,11 +17,11 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.trajectory.Trajectory;
 import edu.wpi.first.math.trajectory.TrajectoryConfig;
-import edu.wpi.first.math.trajectory.TrajectoryGenerator;
 
 public class SwerveHolonomicDynamicPathAction extends SwerveHolonomicControllerAction {
 
     private Trajectory traj_ ;
+    private CompletableFuture<Trajectory> pending_ ;
     private TrajectoryConfig config_ ;
     private double start_ ;
     private String pathname_ ;
@@ -36,7 +37,7 @@ public class SwerveHolonomicDynamicPathAction extends SwerveHolonomicControllerA
     private String params_ ;
 
     private int plot_id_ ;
-    private Double[] plot_data_ ;    
+    private double[] plot_data_ ;    
     private static final String [] columns_ = {
         "time",
         "tx (m)", "ty (m)", "th (deg)",
@@ -81,9 +82,11 @@ public class SwerveHolonomicDynamicPathAction extends SwerveHolonomicControllerA
         config_ = new TrajectoryConfig(maxv, maxa) ;
         params_ = suffix ;
 
-        double h = Math.atan2(pts[1].getY() - pts[0].getY(), pts[1].getX() - pts[0].getX()) ;
-        Pose2d start = new Pose2d(pts[0].getTranslation(), Rotation2d.fromRadians(h)) ;
-        pts[0] = new Pose2dWithRotation(start, pts[0].getRobotRotation()) ;
+        //
+        // The start pose is replaced in a copy, so the points of the caller are not changed
+        //
+        pts = pts.clone() ;
+        pts[0] = startPose(pts) ;
 
         MessageLogger logger = sub.getRobot().getMessageLogger() ;
         logger.startMessage(MessageType.Info) ;
@@ -92,11 +95,16 @@ public class SwerveHolonomicDynamicPathAction extends SwerveHolonomicControllerA
         logger.add("end", pts[pts.length - 1]) ;
         logger.endMessage();
 
+        //
+        // The trajectory is generated on the trajectory service worker thread, or taken from its cache.  The
+        // path is not followed until the trajectory is ready, so the robot loop never waits on the path math.
+        //
         List<Pose2d> poses = Arrays.asList(pts) ;
-        traj_ = TrajectoryGenerator.generateTrajectory(poses, config_) ;
+        traj_ = null ;
+        pending_ = sub.getRobot().getTrajectoryService().generate(poses, config_) ;
         pathname_ = pathname ;
 
-        plot_data_ = new Double[columns_.length] ;
+        plot_data_ = new double[columns_.length] ;
         plot_id_ = getSubsystem().initPlot(pathname) ;
 
         actions_ = new ArrayList<LocationBasedAction>() ;    
@@ -109,6 +117,27 @@ public class SwerveHolonomicDynamicPathAction extends SwerveHolonomicControllerA
         rot_travel_ = XeroMath.normalizeAngleDegrees(pts[pts.length - 1].getRobotRotation().getDegrees() - rot_start_) ;
     }
 
+    /// \brief generate the trajectory for a dynamic path ahead of time, while the robot is disabled, so that
+    /// a path created later with the same points and constraints does not wait for its trajectory
+    /// \param sub the drivebase that will follow the path
+    /// \param maxv the maximum velocity for the path
+    /// \param maxa the maximum acceleration for the path
+    /// \param pts the points for the path, as they will be given to the constructor
+    public static void prewarm(SwerveBaseSubsystem sub, double maxv, double maxa, Pose2dWithRotation pts[]) {
+        Pose2dWithRotation[] copy = pts.clone() ;
+        copy[0] = startPose(copy) ;
+        sub.getRobot().getTrajectoryService().prewarm(Arrays.asList(copy), new TrajectoryConfig(maxv, maxa)) ;
+    }
+
+    //
+    // The path leaves the first point heading toward the second point
+    //
+    private static Pose2dWithRotation startPose(Pose2dWithRotation pts[]) {
+        double h = Math.atan2(pts[1].getY() - pts[0].getY(), pts[1].getX() - pts[0].getX()) ;
+        Pose2d start = new Pose2d(pts[0].getTranslation(), Rotation2d.fromRadians(h)) ;
+        return new Pose2dWithRotation(start, pts[0].getRobotRotation()) ;
+    }
+
     private Rotation2d rotatationValue(double elapsed) {
         if (elapsed < rot_pre_)
             return Rotation2d.fromDegrees(rot_start_) ;
@@ -146,6 +175,12 @@ public class SwerveHolonomicDynamicPathAction extends SwerveHolonomicControllerA
         return Rotation2d.fromDegrees(XeroMath.normalizeAngleDegrees(rv)) ;
     }
 
+    /// \brief returns true if the trajectory for the path has been generated
+    /// \returns true if the trajectory for the path has been generated
+    public boolean isTrajectoryReady() {
+        return traj_ != null || (pending_.isDone() && !pending_.isCompletedExceptionally()) ;
+    }
+
     public void addLocationBasedAction(Translation2d loc, double dist, Executor action) {
         LocationBasedAction act = new LocationBasedAction(loc, dist, action) ;
         actions_.add(act) ;
@@ -160,6 +195,17 @@ public class SwerveHolonomicDynamicPathAction extends SwerveHolonomicControllerA
         getSubsystem().startPlot(plot_id_, columns_);        
         start_ = getSubsystem().getRobot().getTime() ;
 
+        //
+        // If the trajectory is not ready, the path starts in run() once it is
+        //
+        if (traj_ == null && !pending_.isDone()) {
+            MessageLogger logger = getSubsystem().getRobot().getMessageLogger() ;
+            logger.startMessage(MessageType.Debug, getSubsystem().getLoggerID()) ;
+            logger.add("waiting for trajectory for path") ;
+            logger.addQuoted(pathname_) ;
+            logger.endMessage() ;
+        }
+
         //
         // Initialize the actions that are executed based on distance
         //
@@ -180,10 +226,51 @@ public class SwerveHolonomicDynamicPathAction extends SwerveHolonomicControllerA
         }
     }
 
+    //
+    // Take the trajectory from the trajectory service if it is ready.  Returns false if the trajectory
+    // is not ready, or if it could not be generated, in which case the action is done.
+    //
+    private boolean trajectoryReady() {
+        if (traj_ != null)
+            return true ;
+
+        if (!pending_.isDone())
+            return false ;
+
+        try {
+            traj_ = pending_.join() ;
+        }
+        catch(Exception ex) {
+            MessageLogger logger = getSubsystem().getRobot().getMessageLogger() ;
+            logger.startMessage(MessageType.Error) ;
+            logger.add("could not generate trajectory for path") ;
+            logger.addQuoted(pathname_) ;
+            logger.add(" - ").add(ex.getMessage()) ;
+            logger.endMessage() ;
+
+            getSubsystem().endPlot(plot_id_);
+            getSubsystem().drive(new ChassisSpeeds()) ;
+            setDone() ;
+            return false ;
+        }
+
+        //
+        // The path time starts when the trajectory is ready, not when the action started
+        //
+        start_ = getSubsystem().getRobot().getTime() ;
+        return true ;
+    }
+
     @Override
     public void run() throws Exception {
         super.run();
 
+        if (!trajectoryReady()) {
+            if (!isDone())
+                getSubsystem().drive(new ChassisSpeeds()) ;
+            return ;
+        }
+
         double now = getSubsystem().getRobot().getTime() ;
         double elapsed = now - start_ ;
         Trajectory.State target = traj_.sample(now - start_) ;
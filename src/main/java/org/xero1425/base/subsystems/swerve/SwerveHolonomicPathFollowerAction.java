@@ -12,7 +12,7 @@ import org.xero1425.misc.MessageType;
 import org.xero1425.misc.MissingParameterException;
 import org.xero1425.misc.MissingPathException;
 import org.xero1425.misc.XeroPath;
-import org.xero1425.misc.XeroPathSegment;
+import org.xero1425.misc.XeroPathSample;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -39,12 +39,12 @@ public class SwerveHolonomicPathFollowerAction extends SwerveHolonomicController
 
     private String pathname_ ;
     private XeroPath path_;
-    private int index_ ;
+    private XeroPathSample sample_ ;
     private boolean setpose_ ;
 
     private double start_ ;
     private int plot_id_ ;
-    private Double[] plot_data_ ;
+    private double[] plot_data_ ;
 
     private boolean end_phase_;
     private XeroTimer end_timer_;
@@ -73,17 +73,21 @@ public class SwerveHolonomicPathFollowerAction extends SwerveHolonomicController
 
         method_ = "NONE" ;
 
-        plot_data_ = new Double[columns_.length] ;
+        plot_data_ = new double[columns_.length] ;
         plot_id_ = getSubsystem().initPlot(pathname_) ;
 
         end_timer_ = new XeroTimer(sub.getRobot(), "holonomicpath", endtime);
         disable_vision_ = true ;
 
         actions_ = new ArrayList<DistanceBasedAction>() ;
+        sample_ = new XeroPathSample() ;
 
         path_ = getSubsystem().getRobot().getPathManager().getPath(pathname_);
         if (mirror_) {
-            path_.mirrorX(mvalue_);
+            //
+            // The mirrored path is a view of the shared path, the shared path is not changed
+            //
+            path_ = path_.mirroredX(mvalue_);
         }        
     }
 
@@ -92,8 +96,7 @@ public class SwerveHolonomicPathFollowerAction extends SwerveHolonomicController
     }
 
     public double getPathLength() {
-        XeroPathSegment seg = path_.getSegment(0, path_.getTrajectoryEntryCount() - 1) ;
-        return seg.getPosition() ;
+        return path_.getValue(0, XeroPath.PositionColumn, path_.getTrajectoryEntryCount() - 1) ;
     }
 
     public void addDistanceBasedAction(double dist, Executor action) {
@@ -131,7 +134,8 @@ public class SwerveHolonomicPathFollowerAction extends SwerveHolonomicController
         end_phase_ = false ;
 
         if (setpose_) {
-            Pose2d pose = getPoseFromPath(0) ;
+            path_.sample(0, 0.0, sample_) ;
+            Pose2d pose = getPoseFromSample() ;
             getSubsystem().setPose(pose);
 
             MessageLogger logger = getSubsystem().getRobot().getMessageLogger() ;
@@ -145,8 +149,6 @@ public class SwerveHolonomicPathFollowerAction extends SwerveHolonomicController
             logger.add("SwerveHolonomicPathFollower: Did not set pose") ;
             logger.endMessage();            
         }
-
-        index_ = 0 ;
     }
 
     private void checkActions(double distance) {
@@ -170,30 +172,41 @@ public class SwerveHolonomicPathFollowerAction extends SwerveHolonomicController
         double velocity ;
         Pose2d target ;
 
-        if (index_ < path_.getTrajectoryEntryCount())
+        //
+        // The target is found from the time since the path started, not the number of robot loops, so
+        // the robot stays on schedule when a robot loop runs late
+        //
+        double elapsed = getSubsystem().getRobot().getTime() - start_ ;
+        boolean running = elapsed < path_.getDuration() ;
+
+        path_.sample(0, elapsed, sample_) ;
+        target = getPoseFromSample() ;
+
+        if (running)
         {
-            target = getPoseFromPath(index_);
-            velocity = getVelocityFromPath(index_) ;
+            velocity = sample_.getVelocity() ;
             
-            distance_ = getDistanceFromPath(index_);
+            distance_ = sample_.getPosition() ;
             checkActions(distance_);
         }
         else {
-            target = getPoseFromPath(index_ - 1);
             velocity = 0.0 ;
         }
         
-        ChassisSpeeds speed = controller().calculate(getSubsystem().getPose(), target, velocity, target.getRotation()) ;
+        //
+        // The pose is read once so the controller, the log and the plot all see the same pose
+        //
+        Pose2d actual = getSubsystem().getPose() ;
+        ChassisSpeeds speed = controller().calculate(actual, target, velocity, target.getRotation()) ;
         getSubsystem().drive(speed) ;
 
         MessageLogger logger = getSubsystem().getRobot().getMessageLogger() ;
         logger.startMessage(MessageType.Debug, getSubsystem().getLoggerID()) ;
-        logger.add("SwerveHolonomicPathFollower Target:").add("index", index_) ;
+        logger.add("SwerveHolonomicPathFollower Target:").add("index", sample_.getIndex()) ;
         logger.add(", target ") ;
         logger.add(target.getX()).add(" ").add(target.getY()) ;
         logger.add(" ").add(target.getRotation().getDegrees()) ;
 
-        Pose2d actual = getSubsystem().getPose() ;
         logger.add(",actual ") ;
         logger.add(actual.getX()).add(" ").add(actual.getY()) ;
         logger.add(" ").add(actual.getRotation().getDegrees()) ;
@@ -201,8 +214,8 @@ public class SwerveHolonomicPathFollowerAction extends SwerveHolonomicController
         logger.endMessage();
 
         int i = 0 ;
-        plot_data_[i++] = getSubsystem().getRobot().getTime() - start_ ;
-        plot_data_[i++] = (double)index_ ;
+        plot_data_[i++] = elapsed ;
+        plot_data_[i++] = (double)sample_.getIndex() ;
         plot_data_[i++] = target.getX() ;
         plot_data_[i++] = target.getY() ;
         plot_data_[i++] = target.getRotation().getDegrees() ;
@@ -212,16 +225,13 @@ public class SwerveHolonomicPathFollowerAction extends SwerveHolonomicController
         getSubsystem().addPlotData(plot_id_, plot_data_) ;   
         
         
-        if (index_ < path_.getTrajectoryEntryCount()) {
-            index_++ ;            
-        }
-        else {
+        if (!running) {
             if (!end_phase_) {
                 end_phase_ = true ;
                 end_timer_.start() ;
             }
 
-            if (index_ == path_.getTrajectoryEntryCount() && (controller().atReference() || end_timer_.isExpired())) {
+            if (controller().atReference() || end_timer_.isExpired()) {
                 if (controller().atReference())
                     method_ = "endpath" ;
                 else
@@ -251,18 +261,7 @@ public class SwerveHolonomicPathFollowerAction extends SwerveHolonomicController
         return spaces(indent) + "SwerveHolonomicPathFollower " + pathname_ ;
     }
 
-    private double getDistanceFromPath(int index) {
-        XeroPathSegment main = path_.getSegment(0, index) ;
-        return main.getPosition();
-    }
-
-    private Pose2d getPoseFromPath(int index) {
-        XeroPathSegment main = path_.getSegment(0, index) ;
-        return new Pose2d(main.getX(), main.getY(), Rotation2d.fromDegrees(main.getRotation())) ;
-    }
-
-    private double getVelocityFromPath(int index) {
-        XeroPathSegment main = path_.getSegment(0, index) ;
-        return main.getVelocity() ;
+    private Pose2d getPoseFromSample() {
+        return new Pose2d(sample_.getX(), sample_.getY(), Rotation2d.fromDegrees(sample_.getRotation())) ;
     }
 }
@@ -7,13 +7,17 @@ import org.xero1425.base.subsystems.Subsystem;
 import org.xero1425.misc.MessageLogger;
 import org.xero1425.misc.MessageType;
 
+import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.hardware.CANcoder;
+import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.AbsoluteSensorRangeValue;
 import com.ctre.phoenix6.signals.SensorDirectionValue;
 
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardContainer;
@@ -33,6 +37,16 @@ public class SwerveModule {
     private double target_angle_ ;
     private boolean synchronized_ ;
 
+    // Copies of the motor position and velocity signals that are refreshed by the odometry thread
+    private StatusSignal<Double> odometry_drive_ ;
+    private StatusSignal<Double> odometry_drive_velocity_ ;
+    private StatusSignal<Double> odometry_steer_ ;
+    private StatusSignal<Double> odometry_steer_velocity_ ;
+    private double drive_ticks_per_rev_ ;
+    private double steer_ticks_per_rev_ ;
+    private double odometry_angle_ ;
+    private Rotation2d odometry_rotation_ ;
+
     static String[] plot_values_ = new String[] { "a" };
 
     public SwerveModule(Subsystem subsys, SwerveModuleConfig cfg, ShuffleboardContainer container, String name, String id) throws Exception {
@@ -109,6 +123,43 @@ public class SwerveModule {
         return angle ;        
     }
 
+    /// \brief create copies of the drive and steer motor position and velocity signals for the odometry thread.
+    /// The odometry thread refreshes the copies itself, so they are never shared with the robot loop.  The
+    /// velocities are used to compensate each position for the time since it was measured.
+    /// \returns the signals for the odometry thread, or null if the motors are not TalonFX motors
+    public BaseStatusSignal[] createOdometrySignals() throws BadMotorRequestException, MotorRequestFailedException {
+        if (!(drive_.getNativeController() instanceof TalonFX) || !(steer_.getNativeController() instanceof TalonFX))
+            return null ;
+
+        odometry_drive_ = ((TalonFX)drive_.getNativeController()).getPosition().clone() ;
+        odometry_drive_velocity_ = ((TalonFX)drive_.getNativeController()).getVelocity().clone() ;
+        odometry_steer_ = ((TalonFX)steer_.getNativeController()).getPosition().clone() ;
+        odometry_steer_velocity_ = ((TalonFX)steer_.getNativeController()).getVelocity().clone() ;
+        drive_ticks_per_rev_ = drive_.ticksPerRevolution() ;
+        steer_ticks_per_rev_ = steer_.ticksPerRevolution() ;
+        odometry_angle_ = 0.0 ;
+        odometry_rotation_ = new Rotation2d() ;
+
+        return new BaseStatusSignal[] { odometry_drive_, odometry_drive_velocity_, odometry_steer_, odometry_steer_velocity_ } ;
+    }
+
+    /// \brief compute the position of the module from the odometry signals.  This is called by the odometry
+    /// thread after it refreshes the signals returned by createOdometrySignals().  Each position is moved
+    /// forward by its velocity times its own latency, so the position is for the time this is called.
+    /// \param pos the module position to fill in
+    public void getOdometryPosition(SwerveModulePosition pos) {
+        double steer = BaseStatusSignal.getLatencyCompensatedValue(odometry_steer_, odometry_steer_velocity_) ;
+        double angle = ticks2Angle(steer * steer_ticks_per_rev_) ;
+        if (angle != odometry_angle_) {
+            odometry_angle_ = angle ;
+            odometry_rotation_ = new Rotation2d(angle) ;
+        }
+
+        double drive = BaseStatusSignal.getLatencyCompensatedValue(odometry_drive_, odometry_drive_velocity_) ;
+        pos.distanceMeters = drive * drive_ticks_per_rev_ * ticksToMeters_ ;
+        pos.angle = odometry_rotation_ ;
+    }
+
     public CANcoder getCANCoder() {
         return absolute_encoder_ ;
     }
@@ -0,0 +1,175 @@
+package org.xero1425.base.subsystems.swerve;
+
+import org.xero1425.base.gyro.Pigeon2Gyro;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.StatusSignal;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.wpilibj.Timer;
+
+/// \file
+
+/// \brief This class samples the swerve module positions and the gyro yaw on its own thread, faster than
+/// the robot loop, and feeds each sample to the drivebase pose estimator with the time it was taken.
+///
+/// The thread refreshes its own copies of the status signals for the module motors and the gyro, so
+/// it does not share signal objects with the robot loop.  The drivebase updates the pose estimator under
+/// a lock, and the robot loop reads the latest pose from the estimator.
+///
+/// The thread waits for new frames of all the signals with BaseStatusSignal.waitForAll(), so each sample
+/// is taken when the devices send their signals rather than on a timer.  The signals still arrive at
+/// slightly different times, so each position and the yaw are compensated with their own velocity and
+/// latency to the time of the sample.
+///
+/// The signals are sent at the sample rate, which adds to the CAN bus load.  The rate comes from the
+/// estimator:odometry-frequency setting, which should only be set once the bus load has been measured.
+public class SwerveOdometryThread {
+    // The number of sample periods to wait for new signals before counting an error
+    private static final double kTimeoutPeriods = 2.0 ;
+
+    // The number of sample periods stop() waits for the thread to finish
+    private static final double kStopPeriods = 4.0 ;
+
+    private SwerveBaseSubsystem sub_ ;
+    private SwerveModule[] modules_ ;
+    private BaseStatusSignal[] signals_ ;
+    private StatusSignal<Double> yaw_ ;
+    private StatusSignal<Double> yaw_rate_ ;
+    private SwerveModulePosition[] positions_ ;
+    private Thread thread_ ;
+    private volatile boolean running_ ;
+    private double period_ ;
+    private volatile int samples_ ;
+    private volatile int errors_ ;
+
+    /// \brief create the odometry thread
+    /// \param sub the drivebase that owns the pose estimator
+    /// \param modules the swerve modules, in the order expected by the pose estimator
+    /// \param frequency the rate to sample the modules and gyro in Hz
+    /// \returns the odometry thread, or null if the modules or gyro cannot be sampled from another thread
+    public static SwerveOdometryThread create(SwerveBaseSubsystem sub, SwerveModule[] modules, double frequency) throws Exception {
+        //
+        // Only a Pigeon2 gyro has a status signal the thread can refresh itself, other gyros can only be
+        // read from the robot loop
+        //
+        if (!(sub.gyro() instanceof Pigeon2Gyro))
+            return null ;
+
+        BaseStatusSignal[] signals = new BaseStatusSignal[modules.length * 4 + 2] ;
+        int index = 0 ;
+
+        for(SwerveModule module : modules) {
+            BaseStatusSignal[] modsigs = module.createOdometrySignals() ;
+            if (modsigs == null)
+                return null ;
+
+            for(BaseStatusSignal sig : modsigs)
+                signals[index++] = sig ;
+        }
+
+        StatusSignal<Double> yaw = ((Pigeon2Gyro)sub.gyro()).getPigeon2().getYaw().clone() ;
+        StatusSignal<Double> rate = ((Pigeon2Gyro)sub.gyro()).getPigeon2().getAngularVelocityZWorld().clone() ;
+        signals[index++] = yaw ;
+        signals[index++] = rate ;
+
+        if (index != signals.length) {
+            BaseStatusSignal[] trimmed = new BaseStatusSignal[index] ;
+            System.arraycopy(signals, 0, trimmed, 0, index) ;
+            signals = trimmed ;
+        }
+
+        return new SwerveOdometryThread(sub, modules, signals, yaw, rate, frequency) ;
+    }
+
+    private SwerveOdometryThread(SwerveBaseSubsystem sub, SwerveModule[] modules, BaseStatusSignal[] signals, StatusSignal<Double> yaw, StatusSignal<Double> rate, double frequency) {
+        sub_ = sub ;
+        modules_ = modules ;
+        signals_ = signals ;
+        yaw_ = yaw ;
+        yaw_rate_ = rate ;
+        running_ = false ;
+        period_ = 1.0 / frequency ;
+        samples_ = 0 ;
+        errors_ = 0 ;
+
+        positions_ = new SwerveModulePosition[modules.length] ;
+        for(int i = 0 ; i < positions_.length ; i++)
+            positions_[i] = new SwerveModulePosition() ;
+
+        thread_ = new Thread(() -> run(), "odometry") ;
+        thread_.setDaemon(true) ;
+    }
+
+    /// \brief start sampling the modules and gyro
+    public void start() {
+        //
+        // Ask the devices to send the signals at least as fast as they are sampled
+        //
+        BaseStatusSignal.setUpdateFrequencyForAll(1.0 / period_, signals_) ;
+
+        running_ = true ;
+        thread_.start() ;
+    }
+
+    /// \brief stop sampling the modules and gyro
+    public void stop() {
+        if (!running_)
+            return ;
+
+        running_ = false ;
+        try {
+            thread_.join((long)(kStopPeriods * period_ * 1000.0) + 1) ;
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt() ;
+        }
+    }
+
+    /// \brief returns the sampling rate in Hz
+    /// \returns the sampling rate in Hz
+    public double getFrequency() {
+        return 1.0 / period_ ;
+    }
+
+    /// \brief returns the number of samples given to the pose estimator
+    /// \returns the number of samples given to the pose estimator
+    public int getSampleCount() {
+        return samples_ ;
+    }
+
+    /// \brief returns the number of samples dropped because new signals did not arrive in time
+    /// \returns the number of samples dropped because new signals did not arrive in time
+    public int getErrorCount() {
+        return errors_ ;
+    }
+
+    private void run() {
+        while (running_) {
+            sample() ;
+        }
+    }
+
+    private void sample() {
+        StatusCode code = BaseStatusSignal.waitForAll(kTimeoutPeriods * period_, signals_) ;
+        if (!code.isOK()) {
+            errors_++ ;
+            return ;
+        }
+
+        //
+        // Each position and the yaw are compensated from the time its own signal arrived to now, so the
+        // sample time is now
+        //
+        double when = Timer.getFPGATimestamp() ;
+        double yaw = BaseStatusSignal.getLatencyCompensatedValue(yaw_, yaw_rate_) ;
+
+        for(int i = 0 ; i < modules_.length ; i++)
+            modules_[i].getOdometryPosition(positions_[i]) ;
+
+        sub_.updateOdometry(when, Rotation2d.fromDegrees(yaw), positions_) ;
+        samples_++ ;
+    }
+}
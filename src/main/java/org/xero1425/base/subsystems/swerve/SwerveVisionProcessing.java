@@ -1,8 +1,14 @@
 package org.xero1425.base.subsystems.swerve;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
 import org.xero1425.base.IVisionLocalization;
 import org.xero1425.base.IVisionLocalization.LocationData;
+import org.xero1425.base.IVisionProducer;
 import org.xero1425.base.subsystems.Subsystem;
+import org.xero1425.base.subsystems.swerve.VisionStdDevModel.VisionParamsType;
 import org.xero1425.misc.BadParameterTypeException;
 import org.xero1425.misc.MessageLogger;
 import org.xero1425.misc.MessageType;
@@ -14,108 +20,278 @@ import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.numbers.N3;
 
+/// \file
+
+/// \brief This class takes the samples from one or more cameras and gives them to the drivebase pose estimator.
+///
+/// Each robot loop, the new sample from each camera is collected, the samples are sorted by the time the image
+/// was captured, and the samples are given to the pose estimator in that order with the capture time, so the
+/// estimator applies each sample against the odometry from when the image was taken.  A sample with the same
+/// capture time as the last sample from the same camera is not used again.
+///
+/// The standard deviations for each sample come from a VisionStdDevModel.  They are looked up in a table, based
+/// on the number of tags seen and the distance to the tags, unless the estimator:vision:dynamic settings are
+/// present, in which case they are computed from the number of tags, the distance to the tags, and the pose
+/// ambiguity.
+///
+/// A camera that implements IVisionProducer produces its samples on the vision thread (SwerveVisionThread),
+/// which also converts each sample to a measurement, so the robot loop only takes the finished measurements
+/// from a queue.  Other cameras are polled and their samples converted in the robot loop.
 public class SwerveVisionProcessing {
 
     private static final double kZeroPosThreshold = 0.2 ;
 
-    private enum VisionParamsType {
-        SingleNear,
-        SingleFar,
-        MultiNear,
-        MultiFar
-    };
+    private static final Comparator<Measurement> kByCaptureTime = (a, b) -> Double.compare(a.when_, b.when_) ;
+
+    /// \brief a vision sample converted to a robot pose with its standard deviations
+    static class Measurement {
+        public final Pose2d pose_ ;
+        public final double when_ ;
+        public final Vector<N3> stddevs_ ;
+        public final VisionParamsType type_ ;
+        public final boolean ambiguous_ ;
+        public final double error_ ;
+
+        public Measurement(Pose2d pose, double when, Vector<N3> stddevs, VisionParamsType type, boolean ambiguous, double error) {
+            pose_ = pose ;
+            when_ = when ;
+            stddevs_ = stddevs ;
+            type_ = type ;
+            ambiguous_ = ambiguous ;
+            error_ = error ;
+        }
+    } ;
+
+    private class Camera {
+        public final IVisionLocalization vision_ ;
+        public LocationData last_ ;
+        public boolean threaded_ ;
+
+        public Camera(IVisionLocalization vision) {
+            vision_ = vision ;
+            last_ = null ;
+            threaded_ = false ;
+        }
+    } ;
 
     private int logger_id_ ;
     private int forced_cycles_ ;
 
     private SwerveBaseSubsystem sub_ ;
-    private IVisionLocalization vision_ ;
+    private List<Camera> cameras_ ;
+    private List<Measurement> samples_ ;
+    private SwerveVisionThread thread_ ;
+    private int thread_errors_ ;
 
     private VisionParamsType params_type_ ;
 
-    private double single_tag_threshold_;
-    private Vector<N3> single_tag_near_params_ ;
-    private Vector<N3> single_tag_far_params_ ;
-
-    private double multi_tag_threshold_;
-    private Vector<N3> multi_tag_near_params_ ;
-    private Vector<N3> multi_tag_far_params_ ;
-
+    private VisionStdDevModel stddevs_ ;
     private double vision_reject_threshold_;
 
     private Pose2d vision_pose_ ;
+    private int used_ ;
+    private int rejected_ ;
 
     public SwerveVisionProcessing(SwerveBaseSubsystem sub, IVisionLocalization vision) throws BadParameterTypeException, MissingParameterException {
-        vision_ = vision ;
         sub_ = sub ;
 
-        single_tag_threshold_ = sub_.getSettingsValue("estimator:single-threshold").getDouble();
-        multi_tag_threshold_ = sub_.getSettingsValue("estimator:single-threshold").getDouble();
+        cameras_ = new ArrayList<Camera>() ;
+        samples_ = new ArrayList<Measurement>() ;
+        thread_ = null ;
+        thread_errors_ = 0 ;
+
         vision_reject_threshold_ = sub_.getSettingsValue("estimator:vision-reject-threshold").getDouble();
 
-        single_tag_near_params_ = getParams(sub, "vision:single-near");
-        single_tag_far_params_ = getParams(sub, "vision:single-far");
-        multi_tag_near_params_ = getParams(sub, "vision:multi-near");
-        multi_tag_far_params_ = getParams(sub, "vision:multi-far");
+        stddevs_ = new VisionStdDevModel(sub_.getSettingsValue("estimator:single-threshold").getDouble(),
+                                         getParams(sub, "vision:single-near"),
+                                         getParams(sub, "vision:single-far"),
+                                         sub_.getSettingsValue("estimator:multi-threshold").getDouble(),
+                                         getParams(sub, "vision:multi-near"),
+                                         getParams(sub, "vision:multi-far")) ;
+
+        if (sub_.isSettingDefined("estimator:vision:dynamic:xy")) {
+            stddevs_.setDynamic(sub_.getSettingsValue("estimator:vision:dynamic:xy").getDouble(),
+                                sub_.getSettingsValue("estimator:vision:dynamic:heading").getDouble(),
+                                sub_.getSettingsValue("estimator:vision:dynamic:ambiguity").getDouble(),
+                                sub_.getSettingsValue("estimator:vision:dynamic:max-ambiguity").getDouble()) ;
+        }
+
+        used_ = 0 ;
+        rejected_ = 0 ;
 
         logger_id_ = sub.getRobot().getMessageLogger().registerSubsystem("vision");
+
+        //
+        // The settings are read before the first camera is added, as a camera that produces its
+        // samples on the vision thread may start producing right away
+        //
+        addCamera(vision) ;
+    }
+
+    /// \brief add another camera, the samples from all cameras are given to the pose estimator
+    /// \param vision the camera to add
+    public void addCamera(IVisionLocalization vision) {
+        Camera cam = new Camera(vision) ;
+
+        //
+        // A stepped simulation polls every camera in the robot loop, since the vision thread runs on the wall clock
+        //
+        if (vision instanceof IVisionProducer && !sub_.getRobot().isSimulationStepped()) {
+            if (thread_ == null)
+                thread_ = new SwerveVisionThread(sub_, this) ;
+
+            cam.threaded_ = thread_.addProducer((IVisionProducer)vision) ;
+        }
+
+        cameras_.add(cam) ;
+    }
+
+    /// \brief returns the vision thread, or null if no camera produces its samples on the vision thread
+    /// \returns the vision thread
+    public SwerveVisionThread getVisionThread() {
+        return thread_ ;
+    }
+
+    /// \brief stop the vision thread, if there is one
+    public void stop() {
+        if (thread_ != null)
+            thread_.stop() ;
+    }
+
+    /// \brief throw away the measurements waiting in the queue from the vision thread.  This is called each
+    /// robot loop while vision is disabled, so old measurements are not used when vision is enabled again.
+    public void discardVision() {
+        if (thread_ != null) {
+            while (thread_.poll() != null) {
+            }
+        }
+    }
+
+    /// \brief returns the number of cameras
+    /// \returns the number of cameras
+    public int getCameraCount() {
+        return cameras_.size() ;
+    }
+
+    /// \brief returns the number of samples given to the pose estimator
+    /// \returns the number of samples given to the pose estimator
+    public int getUsedCount() {
+        return used_ ;
+    }
+
+    /// \brief returns the number of samples that were rejected
+    /// \returns the number of samples that were rejected
+    public int getRejectedCount() {
+        return rejected_ ;
     }
 
+    /// \brief returns the robot pose from the camera with the most recent image
+    /// \returns the robot pose from the camera with the most recent image, or null if no camera sees a tag
     public Pose2d getCurrentPose() {
-        Pose2d ret = null ;
+        LocationData latest = null ;
 
-        LocationData lc = vision_.getLocation(sub_.getPose());
-        if (lc != null) { 
-            ret = lc.location.toPose2d();
+        for(Camera cam : cameras_) {
+            LocationData lc = cam.vision_.getLocation(sub_.getPose());
+            if (lc != null && (latest == null || lc.when > latest.when)) {
+                latest = lc ;
+            }
         }
 
-        return ret;
+        return (latest != null) ? latest.location.toPose2d() : null ;
     }
 
     public boolean hasTargets() {
-        return vision_.getTagCount() > 0 ;
+        for(Camera cam : cameras_) {
+            if (cam.vision_.getTagCount() > 0)
+                return true ;
+        }
+
+        return false ;
     }
 
     public void processVision() {
         MessageLogger logger = sub_.getRobot().getMessageLogger();
-        boolean ignore = false;
+        Pose2d dbpose = sub_.getPose() ;
+
+        //
+        // Collect the measurements finished by the vision thread, then the new sample from each
+        // camera that is polled
+        //
+        samples_.clear() ;
+        if (thread_ != null) {
+            Measurement m ;
+            while ((m = thread_.poll()) != null) {
+                samples_.add(m) ;
+            }
+
+            //
+            // The vision thread logs the first exception, the robot loop logs when more are thrown
+            //
+            int errors = thread_.getErrorCount() ;
+            if (errors != thread_errors_) {
+                if (thread_errors_ != 0) {
+                    logger.startMessage(MessageType.Warning) ;
+                    logger.add("vision thread exceptions") ;
+                    logger.add("count", errors) ;
+                    logger.add("last", thread_.getLastError()) ;
+                    logger.endMessage() ;
+                }
+                thread_errors_ = errors ;
+            }
+        }
+
+        for(Camera cam : cameras_) {
+            if (cam.threaded_)
+                continue ;
 
-        LocationData lc = vision_.getLocation(sub_.getPose()) ;
-        setVisionParams();
-        if (lc != null) {
-            vision_pose_ = lc.location.toPose2d();
+            LocationData lc = cam.vision_.getLocation(dbpose) ;
+            if (lc != null && (cam.last_ == null || lc.when != cam.last_.when)) {
+                cam.last_ = lc ;
+                samples_.add(evaluate(lc, dbpose)) ;
+            }
+        }
+
+        if (samples_.size() > 1) {
+            samples_.sort(kByCaptureTime) ;
+        }
 
-            Translation2d rpose = sub_.getPose().getTranslation() ;
+        //
+        // While the robot is at the origin, the pose has not been set, so the vision samples are
+        // always used, and for a number of robot loops with samples after that
+        //
+        boolean forced = false ;
+        if (!samples_.isEmpty()) {
+            Translation2d rpose = dbpose.getTranslation() ;
             if (Math.abs(rpose.getX()) < kZeroPosThreshold && Math.abs(rpose.getY()) < kZeroPosThreshold) {
                 forced_cycles_ = 50 ;
+                forced = true ;
             }
             else if (forced_cycles_ > 0) {
                 forced_cycles_-- ;
+                forced = true ;
             }
-            else {
-                //
-                // There are two strategies for rejection vision samples if they do not seem to be valid.  The simple
-                // strategy is that if the samples are more than 1 meter from the current pose of the robot, we ignore
-                // them.  The advanced strategy is that if we see more than one april tag, we always trust the vision
-                // sample data.  If we see only one april tag, it must be within a given distance (single_tag_distance_threshold_).
-                //
-                double dist = vision_pose_.getTranslation().getDistance(sub_.getPose().getTranslation());
-                if (dist >= vision_reject_threshold_) {
-                    ignore = true ;
-                }
-            }
+        }
+
+        for(Measurement m : samples_) {
+            vision_pose_ = m.pose_ ;
+            setParamsType(m.type_) ;
 
-            if (!ignore) {
-                sub_.getEstimator().addVisionMeasurement(vision_pose_, lc.when) ; 
+            if (!forced && isOutlier(m)) {
+                rejected_++ ;
+                continue ;
             }
-        }      
+
+            sub_.addVisionMeasurement(m.pose_, m.when_, m.stddevs_) ;
+            used_++ ;
+        }
 
         logger.startMessage(MessageType.Debug, logger_id_);
         logger.add("Vision: ");
-        logger.add("params", params_type_.toString());
-        logger.add("dbx", sub_.getPose().getX());
-        logger.add("dby", sub_.getPose().getY());
-        logger.add("dbheading", sub_.getPose().getRotation().getDegrees());
+        logger.add("params", params_type_ == null ? "none" : params_type_.toString());
+        logger.add("samples", samples_.size()) ;
+        logger.add("dbx", dbpose.getX());
+        logger.add("dby", dbpose.getY());
+        logger.add("dbheading", dbpose.getRotation().getDegrees());
         if (vision_pose_ != null) {
             logger.add("vsx", vision_pose_.getX());
             logger.add("vsy", vision_pose_.getY());
@@ -124,54 +300,41 @@ public class SwerveVisionProcessing {
         logger.endMessage();
     }
 
-    private void setVisionParams(VisionParamsType vtype)
-    {
-        MessageLogger logger = sub_.getRobot().getMessageLogger();
-        if (params_type_ != vtype) {
-            switch(vtype) {
-                case SingleNear:
-                    logger.startMessage(MessageType.Info).add("Changed vision parameters to Single Near").endMessage();
-                    sub_.getEstimator().setVisionMeasurementStdDevs(single_tag_near_params_);
-                    break ;
-
-                case SingleFar:
-                    logger.startMessage(MessageType.Info).add("Changed vision parameters to Single Far").endMessage();
-                    sub_.getEstimator().setVisionMeasurementStdDevs(single_tag_far_params_);
-                    break; 
-
-                case MultiNear:
-                    logger.startMessage(MessageType.Info).add("Changed vision parameters to Multi Near").endMessage();
-                    sub_.getEstimator().setVisionMeasurementStdDevs(multi_tag_near_params_);
-                    break ;
-
-                case MultiFar:
-                    logger.startMessage(MessageType.Info).add("Changed vision parameters to Multi Far").endMessage();                
-                    sub_.getEstimator().setVisionMeasurementStdDevs(multi_tag_far_params_);
-                    break; 
-            }
-            params_type_ = vtype;
-        }
+    //
+    // Convert a sample to a measurement.  This is called on the vision thread for the cameras that produce
+    // their own samples, so it only reads the settings, which do not change after the constructor, and the
+    // drivebase pose passed in, which is read under the pose estimator lock.
+    //
+    Measurement evaluate(LocationData lc, Pose2d dbpose) {
+        Pose2d pose = lc.location.toPose2d() ;
+        VisionParamsType type = stddevs_.getParamsType(lc) ;
+        double error = pose.getTranslation().getDistance(dbpose.getTranslation()) ;
+
+        return new Measurement(pose, lc.when, stddevs_.getStdDevs(lc, type), type, stddevs_.isAmbiguous(lc), error) ;
     }
 
-    private void setVisionParams() {
-        if (vision_.getTagCount() == 1) {
-            if (vision_.getDistance() < single_tag_threshold_) {
-                setVisionParams(VisionParamsType.SingleNear);
-            }
-            else {
-                setVisionParams(VisionParamsType.SingleFar);
-            }
+    //
+    // The sample is compared to the pose of the robot when the sample was evaluated, but the image was captured
+    // some time ago.  The robot may have moved up to its velocity times the age of the sample since then, so that
+    // distance is added to the threshold for rejecting the sample.  This reads the drivebase velocity, so it is
+    // done in the robot loop.
+    //
+    private boolean isOutlier(Measurement m) {
+        if (m.ambiguous_) {
+            return true ;
         }
-        else if (vision_.getTagCount() > 1) {
-            if (vision_.getDistance() < multi_tag_threshold_) {
-                setVisionParams(VisionParamsType.MultiNear);
-            }
-            else {
-                setVisionParams(VisionParamsType.MultiFar);
-            }                
-        }
-        else if (vision_.getTagCount() == 0) {
-            setVisionParams(VisionParamsType.SingleFar);
+
+        double age = Math.max(sub_.getRobot().getTime() - m.when_, 0.0) ;
+        double threshold = vision_reject_threshold_ + sub_.getVelocity() * age ;
+
+        return m.error_ >= threshold ;
+    }
+
+    private void setParamsType(VisionParamsType vtype) {
+        if (params_type_ != vtype) {
+            MessageLogger logger = sub_.getRobot().getMessageLogger();
+            logger.startMessage(MessageType.Info).add("Changed vision parameters to " + vtype.toString()).endMessage();
+            params_type_ = vtype ;
         }
     }
 
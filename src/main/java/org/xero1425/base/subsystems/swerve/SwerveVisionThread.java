@@ -0,0 +1,150 @@
+package org.xero1425.base.subsystems.swerve;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+
+import org.xero1425.base.IVisionLocalization.LocationData;
+import org.xero1425.base.IVisionProducer;
+import org.xero1425.misc.MessageLogger;
+import org.xero1425.misc.MessageType;
+import org.xero1425.misc.SPSCQueue;
+
+import edu.wpi.first.math.geometry.Pose2d;
+
+/// \file
+
+/// \brief This class produces the vision samples on their own thread, so that decoding the samples, converting
+/// them to poses, computing the standard deviations and checking for outliers is not done in the robot loop.
+///
+/// Each vision producer wakes the thread when it may have a new sample, usually from a network tables listener,
+/// so a sample is processed as soon as it arrives rather than at the start of the next robot loop.  The finished
+/// measurements are handed to the robot loop through a lock free queue, which the robot loop drains each loop and
+/// gives to the pose estimator.
+public class SwerveVisionThread {
+    // The number of measurements held until the robot loop takes them
+    private static final int kQueueSize = 32 ;
+
+    private SwerveBaseSubsystem sub_ ;
+    private SwerveVisionProcessing proc_ ;
+    private List<IVisionProducer> producers_ ;
+    private SPSCQueue<SwerveVisionProcessing.Measurement> queue_ ;
+    private Semaphore wakeup_ ;
+    private Thread thread_ ;
+    private volatile boolean running_ ;
+    private volatile int produced_ ;
+    private volatile int errors_ ;
+    private volatile String last_error_ ;
+
+    /// \brief create the vision thread, the thread is started when the first producer is added
+    /// \param sub the drivebase that owns the pose estimator
+    /// \param proc the vision processing that evaluates each sample
+    public SwerveVisionThread(SwerveBaseSubsystem sub, SwerveVisionProcessing proc) {
+        sub_ = sub ;
+        proc_ = proc ;
+        producers_ = new CopyOnWriteArrayList<IVisionProducer>() ;
+        queue_ = new SPSCQueue<SwerveVisionProcessing.Measurement>(kQueueSize) ;
+        wakeup_ = new Semaphore(0) ;
+        thread_ = null ;
+        running_ = false ;
+        produced_ = 0 ;
+        errors_ = 0 ;
+        last_error_ = "" ;
+    }
+
+    /// \brief add a vision producer to the thread
+    /// \param producer the vision producer
+    /// \returns true if the producer produces its samples on this thread, false if it must be polled instead
+    public boolean addProducer(IVisionProducer producer) {
+        if (!producer.startProducing(() -> wakeup_.release()))
+            return false ;
+
+        producers_.add(producer) ;
+
+        if (thread_ == null) {
+            running_ = true ;
+            thread_ = new Thread(() -> run(), "vision") ;
+            thread_.setDaemon(true) ;
+            thread_.start() ;
+        }
+
+        return true ;
+    }
+
+    /// \brief stop the thread and the producers
+    public void stop() {
+        for(IVisionProducer producer : producers_)
+            producer.stopProducing() ;
+
+        running_ = false ;
+        if (thread_ != null)
+            thread_.interrupt() ;
+    }
+
+    /// \brief returns the next finished measurement, this must only be called from the robot loop
+    /// \returns the next finished measurement, or null if there are none
+    public SwerveVisionProcessing.Measurement poll() {
+        return queue_.poll() ;
+    }
+
+    /// \brief returns the number of measurements produced
+    /// \returns the number of measurements produced
+    public int getProducedCount() {
+        return produced_ ;
+    }
+
+    /// \brief returns the number of measurements dropped because the robot loop did not take them
+    /// \returns the number of measurements dropped because the robot loop did not take them
+    public long getDroppedCount() {
+        return queue_.getDroppedCount() ;
+    }
+
+    /// \brief returns the number of exceptions thrown by the producers
+    /// \returns the number of exceptions thrown by the producers
+    public int getErrorCount() {
+        return errors_ ;
+    }
+
+    /// \brief returns the message of the last exception thrown by the producers
+    /// \returns the message of the last exception thrown by the producers, or an empty string if there are none
+    public String getLastError() {
+        return last_error_ ;
+    }
+
+    private void run() {
+        while (running_) {
+            try {
+                wakeup_.acquire() ;
+            }
+            catch(InterruptedException ex) {
+                break ;
+            }
+
+            //
+            // A single pass handles every wakeup that arrived while the last pass was running
+            //
+            wakeup_.drainPermits() ;
+
+            Pose2d dbpose = sub_.getPose() ;
+            for(IVisionProducer producer : producers_) {
+                try {
+                    LocationData lc = producer.produce() ;
+                    if (lc != null) {
+                        queue_.offer(proc_.evaluate(lc, dbpose)) ;
+                        produced_++ ;
+                    }
+                }
+                catch(Exception ex) {
+                    last_error_ = ex.toString() ;
+                    if (errors_++ == 0) {
+                        MessageLogger logger = sub_.getRobot().getMessageLogger() ;
+                        logger.startMessage(MessageType.Error) ;
+                        logger.add("exception thrown producing vision sample - ").add(ex.toString()) ;
+                        logger.endMessage() ;
+                        logger.logStackTrace(ex.getStackTrace()) ;
+                    }
+                }
+            }
+        }
+    }
+}
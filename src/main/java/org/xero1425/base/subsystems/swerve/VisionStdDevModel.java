@@ -0,0 +1,135 @@
+package org.xero1425.base.subsystems.swerve;
+
+import org.xero1425.base.IVisionLocalization.LocationData;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.numbers.N3;
+
+/// \file
+
+/// \brief This class computes the standard deviations given to the pose estimator with a vision sample.
+///
+/// By default the standard deviations are looked up in a table, based on the number of tags seen and the
+/// distance to the tags.  If setDynamic() is called, they are instead computed from the number of tags, the
+/// distance to the tags, and the pose ambiguity, and single tag samples with too much ambiguity are rejected.
+class VisionStdDevModel {
+
+    // The heading standard deviation used when a sample should not change the heading
+    static final double kIgnoreHeading = 1.0e6 ;
+
+    enum VisionParamsType {
+        SingleNear,
+        SingleFar,
+        MultiNear,
+        MultiFar,
+        Dynamic
+    } ;
+
+    private double single_tag_threshold_ ;
+    private Vector<N3> single_tag_near_params_ ;
+    private Vector<N3> single_tag_far_params_ ;
+
+    private double multi_tag_threshold_ ;
+    private Vector<N3> multi_tag_near_params_ ;
+    private Vector<N3> multi_tag_far_params_ ;
+
+    private boolean dynamic_ ;
+    private double dynamic_xy_ ;
+    private double dynamic_heading_ ;
+    private double dynamic_ambiguity_ ;
+    private double max_ambiguity_ ;
+
+    /// \brief create the model with the table of standard deviations
+    /// \param single the distance at which a single tag sample changes from the near to the far std devs
+    /// \param singleNear the std devs for a single tag closer than the single threshold
+    /// \param singleFar the std devs for a single tag at or beyond the single threshold
+    /// \param multi the distance at which a multiple tag sample changes from the near to the far std devs
+    /// \param multiNear the std devs for multiple tags closer than the multi threshold
+    /// \param multiFar the std devs for multiple tags at or beyond the multi threshold
+    VisionStdDevModel(double single, Vector<N3> singleNear, Vector<N3> singleFar, double multi, Vector<N3> multiNear, Vector<N3> multiFar) {
+        single_tag_threshold_ = single ;
+        single_tag_near_params_ = singleNear ;
+        single_tag_far_params_ = singleFar ;
+
+        multi_tag_threshold_ = multi ;
+        multi_tag_near_params_ = multiNear ;
+        multi_tag_far_params_ = multiFar ;
+
+        dynamic_ = false ;
+    }
+
+    /// \brief compute the std devs from the tags rather than the table
+    /// \param xy the x and y std dev for a single tag at zero distance
+    /// \param heading the heading std dev for a tag at zero distance, only used with more than one tag
+    /// \param ambiguity the x and y std devs are scaled by one plus this times the tag ambiguity
+    /// \param max single tag samples with more ambiguity than this are rejected
+    void setDynamic(double xy, double heading, double ambiguity, double max) {
+        dynamic_ = true ;
+        dynamic_xy_ = xy ;
+        dynamic_heading_ = heading ;
+        dynamic_ambiguity_ = ambiguity ;
+        max_ambiguity_ = max ;
+    }
+
+    /// \brief returns true if the std devs are computed from the tags
+    /// \returns true if the std devs are computed from the tags
+    boolean isDynamic() {
+        return dynamic_ ;
+    }
+
+    /// \brief returns the kind of std devs used for a sample
+    /// \param lc the vision sample
+    /// \returns the kind of std devs used for a sample
+    VisionParamsType getParamsType(LocationData lc) {
+        if (dynamic_)
+            return VisionParamsType.Dynamic ;
+
+        if (lc.tagCount > 1)
+            return (lc.distance < multi_tag_threshold_) ? VisionParamsType.MultiNear : VisionParamsType.MultiFar ;
+
+        if (lc.tagCount == 1)
+            return (lc.distance < single_tag_threshold_) ? VisionParamsType.SingleNear : VisionParamsType.SingleFar ;
+
+        return VisionParamsType.SingleFar ;
+    }
+
+    /// \brief returns true if the sample should be rejected because the tag is ambiguous.  This is only
+    /// done when the std devs are computed from the tags.
+    /// \param lc the vision sample
+    /// \returns true if the sample should be rejected
+    boolean isAmbiguous(LocationData lc) {
+        return dynamic_ && lc.tagCount == 1 && lc.ambiguity > max_ambiguity_ ;
+    }
+
+    /// \brief returns the std devs for a sample
+    /// \param lc the vision sample
+    /// \param vtype the kind of std devs, from getParamsType()
+    /// \returns the x, y, and heading std devs for the sample
+    Vector<N3> getStdDevs(LocationData lc, VisionParamsType vtype) {
+        if (vtype == VisionParamsType.Dynamic) {
+            //
+            // The error in a vision pose grows with the square of the distance to the tags and shrinks with
+            // the number of tags seen.  A single tag gives a poor heading, so the heading is only used when
+            // more than one tag is seen.
+            //
+            int count = Math.max(lc.tagCount, 1) ;
+            double factor = (1.0 + lc.distance * lc.distance) / count ;
+            double xy = dynamic_xy_ * factor * (1.0 + dynamic_ambiguity_ * lc.ambiguity) ;
+            double heading = (lc.tagCount > 1) ? dynamic_heading_ * factor : kIgnoreHeading ;
+
+            return VecBuilder.fill(xy, xy, heading) ;
+        }
+
+        switch(vtype) {
+            case SingleNear:
+                return single_tag_near_params_ ;
+            case MultiNear:
+                return multi_tag_near_params_ ;
+            case MultiFar:
+                return multi_tag_far_params_ ;
+            default:
+                return single_tag_far_params_ ;
+        }
+    }
+}
@@ -55,7 +55,7 @@ public class TankDrivePathFollowerAction extends TankDrivePathAction {
     private int plot_id_ ;
 
     // The per robot loop plot data for this action
-    private Double [] plot_data_ ;
+    private double [] plot_data_ ;
 
     // The data columns to plot with this action
     private static final String[] plot_columns_ = {             
@@ -84,7 +84,7 @@ public class TankDrivePathFollowerAction extends TankDrivePathAction {
         angle_correction_pid_ = new PIDCtrl(drive.getRobot().getSettingsSupplier(), "subsystems:" + getSubsystem().getName() + ":angle_correction", false) ;
 
         plot_id_ = drive.initPlot(toString(0)) ;
-        plot_data_ = new Double[plot_columns_.length] ;
+        plot_data_ = new double[plot_columns_.length] ;
     }
 
     /// \brief Start the path folowing action.  Record the initial state of the robot.
@@ -33,6 +33,9 @@ public class TankDrivePowerAction extends TankDriveAction {
     // An index that is incremented each time this action is created to ensure each action has a unique plot name
     private static int plot_number_ = 0 ;
 
+    // The data for each row of the plot
+    private double[] plot_data_ ;
+
     // The set of columns to plot
     private static final String [] plot_columns_ = { "time (sec)", "dist (m)", "velocity (m/s)", "acceleration (m/s/s)", "lticks (ticks)", "rticks (ticks)", "left (v)", "right (v)" } ;
 
@@ -109,6 +112,7 @@ public class TankDrivePowerAction extends TankDriveAction {
         catch(Exception ex) {
         }
 
+        plot_data_ = new double[plot_columns_.length] ;
         if (timed_)
             getSubsystem().startPlot(plot_id_, plot_columns_) ;
     }
@@ -136,16 +140,15 @@ public class TankDrivePowerAction extends TankDriveAction {
             logger.add("dbpower").add("lticks", getSubsystem().getLeftTick()).add("rticks", getSubsystem().getRightTick()) ;
             logger.endMessage();
 
-            Double[] data = new Double[plot_columns_.length] ;
-            data[0] = getSubsystem().getRobot().getTime() - start_ ;
-            data[1] = getSubsystem().getDistance() ;
-            data[2] = getSubsystem().getVelocity() ;
-            data[3] = getSubsystem().getAcceleration() ;
-            data[4] = (double)getSubsystem().getLeftTick() ;
-            data[5] = (double)getSubsystem().getRightTick() ;
-            data[6] = left_ ;
-            data[7] = right_ ;
-            getSubsystem().addPlotData(plot_id_, data);
+            plot_data_[0] = getSubsystem().getRobot().getTime() - start_ ;
+            plot_data_[1] = getSubsystem().getDistance() ;
+            plot_data_[2] = getSubsystem().getVelocity() ;
+            plot_data_[3] = getSubsystem().getAcceleration() ;
+            plot_data_[4] = (double)getSubsystem().getLeftTick() ;
+            plot_data_[5] = (double)getSubsystem().getRightTick() ;
+            plot_data_[6] = left_ ;
+            plot_data_[7] = right_ ;
+            getSubsystem().addPlotData(plot_id_, plot_data_);
         }
     }
 
@@ -24,6 +24,9 @@ public class TankDriveRotateAction extends TankDriveAction {
     // The TrapezoidalProfile that is the plan to follow
     TrapezoidalProfile profile_ ;
 
+    // The data for each row of the plot
+    private double[] plot_data_ ;
+
     // The columns to plot
     private static final String [] plot_columns_ = { "time (sec)", "tpos (m)", "apos (m)", "tvel (m/s)", "avel (m/s)", "out (volt)" } ;
 
@@ -42,6 +45,7 @@ public class TankDriveRotateAction extends TankDriveAction {
         super.start() ;
 
         setTarget();
+        plot_data_ = new double[plot_columns_.length] ;
         getSubsystem().startPlot(plot_id_, plot_columns_) ;
     }
 
@@ -71,14 +75,13 @@ public class TankDriveRotateAction extends TankDriveAction {
             double out = ctrl_.getOutput(targetAcc, targetVel, targetDist, traveled, dt) ;
             sub.setPower(out, -out) ;
 
-            Double[] data = new Double[plot_columns_.length] ;
-            data[0] = elapsed ;
-            data[1] = start_position_ + targetDist ;
-            data[2] = position ;
-            data[3] = targetVel ;
-            data[4] = sub.getVelocity() ;
-            data[5] = out ;
-            sub.addPlotData(plot_id_, data);
+            plot_data_[0] = elapsed ;
+            plot_data_[1] = start_position_ + targetDist ;
+            plot_data_[2] = position ;
+            plot_data_[3] = targetVel ;
+            plot_data_[4] = sub.getVelocity() ;
+            plot_data_[5] = out ;
+            sub.addPlotData(plot_id_, plot_data_);
         }
     }
 
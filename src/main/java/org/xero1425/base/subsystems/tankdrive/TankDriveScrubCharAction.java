@@ -70,7 +70,7 @@ public class TankDriveScrubCharAction extends TankDriveAction {
             logger.add(", scrub", scrub) ;
             logger.endMessage();
         } else {
-            final Double[] data = new Double[7];
+            final double[] data = new double[7];
             data[0] = getSubsystem().getRobot().getTime() - start_;
             data[1] = getSubsystem().getAngle().getDegrees() ;
             data[4] = (double) getSubsystem().getLeftTick();
@@ -1,11 +1,14 @@
 package org.xero1425.base.subsystems.vision;
 
+import java.util.EnumSet;
+
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 import org.xero1425.misc.MessageLogger ;
 import org.xero1425.misc.MessageType ;
 import org.xero1425.base.IVisionLocalization;
+import org.xero1425.base.IVisionProducer;
 import org.xero1425.base.XeroRobot;
 import org.xero1425.base.subsystems.Subsystem;
 
@@ -14,11 +17,15 @@ import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoubleSubscriber;
 import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEvent;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.TimestampedDoubleArray;
 import edu.wpi.first.wpilibj.Timer;
 
-public class LimeLightSubsystem extends Subsystem implements IVisionLocalization {
+public class LimeLightSubsystem extends Subsystem implements IVisionLocalization, IVisionProducer {
     /// \brief the mode for the camera
     public enum CamMode
     {
@@ -37,10 +44,31 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
         Invalid                     ///< Invalid state
     } ;
 
+    /// \brief how the results from the limelight are read from the network tables
+    public enum IngestMode
+    {
+        Json,                       ///< Parse the complete json results every robot loop
+        Numeric                     ///< Decode the numeric topics, only when the limelight publishes a new frame
+    } ;
+
     public final static String LimeLightTableName = "limelight";
     public final static String CamModeKeyName = "camMode" ;
     public final static String LedModeKeyName = "ledMode" ;
     public final static String PipelineKeyName = "pipeline" ;
+    public final static String IngestSettingName = "ingest" ;
+
+    // The largest number of april tags decoded from a single frame in the numeric mode
+    private final static int kMaxFiducials = 16 ;
+
+    // The number of values for each april tag in the rawfiducials topic
+    private final static int kValuesPerFiducial = 7 ;
+
+    // The layout of the botpose arrays, the pose, then the latency, tag count, tag span, average
+    // tag distance and average tag area, then the values for each april tag
+    private final static int kBotPoseLatency = 6 ;
+    private final static int kBotPoseTagCount = 7 ;
+    private final static int kBotPoseTagDistance = 9 ;
+    private final static int kBotPoseHeaderSize = 11 ;
 
     public class DistanceAngle {
         public double distance ;
@@ -66,9 +94,14 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
         public double typ ;
     } ;
 
+    /// \brief an april tag seen by the limelight.  In the numeric mode only the id, the angles, the
+    /// area, the distances and the ambiguity are available, and the poses are null.
     public class Fiducial {
         public int id ;
         public String family ;
+        public double distToCamera ;
+        public double distToRobot ;
+        public double ambiguity ;
         public Pose3d camToTarget ;
         public Pose3d robotToField ;
         public Pose3d robotToTarget ;
@@ -108,6 +141,7 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
 
     private Retro [] retro_ ;
     private Fiducial[] fuds_ ;
+    private int fud_count_ ;
     private Detector[] detectors_ ;
     private Classifier[] classifiers_ ;
 
@@ -126,6 +160,35 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
     private CamMode cam_mode_ ;
     private LedMode led_mode_ ;
 
+    private IngestMode ingest_ ;
+
+    // The subscribers for the targeting values, used in both modes
+    private DoubleSubscriber tv_sub_ ;
+    private DoubleSubscriber tx_sub_ ;
+    private DoubleSubscriber ty_sub_ ;
+
+    // The subscribers for the numeric mode
+    private DoubleSubscriber hb_sub_ ;
+    private DoubleSubscriber tl_sub_ ;
+    private DoubleSubscriber cl_sub_ ;
+    private DoubleSubscriber pipe_sub_ ;
+    private DoubleArraySubscriber botpose_sub_ ;
+    private DoubleArraySubscriber wpired_sub_ ;
+    private DoubleArraySubscriber wpiblue_sub_ ;
+    private DoubleArraySubscriber rawfud_sub_ ;
+
+    private Fiducial[] fud_storage_ ;
+    private double last_heartbeat_ ;
+    private boolean new_frame_ ;
+    private double frame_time_ ;
+    private int frames_ ;
+
+    // The state used by the vision worker thread.  The subscriber is created and closed on the robot thread
+    // and read on the vision thread, the other fields are only used by the vision thread
+    private volatile DoubleArraySubscriber producer_sub_ ;
+    private int producer_listener_ ;
+    private long producer_last_ ;
+
     public LimeLightSubsystem(Subsystem parent, String name) {
         super(parent, name) ;
 
@@ -134,10 +197,77 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
 
         nt_ = NetworkTableInstance.getDefault().getTable(LimeLightTableName) ;
 
+        tv_sub_ = nt_.getDoubleTopic("tv").subscribe(0.0) ;
+        tx_sub_ = nt_.getDoubleTopic("tx").subscribe(0.0) ;
+        ty_sub_ = nt_.getDoubleTopic("ty").subscribe(0.0) ;
+
+        //
+        // The json results stay the default until the numeric mode has been validated on the robot
+        //
+        ingest_ = IngestMode.Json ;
+        if (isSettingDefined(IngestSettingName)) {
+            try {
+                String mode = getSettingsValue(IngestSettingName).getString() ;
+                if (mode.equals("numeric")) {
+                    ingest_ = IngestMode.Numeric ;
+                }
+                else if (!mode.equals("json")) {
+                    MessageLogger logger = getRobot().getMessageLogger() ;
+                    logger.startMessage(MessageType.Warning) ;
+                    logger.add("limelight ingest mode ").addQuoted(mode) ;
+                    logger.add(" is not 'json' or 'numeric', using 'json'") ;
+                    logger.endMessage() ;
+                }
+            }
+            catch(Exception ex) {
+                MessageLogger logger = getRobot().getMessageLogger() ;
+                logger.startMessage(MessageType.Error) ;
+                logger.add("could not read the limelight ingest mode - ").add(ex.getMessage()) ;
+                logger.endMessage() ;
+            }
+        }
+
+        fud_count_ = 0 ;
+        last_heartbeat_ = Double.NaN ;
+        new_frame_ = false ;
+        frame_time_ = 0.0 ;
+        frames_ = 0 ;
+        producer_sub_ = null ;
+        producer_listener_ = 0 ;
+        producer_last_ = 0 ;
+
+        if (ingest_ == IngestMode.Numeric) {
+            createNumericSubscribers() ;
+        }
+
         setPipeline(0);
         setCamMode(CamMode.VisionProcessing);
     }
 
+    private void createNumericSubscribers() {
+        NetworkTable table = NetworkTableInstance.getDefault().getTable(getName()) ;
+        double [] empty = new double[0] ;
+
+        hb_sub_ = table.getDoubleTopic("hb").subscribe(0.0) ;
+        tl_sub_ = table.getDoubleTopic("tl").subscribe(0.0) ;
+        cl_sub_ = table.getDoubleTopic("cl").subscribe(0.0) ;
+        pipe_sub_ = table.getDoubleTopic("getpipe").subscribe(0.0) ;
+        botpose_sub_ = table.getDoubleArrayTopic("botpose").subscribe(empty) ;
+        wpired_sub_ = table.getDoubleArrayTopic("botpose_wpired").subscribe(empty) ;
+        wpiblue_sub_ = table.getDoubleArrayTopic("botpose_wpiblue").subscribe(empty) ;
+        rawfud_sub_ = table.getDoubleArrayTopic("rawfiducials").subscribe(empty) ;
+
+        //
+        // The april tags for a frame are decoded into these objects, so no objects are created
+        // for each frame
+        //
+        fud_storage_ = new Fiducial[kMaxFiducials] ;
+        for(int i = 0 ; i < fud_storage_.length ; i++) {
+            fud_storage_[i] = new Fiducial() ;
+            fud_storage_[i].family = "" ;
+        }
+    }
+
     ///////////////////////////////////////////////////////
     //
     // The IVisionAlignmentData interface
@@ -226,14 +356,11 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
     ///////////////////////////////////////////////////////
 
     public int getTagCount() {
-        if (fuds_ == null)
-            return 0;
-
-        return fuds_.length;
+        return fud_count_ ;
     }
 
     private boolean areTagsValid(Pose2d db) {
-        if (fuds_ == null || fuds_.length == 0) {
+        if (fud_count_ == 0) {
             return false ;
         }
 
@@ -255,13 +382,26 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
             }
             else {
                 fuds_ = null;
+                fud_count_ = 0 ;
             }
         }
 
         if (found_ && valid_targets_ && areTagsValid(db)) {
             ret = new LocationData() ;
             ret.location = wpiblue_ ;
-            ret.when = getRobot().getTime() - (tl_ + cl_) / 1000.0;
+            ret.tagCount = fud_count_ ;
+            ret.distance = 0.0 ;
+            ret.ambiguity = 0.0 ;
+            for(int i = 0 ; i < fud_count_ ; i++) {
+                ret.distance += fuds_[i].distToRobot ;
+                ret.ambiguity = Math.max(ret.ambiguity, fuds_[i].ambiguity) ;
+            }
+            ret.distance /= fud_count_ ;
+
+            if (ingest_ == IngestMode.Numeric)
+                ret.when = frame_time_ ;
+            else
+                ret.when = getRobot().getTime() - (tl_ + cl_) / 1000.0;
         }
 
         return ret ;
@@ -272,10 +412,82 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
             return 1.5;
         }
 
-        return fuds_[0].robotToTarget.getTranslation().getNorm();
+        return fuds_[0].distToRobot ;
     }
 
 
+    ///////////////////////////////////////////////////////
+    //
+    // The IVisionProducer interface
+    //
+    ///////////////////////////////////////////////////////
+
+    /// \brief start producing pose samples on the vision worker thread.  A network tables listener
+    /// wakes the worker each time the limelight publishes a new pose.  This is only supported in the
+    /// numeric mode.
+    /// \param wakeup the function that wakes the vision worker thread
+    /// \returns true if the samples are produced on the worker thread
+    public boolean startProducing(Runnable wakeup) {
+        if (ingest_ != IngestMode.Numeric || producer_sub_ != null)
+            return false ;
+
+        NetworkTableInstance inst = NetworkTableInstance.getDefault() ;
+        producer_sub_ = inst.getTable(getName()).getDoubleArrayTopic("botpose").subscribe(new double[0]) ;
+        producer_listener_ = inst.addListener(producer_sub_, EnumSet.of(NetworkTableEvent.Kind.kValueAll), (event) -> wakeup.run()) ;
+        return true ;
+    }
+
+    /// \brief stop producing pose samples on the vision worker thread
+    public void stopProducing() {
+        if (producer_sub_ != null) {
+            NetworkTableInstance.getDefault().removeListener(producer_listener_) ;
+            producer_sub_.close() ;
+            producer_sub_ = null ;
+        }
+    }
+
+    /// \brief decode the latest pose from the limelight, called on the vision worker thread.  Everything
+    /// needed for the sample, including the tag count, tag distance and ambiguity, is in the botpose array,
+    /// so no state is shared with the robot loop.
+    /// \returns the new sample, or null if there is no new pose
+    public LocationData produce() {
+        DoubleArraySubscriber sub = producer_sub_ ;
+        if (sub == null)
+            return null ;
+
+        TimestampedDoubleArray value = sub.getAtomic() ;
+        double [] data = value.value ;
+        if (value.timestamp == producer_last_ || data.length < kBotPoseHeaderSize)
+            return null ;
+
+        producer_last_ = value.timestamp ;
+
+        int count = (int)data[kBotPoseTagCount] ;
+        if (count <= 0)
+            return null ;
+
+        //
+        // The pose is corrected for the limelight error in the same way as correctBluePose(), by
+        // moving the field centered pose to the blue corner of the field
+        //
+        Translation2d sz = getRobot().getFieldSize() ;
+        Rotation3d rot = new Rotation3d(Math.toRadians(data[3]), Math.toRadians(data[4]), Math.toRadians(data[5])) ;
+
+        LocationData ret = new LocationData() ;
+        ret.location = new Pose3d(data[0] + sz.getX() / 2, data[1] + sz.getY() / 2, data[2], rot) ;
+        ret.when = value.timestamp / 1.0e6 - data[kBotPoseLatency] / 1000.0 ;
+        ret.tagCount = count ;
+        ret.distance = data[kBotPoseTagDistance] ;
+        ret.ambiguity = 0.0 ;
+        if (data.length == kBotPoseHeaderSize + count * kValuesPerFiducial) {
+            for(int i = 0 ; i < count ; i++) {
+                ret.ambiguity = Math.max(ret.ambiguity, data[kBotPoseHeaderSize + i * kValuesPerFiducial + 6]) ;
+            }
+        }
+
+        return ret ;
+    }
+
     ///////////////////////////////////////////////////////
     //
     // Other public functions that might be of interest
@@ -330,10 +542,32 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
         return found_ ;
     }
 
+    /// \brief returns the way the results are read from the limelight
+    /// \returns the way the results are read from the limelight
+    public IngestMode getIngestMode() {
+        return ingest_ ;
+    }
+
+    /// \brief returns true if the limelight published a new frame since the last robot loop.  In the
+    /// json mode this is always true while the limelight is found.
+    /// \returns true if the limelight published a new frame since the last robot loop
+    public boolean isNewFrame() {
+        return new_frame_ ;
+    }
+
+    /// \brief returns the number of frames decoded in the numeric mode
+    /// \returns the number of frames decoded in the numeric mode
+    public int getFrameCount() {
+        return frames_ ;
+    }
+
     public Retro[] getRetroData() {
         return retro_ ;
     }
 
+    /// \brief returns the april tags seen in the last frame.  Only the first getTagCount() entries
+    /// are valid, as the array is reused from frame to frame in the numeric mode.
+    /// \returns the april tags seen in the last frame
     public Fiducial[] getFiducialData() {
         return fuds_ ;
     }
@@ -349,9 +583,9 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
     public void retroComputeMyState() {
         if (cam_mode_ == CamMode.VisionProcessing)
         {
-            if (nt_.containsKey("tv"))
+            if (tv_sub_.exists())
             {
-                double value = nt_.getEntry("tv").getNumber(0.0).doubleValue() ;
+                double value = tv_sub_.get() ;
                 if (value < 0.01)
                 {
                     tv_ = false ;
@@ -360,8 +594,8 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
                 else
                 {
                     tv_ = true ;
-                    tx_ = nt_.getEntry("tx").getNumber(0.0).doubleValue() ;
-                    ty_ = nt_.getEntry("ty").getNumber(0.0).doubleValue() ;
+                    tx_ = tx_sub_.get() ;
+                    ty_ = ty_sub_.get() ;
                 }
             }
             else {
@@ -381,6 +615,121 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
 
     @Override
     public void computeState() {
+        if (ingest_ == IngestMode.Numeric) {
+            numericComputeMyState() ;
+        }
+        else {
+            jsonComputeMyState() ;
+        }
+
+        retroComputeMyState();
+    }
+
+    //
+    // Decode the numeric topics published by the limelight.  The limelight increments the heartbeat once
+    // for each frame, so nothing is decoded unless the heartbeat has changed since the last robot loop.
+    //
+    private void numericComputeMyState() {
+        new_frame_ = false ;
+
+        found_ = hb_sub_.exists() ;
+        if (!found_) {
+            valid_targets_ = false ;
+            fud_count_ = 0 ;
+            return ;
+        }
+
+        double hb = hb_sub_.get() ;
+        if (hb == last_heartbeat_)
+            return ;
+
+        last_heartbeat_ = hb ;
+        new_frame_ = true ;
+        frames_++ ;
+
+        tl_ = tl_sub_.get() ;
+        cl_ = cl_sub_.get() ;
+        id_ = (int)pipe_sub_.get() ;
+        valid_targets_ = tv_sub_.get() > 0.5 ;
+
+        //
+        // The network tables time of the blue pose, in microseconds, is when the frame arrived.  The pose
+        // array holds the total latency of the frame in milliseconds, so the frame was captured that long
+        // before it arrived.
+        //
+        TimestampedDoubleArray blue = wpiblue_sub_.getAtomic() ;
+        double latency = (blue.value.length > kBotPoseLatency) ? blue.value[kBotPoseLatency] : tl_ + cl_ ;
+        ts_ = blue.timestamp / 1.0e6 ;
+        frame_time_ = ts_ - latency / 1000.0 ;
+
+        if (valid_targets_) {
+            botpose_ = arrayToPose3d(botpose_sub_.get(), botpose_) ;
+            wpired_ = arrayToPose3d(wpired_sub_.get(), wpired_) ;
+            wpiblue_ = arrayToPose3d(blue.value, wpiblue_) ;
+            if (botpose_ != null && wpiblue_ != null)
+                correctBluePose() ;
+
+            decodeFiducials(rawfud_sub_.get()) ;
+        }
+        else {
+            fud_count_ = 0 ;
+        }
+
+        MessageLogger logger = getRobot().getMessageLogger() ;
+        logger.startMessage(MessageType.Debug, getLoggerID()) ;
+        logger.add("limelight frame") ;
+        logger.add("frame", frames_) ;
+        logger.add("valid", valid_targets_) ;
+        logger.add("tags", fud_count_) ;
+        logger.add("latency", tl_ + cl_) ;
+        if (valid_targets_ && wpiblue_ != null) {
+            logger.add("x", wpiblue_.getX()) ;
+            logger.add("y", wpiblue_.getY()) ;
+        }
+        logger.endMessage() ;
+    }
+
+    private void decodeFiducials(double [] data) {
+        int count = 0 ;
+
+        if (data.length % kValuesPerFiducial == 0) {
+            count = Math.min(data.length / kValuesPerFiducial, fud_storage_.length) ;
+            for(int i = 0 ; i < count ; i++) {
+                int base = i * kValuesPerFiducial ;
+                Fiducial f = fud_storage_[i] ;
+
+                f.id = (int)data[base] ;
+                f.tx = data[base + 1] ;
+                f.ty = data[base + 2] ;
+                f.ta = data[base + 3] ;
+                f.distToCamera = data[base + 4] ;
+                f.distToRobot = data[base + 5] ;
+                f.ambiguity = data[base + 6] ;
+            }
+        }
+
+        fuds_ = fud_storage_ ;
+        fud_count_ = count ;
+    }
+
+    private static Pose3d arrayToPose3d(double [] data, Pose3d def) {
+        if (data.length < 6)
+            return def ;
+
+        Translation3d trans = new Translation3d(data[0], data[1], data[2]) ;
+        Rotation3d rot = new Rotation3d(Math.toRadians(data[3]), Math.toRadians(data[4]), Math.toRadians(data[5])) ;
+        return new Pose3d(trans, rot) ;
+    }
+
+    //
+    // Correct the blue pose for the limelight error
+    //
+    private void correctBluePose() {
+        Translation2d sz = getRobot().getFieldSize() ;
+        wpiblue_ = new Pose3d(botpose_.getX() + sz.getX() / 2, botpose_.getY() + sz.getY() / 2, botpose_.getZ(), wpiblue_.getRotation()) ;
+    }
+
+    private void jsonComputeMyState() {
         MessageLogger logger = getRobot().getMessageLogger() ;
         String json = NetworkTableInstance.getDefault().getTable(getName()).getEntry("json").getString("") ;
         logger.startMessage(MessageType.Debug, getLoggerID()) ;
@@ -394,27 +743,22 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
 
         if (json.length() == 0) {
             found_ = false ;
+            new_frame_ = false ;
         }
         else {
             found_ = true ;
+            new_frame_ = true ;
             Object obj = JSONValue.parse(json);
             if (obj instanceof JSONObject) {
                 parseLimelightJsonObject((JSONObject)obj) ;
-
-                //
-                // Correct the blue pose for the limelight error
-                //
-                Translation2d sz = getRobot().getFieldSize() ;
-                wpiblue_ = new Pose3d(botpose_.getX() + sz.getX() / 2, botpose_.getY() + sz.getY() / 2, botpose_.getZ(), wpiblue_.getRotation()) ;
+                correctBluePose() ;
             }
         }
-
-        retroComputeMyState();
     }
 
     private Fiducial getFUD(int target) {
         if (fuds_ != null) {
-            for(int i = 0 ; i < fuds_.length ; i++) {
+            for(int i = 0 ; i < fud_count_ ; i++) {
                 if (fuds_[i].id == target) {
                     return fuds_[i] ;
                 }
@@ -428,7 +772,7 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
         DistanceAngle ret = null ;
 
         Fiducial fud = getFUD(id) ;
-        if (fud != null) {
+        if (fud != null && fud.targetToRobot != null) {
             Pose2d p2d = fud.targetToRobot.toPose2d() ;
             ret = new DistanceAngle(p2d.getTranslation().getNorm(), p2d.getRotation().getDegrees());
         }
@@ -440,7 +784,7 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
         boolean ret = false ;
 
         if (fuds_ != null) {
-            for(int i = 0 ; i < fuds_.length ; i++) {
+            for(int i = 0 ; i < fud_count_ ; i++) {
                 if (fuds_[i].id == id) {
                     ret = true ;
                     break ;
@@ -608,9 +952,11 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
     private void parseFiducials(JSONArray entries) {
         if (entries.size() == 0) {
             fuds_ = null ;
+            fud_count_ = 0 ;
         }
         else {
             fuds_ = new Fiducial[entries.size()] ;
+            fud_count_ = fuds_.length ;
 
             for(int i = 0 ; i < entries.size() ; i++) {
                 Object temp = entries.get(i) ;
@@ -632,6 +978,9 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
                 f.txp = getDoubleFromObject(fud, "txp", 0.0) ;
                 f.ty = getDoubleFromObject(fud, "ty", 0.0) ;
                 f.typ = getDoubleFromObject(fud, "typ", 0.0) ;
+                f.distToCamera = (f.camToTarget != null) ? f.camToTarget.getTranslation().getNorm() : 0.0 ;
+                f.distToRobot = (f.robotToTarget != null) ? f.robotToTarget.getTranslation().getNorm() : 0.0 ;
+                f.ambiguity = 0.0 ;
 
                 fuds_[i] = f ;
             }
@@ -717,6 +1066,7 @@ public class LimeLightSubsystem extends Subsystem implements IVisionLocalization
         }        
         else {
             fuds_ = null ;
+            fud_count_ = 0 ;
         }
 
         temp = obj.get("Retro") ;
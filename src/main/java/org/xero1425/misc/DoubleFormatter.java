@@ -0,0 +1,178 @@
+package org.xero1425.misc;
+
+/// \file
+
+/// \brief This class appends formatted numbers to a StringBuilder without allocating memory.
+///
+/// String.format() creates a Formatter, boxes the value, and creates an intermediate string each
+/// time it is called.  The methods in this class write the digits directly into the StringBuilder
+/// given.  The output matches the %.Nf and %.Ng formats of String.format() with the US locale except
+/// that values are rounded half up using double arithmetic.  Values too large to be represented as a
+/// scaled long are appended using StringBuilder.append(double).
+public final class DoubleFormatter
+{
+    // Powers of ten that fit in a long
+    private static final long[] kPowersOfTen = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+        10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+        1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L
+    } ;
+
+    // The largest number of decimal places or significant digits supported
+    private static final int kMaxDigits = 15 ;
+
+    private DoubleFormatter() {
+    }
+
+    /// \brief append a value with a fixed number of decimal places, the same as %.Nf
+    /// \param bld the builder to append to
+    /// \param value the value to append
+    /// \param decimals the number of digits after the decimal point
+    /// \returns the builder given
+    public static StringBuilder appendFixed(final StringBuilder bld, final double value, final int decimals) {
+        return appendFixed(bld, value, decimals, 1) ;
+    }
+
+    /// \brief append a value with a fixed number of decimal places, padding the integer part with leading zeros
+    /// \param bld the builder to append to
+    /// \param value the value to append
+    /// \param decimals the number of digits after the decimal point
+    /// \param intdigits the minimum number of digits before the decimal point
+    /// \returns the builder given
+    public static StringBuilder appendFixed(final StringBuilder bld, final double value, int decimals, final int intdigits) {
+        if (appendSpecial(bld, value))
+            return bld ;
+
+        decimals = Math.min(Math.max(decimals, 0), kMaxDigits) ;
+
+        double abs = Math.abs(value) ;
+        double scaled = Math.floor(abs * kPowersOfTen[decimals] + 0.5) ;
+        if (scaled >= Long.MAX_VALUE) {
+            bld.append(value) ;
+            return bld ;
+        }
+
+        if (isNegative(value))
+            bld.append('-') ;
+
+        appendScaled(bld, (long)scaled, decimals, intdigits) ;
+        return bld ;
+    }
+
+    /// \brief append a value with a fixed number of significant digits, the same as %.Ng
+    /// \param bld the builder to append to
+    /// \param value the value to append
+    /// \param digits the number of significant digits
+    /// \returns the builder given
+    public static StringBuilder appendSignificant(final StringBuilder bld, final double value, int digits) {
+        if (appendSpecial(bld, value))
+            return bld ;
+
+        digits = Math.min(Math.max(digits, 1), kMaxDigits) ;
+
+        double abs = Math.abs(value) ;
+        if (abs == 0.0) {
+            return appendFixed(bld, value, digits - 1) ;
+        }
+
+        //
+        // Find the exponent of the most significant digit and round the value
+        // to the number of significant digits requested
+        //
+        int exp = (int)Math.floor(Math.log10(abs)) ;
+        long scaled = roundToDigits(abs, exp, digits) ;
+        if (scaled >= kPowersOfTen[digits]) {
+            exp++ ;
+            scaled = roundToDigits(abs, exp, digits) ;
+        }
+        else if (scaled < kPowersOfTen[digits - 1]) {
+            exp-- ;
+            scaled = roundToDigits(abs, exp, digits) ;
+        }
+
+        if (isNegative(value))
+            bld.append('-') ;
+
+        if (exp >= -4 && exp < digits) {
+            //
+            // Decimal notation, the scaled value has digits - 1 - exp decimal places
+            //
+            int decimals = digits - 1 - exp ;
+            if (decimals >= 0) {
+                appendScaled(bld, scaled, decimals, 1) ;
+            }
+            else {
+                bld.append(scaled * kPowersOfTen[-decimals]) ;
+            }
+        }
+        else {
+            //
+            // Scientific notation, d.ddde+XX
+            //
+            appendScaled(bld, scaled, digits - 1, 1) ;
+            bld.append('e') ;
+            bld.append(exp < 0 ? '-' : '+') ;
+
+            int aexp = Math.abs(exp) ;
+            if (aexp < 10)
+                bld.append('0') ;
+            bld.append(aexp) ;
+        }
+
+        return bld ;
+    }
+
+    private static long roundToDigits(final double abs, final int exp, final int digits) {
+        int shift = digits - 1 - exp ;
+        double scaled ;
+
+        if (shift >= 0)
+            scaled = abs * Math.pow(10.0, shift) ;
+        else
+            scaled = abs / Math.pow(10.0, -shift) ;
+
+        return (long)Math.floor(scaled + 0.5) ;
+    }
+
+    private static void appendScaled(final StringBuilder bld, final long scaled, final int decimals, final int intdigits) {
+        long intpart = scaled / kPowersOfTen[decimals] ;
+        long fracpart = scaled % kPowersOfTen[decimals] ;
+
+        for(int i = digitCount(intpart) ; i < intdigits ; i++)
+            bld.append('0') ;
+        bld.append(intpart) ;
+
+        if (decimals > 0) {
+            bld.append('.') ;
+            for(int i = digitCount(fracpart) ; i < decimals ; i++)
+                bld.append('0') ;
+            bld.append(fracpart) ;
+        }
+    }
+
+    private static int digitCount(final long value) {
+        int count = 1 ;
+        while (count < kPowersOfTen.length && value >= kPowersOfTen[count])
+            count++ ;
+
+        return count ;
+    }
+
+    private static boolean isNegative(final double value) {
+        return value < 0.0 || (value == 0.0 && 1.0 / value < 0.0) ;
+    }
+
+    private static boolean appendSpecial(final StringBuilder bld, final double value) {
+        if (Double.isNaN(value)) {
+            bld.append("NaN") ;
+            return true ;
+        }
+
+        if (Double.isInfinite(value)) {
+            bld.append(value > 0 ? "Infinity" : "-Infinity") ;
+            return true ;
+        }
+
+        return false ;
+    }
+}
@@ -1,7 +1,10 @@
 package org.xero1425.misc;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.json.simple.JSONObject;
 
@@ -23,16 +26,21 @@ import org.json.simple.JSONObject;
 /// Then the settings name <em>subsystems:tankdrive:width</em> would reference the value 3.0.  Values can be conditional
 /// based on defines. See the method addDefine() for more information about this capability.
 ///
+/// When the file is read, every value in the file is resolved against the defines and stored in a map keyed by its
+/// full settings name.  Looking up a setting is a single map lookup and does not create any new objects.
+///
 public class JsonSettingsParser implements ISettingsSupplier {
     private MessageLogger logger_ ;
     private List<String> defines_ ;
     private JSONObject contents_ ;
+    private Map<String, SettingsValue> values_ ;
 
     /// \brief Creates a new JsonSettings parser
     /// \param logger message logger for logging messages while reading the JSON settings file
     public JsonSettingsParser(MessageLogger logger) {
         logger_ = logger ;
         defines_ = new ArrayList<String>() ;
+        values_ = Collections.emptyMap() ;
     }
 
     public boolean readFile(String filename) {
@@ -41,7 +49,11 @@ public class JsonSettingsParser implements ISettingsSupplier {
         logger_.endMessage();    
 
         contents_ = JsonReader.readFile(filename, logger_) ;
-        return contents_ != null ;
+        if (contents_ == null)
+            return false ;
+
+        compile() ;
+        return true ;
     }
 
     /// \brief add a define to the reading process
@@ -61,12 +73,16 @@ public class JsonSettingsParser implements ISettingsSupplier {
     ///     }
     /// 
     /// With this form, a lookup of the settings value subsystem:subname:value, will pick either PRACTICE or
-    /// COMPETITION depending on the define that is set.
+    /// COMPETITION depending on the define that is set.  Defines should be added before the file is read.  If
+    /// a define is added after the file is read, the values are resolved again.
     ///
     /// \param name the name of the define to add
     public void addDefine(String name) {
-        if (!defines_.contains(name))
+        if (!defines_.contains(name)) {
             defines_.add(name) ;
+            if (contents_ != null)
+                compile() ;
+        }
     }
 
 
@@ -98,49 +114,7 @@ public class JsonSettingsParser implements ISettingsSupplier {
     /// \returns the SettingsValue object that for the setting with the given name, or null if it does not exist
     @Override
     public SettingsValue getOrNull(String name) {
-        String [] parts = name.split(":") ;
-        SettingsValue v = null ;
-
-        JSONObject current = findParent(parts) ;
-        if (current == null)
-            return null ;
-
-        Object value = current.get(parts[parts.length-1]) ;
-        if (value == null)
-            return null ;
-
-        if ((value instanceof JSONObject)) {
-            //
-            // This might be a conditional definiton based on a define
-            //
-            JSONObject condobj = (JSONObject)value ;
-            for(String define : defines_)
-            {
-                if (condobj.containsKey(define))
-                {
-                    value = condobj.get(define) ;
-                    break ;
-                }
-            }                
-        }
-
-        if ((value instanceof Double) == true) {
-            v = new SettingsValue((Double)value) ;
-        }
-        else if ((value instanceof Integer) == true) {
-            v = new SettingsValue((Integer)value) ;
-        }
-        else if ((value instanceof Long) == true) {
-            v = new SettingsValue((Long)value) ;
-        }
-        else if ((value instanceof Boolean) == true) {
-            v = new SettingsValue((Boolean)value) ;
-        }
-        else if ((value instanceof String) == true) {
-            v = new SettingsValue((String)value) ;
-        }
-
-        return v;
+        return values_.get(name) ;
     }
 
     /// \brief For a given setting entry in the JSON file, return all children
@@ -183,6 +157,65 @@ public class JsonSettingsParser implements ISettingsSupplier {
         return ret ;
     }
 
+    //
+    // Walk the JSON tree and store every value by its full name, with the defines applied.  An object
+    // that contains a key matching a define is a conditional value, and is stored under its own name
+    // as well as having its children stored.
+    //
+    private void compile() {
+        HashMap<String, SettingsValue> values = new HashMap<String, SettingsValue>() ;
+        compileObject(values, null, contents_) ;
+        values_ = Collections.unmodifiableMap(values) ;
+    }
+
+    private void compileObject(HashMap<String, SettingsValue> values, String prefix, JSONObject obj) {
+        for(Object key : obj.keySet()) {
+            String name = (prefix == null) ? key.toString() : prefix + ":" + key.toString() ;
+            Object value = obj.get(key) ;
+
+            if (value instanceof JSONObject) {
+                JSONObject condobj = (JSONObject)value ;
+                for(String define : defines_) {
+                    if (condobj.containsKey(define)) {
+                        SettingsValue v = toSettingsValue(condobj.get(define)) ;
+                        if (v != null)
+                            values.put(name, v) ;
+                        break ;
+                    }
+                }
+
+                compileObject(values, name, condobj) ;
+            }
+            else {
+                SettingsValue v = toSettingsValue(value) ;
+                if (v != null)
+                    values.put(name, v) ;
+            }
+        }
+    }
+
+    private static SettingsValue toSettingsValue(Object value) {
+        SettingsValue v = null ;
+
+        if ((value instanceof Double) == true) {
+            v = new SettingsValue((Double)value) ;
+        }
+        else if ((value instanceof Integer) == true) {
+            v = new SettingsValue((Integer)value) ;
+        }
+        else if ((value instanceof Long) == true) {
+            v = new SettingsValue((Long)value) ;
+        }
+        else if ((value instanceof Boolean) == true) {
+            v = new SettingsValue((Boolean)value) ;
+        }
+        else if ((value instanceof String) == true) {
+            v = new SettingsValue((String)value) ;
+        }
+
+        return v ;
+    }
+
     private JSONObject findParent(String [] parts) {
         JSONObject current = contents_ ;
         int index = 0 ;
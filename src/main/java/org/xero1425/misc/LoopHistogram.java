@@ -0,0 +1,149 @@
+package org.xero1425.misc;
+
+/// \file
+
+/// \brief A fixed memory histogram of times in nanoseconds.
+///
+/// The buckets are log-linear, in the style of an HDR histogram.  Times below 64 ns have a bucket each.
+/// Above that, each power of two range is split into 32 buckets, so any recorded time is known to within
+/// about 3%.  The histogram covers times up to about 18 minutes in a fixed array of counts, so recording a
+/// time never allocates memory.  The exact minimum, maximum, and total are kept alongside the buckets.
+public class LoopHistogram
+{
+    // The number of buckets that hold exactly one value each
+    private static final int kLinearBuckets = 64 ;
+
+    // The number of buckets in each power of two range above the linear buckets
+    private static final int kSubBuckets = 32 ;
+
+    // The largest shift supported, times beyond this range are counted in the last bucket
+    private static final int kMaxShift = 35 ;
+
+    // The total number of buckets
+    private static final int kBucketCount = kLinearBuckets + kMaxShift * kSubBuckets ;
+
+    private final String name_ ;
+    private final long[] counts_ ;
+    private long count_ ;
+    private long total_ ;
+    private long min_ ;
+    private long max_ ;
+
+    /// \brief create a new empty histogram
+    /// \param name the name of the histogram
+    public LoopHistogram(String name) {
+        name_ = name ;
+        counts_ = new long[kBucketCount] ;
+        reset() ;
+    }
+
+    /// \brief returns the name of the histogram
+    /// \returns the name of the histogram
+    public String getName() {
+        return name_ ;
+    }
+
+    /// \brief remove all recorded times
+    public void reset() {
+        for(int i = 0 ; i < counts_.length ; i++)
+            counts_[i] = 0 ;
+
+        count_ = 0 ;
+        total_ = 0 ;
+        min_ = Long.MAX_VALUE ;
+        max_ = 0 ;
+    }
+
+    /// \brief record a time
+    /// \param ns the time in nanoseconds
+    public void record(long ns) {
+        if (ns < 0)
+            ns = 0 ;
+
+        counts_[bucketIndex(ns)]++ ;
+        count_++ ;
+        total_ += ns ;
+
+        if (ns < min_)
+            min_ = ns ;
+
+        if (ns > max_)
+            max_ = ns ;
+    }
+
+    /// \brief returns the number of times recorded
+    /// \returns the number of times recorded
+    public long getCount() {
+        return count_ ;
+    }
+
+    /// \brief returns the sum of all times recorded in nanoseconds
+    /// \returns the sum of all times recorded in nanoseconds
+    public long getTotal() {
+        return total_ ;
+    }
+
+    /// \brief returns the smallest time recorded in nanoseconds, or zero if no times are recorded
+    /// \returns the smallest time recorded in nanoseconds
+    public long getMin() {
+        return count_ == 0 ? 0 : min_ ;
+    }
+
+    /// \brief returns the largest time recorded in nanoseconds
+    /// \returns the largest time recorded in nanoseconds
+    public long getMax() {
+        return max_ ;
+    }
+
+    /// \brief returns the average time recorded in nanoseconds, or zero if no times are recorded
+    /// \returns the average time recorded in nanoseconds
+    public double getMean() {
+        return count_ == 0 ? 0.0 : (double)total_ / (double)count_ ;
+    }
+
+    /// \brief returns the time at or below which a given percentage of the recorded times fall
+    /// \param percentile the percentage, between 0 and 100
+    /// \returns the time in nanoseconds, accurate to the width of the bucket that holds it
+    public long getValueAtPercentile(double percentile) {
+        if (count_ == 0)
+            return 0 ;
+
+        long target = (long)Math.ceil(percentile / 100.0 * count_) ;
+        if (target < 1)
+            target = 1 ;
+
+        long seen = 0 ;
+        for(int i = 0 ; i < counts_.length ; i++) {
+            seen += counts_[i] ;
+            if (seen >= target)
+                return Math.max(Math.min(bucketValue(i), max_), min_) ;
+        }
+
+        return max_ ;
+    }
+
+    private static int bucketIndex(long ns) {
+        if (ns < kLinearBuckets)
+            return (int)ns ;
+
+        int msb = 63 - Long.numberOfLeadingZeros(ns) ;
+        int shift = msb - 5 ;
+        if (shift > kMaxShift)
+            return kBucketCount - 1 ;
+
+        int sub = (int)(ns >>> shift) - kSubBuckets ;
+        return kLinearBuckets + (shift - 1) * kSubBuckets + sub ;
+    }
+
+    //
+    // Returns the highest time that falls in a bucket
+    //
+    private static long bucketValue(int index) {
+        if (index < kLinearBuckets)
+            return index ;
+
+        int shift = (index - kLinearBuckets) / kSubBuckets + 1 ;
+        long sub = (index - kLinearBuckets) % kSubBuckets + kSubBuckets ;
+        return ((sub + 1) << shift) - 1 ;
+    }
+}
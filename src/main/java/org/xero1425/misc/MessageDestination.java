@@ -10,4 +10,16 @@ public interface MessageDestination
     /// \param subsystem the subsystem ID for the message
     /// \param msg the text of the messag
     public abstract void displayMessage(MessageType type, int subsystem, String msg) ;
+
+    /// \brief display a message held in a reusable buffer, the buffer is only valid during this call
+    /// \param type the message type
+    /// \param subsystem the subsystem ID for the message
+    /// \param msg the text of the message
+    public default void displayMessage(MessageType type, int subsystem, CharSequence msg) {
+        displayMessage(type, subsystem, msg.toString()) ;
+    }
+
+    /// \brief make sure all messages displayed so far have reached their final destination
+    public default void flush() {
+    }
 }
@@ -0,0 +1,231 @@
+package org.xero1425.misc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/// \file
+
+/// \brief a message destination that stores logged messages in a file using a background writer thread
+///
+/// Messages are copied into a MessageRingBuffer by the thread that logs them and the file is written
+/// by a dedicated writer thread.  The writer removes messages from the buffer in batches, encodes them
+/// into a byte buffer, and writes the byte buffer to a file channel.  The robot loop therefore never
+/// waits on the file system.  If the writer falls behind and the ring buffer fills, messages are dropped
+/// and a line giving the number of dropped messages is written to the file.  The writer thread owns the
+/// file channel and closes it when it exits.  Messages are written as UTF-8.
+public class MessageDestinationAsync implements MessageDestination
+{
+    // The maximum number of records removed from the ring buffer in one batch
+    private static final int kBatchSize = 256 ;
+
+    // The size of the byte buffer used to write to the file channel
+    private static final int kByteBufferSize = 64 * 1024 ;
+
+    // The time the writer sleeps when there are no messages to write, in nanoseconds
+    private static final long kIdleSleepTime = 5000000 ;
+
+    // The maximum time flush() waits for the writer to catch up, in milliseconds
+    private static final long kFlushTimeout = 1000 ;
+
+    // The name of the file
+    private String filename_ ;
+
+    // The channel for writing to the file
+    private FileChannel channel_ ;
+
+    // The ring buffer of messages waiting to be written
+    private MessageRingBuffer ring_ ;
+
+    // The buffer of encoded bytes waiting to be written to the channel
+    private ByteBuffer bytes_ ;
+
+    // Encodes each record removed from the ring buffer into the byte buffer
+    private MessageRingBuffer.RecordConsumer encoder_ ;
+
+    // The writer thread
+    private Thread writer_ ;
+
+    // If true, the writer thread should keep running
+    private volatile boolean running_ ;
+
+    // The number of messages written to the file
+    private volatile long written_ ;
+
+    // The dropped message count last reported in the file
+    private long reported_dropped_ ;
+
+    // If true, the file channel is valid
+    private boolean valid_ ;
+
+    /// \brief create a new destination writing to the filename given
+    /// \param filename the name of the output file for messages
+    /// \param capacity the number of messages that can be waiting to be written
+    public MessageDestinationAsync(final String filename, final int capacity) {
+        filename_ = filename ;
+        ring_ = new MessageRingBuffer(capacity, 128) ;
+        bytes_ = ByteBuffer.allocateDirect(kByteBufferSize) ;
+        encoder_ = (rec) -> encode(rec.getText()) ;
+        written_ = 0 ;
+        reported_dropped_ = 0 ;
+
+        try {
+            channel_ = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) ;
+            valid_ = true ;
+        }
+        catch(final Exception ex) {
+            valid_ = false ;
+            System.err.println("cannot open log file '" + filename_ + "' - " + ex.getMessage()) ;
+        }
+
+        if (valid_) {
+            running_ = true ;
+            writer_ = new Thread(() -> writerLoop(), "XeroLogWriter") ;
+            writer_.setDaemon(true) ;
+            writer_.start() ;
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> close())) ;
+        }
+    }
+
+    /// \brief returns the name of the file messages are written to
+    /// \returns the name of the file messages are written to
+    public String getFileName() {
+        return filename_ ;
+    }
+
+    /// \brief returns the number of messages dropped because the ring buffer was full
+    /// \returns the number of messages dropped because the ring buffer was full
+    public long getDroppedCount() {
+        return ring_.getDroppedCount() ;
+    }
+
+    /// \brief display a message by adding it to the ring buffer for the writer thread
+    /// \param type the message type
+    /// \param subsystem the subsystem ID for the message
+    /// \param msg the text of the message
+    public void displayMessage(final MessageType type, final int subsystem, final String msg) {
+        if (valid_) {
+            ring_.offer(type, subsystem, msg) ;
+        }
+    }
+
+    /// \brief display a message by copying it into the ring buffer for the writer thread
+    /// \param type the message type
+    /// \param subsystem the subsystem ID for the message
+    /// \param msg the text of the message
+    public void displayMessage(final MessageType type, final int subsystem, final CharSequence msg) {
+        if (valid_) {
+            ring_.offer(type, subsystem, msg) ;
+        }
+    }
+
+    /// \brief wait for the writer thread to write all messages added so far
+    public void flush() {
+        if (!valid_ || !running_)
+            return ;
+
+        long target = ring_.getAddedCount() ;
+        long start = System.currentTimeMillis() ;
+
+        LockSupport.unpark(writer_) ;
+        while (written_ < target && System.currentTimeMillis() - start < kFlushTimeout) {
+            try {
+                Thread.sleep(1) ;
+            }
+            catch(InterruptedException ex) {
+                break ;
+            }
+        }
+    }
+
+    /// \brief stop the writer thread, write any remaining messages, and close the file.  This waits a
+    /// limited time for the writer, if the writer is still writing it closes the file when it is done.
+    public synchronized void close() {
+        if (!valid_)
+            return ;
+
+        valid_ = false ;
+        running_ = false ;
+        LockSupport.unpark(writer_) ;
+        try {
+            writer_.join(kFlushTimeout) ;
+        }
+        catch(InterruptedException ex) {
+        }
+    }
+
+    private void writerLoop() {
+        try {
+            writeMessages() ;
+        }
+        finally {
+            try {
+                channel_.close() ;
+            }
+            catch(IOException ex) {
+            }
+        }
+    }
+
+    private void writeMessages() {
+        while (true) {
+            //
+            // The flag is read before the buffer is drained, so once it is clear every message added
+            // before close() was called is drained before the loop exits
+            //
+            boolean stopping = !running_ ;
+
+            int count = ring_.drain(encoder_, kBatchSize) ;
+
+            long dropped = ring_.getDroppedCount() ;
+            if (dropped != reported_dropped_) {
+                encode("*** message logger dropped " + (dropped - reported_dropped_) + " messages") ;
+                reported_dropped_ = dropped ;
+            }
+
+            writeBytes() ;
+            written_ += count ;
+
+            if (count == 0) {
+                if (stopping)
+                    break ;
+
+                LockSupport.parkNanos(kIdleSleepTime) ;
+            }
+        }
+    }
+
+    private void encode(final CharSequence text) {
+        int len = text.length() ;
+        int i = 0 ;
+
+        while (i < len) {
+            i = Utf8Encoder.encode(bytes_, text, i, Integer.MAX_VALUE) ;
+            if (i < len)
+                writeBytes() ;
+        }
+
+        if (!bytes_.hasRemaining())
+            writeBytes() ;
+        bytes_.put((byte)'\n') ;
+    }
+
+    private void writeBytes() {
+        if (bytes_.position() == 0)
+            return ;
+
+        bytes_.flip() ;
+        try {
+            while (bytes_.hasRemaining())
+                channel_.write(bytes_) ;
+        }
+        catch(final Exception ex) {
+            System.err.println("cannot write to log file '" + filename_ + "' - " + ex.getMessage()) ;
+        }
+        bytes_.clear() ;
+    }
+}
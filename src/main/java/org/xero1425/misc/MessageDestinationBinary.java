@@ -0,0 +1,371 @@
+package org.xero1425.misc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/// \file
+
+/// \brief a message destination that stores the typed fields of each message in a compact binary file
+///
+/// Rather than formatting each message as text, the fields added to the message are written as typed
+/// binary values.  Field names and subsystem names are written once, the first time they are seen, and
+/// are referred to by a small integer ID after that.  Records are encoded into an in memory buffer by the
+/// thread that logs the message.  A writer thread swaps the buffer for an empty one and writes the full
+/// buffer to the file, so the robot loop never waits on the file system.  If the buffer fills before the
+/// writer empties it, messages are dropped and a record giving the number of dropped messages is written.
+/// The MessageLogDecoder class turns a binary log file back into text or into CSV.
+///
+/// The file starts with the four bytes 'XLOG' and a two byte version.  This is followed by records,
+/// each starting with a one byte tag.
+///
+///     kTagSubsystem: u16 id, str name
+///     kTagName:      u16 id, str name
+///     kTagMessage:   f64 time, i64 thread, u8 type, u16 subsystem, u16 field count, fields
+///     kTagDropped:   i64 count
+///
+/// Each field is a u8 kind (see MessageFields), a u16 name ID for named fields, an i64 for integer
+/// kinds, one to three f64 values for floating point kinds, or a str for string kinds.  A str is a u16
+/// length followed by that many UTF-8 bytes.  All values are big endian.
+public class MessageDestinationBinary implements MessageRecordDestination
+{
+    /// \brief the magic bytes at the start of a binary log file
+    public static final byte[] kMagic = { 'X', 'L', 'O', 'G' } ;
+
+    /// \brief the version of the binary log file format
+    public static final short kVersion = 1 ;
+
+    /// \brief the record that defines a subsystem name
+    public static final byte kTagSubsystem = 1 ;
+
+    /// \brief the record that defines a field name
+    public static final byte kTagName = 2 ;
+
+    /// \brief the record that holds a message
+    public static final byte kTagMessage = 3 ;
+
+    /// \brief the record that holds a count of dropped messages
+    public static final byte kTagDropped = 4 ;
+
+    /// \brief the name ID used for a name that is written inline because the name table is full
+    public static final int kInlineName = 0xFFFF ;
+
+    // The size of each of the two record buffers
+    private static final int kBufferSize = 256 * 1024 ;
+
+    // The maximum length of a string in bytes, longer strings are truncated
+    private static final int kMaxStringLength = 0xFFFF ;
+
+    // The time between writes of the record buffer, in nanoseconds
+    private static final long kWriteInterval = 20000000 ;
+
+    // The maximum time close() waits for the writer thread, in milliseconds
+    private static final long kCloseTimeout = 1000 ;
+
+    // The name of the file
+    private String filename_ ;
+
+    // The channel for writing to the file
+    private FileChannel channel_ ;
+
+    // The buffer records are encoded into, guarded by lock_
+    private ByteBuffer active_ ;
+
+    // The buffer being written to the file, guarded by write_lock_
+    private ByteBuffer spare_ ;
+
+    // Guards the active buffer, the name table, and the subsystem table
+    private final Object lock_ ;
+
+    // Guards swapping the buffers and writing to the file
+    private final Object write_lock_ ;
+
+    // The IDs of the field names written so far
+    private Map<String, Integer> names_ ;
+
+    // The subsystems whose names have been written so far
+    private boolean[] subsystems_ ;
+
+    // The number of messages dropped because the buffer was full
+    private long dropped_ ;
+
+    // The number of dropped messages not yet recorded in the file
+    private long unreported_dropped_ ;
+
+    // The writer thread
+    private Thread writer_ ;
+
+    // If true, the writer thread should keep running
+    private volatile boolean running_ ;
+
+    // If true, the file channel is valid
+    private volatile boolean valid_ ;
+
+    /// \brief create a new destination writing to the filename given
+    /// \param filename the name of the output file for messages
+    public MessageDestinationBinary(final String filename) {
+        filename_ = filename ;
+        lock_ = new Object() ;
+        write_lock_ = new Object() ;
+        active_ = ByteBuffer.allocateDirect(kBufferSize) ;
+        spare_ = ByteBuffer.allocateDirect(kBufferSize) ;
+        names_ = new HashMap<String, Integer>() ;
+        subsystems_ = new boolean[64] ;
+        dropped_ = 0 ;
+        unreported_dropped_ = 0 ;
+
+        try {
+            channel_ = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) ;
+            valid_ = true ;
+        }
+        catch(final Exception ex) {
+            valid_ = false ;
+            System.err.println("cannot open log file '" + filename_ + "' - " + ex.getMessage()) ;
+        }
+
+        if (valid_) {
+            active_.put(kMagic) ;
+            active_.putShort(kVersion) ;
+
+            running_ = true ;
+            writer_ = new Thread(() -> writerLoop(), "XeroBinaryLogWriter") ;
+            writer_.setDaemon(true) ;
+            writer_.start() ;
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> close())) ;
+        }
+    }
+
+    /// \brief returns the name of the file messages are written to
+    /// \returns the name of the file messages are written to
+    public String getFileName() {
+        return filename_ ;
+    }
+
+    /// \brief returns the number of messages dropped because the buffer was full
+    /// \returns the number of messages dropped because the buffer was full
+    public long getDroppedCount() {
+        synchronized(lock_) {
+            return dropped_ ;
+        }
+    }
+
+    /// \brief display a message given as text by storing it as a single text field
+    /// \param type the message type
+    /// \param subsystem the subsystem ID for the message
+    /// \param msg the text of the message
+    public void displayMessage(final MessageType type, final int subsystem, final String msg) {
+        MessageFields fields = new MessageFields(1) ;
+        fields.add(MessageFields.kText, null, msg) ;
+        displayRecord(Double.NaN, Thread.currentThread().getId(), type, subsystem, null, fields) ;
+    }
+
+    /// \brief store the typed fields of a message in the record buffer
+    /// \param time the time of the message, or NaN if there is no time source
+    /// \param thread the ID of the thread that logged the message
+    /// \param type the message type
+    /// \param subsystem the subsystem ID for the message
+    /// \param subname the name of the subsystem, or null if the subsystem ID is not registered
+    /// \param fields the fields of the message
+    public void displayRecord(final double time, final long thread, final MessageType type, final int subsystem, final String subname, final MessageFields fields) {
+        if (!valid_)
+            return ;
+
+        synchronized(lock_) {
+            if (active_.remaining() < recordSize(subsystem, subname, fields)) {
+                dropped_++ ;
+                unreported_dropped_++ ;
+                return ;
+            }
+
+            if (subname != null && !isSubsystemWritten(subsystem)) {
+                active_.put(kTagSubsystem) ;
+                active_.putShort((short)subsystem) ;
+                putString(active_, subname) ;
+                subsystems_[subsystem] = true ;
+            }
+
+            for(int i = 0 ; i < fields.size() ; i++) {
+                String name = fields.getName(i) ;
+                if (MessageFields.isNamed(fields.getKind(i)) && !names_.containsKey(name) && names_.size() < kInlineName) {
+                    int id = names_.size() ;
+                    names_.put(name, id) ;
+                    active_.put(kTagName) ;
+                    active_.putShort((short)id) ;
+                    putString(active_, name) ;
+                }
+            }
+
+            active_.put(kTagMessage) ;
+            active_.putDouble(time) ;
+            active_.putLong(thread) ;
+            active_.put((byte)type.ordinal()) ;
+            active_.putShort((short)subsystem) ;
+            active_.putShort((short)fields.size()) ;
+
+            for(int i = 0 ; i < fields.size() ; i++) {
+                int kind = fields.getKind(i) ;
+                active_.put((byte)kind) ;
+
+                if (MessageFields.isNamed(kind)) {
+                    Integer id = names_.get(fields.getName(i)) ;
+                    if (id != null) {
+                        active_.putShort((short)id.intValue()) ;
+                    }
+                    else {
+                        active_.putShort((short)kInlineName) ;
+                        putString(active_, fields.getName(i)) ;
+                    }
+                }
+
+                if (MessageFields.hasLong(kind)) {
+                    active_.putLong(fields.getLong(i)) ;
+                }
+                else if (MessageFields.hasString(kind)) {
+                    putString(active_, fields.getString(i)) ;
+                }
+                else {
+                    for(int j = 0 ; j < MessageFields.valueCount(kind) ; j++)
+                        active_.putDouble(fields.getValue(i, j)) ;
+                }
+            }
+
+            if (active_.position() > kBufferSize / 2)
+                LockSupport.unpark(writer_) ;
+        }
+    }
+
+    /// \brief write all records stored so far to the file
+    public void flush() {
+        if (valid_)
+            writeRecords() ;
+    }
+
+    /// \brief stop the writer thread, write any remaining records, and close the file
+    public void close() {
+        if (!valid_)
+            return ;
+
+        running_ = false ;
+        LockSupport.unpark(writer_) ;
+        try {
+            writer_.join(kCloseTimeout) ;
+        }
+        catch(InterruptedException ex) {
+        }
+
+        synchronized(write_lock_) {
+            if (!valid_)
+                return ;
+
+            writeRecords() ;
+
+            try {
+                channel_.close() ;
+            }
+            catch(IOException ex) {
+            }
+
+            valid_ = false ;
+        }
+    }
+
+    private void writerLoop() {
+        while (running_) {
+            LockSupport.parkNanos(kWriteInterval) ;
+            writeRecords() ;
+        }
+    }
+
+    private void writeRecords() {
+        synchronized(write_lock_) {
+            ByteBuffer full ;
+
+            if (!valid_)
+                return ;
+
+            //
+            // Swap the buffers so the robot can keep logging to an empty buffer while
+            // the full one is written to the file
+            //
+            synchronized(lock_) {
+                full = active_ ;
+                active_ = spare_ ;
+                spare_ = full ;
+
+                if (unreported_dropped_ > 0 && full.remaining() >= 9) {
+                    full.put(kTagDropped) ;
+                    full.putLong(unreported_dropped_) ;
+                    unreported_dropped_ = 0 ;
+                }
+            }
+
+            full.flip() ;
+            try {
+                while (full.hasRemaining())
+                    channel_.write(full) ;
+            }
+            catch(final Exception ex) {
+                System.err.println("cannot write to log file '" + filename_ + "' - " + ex.getMessage()) ;
+            }
+            full.clear() ;
+        }
+    }
+
+    private boolean isSubsystemWritten(final int subsystem) {
+        if (subsystem >= subsystems_.length)
+            subsystems_ = java.util.Arrays.copyOf(subsystems_, Math.max(subsystem + 1, subsystems_.length * 2)) ;
+
+        return subsystems_[subsystem] ;
+    }
+
+    private int recordSize(final int subsystem, final String subname, final MessageFields fields) {
+        // tag, time, thread, type, subsystem, field count
+        int size = 1 + 8 + 8 + 1 + 2 + 2 ;
+
+        if (subname != null)
+            size += 1 + 2 + stringSize(subname) ;
+
+        for(int i = 0 ; i < fields.size() ; i++) {
+            int kind = fields.getKind(i) ;
+            size += 1 ;
+
+            if (MessageFields.isNamed(kind)) {
+                // a name definition record may be needed, or the name may be written inline
+                size += 2 + 1 + 2 + stringSize(fields.getName(i)) ;
+            }
+
+            if (MessageFields.hasLong(kind))
+                size += 8 ;
+            else if (MessageFields.hasString(kind))
+                size += stringSize(fields.getString(i)) ;
+            else
+                size += 8 * MessageFields.valueCount(kind) ;
+        }
+
+        return size ;
+    }
+
+    private static int stringSize(final String str) {
+        return 2 + Math.min(str == null ? 4 : Utf8Encoder.maxBytes(str.length()), kMaxStringLength) ;
+    }
+
+    //
+    // The length is only known once the string is encoded, so space is left for it and it is
+    // filled in afterward
+    //
+    private static void putString(final ByteBuffer buf, String str) {
+        if (str == null)
+            str = "null" ;
+
+        int lenpos = buf.position() ;
+        buf.putShort((short)0) ;
+        Utf8Encoder.encode(buf, str, 0, kMaxStringLength) ;
+        buf.putShort(lenpos, (short)(buf.position() - lenpos - 2)) ;
+    }
+}
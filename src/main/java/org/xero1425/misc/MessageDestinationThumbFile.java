@@ -28,15 +28,39 @@ public class MessageDestinationThumbFile implements MessageDestination
     /// \param bdir the base directory for log files (e.g. /u) ;
     /// \param timeout a timeout for trying to open a file in the base directory given
     public MessageDestinationThumbFile(final String bdir, final long timeout, boolean create) {
-        int index = 1;
         valid_ = false;
+
+        final String filename = findLogFileName(bdir, timeout, create) ;
+        if (filename != null)
+        {
+            valid_ = true ;
+            filename_ = filename ;
+            try
+            {
+                file_ = new FileWriter(new File(filename)) ;
+            }
+            catch(final Exception ex)
+            {
+                valid_ = false ;
+                System.err.println("cannot open log file '" + filename_ + "' - " + ex.getMessage()) ;
+            }
+        }
+    }
+
+    /// \brief find the name of the next unused log file in the base directory given
+    /// \param bdir the base directory for log files (e.g. /u) ;
+    /// \param timeout a timeout for trying to find a file in the base directory given
+    /// \param create if true, create the base directory if it does not exist
+    /// \returns the name of the log file, or null if no name could be found
+    public static String findLogFileName(final String bdir, final long timeout, boolean create) {
+        int index = 1;
         final long startms = new Date().getTime();
 
         if (create) {
             final File f = new File(bdir);
             if (!f.exists()) {
                 if (!f.mkdirs()) {
-                    return ;
+                    return null ;
                 }
             }
         }
@@ -45,27 +69,13 @@ public class MessageDestinationThumbFile implements MessageDestination
             final long now = new Date().getTime();
             if (now - startms > timeout) {
                 System.err.println("timeout while opening robot log file");
-                valid_ = false;
-                break;
+                return null ;
             }
 
             final String filename = bdir + "/logfile_" + Integer.toString(index++);
             final File f = new File(filename);
             if (!f.exists())
-            {
-                valid_ = true ;
-                filename_ = filename ;
-                try
-                {
-                    file_ = new FileWriter(f) ;
-                }
-                catch(final Exception ex)
-                {
-                    valid_ = false ;
-                    System.err.println("cannot open log file '" + filename_ + "' - " + ex.getMessage()) ;
-                }
-                break ;
-            }
+                return filename ;
         }
     }
 
@@ -0,0 +1,327 @@
+package org.xero1425.misc;
+
+/// \file
+
+/// \brief The typed contents of a single message.
+///
+/// Each call to one of the MessageLogger add() methods stores one field in this object.  A field has a kind
+/// that says how the field is displayed, an optional name, up to three numeric values, and an optional string.
+/// Strings are stored by reference and the storage arrays are reused from message to message, so recording a
+/// field does not allocate memory.  The text of the message is produced from the fields with appendText().  This
+/// is done by the MessageLogger for destinations that display text, and by the MessageLogDecoder when decoding a
+/// binary log file, so both produce the same text.
+public class MessageFields
+{
+    /// \brief a string added with add(String)
+    public static final int kText = 1 ;
+
+    /// \brief a string added with addQuoted(String)
+    public static final int kQuoted = 2 ;
+
+    /// \brief a character added with add(char)
+    public static final int kChar = 3 ;
+
+    /// \brief an integer added with add(int) or add(long)
+    public static final int kLong = 4 ;
+
+    /// \brief a boolean added with add(boolean)
+    public static final int kBool = 5 ;
+
+    /// \brief a floating point value added with add(double) or add(float)
+    public static final int kDouble = 6 ;
+
+    /// \brief a pose added with add(Pose2d)
+    public static final int kPose = 7 ;
+
+    /// \brief a named floating point value added with add(String, double)
+    public static final int kNamedDouble = 16 ;
+
+    /// \brief a named integer added with add(String, int)
+    public static final int kNamedLong = 17 ;
+
+    /// \brief a named boolean added with add(String, boolean)
+    public static final int kNamedBool = 18 ;
+
+    /// \brief a named string added with add(String, String)
+    public static final int kNamedString = 19 ;
+
+    /// \brief a named quoted string added with add(String, String, true)
+    public static final int kNamedQuoted = 20 ;
+
+    /// \brief a named rotation added with add(String, Rotation2d), stored in degrees
+    public static final int kNamedRotation = 21 ;
+
+    /// \brief a named value that was formatted with a caller supplied format
+    public static final int kNamedText = 22 ;
+
+    /// \brief a named pose added with add(String, Pose2d)
+    public static final int kNamedPose = 23 ;
+
+    /// \brief a named translation added with add(String, Translation2d)
+    public static final int kNamedTranslation2d = 24 ;
+
+    /// \brief a named translation added with add(String, Translation3d)
+    public static final int kNamedTranslation3d = 25 ;
+
+    private int count_ ;
+    private int[] kinds_ ;
+    private String[] names_ ;
+    private double[] values_ ;
+    private long[] longs_ ;
+    private String[] strings_ ;
+
+    /// \brief create a new empty set of fields
+    /// \param capacity the initial number of fields that can be stored
+    public MessageFields(int capacity) {
+        count_ = 0 ;
+        kinds_ = new int[capacity] ;
+        names_ = new String[capacity] ;
+        values_ = new double[capacity * 3] ;
+        longs_ = new long[capacity] ;
+        strings_ = new String[capacity] ;
+    }
+
+    /// \brief remove all fields
+    public void clear() {
+        for(int i = 0 ; i < count_ ; i++) {
+            names_[i] = null ;
+            strings_[i] = null ;
+        }
+        count_ = 0 ;
+    }
+
+    /// \brief returns the number of fields
+    /// \returns the number of fields
+    public int size() {
+        return count_ ;
+    }
+
+    /// \brief returns true if the kind given is a named field
+    /// \param kind the kind of field
+    /// \returns true if the kind given is a named field
+    public static boolean isNamed(int kind) {
+        return kind >= kNamedDouble ;
+    }
+
+    /// \brief returns true if a kind of field stores an integer value
+    /// \param kind the kind of field
+    /// \returns true if a kind of field stores an integer value
+    public static boolean hasLong(int kind) {
+        return kind == kChar || kind == kLong || kind == kBool || kind == kNamedLong || kind == kNamedBool ;
+    }
+
+    /// \brief returns the number of floating point values stored for a kind of field
+    /// \param kind the kind of field
+    /// \returns the number of floating point values stored for a kind of field
+    public static int valueCount(int kind) {
+        switch(kind) {
+            case kDouble:
+            case kNamedDouble:
+            case kNamedRotation:
+                return 1 ;
+
+            case kNamedTranslation2d:
+                return 2 ;
+
+            case kPose:
+            case kNamedPose:
+            case kNamedTranslation3d:
+                return 3 ;
+        }
+
+        return 0 ;
+    }
+
+    /// \brief returns true if a kind of field stores a string
+    /// \param kind the kind of field
+    /// \returns true if a kind of field stores a string
+    public static boolean hasString(int kind) {
+        return kind == kText || kind == kQuoted || kind == kNamedString || kind == kNamedQuoted || kind == kNamedText ;
+    }
+
+    /// \brief returns the kind of a field
+    /// \param index the index of the field
+    /// \returns the kind of a field
+    public int getKind(int index) {
+        return kinds_[index] ;
+    }
+
+    /// \brief returns the name of a field, or null if the field is not named
+    /// \param index the index of the field
+    /// \returns the name of a field
+    public String getName(int index) {
+        return names_[index] ;
+    }
+
+    /// \brief returns the integer value of a field
+    /// \param index the index of the field
+    /// \returns the integer value of a field
+    public long getLong(int index) {
+        return longs_[index] ;
+    }
+
+    /// \brief returns one of the floating point values of a field
+    /// \param index the index of the field
+    /// \param which which of the values to return (0, 1, or 2)
+    /// \returns one of the numeric values of a field
+    public double getValue(int index, int which) {
+        return values_[index * 3 + which] ;
+    }
+
+    /// \brief returns the string value of a field
+    /// \param index the index of the field
+    /// \returns the string value of a field
+    public String getString(int index) {
+        return strings_[index] ;
+    }
+
+    /// \brief add a field that stores a string
+    /// \param kind the kind of field
+    /// \param name the name of the field, or null
+    /// \param str the string value
+    public void add(int kind, String name, String str) {
+        int index = next() ;
+        kinds_[index] = kind ;
+        names_[index] = name ;
+        strings_[index] = str ;
+    }
+
+    /// \brief add a field that stores an integer value
+    /// \param kind the kind of field
+    /// \param name the name of the field, or null
+    /// \param v the value
+    public void add(int kind, String name, long v) {
+        int index = next() ;
+        kinds_[index] = kind ;
+        names_[index] = name ;
+        longs_[index] = v ;
+    }
+
+    /// \brief add a field that stores floating point values
+    /// \param kind the kind of field
+    /// \param name the name of the field, or null
+    /// \param v0 the first value
+    /// \param v1 the second value
+    /// \param v2 the third value
+    public void add(int kind, String name, double v0, double v1, double v2) {
+        int index = next() ;
+        kinds_[index] = kind ;
+        names_[index] = name ;
+        values_[index * 3 + 0] = v0 ;
+        values_[index * 3 + 1] = v1 ;
+        values_[index * 3 + 2] = v2 ;
+    }
+
+    /// \brief add a field that stores a single floating point value
+    /// \param kind the kind of field
+    /// \param name the name of the field, or null
+    /// \param v the value
+    public void add(int kind, String name, double v) {
+        add(kind, name, v, 0.0, 0.0) ;
+    }
+
+    /// \brief append the text for all fields to a builder
+    /// \param bld the builder for the text
+    public void appendText(StringBuilder bld) {
+        for(int i = 0 ; i < count_ ; i++) {
+            appendText(bld, i) ;
+        }
+    }
+
+    /// \brief append the text for a single field to a builder
+    /// \param bld the builder for the text
+    /// \param i the index of the field
+    public void appendText(StringBuilder bld, int i) {
+        int kind = kinds_[i] ;
+
+        if (isNamed(kind)) {
+            bld.append(' ').append(names_[i]) ;
+            if (kind == kNamedTranslation2d || kind == kNamedTranslation3d)
+                bld.append(" = X: ") ;
+            else
+                bld.append(" = ") ;
+        }
+
+        appendValue(bld, i) ;
+    }
+
+    /// \brief append the text for the value of a single field to a builder, without the name
+    /// \param bld the builder for the text
+    /// \param i the index of the field
+    public void appendValue(StringBuilder bld, int i) {
+        int kind = kinds_[i] ;
+        double v0 = values_[i * 3 + 0] ;
+        double v1 = values_[i * 3 + 1] ;
+        double v2 = values_[i * 3 + 2] ;
+
+        switch(kind) {
+            case kText:
+            case kNamedString:
+            case kNamedText:
+                bld.append(strings_[i]) ;
+                break ;
+
+            case kQuoted:
+            case kNamedQuoted:
+                bld.append('\'').append(strings_[i]).append('\'') ;
+                break ;
+
+            case kChar:
+                bld.append((char)longs_[i]) ;
+                break ;
+
+            case kLong:
+            case kNamedLong:
+                bld.append(longs_[i]) ;
+                break ;
+
+            case kBool:
+            case kNamedBool:
+                bld.append(longs_[i] != 0) ;
+                break ;
+
+            case kDouble:
+                DoubleFormatter.appendFixed(bld, v0, 4) ;
+                break ;
+
+            case kNamedDouble:
+                DoubleFormatter.appendSignificant(bld, v0, 4) ;
+                break ;
+
+            case kNamedRotation:
+                DoubleFormatter.appendSignificant(bld, v0, 4).append(" deg") ;
+                break ;
+
+            case kPose:
+            case kNamedPose:
+                DoubleFormatter.appendFixed(bld, v0, 3).append(' ') ;
+                DoubleFormatter.appendFixed(bld, v1, 3).append(' ') ;
+                DoubleFormatter.appendFixed(bld, v2, 1) ;
+                break ;
+
+            case kNamedTranslation2d:
+                DoubleFormatter.appendFixed(bld, v0, 3).append(" Y: ") ;
+                DoubleFormatter.appendFixed(bld, v1, 3) ;
+                break ;
+
+            case kNamedTranslation3d:
+                DoubleFormatter.appendFixed(bld, v0, 3).append(" Y: ") ;
+                DoubleFormatter.appendFixed(bld, v1, 3).append(" Z: ") ;
+                DoubleFormatter.appendFixed(bld, v2, 3) ;
+                break ;
+        }
+    }
+
+    private int next() {
+        if (count_ == kinds_.length) {
+            int size = kinds_.length * 2 ;
+            kinds_ = java.util.Arrays.copyOf(kinds_, size) ;
+            names_ = java.util.Arrays.copyOf(names_, size) ;
+            values_ = java.util.Arrays.copyOf(values_, size * 3) ;
+            longs_ = java.util.Arrays.copyOf(longs_, size) ;
+            strings_ = java.util.Arrays.copyOf(strings_, size) ;
+        }
+
+        return count_++ ;
+    }
+}
@@ -0,0 +1,391 @@
+package org.xero1425.misc;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/// \file
+
+/// \brief This class decodes a binary log file written by MessageDestinationBinary.
+///
+/// The file can be turned back into the same text the MessageLogger writes to a text log file, or into
+/// CSV with one row for each named field of each message.  The CSV columns are time, thread, type,
+/// subsystem, name, and value.  The decoder can be run from the command line.
+///
+///     java -cp build/libs/<robot jar> org.xero1425.misc.MessageLogDecoder [--csv] logfile [outfile]
+///
+/// If no output file is given, the decoded log is written to standard output.
+///
+/// A log file that ends in the middle of a record, as happens when the robot loses power while the log is
+/// being written, is decoded up to the last complete record.  The incomplete record is skipped, and
+/// isTruncated() returns true.
+public class MessageLogDecoder
+{
+    // Thrown when a record runs past the end of the file
+    private static class TruncatedException extends IOException {
+        static final long serialVersionUID = 1 ;
+
+        public TruncatedException(int offset) {
+            super("binary log file is truncated at offset " + offset) ;
+        }
+    }
+
+    // The buffer holding the binary log file
+    private ByteBuffer data_ ;
+
+    // The field names, indexed by name ID
+    private List<String> names_ ;
+
+    // The subsystem names, by subsystem ID
+    private Map<Integer, String> subsystems_ ;
+
+    // The fields of the message being decoded
+    private MessageFields fields_ ;
+
+    // Builds the text of each message
+    private StringBuilder text_ ;
+
+    // Builds each output line
+    private StringBuilder line_ ;
+
+    // The offset of the incomplete record at the end of the file, or -1 if the file is complete
+    private int truncated_ ;
+
+    /// \brief create a decoder for the binary log file given
+    /// \param filename the name of the binary log file
+    public MessageLogDecoder(String filename) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()) ;
+            data_ = buf ;
+        }
+
+        names_ = new ArrayList<String>() ;
+        subsystems_ = new HashMap<Integer, String>() ;
+        fields_ = new MessageFields(32) ;
+        text_ = new StringBuilder(256) ;
+        line_ = new StringBuilder(256) ;
+        truncated_ = -1 ;
+    }
+
+    /// \brief returns true if the last decode stopped at an incomplete record at the end of the file
+    /// \returns true if the last decode stopped at an incomplete record at the end of the file
+    public boolean isTruncated() {
+        return truncated_ != -1 ;
+    }
+
+    /// \brief returns the offset of the incomplete record at the end of the file
+    /// \returns the offset of the incomplete record, or -1 if the file is complete
+    public int getTruncatedOffset() {
+        return truncated_ ;
+    }
+
+    /// \brief decode the log file as text, the same text the MessageLogger writes to a text log file
+    /// \param out the writer for the text
+    public void decodeText(Writer out) throws IOException {
+        decode(out, false) ;
+    }
+
+    /// \brief decode the log file as CSV with one row for each named field
+    /// \param out the writer for the CSV data
+    public void decodeCSV(Writer out) throws IOException {
+        out.write("time,thread,type,subsystem,name,value\n") ;
+        decode(out, true) ;
+    }
+
+    private void decode(Writer out, boolean csv) throws IOException {
+        readHeader() ;
+
+        while (data_.hasRemaining()) {
+            int start = data_.position() ;
+            try {
+                decodeRecord(out, csv) ;
+            }
+            catch(TruncatedException ex) {
+                //
+                // A record is only written out once all of it is read, so everything before the
+                // incomplete record has been decoded
+                //
+                truncated_ = start ;
+                if (!csv)
+                    out.write("*** binary log file is truncated, the incomplete record at offset " + start + " is skipped\n") ;
+                break ;
+            }
+        }
+
+        out.flush() ;
+    }
+
+    private void decodeRecord(Writer out, boolean csv) throws IOException {
+        byte tag = data_.get() ;
+
+        if (tag == MessageDestinationBinary.kTagSubsystem) {
+            require(Short.BYTES) ;
+            int id = data_.getShort() & 0xFFFF ;
+            subsystems_.put(id, getString()) ;
+        }
+        else if (tag == MessageDestinationBinary.kTagName) {
+            require(Short.BYTES) ;
+            int id = data_.getShort() & 0xFFFF ;
+            String name = getString() ;
+            while (names_.size() <= id)
+                names_.add(null) ;
+            names_.set(id, name) ;
+        }
+        else if (tag == MessageDestinationBinary.kTagDropped) {
+            require(Long.BYTES) ;
+            long count = data_.getLong() ;
+            if (!csv)
+                out.write("*** message logger dropped " + count + " messages\n") ;
+        }
+        else if (tag == MessageDestinationBinary.kTagMessage) {
+            decodeMessage(out, csv) ;
+        }
+        else {
+            throw new IOException("binary log file has an invalid record tag " + tag + " at offset " + (data_.position() - 1)) ;
+        }
+    }
+
+    private void decodeMessage(Writer out, boolean csv) throws IOException {
+        require(Double.BYTES + Long.BYTES + Byte.BYTES + Short.BYTES + Short.BYTES) ;
+        double time = data_.getDouble() ;
+        long thread = data_.getLong() ;
+        int typeidx = data_.get() ;
+        int subsystem = data_.getShort() & 0xFFFF ;
+        int count = data_.getShort() & 0xFFFF ;
+
+        if (typeidx < 0 || typeidx >= MessageType.values().length)
+            throw new IOException("binary log file has an invalid message type " + typeidx) ;
+
+        MessageType type = MessageType.values()[typeidx] ;
+        String subname = (subsystem == MessageLogger.NOSUBSYSTEM) ? "global" : subsystems_.get(subsystem) ;
+
+        fields_.clear() ;
+        for(int i = 0 ; i < count ; i++) {
+            require(Byte.BYTES) ;
+            int kind = data_.get() ;
+            String name = null ;
+
+            if (MessageFields.isNamed(kind)) {
+                require(Short.BYTES) ;
+                int id = data_.getShort() & 0xFFFF ;
+                if (id == MessageDestinationBinary.kInlineName)
+                    name = getString() ;
+                else if (id < names_.size())
+                    name = names_.get(id) ;
+            }
+
+            if (MessageFields.hasLong(kind)) {
+                require(Long.BYTES) ;
+                fields_.add(kind, name, data_.getLong()) ;
+            }
+            else if (MessageFields.hasString(kind)) {
+                fields_.add(kind, name, getString()) ;
+            }
+            else {
+                double[] v = new double[3] ;
+                int n = MessageFields.valueCount(kind) ;
+                if (n == 0)
+                    throw new IOException("binary log file has an invalid field kind " + kind) ;
+
+                require(n * Double.BYTES) ;
+                for(int j = 0 ; j < n ; j++)
+                    v[j] = data_.getDouble() ;
+                fields_.add(kind, name, v[0], v[1], v[2]) ;
+            }
+        }
+
+        if (csv)
+            writeCSV(out, time, thread, type, subname == null ? "missing(" + subsystem + ")" : subname) ;
+        else
+            writeText(out, time, thread, type, subsystem, subname) ;
+    }
+
+    private void writeText(Writer out, double time, long thread, MessageType type, int subsystem, String subname) throws IOException {
+        text_.setLength(0) ;
+        fields_.appendText(text_) ;
+
+        int start = 0 ;
+        int prefix = 0 ;
+        boolean first = true ;
+
+        while (first || start < text_.length()) {
+            int end = start ;
+            while (end < text_.length() && text_.charAt(end) != '\n')
+                end++ ;
+
+            line_.setLength(0) ;
+            if (first) {
+                prefix = MessageLogger.appendPrefix(line_, time, thread, type) ;
+            }
+            else {
+                for(int i = 0 ; i < prefix ; i++)
+                    line_.append(' ') ;
+            }
+
+            MessageLogger.appendSubsystem(line_, subsystem, subname) ;
+            line_.append(text_, start, end) ;
+            line_.append('\n') ;
+            out.append(line_) ;
+
+            first = false ;
+            start = end + 1 ;
+        }
+    }
+
+    private void writeCSV(Writer out, double time, long thread, MessageType type, String subname) throws IOException {
+        for(int i = 0 ; i < fields_.size() ; i++) {
+            if (!MessageFields.isNamed(fields_.getKind(i)))
+                continue ;
+
+            line_.setLength(0) ;
+            if (!Double.isNaN(time))
+                DoubleFormatter.appendFixed(line_, time, 4) ;
+            line_.append(',').append(thread) ;
+            line_.append(',').append(type.toString()) ;
+            line_.append(',') ;
+            appendCSVString(line_, subname) ;
+            line_.append(',') ;
+            appendCSVString(line_, fields_.getName(i)) ;
+            line_.append(',') ;
+
+            text_.setLength(0) ;
+            fields_.appendValue(text_, i) ;
+            appendCSVString(line_, text_.toString()) ;
+            line_.append('\n') ;
+            out.append(line_) ;
+        }
+    }
+
+    private static void appendCSVString(StringBuilder bld, String str) {
+        if (str == null)
+            return ;
+
+        if (str.indexOf(',') == -1 && str.indexOf('"') == -1 && str.indexOf('\n') == -1) {
+            bld.append(str) ;
+        }
+        else {
+            bld.append('"').append(str.replace("\"", "\"\"")).append('"') ;
+        }
+    }
+
+    private void readHeader() throws IOException {
+        data_.rewind() ;
+
+        for(int i = 0 ; i < MessageDestinationBinary.kMagic.length ; i++) {
+            if (!data_.hasRemaining() || data_.get() != MessageDestinationBinary.kMagic[i])
+                throw new IOException("file is not a binary log file") ;
+        }
+
+        require(Short.BYTES) ;
+        short version = data_.getShort() ;
+        if (version != MessageDestinationBinary.kVersion)
+            throw new IOException("binary log file version " + version + " is not supported") ;
+
+        names_.clear() ;
+        subsystems_.clear() ;
+        truncated_ = -1 ;
+    }
+
+    //
+    // Make sure the bytes about to be read are in the file
+    //
+    private void require(int bytes) throws TruncatedException {
+        if (data_.remaining() < bytes)
+            throw new TruncatedException(data_.position()) ;
+    }
+
+    private String getString() throws TruncatedException {
+        require(Short.BYTES) ;
+        int len = data_.getShort() & 0xFFFF ;
+        require(len) ;
+        byte[] bytes = new byte[len] ;
+        data_.get(bytes) ;
+        return new String(bytes, StandardCharsets.UTF_8) ;
+    }
+
+    /// \brief decode a binary log file from the command line
+    /// \param args the command line arguments, [--csv] logfile [outfile]
+    public static void main(String[] args) {
+        boolean csv = false ;
+        String input = null ;
+        String output = null ;
+
+        for(String arg : args) {
+            if (arg.equals("--csv")) {
+                csv = true ;
+            }
+            else if (input == null) {
+                input = arg ;
+            }
+            else if (output == null) {
+                output = arg ;
+            }
+            else {
+                System.err.println("unknown command line argument '" + arg + "'") ;
+                System.exit(2) ;
+            }
+        }
+
+        if (input == null) {
+            System.err.println("usage: MessageLogDecoder [--csv] logfile [outfile]") ;
+            System.exit(2) ;
+        }
+
+        int status = 0 ;
+        Writer out = null ;
+
+        try {
+            MessageLogDecoder decoder = new MessageLogDecoder(input) ;
+
+            if (output == null)
+                out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) ;
+            else
+                out = Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8) ;
+
+            if (csv)
+                decoder.decodeCSV(out) ;
+            else
+                decoder.decodeText(out) ;
+
+            if (decoder.isTruncated()) {
+                System.err.println("warning: log file '" + input + "' is truncated, decoded up to offset " + decoder.getTruncatedOffset()) ;
+            }
+        }
+        catch(Exception ex) {
+            System.err.println("cannot decode log file '" + input + "' - " + ex.getMessage()) ;
+            status = 1 ;
+        }
+        finally {
+            //
+            // Write out whatever was decoded, even if the decode failed part way
+            //
+            if (out != null) {
+                try {
+                    if (output != null)
+                        out.close() ;
+                    else
+                        out.flush() ;
+                }
+                catch(IOException ex) {
+                    System.err.println("cannot write decoded log file - " + ex.getMessage()) ;
+                    status = 1 ;
+                }
+            }
+        }
+
+        if (status != 0)
+            System.exit(status) ;
+    }
+}
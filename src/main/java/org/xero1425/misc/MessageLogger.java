@@ -1,9 +1,13 @@
 
 package org.xero1425.misc;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -11,7 +15,6 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.geometry.Translation3d;
 
 import java.util.List;
-import java.text.DecimalFormat;
 import java.util.ArrayList ;
 
 /// \file
@@ -32,12 +35,19 @@ import java.util.ArrayList ;
 /// The MessageLogger is thread safe and can be used with multiple threads concurrently.
 public final class MessageLogger
 {
-    // The per thread data for the logger
-    private Map<Long, ThreadData> per_thread_data_ ;
+    // The per thread data for the logger, each thread that logs messages gets its own copy
+    private final ThreadLocal<ThreadData> per_thread_data_ ;
 
-    // The set of destinations for messages
+    // The set of destinations for messages.  The destination lists are copied when they change, so
+    // messages can be logged from other threads while destinations are added and removed.
     private List<MessageDestination> destinations_ ;
 
+    // The destinations that display the text of messages
+    private List<MessageDestination> text_destinations_ ;
+
+    // The destinations that store the typed fields of messages
+    private List<MessageRecordDestination> record_destinations_ ;
+
     // The set of message types enabled
     private List<MessageType> enabled_types_ ;
 
@@ -50,35 +60,42 @@ public final class MessageLogger
     // The list of enabled subsytems
     private List<Integer> enabled_subsystems_ ;
 
+    // For each subsystem ID, a bit mask of the enabled message types.  This is computed from
+    // enabled_types_ and enabled_subsystems_ whenever they change so that checking if a message
+    // is enabled is a single array lookup.  The array is replaced, never modified, when it changes.
+    private volatile int[] enabled_masks_ ;
+
     // This is the number for the next subsystem registered
     private int subsystem_index_ ;
 
-    // The lock for the serial number
-    private Object lock_ ;
-
     // the list of subsystem to be enabled if ethey are created
     private List<String> to_be_enabled_ ;
 
-    // the format for the time value
-    private DecimalFormat format_ ;
-
     // Serial number for each message
-    static int global_serial_ = 1 ;
+    static final AtomicInteger global_serial_ = new AtomicInteger(1) ;
 
     // Number of error messages printed
-    private int error_count_ ;
+    private final AtomicInteger error_count_ ;
 
     /// \brief the subsystem value that means there is no subsystem
     public static final int NOSUBSYSTEM = 0 ;
 
+    // The initial size of the per thread message builders
+    private static final int kInitialMessageSize = 256 ;
+
+    // The initial number of fields in the per thread message fields
+    private static final int kInitialFieldCount = 32 ;
+
     /// \brief Create a new message logger object
     public MessageLogger()
     {
-        subsystems_ = new HashMap<Integer, String>() ;
+        subsystems_ = new ConcurrentHashMap<Integer, String>() ;
         subsystem_index_ = 1 ;
         time_src_ = null ;
-        destinations_ = new ArrayList<MessageDestination>() ;
-        per_thread_data_ = new HashMap<Long, ThreadData>() ;
+        destinations_ = new CopyOnWriteArrayList<MessageDestination>() ;
+        text_destinations_ = new CopyOnWriteArrayList<MessageDestination>() ;
+        record_destinations_ = new CopyOnWriteArrayList<MessageRecordDestination>() ;
+        per_thread_data_ = ThreadLocal.withInitial(() -> new ThreadData(Thread.currentThread().getId())) ;
 
         enabled_types_ = new ArrayList<MessageType>() ;
         enabled_types_.add(MessageType.Debug) ;
@@ -89,12 +106,9 @@ public final class MessageLogger
 
         enabled_subsystems_ = new ArrayList<Integer>() ;
         to_be_enabled_ = new ArrayList<String>() ;
+        updateEnabledMasks() ;
 
-        lock_ = new Object() ;
-
-        format_ = new DecimalFormat("000.0000") ;
-
-        error_count_ = 0 ;
+        error_count_ = new AtomicInteger(0) ;
     }
 
     public void logStackTrace(StackTraceElement [] trace) {
@@ -109,13 +123,13 @@ public final class MessageLogger
     /// \brief returns the total error count
     /// \returns the total error count
     public int getErrorMessageCount() {
-        return error_count_ ;
+        return error_count_.get() ;
     }
 
     /// \brief register a new subsystem with the message logger
     /// \param name the name of the subsystem
     /// \returns the message ID handle for messages
-    public int registerSubsystem(final String name) {
+    public synchronized int registerSubsystem(final String name) {
         final int index = subsystem_index_++;
         subsystems_.put(index, name);
 
@@ -123,6 +137,7 @@ public final class MessageLogger
             enableLoggerID(index) ;
             to_be_enabled_.remove(name) ;
         }
+        updateEnabledMasks() ;
         return index;
     }
 
@@ -135,12 +150,26 @@ public final class MessageLogger
     /// \brief clear all message destinations
     public void clear() {
         destinations_.clear();
+        text_destinations_.clear();
+        record_destinations_.clear();
     }
 
     /// \brief add a new message destination
     /// \param d the new message destination
     public void addDestination(final MessageDestination d) {
         destinations_.add(d);
+        if (d instanceof MessageRecordDestination)
+            record_destinations_.add((MessageRecordDestination)d);
+        else
+            text_destinations_.add(d);
+    }
+
+    /// \brief remove a message destination
+    /// \param d the message destination to remove
+    public void removeDestination(final MessageDestination d) {
+        destinations_.remove(d);
+        record_destinations_.remove(d);
+        text_destinations_.remove(d);
     }
 
     /// \brief enable a given message type
@@ -148,6 +177,7 @@ public final class MessageLogger
     public void enableMessageType(final MessageType mt) {
         if (!enabled_types_.contains(mt))
             enabled_types_.add(mt);
+        updateEnabledMasks() ;
     }
 
     /// \brief disable a given message type
@@ -155,6 +185,7 @@ public final class MessageLogger
     public void disableMessageType(final MessageType mt) {
         if (enabled_types_.contains(mt))
             enabled_types_.remove(mt);
+        updateEnabledMasks() ;
     }
 
     /// \brief returns true if a given message type is enabled
@@ -168,13 +199,15 @@ public final class MessageLogger
     private void enableLoggerID(final int handle) {
         if (!enabled_subsystems_.contains(handle))
             enabled_subsystems_.add(handle);
+        updateEnabledMasks() ;
     }
 
     /// \brief disable messages given a logger id
     /// \param handle the handle for a given subsystem
     public void disableLoggerID(final int handle) {
         if (enabled_subsystems_.contains(handle))
-            enabled_subsystems_.remove(handle);
+            enabled_subsystems_.remove(Integer.valueOf(handle));
+        updateEnabledMasks() ;
     }
 
     /// \brief returns true if the given logger ID is enabled
@@ -184,6 +217,17 @@ public final class MessageLogger
         return enabled_subsystems_.contains(handle);
     }
 
+    /// \brief returns true if messages of the given type from the given subsystem are displayed.  This
+    /// is a single array lookup and can be used to skip computing the contents of a message that would
+    /// not be displayed.
+    /// \param mtype the type of the message
+    /// \param subsystem the module or subsystem for the message
+    /// \returns true if messages of the given type from the given subsystem are displayed
+    public boolean isEnabled(final MessageType mtype, final int subsystem) {
+        final int[] masks = enabled_masks_ ;
+        return subsystem >= 0 && subsystem < masks.length && (masks[subsystem] & (1 << mtype.ordinal())) != 0 ;
+    }
+
     /// \brief enable messages for a given subsystem
     /// \param name the name of the subsystem to enable
     /// \returns true if the messages are enabled sucessfully
@@ -256,21 +300,49 @@ public final class MessageLogger
             // We have a nested message, someone forgot to close off the current
             // message.
             //
-            per.message_.append(" DID NOT CALL ENDMESSAGE, serial = ") ;
-            per.message_.append(per.serial_) ;
+            per.fields_.add(MessageFields.kText, null, " DID NOT CALL ENDMESSAGE, serial = ") ;
+            per.fields_.add(MessageFields.kLong, null, (long)per.serial_) ;
             endMessage();
         }
 
         per.serial_ = getSerial() ;
         per.in_message_ = true;
-        per.message_ = new StringBuilder(80) ;
+        per.fields_.clear() ;
         per.type_ = mtype;
         per.subsystem_ = subsystem;
-        per.enabled_ = enabled_types_.contains(per.type_) && subsystemEnabled(per.subsystem_) ;
+        per.enabled_ = isEnabled(mtype, subsystem) ;
 
         return this;
     }
 
+    /// \brief log a message whose contents are only computed if the message is enabled.  The message
+    /// is started, the body is called to add the contents, and the message is ended.  If the message is not
+    /// enabled, the body is never called.
+    /// \param mtype the type of message to log
+    /// \param subsystem the module or subsystem that is displaying the message
+    /// \param body called with this message logger to add the contents of the message
+    public void log(final MessageType mtype, final int subsystem, final Consumer<MessageLogger> body) {
+        if (!isEnabled(mtype, subsystem) && mtype != MessageType.Fatal)
+            return ;
+
+        startMessage(mtype, subsystem) ;
+        body.accept(this) ;
+        endMessage() ;
+    }
+
+    /// \brief log a message whose text is only computed if the message is enabled
+    /// \param mtype the type of message to log
+    /// \param subsystem the module or subsystem that is displaying the message
+    /// \param text supplies the text of the message, only called if the message is enabled
+    public void log(final MessageType mtype, final int subsystem, final Supplier<String> text) {
+        if (!isEnabled(mtype, subsystem) && mtype != MessageType.Fatal)
+            return ;
+
+        startMessage(mtype, subsystem) ;
+        add(text.get()) ;
+        endMessage() ;
+    }
+
     /// \brief start a new message with no subsystem
     /// \param mtype the type of message to start
     /// \returns a reference to the message logger object
@@ -280,57 +352,92 @@ public final class MessageLogger
 
     private void outputMessage(final ThreadData per)
     {
-        String timestr ;
-        String threadstr ;
-        String typestr ;
-        String substr ;
-
-        if (time_src_ == null) {
-            timestr = "???.????";
-        } else {
-            timestr = format_.format(time_src_.getTime()) ;
+        final double time = (time_src_ == null) ? Double.NaN : time_src_.getTime() ;
+        final String subname = (per.subsystem_ == NOSUBSYSTEM) ? "global" : subsystems_.get(per.subsystem_) ;
+
+        //
+        // Destinations that store the typed fields get them directly, without the text
+        // of the message ever being produced
+        //
+        for (final MessageRecordDestination dest : record_destinations_) {
+            dest.displayRecord(time, per.id_, per.type_, per.subsystem_, subname, per.fields_) ;
         }
 
-        threadstr = ":" + Long.toString(per.id_) ;
-
-        typestr = ": " + per.type_.toString() + ": "  ;
+        if (text_destinations_.size() == 0)
+            return ;
 
-        if (per.subsystem_ == 0)
-        {
-            substr = "global: ";
-        }
-        else
-        {
-            String subname = subsystems_.get(per.subsystem_) ;
-            if (subname != null)
-                substr = subname + ": " ;
-            else
-                substr = "missing(" + per.subsystem_ + "): " ;
-        }
+        //
+        // Each line is built in a per thread builder that is reused from message to message so
+        // that the common case of a single line message does not allocate any memory
+        //
+        final StringBuilder line = per.line_ ;
+        final StringBuilder text = per.message_ ;
 
-        StringBuilder bld = new StringBuilder() ;
-        for(int i = 0 ; i < timestr.length() + typestr.length() + threadstr.length() ; i++)
-            bld.append(' ') ;
-        String spaces = bld.toString() ;
+        text.setLength(0) ;
+        per.fields_.appendText(text) ;
 
-        String[] lines = per.message_.toString().split("\n") ;
+        int start = 0 ;
+        int prefix = 0 ;
         boolean first = true ;
-        for(String line : lines) {
-            String msg ;
 
-            if (first)
-                msg = timestr + threadstr + typestr + substr + line ;
-            else
-                msg = spaces + substr + line ;
+        while (first || start < text.length()) {
+            int end = start ;
+            while (end < text.length() && text.charAt(end) != '\n')
+                end++ ;
 
-            for (final MessageDestination dest : destinations_) {
-                dest.displayMessage(per.type_, per.subsystem_, msg);
+            line.setLength(0) ;
+            if (first) {
+                prefix = appendPrefix(line, time, per.id_, per.type_) ;
+            }
+            else {
+                for(int i = 0 ; i < prefix ; i++)
+                    line.append(' ') ;
+            }
+
+            appendSubsystem(line, per.subsystem_, subname) ;
+            line.append(text, start, end) ;
+
+            for (final MessageDestination dest : text_destinations_) {
+                dest.displayMessage(per.type_, per.subsystem_, line);
             }
 
             first = false ;
+            start = end + 1 ;
         }
     }
 
+    /// \brief append the time, thread, and type that start the first line of a message
+    /// \param line the builder for the line
+    /// \param time the time of the message, or NaN if there is no time source
+    /// \param thread the ID of the thread that logged the message
+    /// \param type the type of the message
+    /// \returns the number of characters appended
+    static int appendPrefix(final StringBuilder line, final double time, final long thread, final MessageType type) {
+        int start = line.length() ;
+
+        if (Double.isNaN(time)) {
+            line.append("???.????") ;
+        } else {
+            DoubleFormatter.appendFixed(line, time, 4, 3) ;
+        }
+
+        line.append(':').append(thread) ;
+        line.append(": ").append(type.toString()).append(": ") ;
+
+        return line.length() - start ;
+    }
+
+    /// \brief append the subsystem name that starts the text of each line of a message
+    /// \param line the builder for the line
+    /// \param subsystem the subsystem ID for the message
+    /// \param subname the name of the subsystem, or null if the subsystem ID is not registered
+    static void appendSubsystem(final StringBuilder line, final int subsystem, final String subname) {
+        if (subname != null)
+            line.append(subname).append(": ") ;
+        else
+            line.append("missing(").append(subsystem).append("): ") ;
+    }
+
     /// \brief ends the current message
     /// This method ends the current message and displays the message if the filter tests
     /// allow the message to be displayed.  The message is displayed by passing to each of
@@ -341,10 +448,10 @@ public final class MessageLogger
         if (!per.in_message_)
             return;
 
-        if (per.message_.length() > 0) {
-            if (enabled_types_.contains(per.type_) && subsystemEnabled(per.subsystem_)) {
+        if (per.fields_.size() > 0) {
+            if (per.enabled_) {
                 if (per.type_ == MessageType.Error)
-                    error_count_++ ;
+                    error_count_.incrementAndGet() ;
                 outputMessage(per) ;
             }
         }
@@ -352,11 +459,12 @@ public final class MessageLogger
         if (per.type_ == MessageType.Fatal) {
             for (final MessageDestination dest : destinations_) {                
                 dest.displayMessage(per.type_, per.subsystem_, "fatal error occurred - code aborting") ;
+                dest.flush() ;
             }
             System.exit(-2);
         }
 
-        per.message_ = null ;
+        per.fields_.clear() ;
         per.subsystem_ = 0;
         per.in_message_ = false;
     }
@@ -367,17 +475,14 @@ public final class MessageLogger
     public MessageLogger add(final String str) {
         final ThreadData per = getPerThreadData();
         if (per.enabled_ && per.in_message_)
-            per.message_.append(str) ;
+            per.fields_.add(MessageFields.kText, null, str) ;
         return this;
     }
 
     public MessageLogger add (final Pose2d pose) {
         final ThreadData per = getPerThreadData();
-        per.message_.append(String.format(java.util.Locale.US, "%.3f", pose.getX()));
-        per.message_.append(" ") ;
-        per.message_.append(String.format(java.util.Locale.US, "%.3f", pose.getY()));
-        per.message_.append(" ") ;
-        per.message_.append(String.format(java.util.Locale.US, "%.1f", pose.getRotation().getDegrees()));
+        if (per.enabled_ && per.in_message_)
+            per.fields_.add(MessageFields.kPose, null, pose.getX(), pose.getY(), pose.getRotation().getDegrees()) ;
 
         return this ;
     }
@@ -388,36 +493,24 @@ public final class MessageLogger
     /// \returns the MessageLogger object
     public MessageLogger add(final String name, final double value) {
         final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            per.message_.append(String.format(java.util.Locale.US, "%.4g", value)) ;
-        }
+        if (per.enabled_&& per.in_message_)
+            per.fields_.add(MessageFields.kNamedDouble, name, value) ;
 
         return this;        
     }
 
     public MessageLogger add(final String name, final double value, String fmt) {
         final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            per.message_.append(String.format(java.util.Locale.US, fmt, value)) ;
-        }
+        if (per.enabled_&& per.in_message_)
+            per.fields_.add(MessageFields.kNamedText, name, String.format(java.util.Locale.US, fmt, value)) ;
 
         return this;        
     }
 
     public MessageLogger add(final String name, final Rotation2d value) {
         final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            per.message_.append(String.format(java.util.Locale.US, "%.4g deg", value.getDegrees()));
-        }
+        if (per.enabled_&& per.in_message_)
+            per.fields_.add(MessageFields.kNamedRotation, name, value.getDegrees()) ;
 
         return this;        
     }
@@ -428,12 +521,8 @@ public final class MessageLogger
     /// \returns the MessageLogger object
     public MessageLogger add(final String name, final float value) {
         final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            per.message_.append(String.format(java.util.Locale.US, "%.4g", value)) ;
-        }
+        if (per.enabled_&& per.in_message_)
+            per.fields_.add(MessageFields.kNamedDouble, name, (double)value) ;
 
         return this;        
     }
@@ -444,12 +533,8 @@ public final class MessageLogger
     /// \returns the MessageLogger object
     public MessageLogger add(final String name, final int value) {
         final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            per.message_.append(value) ;
-        }
+        if (per.enabled_&& per.in_message_)
+            per.fields_.add(MessageFields.kNamedLong, name, (long)value) ;
 
         return this;        
     }  
@@ -460,12 +545,8 @@ public final class MessageLogger
     /// \returns the MessageLogger object    
     public MessageLogger add(final String name, final boolean value) {
         final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            per.message_.append(value) ;
-        }
+        if (per.enabled_&& per.in_message_)
+            per.fields_.add(MessageFields.kNamedBool, name, value ? 1L : 0L) ;
 
         return this;        
     }  
@@ -476,16 +557,8 @@ public final class MessageLogger
     /// \returns the MessageLogger object    
     public MessageLogger add(final String name, final String value, boolean quotes) {
         final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            if (quotes)
-                per.message_.append("'");
-            per.message_.append(value) ;
-            if (quotes)
-                per.message_.append("'");            
-        }
+        if (per.enabled_&& per.in_message_)
+            per.fields_.add(quotes ? MessageFields.kNamedQuoted : MessageFields.kNamedString, name, value) ;
 
         return this;        
     }     
@@ -496,44 +569,25 @@ public final class MessageLogger
 
     public MessageLogger add(final String name, final Pose2d pose) {
         final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = ") ;
-            per.message_.append(String.format(java.util.Locale.US, "%.3f", pose.getX()));
-            per.message_.append(" ") ;
-            per.message_.append(String.format(java.util.Locale.US, "%.3f", pose.getY()));
-            per.message_.append(" ") ;
-            per.message_.append(String.format(java.util.Locale.US, "%.1f", pose.getRotation().getDegrees()));
-        }
+        if (per.enabled_&& per.in_message_)
+            per.fields_.add(MessageFields.kNamedPose, name, pose.getX(), pose.getY(), pose.getRotation().getDegrees()) ;
+
         return this;
     }
 
     public MessageLogger add(final String name, final Translation2d t) {
         final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = X: ") ;
-            per.message_.append(String.format(java.util.Locale.US, "%.3f", t.getX()));
-            per.message_.append(" Y: ") ;
-            per.message_.append(String.format(java.util.Locale.US, "%.3f", t.getY()));
-        }
+        if (per.enabled_&& per.in_message_)
+            per.fields_.add(MessageFields.kNamedTranslation2d, name, t.getX(), t.getY(), 0.0) ;
+
         return this;
     }
 
     public MessageLogger add(final String name, final Translation3d t) {
         final ThreadData per = getPerThreadData();
-        if (per.enabled_&& per.in_message_) {
-            per.message_.append(" ") ;
-            per.message_.append(name) ;
-            per.message_.append(" = X: ") ;
-            per.message_.append(String.format(java.util.Locale.US, "%.3f", t.getX()));
-            per.message_.append(" Y: ") ;
-            per.message_.append(String.format(java.util.Locale.US, "%.3f", t.getY()));
-            per.message_.append(" Z: ") ;
-            per.message_.append(String.format(java.util.Locale.US, "%.3f", t.getZ()));
-        }
+        if (per.enabled_&& per.in_message_)
+            per.fields_.add(MessageFields.kNamedTranslation3d, name, t.getX(), t.getY(), t.getZ()) ;
+
         return this;
     }
 
@@ -543,11 +597,7 @@ public final class MessageLogger
     public MessageLogger addQuoted(final String str) {
         final ThreadData per = getPerThreadData();
         if (per.enabled_&& per.in_message_)
-        {
-            per.message_.append("'") ;
-            per.message_.append(str) ;
-            per.message_.append("'") ;
-        }
+            per.fields_.add(MessageFields.kQuoted, null, str) ;
 
         return this;
     }    
@@ -558,7 +608,7 @@ public final class MessageLogger
     public MessageLogger add(final char ch) {
         final ThreadData per = getPerThreadData();
         if (per.enabled_&& per.in_message_)
-            per.message_.append(ch) ;
+            per.fields_.add(MessageFields.kChar, null, (long)ch) ;
 
         return this;        
     }
@@ -569,7 +619,7 @@ public final class MessageLogger
     public MessageLogger add(final int value) {
         final ThreadData per = getPerThreadData();
         if (per.enabled_&& per.in_message_)
-            per.message_.append(value) ;
+            per.fields_.add(MessageFields.kLong, null, (long)value) ;
 
         return this;
     }
@@ -580,7 +630,7 @@ public final class MessageLogger
     public MessageLogger add(final OptionalInt value) {
         final ThreadData per = getPerThreadData();
         if (per.enabled_&& per.in_message_)
-            per.message_.append(value.toString()) ;
+            per.fields_.add(MessageFields.kText, null, value.toString()) ;
 
         return this;
     }
@@ -591,7 +641,7 @@ public final class MessageLogger
     public MessageLogger add(final long value) {
         final ThreadData per = getPerThreadData();
         if (per.enabled_&& per.in_message_)
-            per.message_.append(value) ;
+            per.fields_.add(MessageFields.kLong, null, value) ;
 
         return this;
     }
@@ -602,7 +652,7 @@ public final class MessageLogger
     public MessageLogger add(final boolean value) {
         final ThreadData per = getPerThreadData();
         if (per.enabled_&& per.in_message_)
-            per.message_.append(value) ;
+            per.fields_.add(MessageFields.kBool, null, value ? 1L : 0L) ;
 
         return this;
     }
@@ -613,7 +663,7 @@ public final class MessageLogger
     public MessageLogger add(final double value) {
         final ThreadData per = getPerThreadData();
         if (per.enabled_&& per.in_message_)
-            per.message_.append(String.format(java.util.Locale.US, "%.4f", value)) ;
+            per.fields_.add(MessageFields.kDouble, null, value) ;
 
         return this;
     }
@@ -624,48 +674,51 @@ public final class MessageLogger
     public MessageLogger add(final float value) {
         final ThreadData per = getPerThreadData();
         if (per.enabled_&& per.in_message_)
-            per.message_.append(String.format(java.util.Locale.US, "%.4f", value)) ;
+            per.fields_.add(MessageFields.kDouble, null, (double)value) ;
 
         return this;
     }
 
-    static private /* synchronized */ int getSerial() {
-        return global_serial_++ ;
+    static private int getSerial() {
+        return global_serial_.getAndIncrement() ;
     }
 
-    private boolean subsystemEnabled(final int sub) {
-        return sub == NOSUBSYSTEM || enabled_subsystems_.contains(sub);
-    }
+    private void updateEnabledMasks() {
+        int types = 0 ;
+        for(MessageType mt : enabled_types_)
+            types |= (1 << mt.ordinal()) ;
 
-    private ThreadData getPerThreadData() {
-        ThreadData per = null;
-
-        synchronized(lock_) {
-            final long id = Thread.currentThread().getId();
-            if (per_thread_data_.containsKey(id))
-            {
-                per = per_thread_data_.get(id) ;
-            }
-            else
-            {
-                per = new ThreadData() ;
-                per.id_ = id ;
-                per.in_message_ = false ;
-                per_thread_data_.put(id, per) ;
-            }
+        final int[] masks = new int[subsystem_index_] ;
+        for(int i = 0 ; i < masks.length ; i++) {
+            if (i == NOSUBSYSTEM || enabled_subsystems_.contains(i))
+                masks[i] = types ;
         }
 
-        return per ;
+        enabled_masks_ = masks ;
     }
 
-    private class ThreadData
+    private ThreadData getPerThreadData() {
+        return per_thread_data_.get() ;
+    }
+
+    private static class ThreadData
     {
-        public long id_ ;
+        public final long id_ ;
         public boolean in_message_ ;
         public boolean enabled_ ;
         public MessageType type_ ;
         public int subsystem_ ;
-        public StringBuilder message_ ;
+        public final StringBuilder message_ ;
+        public final StringBuilder line_ ;
+        public final MessageFields fields_ ;
         public int serial_ ;
+
+        public ThreadData(long id) {
+            id_ = id ;
+            in_message_ = false ;
+            message_ = new StringBuilder(kInitialMessageSize) ;
+            line_ = new StringBuilder(kInitialMessageSize) ;
+            fields_ = new MessageFields(kInitialFieldCount) ;
+        }
     } ;
 }
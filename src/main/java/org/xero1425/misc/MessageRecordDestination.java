@@ -0,0 +1,16 @@
+package org.xero1425.misc ;
+
+/// \file
+
+/// \brief an interface for message destinations that store the typed fields of each message rather than its text
+public interface MessageRecordDestination extends MessageDestination
+{
+    /// \brief display a message given its typed fields, the fields are only valid during this call
+    /// \param time the time of the message, or NaN if there is no time source
+    /// \param thread the ID of the thread that logged the message
+    /// \param type the message type
+    /// \param subsystem the subsystem ID for the message
+    /// \param subname the name of the subsystem, or null if the subsystem ID is not registered
+    /// \param fields the fields of the message
+    public abstract void displayRecord(double time, long thread, MessageType type, int subsystem, String subname, MessageFields fields) ;
+}
@@ -0,0 +1,179 @@
+package org.xero1425.misc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/// \file
+
+/// \brief A fixed size ring buffer of preallocated message records.
+///
+/// Messages are copied into records that are allocated once when the buffer is created, so
+/// adding a message to the buffer does not allocate memory in the steady state.  The buffer is
+/// lock free.  Each slot carries a sequence number that tells producers when the slot is free and
+/// tells the consumer when the slot is full.  The robot loop is the main producer, but other threads
+/// that log messages can safely add to the buffer as well.  There must be only a single consumer.
+/// If the buffer is full when a message is added, the message is dropped and counted.
+public class MessageRingBuffer
+{
+    /// \brief a single message stored in the ring buffer
+    public static class Record
+    {
+        private MessageType type_ ;
+        private int subsystem_ ;
+        private StringBuilder text_ ;
+
+        private Record(int size) {
+            text_ = new StringBuilder(size) ;
+        }
+
+        /// \brief returns the type of the message
+        /// \returns the type of the message
+        public MessageType getType() {
+            return type_ ;
+        }
+
+        /// \brief returns the subsystem ID for the message
+        /// \returns the subsystem ID for the message
+        public int getSubsystem() {
+            return subsystem_ ;
+        }
+
+        /// \brief returns the text of the message
+        /// \returns the text of the message
+        public CharSequence getText() {
+            return text_ ;
+        }
+    }
+
+    /// \brief the interface for the object that processes records removed from the buffer
+    public interface RecordConsumer
+    {
+        /// \brief process a single record, the record is only valid during this call
+        /// \param rec the record to process
+        public void consume(Record rec) ;
+    }
+
+    // The preallocated records
+    private final Record[] records_ ;
+
+    // The sequence number for each slot in the buffer
+    private final AtomicLongArray sequences_ ;
+
+    // The mask to turn a position into a slot index
+    private final int mask_ ;
+
+    // The next position to be claimed by a producer
+    private final AtomicLong head_ ;
+
+    // The next position to be read by the consumer, only touched by the consumer
+    private long tail_ ;
+
+    // The number of messages added to the buffer
+    private final AtomicLong added_ ;
+
+    // The number of messages dropped because the buffer was full
+    private final AtomicLong dropped_ ;
+
+    /// \brief create a new ring buffer
+    /// \param capacity the number of records in the buffer, rounded up to a power of two
+    /// \param size the initial number of characters allocated for each record
+    public MessageRingBuffer(int capacity, int size) {
+        int cap = 1 ;
+        while (cap < capacity)
+            cap <<= 1 ;
+
+        records_ = new Record[cap] ;
+        sequences_ = new AtomicLongArray(cap) ;
+        for(int i = 0 ; i < cap ; i++) {
+            records_[i] = new Record(size) ;
+            sequences_.set(i, i) ;
+        }
+
+        mask_ = cap - 1 ;
+        head_ = new AtomicLong(0) ;
+        tail_ = 0 ;
+        added_ = new AtomicLong(0) ;
+        dropped_ = new AtomicLong(0) ;
+    }
+
+    /// \brief returns the number of records in the buffer
+    /// \returns the number of records in the buffer
+    public int getCapacity() {
+        return records_.length ;
+    }
+
+    /// \brief returns the number of messages added to the buffer
+    /// \returns the number of messages added to the buffer
+    public long getAddedCount() {
+        return added_.get() ;
+    }
+
+    /// \brief returns the number of messages dropped because the buffer was full
+    /// \returns the number of messages dropped because the buffer was full
+    public long getDroppedCount() {
+        return dropped_.get() ;
+    }
+
+    /// \brief add a message to the buffer
+    /// \param type the type of the message
+    /// \param subsystem the subsystem ID for the message
+    /// \param msg the text of the message
+    /// \returns true if the message was added, false if it was dropped because the buffer was full
+    public boolean offer(final MessageType type, final int subsystem, final CharSequence msg) {
+        long pos = head_.get() ;
+
+        while (true) {
+            int slot = (int)(pos & mask_) ;
+            long diff = sequences_.get(slot) - pos ;
+
+            if (diff == 0) {
+                if (head_.compareAndSet(pos, pos + 1)) {
+                    Record rec = records_[slot] ;
+                    rec.type_ = type ;
+                    rec.subsystem_ = subsystem ;
+                    rec.text_.setLength(0) ;
+                    rec.text_.append(msg) ;
+                    sequences_.lazySet(slot, pos + 1) ;
+                    added_.incrementAndGet() ;
+                    return true ;
+                }
+                pos = head_.get() ;
+            }
+            else if (diff < 0) {
+                //
+                // The consumer has not freed this slot yet, the buffer is full
+                //
+                dropped_.incrementAndGet() ;
+                return false ;
+            }
+            else {
+                //
+                // Another producer claimed this position, try again
+                //
+                pos = head_.get() ;
+            }
+        }
+    }
+
+    /// \brief remove up to max records from the buffer, passing each one to the consumer.  This
+    /// method must only be called from a single thread.
+    /// \param consumer the object that processes each record
+    /// \param max the maximum number of records to remove
+    /// \returns the number of records removed
+    public int drain(final RecordConsumer consumer, final int max) {
+        int count = 0 ;
+
+        while (count < max) {
+            int slot = (int)(tail_ & mask_) ;
+            if (sequences_.get(slot) != tail_ + 1)
+                break ;
+
+            consumer.consume(records_[slot]) ;
+            sequences_.lazySet(slot, tail_ + mask_ + 1) ;
+            tail_++ ;
+            count++ ;
+        }
+
+        return count ;
+    }
+}
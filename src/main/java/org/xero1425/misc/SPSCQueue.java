@@ -0,0 +1,95 @@
+package org.xero1425.misc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/// \file
+
+/// \brief A fixed size, lock free queue for handing objects from exactly one producer thread to exactly
+/// one consumer thread.
+///
+/// The producer only writes the head position and the consumer only writes the tail position, so neither
+/// side ever waits on the other.  Each position is published with an ordered write after the slot is filled
+/// or cleared, so the other side sees the slot contents before it sees the new position.  If the queue is
+/// full when an object is added, the object is dropped and counted.
+public class SPSCQueue<T>
+{
+    // The slots holding the objects in the queue
+    private final AtomicReferenceArray<T> slots_ ;
+
+    // The mask to turn a position into a slot index
+    private final int mask_ ;
+
+    // The next position to be written by the producer, only written by the producer
+    private final AtomicLong head_ ;
+
+    // The next position to be read by the consumer, only written by the consumer
+    private final AtomicLong tail_ ;
+
+    // The number of objects dropped because the queue was full, only written by the producer
+    private volatile long dropped_ ;
+
+    /// \brief create a new queue
+    /// \param capacity the number of objects the queue can hold, rounded up to a power of two
+    public SPSCQueue(int capacity) {
+        int cap = 1 ;
+        while (cap < capacity)
+            cap <<= 1 ;
+
+        slots_ = new AtomicReferenceArray<T>(cap) ;
+        mask_ = cap - 1 ;
+        head_ = new AtomicLong(0) ;
+        tail_ = new AtomicLong(0) ;
+        dropped_ = 0 ;
+    }
+
+    /// \brief returns the number of objects the queue can hold
+    /// \returns the number of objects the queue can hold
+    public int getCapacity() {
+        return slots_.length() ;
+    }
+
+    /// \brief returns the number of objects dropped because the queue was full
+    /// \returns the number of objects dropped because the queue was full
+    public long getDroppedCount() {
+        return dropped_ ;
+    }
+
+    /// \brief returns the number of objects in the queue.  As the other thread may be adding or removing
+    /// objects, this is only an estimate.
+    /// \returns the number of objects in the queue
+    public int size() {
+        return (int)(head_.get() - tail_.get()) ;
+    }
+
+    /// \brief add an object to the queue, this must only be called from the producer thread
+    /// \param obj the object to add, must not be null
+    /// \returns true if the object was added, false if it was dropped because the queue was full
+    public boolean offer(T obj) {
+        long head = head_.get() ;
+
+        if (head - tail_.get() >= slots_.length()) {
+            dropped_++ ;
+            return false ;
+        }
+
+        slots_.lazySet((int)(head & mask_), obj) ;
+        head_.lazySet(head + 1) ;
+        return true ;
+    }
+
+    /// \brief remove the oldest object from the queue, this must only be called from the consumer thread
+    /// \returns the oldest object in the queue, or null if the queue is empty
+    public T poll() {
+        long tail = tail_.get() ;
+
+        if (tail == head_.get())
+            return null ;
+
+        int slot = (int)(tail & mask_) ;
+        T ret = slots_.get(slot) ;
+        slots_.lazySet(slot, null) ;
+        tail_.lazySet(tail + 1) ;
+        return ret ;
+    }
+}
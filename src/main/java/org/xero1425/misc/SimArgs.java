@@ -10,6 +10,19 @@ public class SimArgs {
     /// \brief the name of the input stimulus file
     public static String InputFileName = null ;
 
+    /// \brief the directory for plot files, if set plots are written to files instead of the network table
+    public static String PlotDirectory = null ;
+
+    /// \brief if true, the simulation engine steps the robot time loop by loop as fast as possible
+    /// instead of following the wall clock
+    public static boolean Stepped = false ;
+
+    /// \brief the name of the file to write the assert counts to when the simulation exits
+    public static String ResultsFileName = null ;
+
+    /// \brief the network tables server port, if not zero.  This lets simulations run side by side.
+    public static int NetworkTablesPort = 0 ;
+
     public static void processArgs(String... args) {
         int i = 0 ;
         while (i < args.length) {
@@ -29,6 +42,39 @@ public class SimArgs {
                 }
                 SimArgs.LogFileName = args[i] ;
             }
+            else if (args[i].equals("--plotdir")) {
+                i++ ;
+                if (i == args.length) {
+                    System.err.println("command line argument --plotdir requires an additional argument") ;
+                    System.exit(2) ;                    
+                }
+                SimArgs.PlotDirectory = args[i] ;
+            }
+            else if (args[i].equals("--stepped")) {
+                SimArgs.Stepped = true ;
+            }
+            else if (args[i].equals("--results")) {
+                i++ ;
+                if (i == args.length) {
+                    System.err.println("command line argument --results requires an additional argument") ;
+                    System.exit(2) ;                    
+                }
+                SimArgs.ResultsFileName = args[i] ;
+            }
+            else if (args[i].equals("--ntport")) {
+                i++ ;
+                if (i == args.length) {
+                    System.err.println("command line argument --ntport requires an additional argument") ;
+                    System.exit(2) ;                    
+                }
+                try {
+                    SimArgs.NetworkTablesPort = Integer.parseInt(args[i]) ;
+                }
+                catch(NumberFormatException ex) {
+                    System.err.println("command line argument --ntport requires an integer argument") ;
+                    System.exit(2) ;
+                }
+            }
             else {
                 System.err.println("unknown command line argument '" + args[i] + "'") ;
                 System.exit(2) ;
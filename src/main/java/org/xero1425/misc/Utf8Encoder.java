@@ -0,0 +1,83 @@
+package org.xero1425.misc;
+
+import java.nio.ByteBuffer;
+
+/// \file
+
+/// \brief encodes characters as UTF-8 directly into a byte buffer without allocating memory
+public final class Utf8Encoder
+{
+    private Utf8Encoder() {
+    }
+
+    /// \brief encode characters into a byte buffer.  Encoding stops at the end of the text, when the next
+    /// character does not fit in the space remaining in the buffer, or when the next character would take the
+    /// number of bytes written past the limit given, so a character is never split.  A surrogate that is not
+    /// part of a pair is written as a question mark.
+    /// \param buf the buffer to write the encoded bytes to
+    /// \param text the characters to encode
+    /// \param start the index of the first character to encode
+    /// \param limit the maximum number of bytes to write
+    /// \returns the index of the first character not written
+    public static int encode(final ByteBuffer buf, final CharSequence text, int start, int limit) {
+        int len = text.length() ;
+        int avail = Math.min(limit, buf.remaining()) ;
+        int i = start ;
+
+        while (i < len) {
+            char ch = text.charAt(i) ;
+
+            if (ch < 0x80) {
+                if (avail < 1)
+                    break ;
+                buf.put((byte)ch) ;
+                avail -= 1 ;
+                i++ ;
+            }
+            else if (ch < 0x800) {
+                if (avail < 2)
+                    break ;
+                buf.put((byte)(0xC0 | (ch >> 6))) ;
+                buf.put((byte)(0x80 | (ch & 0x3F))) ;
+                avail -= 2 ;
+                i++ ;
+            }
+            else if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(text.charAt(i + 1))) {
+                if (avail < 4)
+                    break ;
+                int cp = Character.toCodePoint(ch, text.charAt(i + 1)) ;
+                buf.put((byte)(0xF0 | (cp >> 18))) ;
+                buf.put((byte)(0x80 | ((cp >> 12) & 0x3F))) ;
+                buf.put((byte)(0x80 | ((cp >> 6) & 0x3F))) ;
+                buf.put((byte)(0x80 | (cp & 0x3F))) ;
+                avail -= 4 ;
+                i += 2 ;
+            }
+            else if (Character.isSurrogate(ch)) {
+                if (avail < 1)
+                    break ;
+                buf.put((byte)'?') ;
+                avail -= 1 ;
+                i++ ;
+            }
+            else {
+                if (avail < 3)
+                    break ;
+                buf.put((byte)(0xE0 | (ch >> 12))) ;
+                buf.put((byte)(0x80 | ((ch >> 6) & 0x3F))) ;
+                buf.put((byte)(0x80 | (ch & 0x3F))) ;
+                avail -= 3 ;
+                i++ ;
+            }
+        }
+
+        return i ;
+    }
+
+    /// \brief returns the largest number of bytes the given number of characters can take when encoded
+    /// \param chars the number of characters
+    /// \returns the largest number of bytes the characters can take when encoded
+    public static int maxBytes(int chars) {
+        return chars * 3 ;
+    }
+}
@@ -1,41 +1,138 @@
 package org.xero1425.misc ;
 
-import java.util.ArrayList ;
+import java.util.Arrays ;
 
 /// \file
 
 /// \brief This class represents a single path to be followed by the robot drive base
 /// The XeroPath object has a name and a set of X and Y data points for both the left and right sides
 /// of the drivebase
+///
+/// Each trajectory of the path is stored as one array of doubles per column (time, x, y, and so on)
+/// rather than as an object per segment.  A point on the path can be read by index with getValue(), or
+/// interpolated at any time with sample(), which finds the segments on either side of the time with a
+/// binary search.
+///
+/// A path mirrored across the field for the other alliance is returned by mirroredX() or mirroredY().  The
+/// mirrored path shares the data of the original path and applies the mirroring as each value is read, so
+/// creating it does not copy the path and does not change the original path.
 public class XeroPath
 {
+    /// \brief the column holding the time of each segment
+    public static final int TimeColumn = 0 ;
+
+    /// \brief the column holding the x position of each segment
+    public static final int XColumn = 1 ;
+
+    /// \brief the column holding the y position of each segment
+    public static final int YColumn = 2 ;
+
+    /// \brief the column holding the distance along the path of each segment
+    public static final int PositionColumn = 3 ;
+
+    /// \brief the column holding the velocity of each segment
+    public static final int VelocityColumn = 4 ;
+
+    /// \brief the column holding the acceleration of each segment
+    public static final int AccelColumn = 5 ;
+
+    /// \brief the column holding the jerk of each segment
+    public static final int JerkColumn = 6 ;
+
+    /// \brief the column holding the heading of each segment in degrees
+    public static final int HeadingColumn = 7 ;
+
+    /// \brief the column holding the curvature of each segment
+    public static final int CurvatureColumn = 8 ;
+
+    /// \brief the column holding the rotation of the robot for each segment in degrees
+    public static final int RotationColumn = 9 ;
+
+    /// \brief the number of columns in each trajectory
+    public static final int ColumnCount = 10 ;
+
+    //
+    // The initial number of segments each trajectory has room for
+    //
+    private static final int kInitialCapacity = 64 ;
+
     //
     // The name of the path
     //
     private String name_ ;
 
     //
-    // The set of segment for the left side of the robot
+    // The data for each trajectory, indexed by trajectory, then column, then segment
+    //
+    private double[][][] data_ ;
+
+    //
+    // The number of segments in each trajectory
+    //
+    private int[] counts_ ;
+
+    //
+    // If this path is a mirrored view of another path, the column that is mirrored (XColumn or YColumn),
+    // otherwise -1
     //
-    private ArrayList<ArrayList<XeroPathSegment>> data_ ;
+    private int mirror_column_ ;
+
+    //
+    // The field dimension the path is mirrored across
+    //
+    private double mirror_value_ ;
 
     /// \brief create a new path with the name given
     /// \param name the name of the path
     /// \param data_count the number of data per time point
     public XeroPath(String name, int data_count) throws Exception {
         name_ = name ;
-        data_ = new ArrayList<ArrayList<XeroPathSegment>>() ;
+        data_ = new double[data_count][ColumnCount][kInitialCapacity] ;
+        counts_ = new int[data_count] ;
+        mirror_column_ = -1 ;
+        mirror_value_ = 0.0 ;
+    }
 
-        for(int i = 0 ; i < data_count ; i++)
-        {
-            data_.add(new ArrayList<XeroPathSegment>()) ;
-        }
+    //
+    // Create a mirrored view of another path, sharing its data.  Only the data is taken from the other
+    // path, not its mirroring.
+    //
+    private XeroPath(XeroPath other, int column, double dim) {
+        name_ = other.name_ ;
+        data_ = other.data_ ;
+        counts_ = other.counts_ ;
+        mirror_column_ = column ;
+        mirror_value_ = dim ;
+    }
+
+    /// \brief returns this path mirrored across a line of constant x, as for the other alliance.  The
+    /// x values become dim - x and the heading and rotation become 180 degrees minus their values.  If this
+    /// path is already a mirrored view, the mirroring is applied to the data of the original path.
+    /// \param dim the field dimension in the x direction
+    /// \returns a view of this path, mirrored in x
+    public XeroPath mirroredX(double dim) {
+        return new XeroPath(this, XColumn, dim) ;
+    }
+
+    /// \brief returns this path mirrored across a line of constant y.  The y values become dim - y and the
+    /// heading and rotation are negated.  If this path is already a mirrored view, the mirroring is applied
+    /// to the data of the original path.
+    /// \param dim the field dimension in the y direction
+    /// \returns a view of this path, mirrored in y
+    public XeroPath mirroredY(double dim) {
+        return new XeroPath(this, YColumn, dim) ;
+    }
+
+    /// \brief returns true if this path is a mirrored view of another path
+    /// \returns true if this path is a mirrored view of another path
+    public boolean isMirrored() {
+        return mirror_column_ != -1 ;
     }
 
     /// \brief return the path type
     /// \returns the path type
     public int getTrajectorCount() {
-        return data_.size() ;
+        return data_.length ;
     }
 
     /// \brief return the name of the path
@@ -47,14 +144,41 @@ public class XeroPath
     /// \brief returns the number of data points in the path
     /// \returns the numer of data points in the path
     public int getTrajectoryEntryCount() {
-        return data_.get(0).size() ;
+        return counts_[0] ;
     }
 
     /// \brief returns the duration of the path in seconds
     /// \returns the duration of the path in seconds
     public double getDuration() {
-        ArrayList<XeroPathSegment> seg = data_.get(0) ;
-        return seg.get(seg.size() - 1).getTime() ;
+        return data_[0][TimeColumn][counts_[0] - 1] ;
+    }
+
+    //
+    // Returns a value with the mirroring of this path applied
+    //
+    private double mirror(int column, double v) {
+        if (mirror_column_ == -1)
+            return v ;
+
+        if (column == mirror_column_)
+            return mirror_value_ - v ;
+
+        if (column == HeadingColumn || column == RotationColumn)
+            return (mirror_column_ == XColumn) ? XeroMath.normalizeAngleDegrees(180 - v) : -v ;
+
+        return v ;
+    }
+
+    /// \brief returns a single value from the path
+    /// \param which which trajectory to return data for
+    /// \param column the column of the value, for instance XColumn
+    /// \param index the index of the segment
+    /// \returns a single value from the path
+    public double getValue(int which, int column, int index) {
+        if (index >= counts_[which])
+            throw new IndexOutOfBoundsException("segment index " + index + " out of range for path '" + name_ + "'") ;
+
+        return mirror(column, data_[which][column][index]) ;
     }
 
     /// \brief returns a single segment of the path for the requested side of the robot
@@ -62,7 +186,14 @@ public class XeroPath
     /// \param index the index of the segment to return
     /// \returns a single segment of the path for the requested side of the robot
     public XeroPathSegment getSegment(int which, int index) {
-        return data_.get(which).get(index) ;
+        if (index >= counts_[which])
+            throw new IndexOutOfBoundsException("segment index " + index + " out of range for path '" + name_ + "'") ;
+
+        double[][] cols = data_[which] ;
+        return new XeroPathSegment(cols[TimeColumn][index], mirror(XColumn, cols[XColumn][index]), mirror(YColumn, cols[YColumn][index]),
+                                   cols[PositionColumn][index], cols[VelocityColumn][index], cols[AccelColumn][index], cols[JerkColumn][index],
+                                   mirror(HeadingColumn, cols[HeadingColumn][index]), cols[CurvatureColumn][index],
+                                   mirror(RotationColumn, cols[RotationColumn][index])) ;
     }
 
     /// \brief return the segment associated with each wheel
@@ -70,7 +201,7 @@ public class XeroPath
     /// \returns the set of segments for all wheels for the given index
     public XeroPathSegment[] getSegments(int index)
     {
-        XeroPathSegment[] ret = new XeroPathSegment[data_.size()] ;
+        XeroPathSegment[] ret = new XeroPathSegment[data_.length] ;
         for(int i = 0 ; i < ret.length ; i++)
         {
             ret[i] = getSegment(i, index) ;
@@ -79,63 +210,167 @@ public class XeroPath
         return ret ;
     }
 
+    /// \brief return the state of the first trajectory of the path at a given time, interpolating between segments
+    /// \param t the time since the start of the path in seconds
+    /// \returns the state of the path at the given time
+    public XeroPathSample sample(double t) {
+        XeroPathSample ret = new XeroPathSample() ;
+        sample(0, t, ret) ;
+        return ret ;
+    }
+
+    /// \brief return the state of a trajectory at a given time, interpolating between segments
+    ///
+    /// The two segments on either side of the time are found with a binary search and every column is
+    /// interpolated linearly between them.  The heading and rotation are interpolated the short way around
+    /// the circle.  If this path is mirrored, the mirroring is applied to the result.  Times before the start of the path return the first segment and times after the end of
+    /// the path return the last segment.  This does not allocate memory.
+    ///
+    /// \param which which trajectory to sample
+    /// \param t the time since the start of the path in seconds
+    /// \param result the sample to fill in with the state of the path at the given time
+    public void sample(int which, double t, XeroPathSample result) {
+        double[][] cols = data_[which] ;
+        double[] times = cols[TimeColumn] ;
+        int count = counts_[which] ;
+
+        if (count == 0)
+            throw new IndexOutOfBoundsException("path '" + name_ + "' has no segments") ;
+
+        if (t <= times[0]) {
+            result.set(cols, 0, 0, 0.0) ;
+            mirrorSample(result) ;
+            return ;
+        }
+
+        if (t >= times[count - 1]) {
+            result.set(cols, count - 1, count - 1, 0.0) ;
+            mirrorSample(result) ;
+            return ;
+        }
+
+        //
+        // Find the last segment whose time is at or before t, this segment is never the last one
+        //
+        int lo = 0 ;
+        int hi = count - 1 ;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1 ;
+            if (times[mid] <= t)
+                lo = mid ;
+            else
+                hi = mid ;
+        }
+
+        double span = times[hi] - times[lo] ;
+        double frac = (span > 0.0) ? (t - times[lo]) / span : 0.0 ;
+        result.set(cols, lo, hi, frac) ;
+        mirrorSample(result) ;
+    }
+
+    private void mirrorSample(XeroPathSample result) {
+        if (mirror_column_ == -1)
+            return ;
+
+        result.setValue(mirror_column_, mirror(mirror_column_, result.getValue(mirror_column_))) ;
+        result.setValue(HeadingColumn, mirror(HeadingColumn, result.getValue(HeadingColumn))) ;
+        result.setValue(RotationColumn, mirror(RotationColumn, result.getValue(RotationColumn))) ;
+    }
+
     /// \brief adds a new path segment to the left adn right sides of the robot
     /// \param which which segment of the path to add to
     /// \param seg the segment value to add to the path
     public void addPathSegment(int which, XeroPathSegment seg) throws Exception
     {
-        if (which >= data_.size())
+        if (mirror_column_ != -1)
+            throw new Exception("cannot add segments to a mirrored path") ;
+
+        if (which >= data_.length)
             throw new Exception("invalid wheel index in path") ;
 
-        data_.get(which).add(seg) ;
+        int index = counts_[which] ;
+        double[][] cols = data_[which] ;
+
+        if (index == cols[0].length) {
+            for(int i = 0 ; i < ColumnCount ; i++)
+                cols[i] = Arrays.copyOf(cols[i], Math.max(kInitialCapacity, index * 2)) ;
+        }
+
+        cols[TimeColumn][index] = seg.getTime() ;
+        cols[XColumn][index] = seg.getX() ;
+        cols[YColumn][index] = seg.getY() ;
+        cols[PositionColumn][index] = seg.getPosition() ;
+        cols[VelocityColumn][index] = seg.getVelocity() ;
+        cols[AccelColumn][index] = seg.getAccel() ;
+        cols[JerkColumn][index] = seg.getJerk() ;
+        cols[HeadingColumn][index] = seg.getHeading() ;
+        cols[CurvatureColumn][index] = seg.getCurvature() ;
+        cols[RotationColumn][index] = seg.getRotation() ;
+        counts_[which] = index + 1 ;
     }
 
     /// \brief returns true if the path is valid
     /// \returns true if the path is valid
     public boolean isValid() {
-        int size = data_.get(0).size() ;
+        int size = counts_[0] ;
 
-        for(int i = 1 ; i < data_.size() ; i++)
+        for(int i = 1 ; i < counts_.length ; i++)
         {
-            if (data_.get(i).size() != size)
+            if (counts_[i] != size)
                 return false ;
         }
 
         return true ;
     }
 
+    /// \brief mirror the path in y, rewriting every segment.  Any mirrored views of this path are also
+    /// changed.  Use mirroredY() to get a mirrored path without changing this one.
+    /// \param dim the field dimension in the y direction
     public void mirrorY(double dim) {
-        assert(data_.size() == 1) ;
-
-        ArrayList<XeroPathSegment> segs = data_.get(0) ;
-        ArrayList<XeroPathSegment> newsegs = new ArrayList<>() ;
+        assert(data_.length == 1) ;
 
-        for(int i = 0 ; i < segs.size() ; i++)
+        double[][] cols = data_[0] ;
+        for(int i = 0 ; i < counts_[0] ; i++)
         {
-            XeroPathSegment seg = segs.get(i) ;
-            XeroPathSegment newseg = new XeroPathSegment(seg.getTime(), seg.getX(), dim - seg.getY(), seg.getPosition(), seg.getVelocity(), seg.getAccel(), seg.getJerk(), -seg.getHeading(), seg.getCurvature(), -seg.getRotation()) ;
-            newsegs.add(newseg) ;
+            cols[YColumn][i] = dim - cols[YColumn][i] ;
+            cols[HeadingColumn][i] = -cols[HeadingColumn][i] ;
+            cols[RotationColumn][i] = -cols[RotationColumn][i] ;
         }
-
-        data_.set(0, newsegs) ;
     }
 
+    /// \brief mirror the path in x, rewriting every segment.  Any mirrored views of this path are also
+    /// changed.  Use mirroredX() to get a mirrored path without changing this one.
+    /// \param dim the field dimension in the x direction
     public void mirrorX(double dim) {
-        assert(data_.size() == 1) ;
-
-        ArrayList<XeroPathSegment> segs = data_.get(0) ;
-        ArrayList<XeroPathSegment> newsegs = new ArrayList<>() ;
+        assert(data_.length == 1) ;
 
-        for(int i = 0 ; i < segs.size() ; i++)
+        double[][] cols = data_[0] ;
+        for(int i = 0 ; i < counts_[0] ; i++)
         {
-            XeroPathSegment seg = segs.get(i) ;
-            double h = XeroMath.normalizeAngleDegrees(180 - seg.getHeading()) ;
-            double r = XeroMath.normalizeAngleDegrees(180 - seg.getRotation()) ;
-            XeroPathSegment newseg = new XeroPathSegment(seg.getTime(), dim - seg.getX(), seg.getY(), seg.getPosition(), seg.getVelocity(), seg.getAccel(), 
-                            seg.getJerk(), h, seg.getCurvature(), r) ;
-            newsegs.add(newseg) ;
+            cols[XColumn][i] = dim - cols[XColumn][i] ;
+            cols[HeadingColumn][i] = XeroMath.normalizeAngleDegrees(180 - cols[HeadingColumn][i]) ;
+            cols[RotationColumn][i] = XeroMath.normalizeAngleDegrees(180 - cols[RotationColumn][i]) ;
         }
+    }
 
-        data_.set(0, newsegs) ;
-    }    
+    //
+    // Returns a copy of the column arrays for a trajectory, trimmed to the number of segments.  The path
+    // itself is not changed.  Used to store the path in binary form.
+    //
+    double[][] getColumns(int which) {
+        double[][] cols = new double[ColumnCount][] ;
+        for(int i = 0 ; i < ColumnCount ; i++)
+            cols[i] = Arrays.copyOf(data_[which][i], counts_[which]) ;
+
+        return cols ;
+    }
+
+    //
+    // Replaces a trajectory with the column arrays given, each of which must hold the same number of
+    // segments.  Used to load the path from binary form.
+    //
+    void setColumns(int which, double[][] cols) {
+        data_[which] = cols ;
+        counts_[which] = cols[TimeColumn].length ;
+    }
 }
@@ -1,12 +1,23 @@
 package org.xero1425.misc;
 
 import java.util.Map;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser ;
@@ -19,6 +30,13 @@ import org.apache.commons.csv.CSVRecord ;
 /// files that have the given name as the base name.  These files are loaded and
 /// the path can be retreived using the name provided at any future time.
 ///
+/// If a cache directory is given, each path is also stored there in a binary form after it is read
+/// from the CSV files.  The binary copy records the modification time, size, and a hash of each CSV file
+/// it was made from.  When the path is loaded again, and the CSV files have not changed, the binary copy
+/// is memory mapped and read instead of parsing the CSV files.  A CSV file whose modification time has
+/// changed but whose contents have not, as happens when the files are deployed again, still matches by
+/// its hash.  Paths can be loaded from multiple threads at once, see loadPaths().
+///
 public class XeroPathManager
 {
     //
@@ -46,6 +64,11 @@ public class XeroPathManager
     //
     private String basedir_ ;
 
+    //
+    // The directory for the binary copies of the paths, or null if paths are not cached
+    //
+    private String cachedir_ ;
+
     //
     // The extensions for the path data files
     //
@@ -56,14 +79,38 @@ public class XeroPathManager
     //
     static final private String LoggerName = "pathmanager" ;
 
+    //
+    // The layout of the binary path files
+    //
+    static final private byte[] CacheMagic = { 'X', 'P', 'T', 'H' } ;
+    static final private short CacheVersion = 2 ;
+    static final private String CacheExtension = ".xpath" ;
+    static final private int CacheHeaderSize = 8 ;
+    static final private int CacheSourceSize = 24 ;
+
+    //
+    // The number of bytes read at a time when hashing a path data file
+    //
+    static final private int HashBlockSize = 64 * 1024 ;
+
     /// \brief create the path manager
     /// \param logger the message logger
     /// \param basedir the base directory where all paths are found
     /// \param type the type of path algorithm used
     public XeroPathManager(MessageLogger logger, String basedir, XeroPathType type) {
+        this(logger, basedir, type, null) ;
+    }
+
+    /// \brief create the path manager
+    /// \param logger the message logger
+    /// \param basedir the base directory where all paths are found
+    /// \param type the type of path algorithm used
+    /// \param cachedir the directory for the binary copies of the paths, or null to always read the CSV files
+    public XeroPathManager(MessageLogger logger, String basedir, XeroPathType type, String cachedir) {
         path_type_ = type ;
         basedir_ = basedir ;
-        paths_ = new HashMap<String, XeroPath>() ;
+        cachedir_ = cachedir ;
+        paths_ = new ConcurrentHashMap<String, XeroPath>() ;
         logger_id_ = logger.registerSubsystem(LoggerName) ;
         logger_ = logger ;
 
@@ -140,15 +187,100 @@ public class XeroPathManager
     /// The path manager will look for two files named BASEDIR/name.left_ext and BASEDIR/name.right_ext
     /// where BASEDIR is the base directory specified when the path manager was created, name is the
     /// name given in thie call, and left_ext and right_ext are the extensions set in the setExtensions()
-    /// call.
+    /// call.  If there is a binary copy of the path in the cache directory that matches the path data files,
+    /// it is read instead.
     /// \param name the name of the path to load
     public boolean loadPath(String name) throws Exception {
-        String filename = null ;
-        Reader [] rdrs = null ;
-        CSVParser [] parsers = null ;
+        XeroPath path = null ;
+        boolean cached = false ;
+
+        if (cachedir_ != null) {
+            path = loadCachedPath(name) ;
+            cached = (path != null) ;
+        }
+
+        if (path == null) {
+            path = loadCSVPath(name) ;
+            if (path == null)
+                return false ;
+
+            if (cachedir_ != null)
+                writeCachedPath(name, path, null) ;
+        }
+
+        logger_.startMessage(MessageType.Debug, logger_id_) ;
+        logger_.add("loaded path '").add(name).add("'") ;
+        if (cached)
+            logger_.add(" from cache") ;
+        logger_.endMessage();    
+
+        paths_.put(name, path) ;
+        return true ;
+    }
+
+    /// \brief load a set of paths, using multiple threads
+    /// Each path is loaded as with loadPath().  A path that cannot be loaded is logged and skipped.
+    /// \param names the names of the paths to load
+    /// \returns the number of paths loaded
+    public int loadPaths(List<String> names) {
+        return (int)names.parallelStream().filter((name) -> {
+            try {
+                return loadPath(name) ;
+            }
+            catch(Exception ex) {
+                logger_.startMessage(MessageType.Error) ;
+                logger_.add("cannot load path '").add(name).add("' - ").add(ex.getMessage()) ;
+                logger_.endMessage();
+                return false ;
+            }
+        }).count() ;
+    }
 
-        rdrs = new Reader[exts_.length] ;
-        parsers = new CSVParser[exts_.length] ;
+    /// \brief returns a path given the path name
+    /// \exception MissingPathException thrown when asking for a path that does not exist, see hasPath()
+    /// \param name the name of the path to return
+    /// \returns a path given its name
+    public XeroPath getPath(String name) throws MissingPathException {
+        XeroPath p = paths_.get(name) ;
+        if (p == null)
+            throw new MissingPathException(name) ;
+
+        return p ;
+    }
+
+    /// \brief returns true if the path manager has loaded a path with the name given
+    /// \returns true if the path manager has loaded a path with the name given
+    public boolean hasPath(String name) {
+        return paths_.containsKey(name) ;
+    }
+
+    //
+    // Read a path from its CSV files, returns null if the path cannot be read
+    //
+    private XeroPath loadCSVPath(String name) throws Exception {
+        Reader [] rdrs = new Reader[exts_.length] ;
+        CSVParser [] parsers = new CSVParser[exts_.length] ;
+
+        try {
+            return parseCSVFiles(name, rdrs, parsers) ;
+        }
+        finally {
+            for(int i = 0 ; i < parsers.length ; i++)
+            {
+                try {
+                    if (parsers[i] != null)
+                        parsers[i].close() ;
+                    else if (rdrs[i] != null)
+                        rdrs[i].close() ;
+                }
+                catch(Exception ex) {
+                }
+            }
+        }
+    }
+
+    private XeroPath parseCSVFiles(String name, Reader [] rdrs, CSVParser [] parsers) throws Exception {
+        String filename = null ;
 
         for(int i = 0 ; i < exts_.length ; i++)
         {
@@ -160,7 +292,7 @@ public class XeroPathManager
                 logger_.startMessage(MessageType.Error) ;
                 logger_.add("cannot load path file (left) '").add(filename).add("' - ").add(ex.getMessage()) ;
                 logger_.endMessage();
-                return false ;
+                return null ;
             }
             try {
                 parsers[i] = new CSVParser(rdrs[i], CSVFormat.DEFAULT) ;
@@ -178,6 +310,7 @@ public class XeroPathManager
                 logger_.startMessage(MessageType.Error) ;
                 logger_.add("cannot load path '").add(name).add("' - ").add(ex.getMessage()) ;
                 logger_.endMessage();                
+                return null ;
             }
         }
 
@@ -228,7 +361,7 @@ public class XeroPathManager
                     logger_.add("' - ").add(exts_[i]).add(" file contains invalid number of columns, line") ;
                     logger_.add(recs[i].getRecordNumber()) ;
                     logger_.endMessage();   
-                    return false ;
+                    return null ;
                 }
                 XeroPathSegment seg ;
                 try {
@@ -240,7 +373,7 @@ public class XeroPathManager
                     logger_.add("' - ").add(exts_[i]).add(" file contains invalid floating point number, line") ;
                     logger_.add(recs[i].getRecordNumber()) ;
                     logger_.endMessage();   
-                    return false ;
+                    return null ;
                 }
 
                 try {
@@ -267,33 +400,183 @@ public class XeroPathManager
             logger_.add("cannot load path '").add(name) ;
             logger_.add("' - files contains differing number of segments") ;
             logger_.endMessage();   
-            return false ;
+            return null ;
         }
 
-        logger_.startMessage(MessageType.Debug, logger_id_) ;
-        logger_.add("loaded path '").add(name) ;
-        logger_.endMessage();    
+        return path ;
+    }
 
-        paths_.put(name, path) ;
-        return true ;
+    //
+    // Read the binary copy of a path from the cache directory.  Returns null if there is no binary copy,
+    // or if it does not match the CSV files for the path.
+    //
+    private XeroPath loadCachedPath(String name) {
+        Path file = Paths.get(cachedir_, name + CacheExtension) ;
+        if (!Files.exists(file))
+            return null ;
+
+        boolean touched = false ;
+        long[][] sources = new long[exts_.length][] ;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()) ;
+
+            byte[] magic = new byte[CacheMagic.length] ;
+            buf.get(magic) ;
+            if (!Arrays.equals(magic, CacheMagic) || buf.getShort() != CacheVersion || buf.getShort() != exts_.length)
+                return null ;
+
+            //
+            // Check the CSV files the binary copy was made from against the current CSV files
+            //
+            for(int i = 0 ; i < exts_.length ; i++) {
+                long mtime = buf.getLong() ;
+                long size = buf.getLong() ;
+                long hash = buf.getLong() ;
+
+                Path csv = Paths.get(basedir_, name + exts_[i]) ;
+                long cursize = Files.size(csv) ;
+                long curmtime = Files.getLastModifiedTime(csv).toMillis() ;
+
+                if (cursize != size)
+                    return null ;
+
+                if (curmtime != mtime) {
+                    if (hashFile(csv) != hash)
+                        return null ;
+
+                    touched = true ;
+                }
+
+                sources[i] = new long[] { curmtime, size, hash } ;
+            }
+
+            XeroPath path = new XeroPath(name, exts_.length) ;
+
+            //
+            // Each trajectory is stored one column after another, matching the layout of XeroPath, so
+            // each column is a single bulk copy out of the mapped file
+            //
+            for(int i = 0 ; i < exts_.length ; i++) {
+                int count = buf.getInt() ;
+                buf.getInt() ;
+
+                DoubleBuffer data = buf.slice().asDoubleBuffer() ;
+                double[][] cols = new double[XeroPath.ColumnCount][count] ;
+                for(int col = 0 ; col < XeroPath.ColumnCount ; col++)
+                    data.get(cols[col]) ;
+
+                path.setColumns(i, cols) ;
+                buf.position(buf.position() + count * XeroPath.ColumnCount * 8) ;
+            }
+
+            if (!path.isValid() || path.getTrajectoryEntryCount() == 0)
+                return null ;
+
+            //
+            // The CSV files were deployed again without changing, store the new modification times so the
+            // files do not need to be hashed next time
+            //
+            if (touched)
+                writeCachedPath(name, path, sources) ;
+
+            return path ;
+        }
+        catch(Exception ex) {
+            logger_.startMessage(MessageType.Debug, logger_id_) ;
+            logger_.add("cannot read cached path '").add(name).add("' - ").add(ex.toString()) ;
+            logger_.endMessage();
+            return null ;
+        }
     }
 
-    /// \brief returns a path given the path name
-    /// \exception MissingPathException thrown when asking for a path that does not exist, see hasPath()
-    /// \param name the name of the path to return
-    /// \returns a path given its name
-    public XeroPath getPath(String name) throws MissingPathException {
-        XeroPath p = paths_.get(name) ;
-        if (p == null)
-            throw new MissingPathException(name) ;
+    //
+    // Write the binary copy of a path to the cache directory.  The file is written under a temporary name
+    // and then renamed, so a path loaded at the same time never sees a partial file.  The sources array holds
+    // the modification time, size, and hash of each CSV file, and is computed here if it is null.
+    //
+    private void writeCachedPath(String name, XeroPath path, long[][] sources) {
+        Path tmp = null ;
+
+        try {
+            if (sources == null) {
+                sources = new long[exts_.length][] ;
+                for(int i = 0 ; i < exts_.length ; i++) {
+                    Path csv = Paths.get(basedir_, name + exts_[i]) ;
+                    sources[i] = new long[] { Files.getLastModifiedTime(csv).toMillis(), Files.size(csv), hashFile(csv) } ;
+                }
+            }
 
-        return p ;
+            int count = path.getTrajectoryEntryCount() ;
+            int size = CacheHeaderSize + exts_.length * CacheSourceSize + exts_.length * (8 + count * XeroPath.ColumnCount * 8) ;
+            ByteBuffer buf = ByteBuffer.allocate(size) ;
+
+            buf.put(CacheMagic) ;
+            buf.putShort(CacheVersion) ;
+            buf.putShort((short)exts_.length) ;
+            for(int i = 0 ; i < exts_.length ; i++) {
+                buf.putLong(sources[i][0]) ;
+                buf.putLong(sources[i][1]) ;
+                buf.putLong(sources[i][2]) ;
+            }
+
+            for(int i = 0 ; i < exts_.length ; i++) {
+                buf.putInt(count) ;
+                buf.putInt(0) ;
+                double[][] cols = path.getColumns(i) ;
+                for(int col = 0 ; col < XeroPath.ColumnCount ; col++) {
+                    buf.asDoubleBuffer().put(cols[col], 0, count) ;
+                    buf.position(buf.position() + count * 8) ;
+                }
+            }
+            buf.flip() ;
+
+            Path dir = Paths.get(cachedir_) ;
+            Files.createDirectories(dir) ;
+            tmp = Files.createTempFile(dir, name, ".tmp") ;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buf.hasRemaining())
+                    channel.write(buf) ;
+            }
+
+            Files.move(tmp, dir.resolve(name + CacheExtension), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE) ;
+            tmp = null ;
+        }
+        catch(Exception ex) {
+            logger_.startMessage(MessageType.Warning) ;
+            logger_.add("cannot write cached path '").add(name).add("' - ").add(ex.toString()) ;
+            logger_.endMessage();
+        }
+        finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp) ;
+                }
+                catch(Exception ex) {
+                }
+            }
+        }
     }
 
-    /// \brief returns true if the path manager has loaded a path with the name given
-    /// \returns true if the path manager has loaded a path with the name given
-    public boolean hasPath(String name) {
-        return paths_.containsKey(name) ;
+    //
+    // Returns a 64 bit FNV-1a hash of the contents of a file.  The file is read in blocks so a large path
+    // does not need to be held in memory.
+    //
+    private static long hashFile(Path file) throws IOException {
+        long hash = 0xcbf29ce484222325L ;
+        byte[] block = new byte[HashBlockSize] ;
+
+        try (InputStream in = Files.newInputStream(file)) {
+            int count ;
+            while ((count = in.read(block)) > 0) {
+                for(int i = 0 ; i < count ; i++) {
+                    hash ^= (block[i] & 0xff) ;
+                    hash *= 0x100000001b3L ;
+                }
+            }
+        }
+
+        return hash ;
     }
 
     private XeroPathSegment parseCSVRecord(CSVRecord r) throws NumberFormatException {
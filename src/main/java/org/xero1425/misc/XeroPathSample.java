@@ -0,0 +1,116 @@
+package org.xero1425.misc ;
+
+/// \file
+
+/// \brief This class holds the state of a path at a point in time, interpolated between two segments
+/// of the path.  A sample is filled in by XeroPath.sample() and can be reused from one robot loop to the
+/// next so that sampling a path does not allocate memory.
+public class XeroPathSample
+{
+    private double[] values_ ;
+    private int index_ ;
+
+    /// \brief create a new empty sample
+    public XeroPathSample() {
+        values_ = new double[XeroPath.ColumnCount] ;
+        index_ = 0 ;
+    }
+
+    /// \brief returns the index of the segment at or before the time of the sample
+    /// \returns the index of the segment at or before the time of the sample
+    public int getIndex() {
+        return index_ ;
+    }
+
+    /// \brief returns a single value of the sample
+    /// \param column the column of the value, for instance XeroPath.XColumn
+    /// \returns a single value of the sample
+    public double getValue(int column) {
+        return values_[column] ;
+    }
+
+    /// \brief returns the time for the sample
+    /// \returns the time for the sample
+    public double getTime() {
+        return values_[XeroPath.TimeColumn] ;
+    }
+
+    /// \brief returns the x postion for the sample
+    /// \returns the x position for the sample
+    public double getX() {
+        return values_[XeroPath.XColumn] ;
+    }
+
+    /// \brief returns the y position for the sample
+    /// \returns the y position for the sample
+    public double getY() {
+        return values_[XeroPath.YColumn] ;
+    }
+
+    /// \brief returns the position along the path for the sample
+    /// \returns the position along the path for the sample
+    public double getPosition() {
+        return values_[XeroPath.PositionColumn] ;
+    }
+
+    /// \brief returns the velocity for the sample
+    /// \returns the velocity for the sample
+    public double getVelocity() {
+        return values_[XeroPath.VelocityColumn] ;
+    }
+
+    /// \brief returns the acceleration for the sample
+    /// \returns the acceleration for the sample
+    public double getAccel() {
+        return values_[XeroPath.AccelColumn] ;
+    }
+
+    /// \brief returns the jerk for the sample
+    /// \returns the jerk for the sample
+    public double getJerk() {
+        return values_[XeroPath.JerkColumn] ;
+    }
+
+    /// \brief returns the heading for the sample in degrees
+    /// \returns the heading for the sample in degrees
+    public double getHeading() {
+        return values_[XeroPath.HeadingColumn] ;
+    }
+
+    /// \brief returns the curvature for the sample
+    /// \returns the curvature for the sample
+    public double getCurvature() {
+        return values_[XeroPath.CurvatureColumn] ;
+    }
+
+    /// \brief returns the rotation of the robot for the sample in degrees
+    /// \returns the rotation of the robot for the sample in degrees
+    public double getRotation() {
+        return values_[XeroPath.RotationColumn] ;
+    }
+
+    //
+    // Replace a single value, used to apply mirroring to the sample
+    //
+    void setValue(int column, double v) {
+        values_[column] = v ;
+    }
+
+    //
+    // Interpolate between two segments of a trajectory.  The angles are interpolated the short way
+    // around the circle.
+    //
+    void set(double[][] cols, int lo, int hi, double frac) {
+        index_ = lo ;
+
+        for(int i = 0 ; i < XeroPath.ColumnCount ; i++) {
+            double a = cols[i][lo] ;
+            double b = cols[i][hi] ;
+
+            if (i == XeroPath.HeadingColumn || i == XeroPath.RotationColumn)
+                values_[i] = XeroMath.normalizeAngleDegrees(a + XeroMath.normalizeAngleDegrees(b - a) * frac) ;
+            else
+                values_[i] = a + (b - a) * frac ;
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package org.xero1425.simulator.engine;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
 import edu.wpi.first.hal.simulation.SimulatorJNI;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.simulation.DriverStationSim;
 
 import org.xero1425.base.XeroRobot;
 import org.xero1425.misc.MessageLogger;
 import org.xero1425.misc.MessageType;
+import org.xero1425.misc.SimArgs;
 
 public class SimulationEngine {
     public static final String LoggerName = "simulator" ;
@@ -26,6 +29,12 @@ public class SimulationEngine {
     private int failed_count_ ;
     private int passed_count_ ;    
 
+    // The thread that steps the robot time when the simulation is stepped, null if following the wall clock
+    private Thread stepper_ ;
+    private volatile boolean stepping_ ;
+    private volatile int steps_ ;
+    private long stepping_start_ ;
+
     private SimulationEngine(XeroRobot robot, MessageLogger logger) {
         logger_ = logger ;
         robot_ = robot ;
@@ -38,6 +47,11 @@ public class SimulationEngine {
 
         failed_count_ = 0 ;
         passed_count_ = 0 ;
+
+        stepper_ = null ;
+        stepping_ = false ;
+        steps_ = 0 ;
+        stepping_start_ = 0 ;
     }
 
     static public SimulationEngine getInstance() {
@@ -59,6 +73,16 @@ public class SimulationEngine {
     public void exitSimulator() {
         int code = 0 ;
 
+        if (isStepped()) {
+            stepping_ = false ;
+            double elapsed = (System.nanoTime() - stepping_start_) / 1.0e9 ;
+            logger_.startMessage(MessageType.Info).add("Stepped simulation") ;
+            logger_.add("loops", steps_) ;
+            logger_.add("robot-time", getSimulationTime()) ;
+            logger_.add("wall-time", elapsed) ;
+            logger_.endMessage();
+        }
+
         if (failed_count_ == 0)
         {
             if (events_.size() > 0) {
@@ -85,6 +109,8 @@ public class SimulationEngine {
             }
         }
 
+        robot_.shutdown() ;
+
         //
         // If the robot code issued any errors during the simulation, return a failed status as well so we track
         // these down
@@ -92,6 +118,9 @@ public class SimulationEngine {
         if (logger_.getErrorMessageCount() > 0)
             code = 1 ;
 
+        if (SimArgs.ResultsFileName != null)
+            writeResults(SimArgs.ResultsFileName, code) ;
+
         java.lang.System.exit(code) ;
     }
 
@@ -140,12 +169,66 @@ public class SimulationEngine {
         DriverStationSim.notifyNewData();
     }
 
+    /// \brief start the network tables server on the port given with --ntport, so that simulations running side
+    /// by side each have their own server.  This must be called from main() before the robot is created.  The
+    /// robot starts the server on the default ports, and once a server is started it cannot be moved to another
+    /// port while the robot is using it.  Nothing is persisted, so the simulations do not write network tables
+    /// files into the current directory.
+    public static void startNetworkTables() {
+        if (SimArgs.NetworkTablesPort != 0) {
+            NetworkTableInstance.getDefault().startServer("", "", SimArgs.NetworkTablesPort + 1, SimArgs.NetworkTablesPort) ;
+        }
+    }
+
+    /// \brief returns true if the simulation engine is stepping the robot time
+    /// \returns true if the simulation engine is stepping the robot time
+    public boolean isStepped() {
+        return stepper_ != null ;
+    }
+
+    /// \brief stop following the wall clock and step the robot time one robot loop at a time, as fast as the
+    /// robot code runs.  The robot time is paused and only moves when it is stepped.  Each step waits until every
+    /// HAL notifier that was due, including the one for the robot loop, has run and is waiting again, so each
+    /// robot loop sees exactly one period of robot time.
+    ///
+    /// Threads that are not HAL notifiers are not stepped and still run on the wall clock.  A run only gives the
+    /// same results each time if the robot loop does not depend on them, so when the robot is stepped it
+    /// generates trajectories in the robot loop and polls the cameras in the robot loop instead of on the vision
+    /// thread.  The startup stages all finish in robotInit(), before stepping starts.  The log file writer thread
+    /// does not change what the robot does.
+    /// \param period the robot loop period in seconds
+    public void startStepping(double period) {
+        if (stepper_ != null)
+            return ;
+
+        final long delta = Math.round(period * 1.0e6) ;
+
+        SimulatorJNI.pauseTiming();
+        stepping_ = true ;
+        stepping_start_ = System.nanoTime() ;
+
+        stepper_ = new Thread(() -> {
+            while (stepping_) {
+                SimulatorJNI.stepTiming(delta);
+                steps_++ ;
+            }
+        }, "sim-stepper") ;
+        stepper_.setDaemon(true);
+        stepper_.start();
+
+        logger_.startMessage(MessageType.Info).add("Stepping simulation").add("period", period).endMessage();
+    }
+
     //
     // This is the amount of time to run forward to have the simulation
-    // models catch up with the simulation
+    // models catch up with the simulation.  When the simulation is stepped the
+    // robot time is already paused while the models run.
     //
     public void run(double dt) {
-        SimulatorJNI.pauseTiming();
+        boolean stepped = isStepped() ;
+
+        if (!stepped)
+            SimulatorJNI.pauseTiming();
 
         for(SimulationModel model : active_models_) {
             model.startCycle();
@@ -158,7 +241,8 @@ public class SimulationEngine {
         for(SimulationModel model : active_models_)
             model.endCycle();        
 
-        SimulatorJNI.resumeTiming();
+        if (!stepped)
+            SimulatorJNI.resumeTiming();
     }
 
     public MessageLogger getMessageLogger() {
@@ -212,6 +296,24 @@ public class SimulationEngine {
         }
     }    
 
+    //
+    // Write the assert counts so a test runner can merge the results from many simulations
+    //
+    private void writeResults(String file, int code) {
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("passed=" + passed_count_) ;
+            out.println("failed=" + failed_count_) ;
+            out.println("pending=" + events_.size()) ;
+            out.println("errors=" + logger_.getErrorMessageCount()) ;
+            out.println("status=" + code) ;
+        }
+        catch(Exception ex) {
+            logger_.startMessage(MessageType.Error) ;
+            logger_.add("cannot write simulation results file ").addQuoted(file) ;
+            logger_.add(" - " + ex.getMessage()).endMessage();
+        }
+    }
+
     private void readModelFile(String file) {
         models_.readModelFile(file) ;
     }
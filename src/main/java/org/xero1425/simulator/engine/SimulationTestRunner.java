@@ -0,0 +1,360 @@
+package org.xero1425.simulator.engine;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/// \file
+
+/// \brief This class runs the simulation stimulus files in src/sim/sims in parallel and merges the results.
+///
+/// The simulation engine and the robot are singletons, so each simulation runs in its own JVM.  The runner
+/// starts a number of workers, each of which takes the next stimulus file and runs it in a new JVM with its own
+/// log file, plot directory, and network tables port.  When a simulation exits, the simulation engine writes
+/// its assert counts to a results file, and the runner merges the counts from every simulation into one report.
+///
+/// The arguments are
+///     --jobs N        the number of simulations to run at once, the number of processors by default
+///     --outdir DIR    the directory for the log, plot, output, and results files, testout by default
+///     --timeout SECS  the time a simulation may run before it is stopped and failed, 300 by default
+///     --main CLASS    the robot main class, frc.robot.Main by default
+///     --sims DIR      the directory holding the stimulus files, src/sim/sims by default
+///     --stepped       run the simulations in stepped mode, see SimulationEngine.startStepping()
+///     --list          list the simulations and exit
+///     PATTERN         only run the simulations whose name matches this regular expression
+///
+/// A simulation that does not report a result, because its worker failed, is counted as failed.
+public class SimulationTestRunner {
+    private static final String kSimsDirectory = "src/sim/sims" ;
+
+    // The first network tables port given to a simulation, each worker uses two ports
+    private static final int kFirstPort = 5820 ;
+
+    /// \brief the result of a single simulation
+    static class Result {
+        public final String name_ ;
+        public int passed_ ;
+        public int failed_ ;
+        public int pending_ ;
+        public int errors_ ;
+        public int status_ ;
+        public String problem_ ;
+        public double elapsed_ ;
+
+        public Result(String name) {
+            name_ = name ;
+            passed_ = 0 ;
+            failed_ = 0 ;
+            pending_ = 0 ;
+            errors_ = 0 ;
+            status_ = 1 ;
+            problem_ = null ;
+            elapsed_ = 0.0 ;
+        }
+
+        public boolean passed() {
+            return problem_ == null && status_ == 0 ;
+        }
+    }
+
+    private int jobs_ ;
+    private File outdir_ ;
+    private long timeout_ ;
+    private String main_ ;
+    private File sims_ ;
+    private boolean stepped_ ;
+    private boolean list_ ;
+    private Pattern pattern_ ;
+
+    private ConcurrentLinkedQueue<String> pending_ ;
+    private List<Result> results_ ;
+
+    SimulationTestRunner() {
+        jobs_ = Runtime.getRuntime().availableProcessors() ;
+        outdir_ = new File("testout") ;
+        timeout_ = 300 ;
+        main_ = "frc.robot.Main" ;
+        sims_ = new File(kSimsDirectory) ;
+        stepped_ = false ;
+        list_ = false ;
+        pattern_ = null ;
+
+        pending_ = new ConcurrentLinkedQueue<String>() ;
+        results_ = new ArrayList<Result>() ;
+    }
+
+    public static void main(String... args) {
+        SimulationTestRunner runner = new SimulationTestRunner() ;
+        runner.processArgs(args) ;
+        System.exit(runner.run(System.out)) ;
+    }
+
+    void processArgs(String... args) {
+        int i = 0 ;
+        while (i < args.length) {
+            if (args[i].equals("--jobs") || args[i].equals("--outdir") || args[i].equals("--timeout") || args[i].equals("--main") || args[i].equals("--sims")) {
+                if (i + 1 == args.length) {
+                    System.err.println("command line argument " + args[i] + " requires an additional argument") ;
+                    System.exit(2) ;
+                }
+
+                String value = args[i + 1] ;
+                try {
+                    if (args[i].equals("--jobs"))
+                        jobs_ = Math.max(Integer.parseInt(value), 1) ;
+                    else if (args[i].equals("--outdir"))
+                        outdir_ = new File(value) ;
+                    else if (args[i].equals("--timeout"))
+                        timeout_ = Long.parseLong(value) ;
+                    else if (args[i].equals("--sims"))
+                        sims_ = new File(value) ;
+                    else
+                        main_ = value ;
+                }
+                catch(NumberFormatException ex) {
+                    System.err.println("command line argument " + args[i] + " requires an integer argument") ;
+                    System.exit(2) ;
+                }
+                i++ ;
+            }
+            else if (args[i].equals("--list")) {
+                list_ = true ;
+            }
+            else if (args[i].equals("--stepped")) {
+                stepped_ = true ;
+            }
+            else if (args[i].startsWith("--")) {
+                System.err.println("unknown command line argument '" + args[i] + "'") ;
+                System.exit(2) ;
+            }
+            else {
+                pattern_ = Pattern.compile(args[i]) ;
+            }
+
+            i++ ;
+        }
+    }
+
+    int run(PrintStream out) {
+        List<String> sims = findSimulations() ;
+
+        if (list_) {
+            out.println("Available tests") ;
+            for(String sim : sims)
+                out.println("     " + sim) ;
+            return 0 ;
+        }
+
+        if (sims.size() == 0) {
+            out.println("No simulations found") ;
+            return 1 ;
+        }
+
+        outdir_.mkdirs() ;
+        pending_.addAll(sims) ;
+
+        int workers = Math.min(jobs_, sims.size()) ;
+        out.println("Running " + sims.size() + " simulations with " + workers + " workers: " + String.join(",", sims)) ;
+
+        long start = System.nanoTime() ;
+        List<Thread> threads = new ArrayList<Thread>() ;
+        for(int i = 0 ; i < workers ; i++) {
+            final int port = kFirstPort + 2 * i ;
+            Thread th = new Thread(() -> worker(out, port), "sim-worker-" + i) ;
+            th.start() ;
+            threads.add(th) ;
+        }
+
+        for(Thread th : threads) {
+            try {
+                th.join() ;
+            }
+            catch(InterruptedException ex) {
+                Thread.currentThread().interrupt() ;
+                return 1 ;
+            }
+        }
+
+        return report(out, sims, (System.nanoTime() - start) / 1.0e9) ;
+    }
+
+    private List<String> findSimulations() {
+        List<String> sims = new ArrayList<String>() ;
+
+        File[] files = sims_.listFiles((dir, name) -> name.endsWith(".json")) ;
+        if (files != null) {
+            for(File file : files) {
+                String name = file.getName() ;
+                name = name.substring(0, name.length() - 5) ;
+                if (pattern_ == null || pattern_.matcher(name).find())
+                    sims.add(name) ;
+            }
+        }
+
+        sims.sort(null) ;
+        return sims ;
+    }
+
+    //
+    // Each worker runs one simulation at a time until there are none left.  The network tables
+    // port belongs to the worker, so simulations running at the same time never share a port.
+    //
+    private void worker(PrintStream out, int port) {
+        String sim ;
+        while ((sim = pending_.poll()) != null) {
+            Result result ;
+            try {
+                result = runSimulation(sim, port) ;
+            }
+            catch(RuntimeException ex) {
+                result = new Result(sim) ;
+                result.problem_ = "worker failed - " + ex.toString() ;
+            }
+
+            out.println("Test " + sim + " ... " + (result.passed() ? "passed" : "failed") + String.format(" (%.1f s)", result.elapsed_)) ;
+            addResult(result) ;
+        }
+    }
+
+    //
+    // Add the result of a simulation to the results to be reported
+    //
+    void addResult(Result result) {
+        synchronized(results_) {
+            results_.add(result) ;
+        }
+    }
+
+    private Result runSimulation(String sim, int port) {
+        Result result = new Result(sim) ;
+        File results = new File(outdir_, sim + ".results") ;
+        File output = new File(outdir_, sim + ".out") ;
+        results.delete() ;
+
+        List<String> cmd = new ArrayList<String>() ;
+        cmd.add(ProcessHandle.current().info().command().orElse("java")) ;
+        cmd.add("-Djava.library.path=" + System.getProperty("java.library.path")) ;
+        cmd.add("-cp") ;
+        cmd.add(System.getProperty("java.class.path")) ;
+        cmd.add(main_) ;
+        cmd.addAll(Arrays.asList(
+            "--input", sim,
+            "--logfile", new File(outdir_, sim + ".log").getPath(),
+            "--plotdir", new File(outdir_, sim + "-plots").getPath(),
+            "--results", results.getPath(),
+            "--ntport", Integer.toString(port))) ;
+        if (stepped_)
+            cmd.add("--stepped") ;
+
+        long start = System.nanoTime() ;
+        try {
+            Process proc = new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(output).start() ;
+            if (!proc.waitFor(timeout_, TimeUnit.SECONDS)) {
+                proc.destroyForcibly() ;
+                proc.waitFor() ;
+                result.problem_ = "timed out after " + timeout_ + " seconds" ;
+            }
+            else {
+                readResults(result, results, proc.exitValue()) ;
+            }
+        }
+        catch(Exception ex) {
+            result.problem_ = "cannot run simulation - " + ex.getMessage() ;
+        }
+        result.elapsed_ = (System.nanoTime() - start) / 1.0e9 ;
+
+        return result ;
+    }
+
+    //
+    // A simulation that exits without writing its results did not finish, the exit status alone
+    // does not tell us why, so the output file must be checked
+    //
+    static void readResults(Result result, File results, int code) throws Exception {
+        if (!results.exists()) {
+            result.problem_ = "exited with status " + code + " without writing results" ;
+            return ;
+        }
+
+        for(String line : Files.readAllLines(results.toPath())) {
+            int index = line.indexOf('=') ;
+            if (index == -1)
+                continue ;
+
+            String key = line.substring(0, index).trim() ;
+            int value = Integer.parseInt(line.substring(index + 1).trim()) ;
+
+            if (key.equals("passed"))
+                result.passed_ = value ;
+            else if (key.equals("failed"))
+                result.failed_ = value ;
+            else if (key.equals("pending"))
+                result.pending_ = value ;
+            else if (key.equals("errors"))
+                result.errors_ = value ;
+            else if (key.equals("status"))
+                result.status_ = value ;
+        }
+
+        if (code != result.status_)
+            result.problem_ = "exited with status " + code + " but reported status " + result.status_ ;
+    }
+
+    //
+    // Print the merged results to the stream given, returns the exit status for the runner
+    //
+    int report(PrintStream out, List<String> sims, double elapsed) {
+        int passed = 0 ;
+        int failed = 0 ;
+        int failedsims = 0 ;
+
+        //
+        // A simulation without a result was lost by its worker, and is reported as failed
+        //
+        for(String sim : sims) {
+            boolean found = false ;
+            for(Result result : results_) {
+                if (result.name_.equals(sim))
+                    found = true ;
+            }
+
+            if (!found) {
+                Result result = new Result(sim) ;
+                result.problem_ = "no result was reported" ;
+                results_.add(result) ;
+            }
+        }
+
+        results_.sort((a, b) -> a.name_.compareTo(b.name_)) ;
+
+        out.println() ;
+        out.println("Simulation results") ;
+        for(Result result : results_) {
+            passed += result.passed_ ;
+            failed += result.failed_ ;
+
+            String line = String.format("    %-20s %-6s %4d asserts passed, %4d asserts failed", result.name_, result.passed() ? "passed" : "FAILED", result.passed_, result.failed_) ;
+            if (result.pending_ > 0)
+                line += ", " + result.pending_ + " events left" ;
+            if (result.errors_ > 0)
+                line += ", " + result.errors_ + " error messages" ;
+            if (result.problem_ != null)
+                line += ", " + result.problem_ ;
+            out.println(line) ;
+
+            if (!result.passed())
+                failedsims++ ;
+        }
+
+        out.println() ;
+        out.println(String.format("%d of %d simulations passed, %d asserts passed, %d asserts failed, %.1f seconds", results_.size() - failedsims, results_.size(), passed, failed, elapsed)) ;
+
+        return (failedsims == 0) ? 0 : 1 ;
+    }
+}
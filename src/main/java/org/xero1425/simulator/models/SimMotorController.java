@@ -7,7 +7,7 @@ public abstract class SimMotorController implements ISimMotorController {
 
     private SimulationEngine engine_ ;
     private int plot_id_ ;
-    private Double [] data_ ;
+    private double [] data_ ;
 
     private static String [] plot_cols_ = { "time (s)", "battery (v)", "motor (v)", "pos (rot)", "vel (rps)" } ;
 
@@ -16,7 +16,7 @@ public abstract class SimMotorController implements ISimMotorController {
 
         if (kPlotMotorSims) {
             String busname = (bus.length() > 0) ? bus : "<EMPTY>" ;
-            data_= new Double[plot_cols_.length] ;
+            data_ = new double[plot_cols_.length] ;
             plot_id_ = engine.getRobot().getPlotManager().initPlot("talon-" + busname + "-" + canid) ;
             engine.getRobot().getPlotManager().startPlot(plot_id_, plot_cols_);
         }
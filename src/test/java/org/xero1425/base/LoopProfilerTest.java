@@ -0,0 +1,88 @@
+package org.xero1425.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xero1425.misc.LoopHistogram;
+
+public class LoopProfilerTest {
+    private LoopProfiler profiler_ ;
+
+    @BeforeEach
+    public void setup() {
+        profiler_ = new LoopProfiler() ;
+        profiler_.setEnabled(false) ;
+    }
+
+    //
+    // Record one robot loop the way XeroRobot does, with the simulation time measured inside the loop time
+    //
+    private void loop(long before, long sim, long after) {
+        profiler_.getSimulationHistogram().record(sim) ;
+        profiler_.getLoopHistogram().record(before + sim + after) ;
+        profiler_.update() ;
+    }
+
+    private void assertShareInRange() {
+        double share = profiler_.getSimulationShare() ;
+        assertTrue(share >= 0.0 && share <= 1.0, "simulation share " + share + " is out of range") ;
+    }
+
+    @Test
+    public void shareIsZeroWithoutLoops() {
+        assertEquals(0.0, profiler_.getSimulationShare(), 0.0) ;
+    }
+
+    @Test
+    public void shareIsTheSimulationFractionOfTheLoop() {
+        loop(1000, 3000, 0) ;
+        loop(0, 1000, 3000) ;
+
+        assertEquals(0.5, profiler_.getSimulationShare(), 1.0e-9) ;
+    }
+
+    @Test
+    public void shareStaysInRangeForDisabledAndEnabledLoops() {
+        Random rand = new Random(1425) ;
+
+        //
+        // Disabled loops spend most of their time in the simulation, enabled loops much less
+        //
+        for(int i = 0 ; i < 500 ; i++) {
+            loop(rand.nextInt(100), 10000 + rand.nextInt(10000), rand.nextInt(100)) ;
+            assertShareInRange() ;
+        }
+
+        for(int i = 0 ; i < 500 ; i++) {
+            loop(5000 + rand.nextInt(50000), rand.nextInt(5000), 5000 + rand.nextInt(50000)) ;
+            assertShareInRange() ;
+        }
+
+        assertEquals(1000, profiler_.getLoopHistogram().getCount()) ;
+        assertEquals(1000, profiler_.getSimulationHistogram().getCount()) ;
+    }
+
+    @Test
+    public void resetClearsTheShare() {
+        loop(0, 1000, 1000) ;
+        profiler_.reset() ;
+
+        assertEquals(0, profiler_.getLoopHistogram().getCount()) ;
+        assertEquals(0.0, profiler_.getSimulationShare(), 0.0) ;
+    }
+
+    @Test
+    public void histogramsAreFoundByName() {
+        LoopHistogram h = profiler_.register("drivebase/run") ;
+
+        assertSame(h, profiler_.getHistogram("drivebase/run")) ;
+        assertSame(profiler_.getLoopHistogram(), profiler_.getHistogram(LoopProfiler.LoopName)) ;
+        assertNull(profiler_.getHistogram("missing")) ;
+    }
+}
@@ -0,0 +1,119 @@
+package org.xero1425.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xero1425.misc.MessageLogger;
+
+public class StartupPipelineTest {
+    private MessageLogger logger_ ;
+    private StartupPipeline pipeline_ ;
+    private List<String> order_ ;
+
+    @BeforeEach
+    public void setup() {
+        logger_ = new MessageLogger() ;
+        pipeline_ = new StartupPipeline(() -> logger_) ;
+        order_ = Collections.synchronizedList(new ArrayList<String>()) ;
+    }
+
+    private StartupPipeline.Stage record(String name, long sleep) {
+        return () -> {
+            if (sleep > 0)
+                Thread.sleep(sleep) ;
+            order_.add(name) ;
+        } ;
+    }
+
+    @Test
+    public void submittedStageWaitsForItsDependencies() {
+        pipeline_.submit("a", record("a", 50)) ;
+        pipeline_.submit("b", record("b", 0), "a") ;
+        pipeline_.submit("c", record("c", 0), "b") ;
+        pipeline_.await("c") ;
+
+        assertEquals(List.of("a", "b", "c"), order_) ;
+    }
+
+    @Test
+    public void runWaitsForSubmittedDependencies() {
+        pipeline_.submit("files", record("files", 50)) ;
+        pipeline_.run("main", record("main", 0), "files") ;
+
+        assertEquals(List.of("files", "main"), order_) ;
+    }
+
+    @Test
+    public void runStagesExecuteOnTheCallingThread() {
+        Thread caller = Thread.currentThread() ;
+        AtomicBoolean same = new AtomicBoolean(false) ;
+
+        pipeline_.run("main", () -> same.set(Thread.currentThread() == caller)) ;
+        assertTrue(same.get()) ;
+    }
+
+    @Test
+    public void independentStagesRunAtTheSameTime() throws Exception {
+        CountDownLatch both = new CountDownLatch(2) ;
+        StartupPipeline.Stage stage = () -> {
+            both.countDown() ;
+            if (!both.await(5, TimeUnit.SECONDS))
+                throw new Exception("stages did not overlap") ;
+            order_.add("done") ;
+        } ;
+
+        pipeline_.submit("one", stage) ;
+        pipeline_.submit("two", stage) ;
+        pipeline_.await("one") ;
+        pipeline_.await("two") ;
+
+        assertEquals(2, order_.size()) ;
+        assertEquals(0, logger_.getErrorMessageCount()) ;
+    }
+
+    @Test
+    public void awaitFromTheStageItselfReturns() {
+        pipeline_.submit("self", () -> {
+            pipeline_.await("self") ;
+            order_.add("self") ;
+        }) ;
+        pipeline_.await("self") ;
+
+        assertEquals(List.of("self"), order_) ;
+    }
+
+    @Test
+    public void awaitUnknownStageReturns() {
+        pipeline_.await("missing") ;
+        assertTrue(order_.isEmpty()) ;
+    }
+
+    @Test
+    public void failedStageIsLoggedAndDependentsStillRun() {
+        pipeline_.submit("bad", () -> { throw new Exception("broken") ; }) ;
+        pipeline_.run("after", record("after", 0), "bad") ;
+
+        // The exception and its stack trace are logged as errors
+        assertEquals(List.of("after"), order_) ;
+        assertTrue(logger_.getErrorMessageCount() > 0) ;
+    }
+
+    @Test
+    public void unknownDependencyIsLogged() {
+        pipeline_.run("lonely", record("lonely", 0), "nothing") ;
+
+        assertEquals(List.of("lonely"), order_) ;
+        assertEquals(1, logger_.getErrorMessageCount()) ;
+        assertFalse(pipeline_.isFinished()) ;
+    }
+}
@@ -0,0 +1,108 @@
+package org.xero1425.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xero1425.misc.MessageLogger;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+
+public class TrajectoryServiceTest {
+    private static final double kQuantum = TrajectoryService.kPositionQuantum ;
+
+    private MessageLogger logger_ ;
+    private TrajectoryService service_ ;
+    private TrajectoryConfig config_ ;
+
+    @BeforeEach
+    public void setup() {
+        logger_ = new MessageLogger() ;
+        int id = logger_.registerSubsystem("trajectory") ;
+        service_ = new TrajectoryService(() -> logger_, () -> id, 2) ;
+        config_ = new TrajectoryConfig(3.0, 2.5) ;
+    }
+
+    private static List<Pose2d> path(double x, double y, double degrees) {
+        return List.of(new Pose2d(x, y, Rotation2d.fromDegrees(degrees)), new Pose2d(4.0, 5.0, Rotation2d.fromDegrees(0.0))) ;
+    }
+
+    @Test
+    public void posesInTheSameCellShareATrajectory() {
+        CompletableFuture<Trajectory> first = service_.generate(path(1.0, 2.0, 10.0), config_) ;
+        CompletableFuture<Trajectory> second = service_.generate(path(1.0 + kQuantum * 0.4, 2.0 - kQuantum * 0.4, 10.0 + TrajectoryService.kAngleQuantum * 0.4), config_) ;
+
+        assertSame(first, second) ;
+        assertEquals(1, service_.getCacheHits()) ;
+        assertEquals(1, service_.getCacheMisses()) ;
+    }
+
+    @Test
+    public void posesInDifferentCellsDoNotShare() {
+        CompletableFuture<Trajectory> first = service_.generate(path(1.0, 2.0, 10.0), config_) ;
+        CompletableFuture<Trajectory> second = service_.generate(path(1.0 + kQuantum, 2.0, 10.0), config_) ;
+
+        assertNotSame(first, second) ;
+        assertEquals(0, service_.getCacheHits()) ;
+        assertEquals(2, service_.getCacheMisses()) ;
+    }
+
+    @Test
+    public void headingsWrapAround() {
+        CompletableFuture<Trajectory> first = service_.generate(path(1.0, 2.0, 180.0), config_) ;
+        CompletableFuture<Trajectory> second = service_.generate(path(1.0, 2.0, -180.0), config_) ;
+
+        assertSame(first, second) ;
+    }
+
+    @Test
+    public void differentConstraintsDoNotShare() {
+        CompletableFuture<Trajectory> first = service_.generate(path(1.0, 2.0, 0.0), config_) ;
+        CompletableFuture<Trajectory> second = service_.generate(path(1.0, 2.0, 0.0), new TrajectoryConfig(3.0, 2.0)) ;
+
+        assertNotSame(first, second) ;
+    }
+
+    @Test
+    public void leastRecentlyUsedTrajectoryIsDropped() {
+        CompletableFuture<Trajectory> a = service_.generate(path(1.0, 1.0, 0.0), config_) ;
+        CompletableFuture<Trajectory> b = service_.generate(path(2.0, 2.0, 0.0), config_) ;
+
+        //
+        // Using a makes b the least recently used, so adding c drops b
+        //
+        assertSame(a, service_.generate(path(1.0, 1.0, 0.0), config_)) ;
+        service_.generate(path(3.0, 3.0, 0.0), config_) ;
+
+        assertSame(a, service_.generate(path(1.0, 1.0, 0.0), config_)) ;
+        assertNotSame(b, service_.generate(path(2.0, 2.0, 0.0), config_)) ;
+    }
+
+    @Test
+    public void prewarmIsNotCountedAndIsFoundLater() {
+        service_.prewarm(path(1.0, 2.0, 0.0), config_) ;
+        assertEquals(0, service_.getCacheMisses()) ;
+
+        service_.generate(path(1.0, 2.0, 0.0), config_).join() ;
+        assertEquals(1, service_.getCacheHits()) ;
+        assertEquals(0, service_.getCacheMisses()) ;
+    }
+
+    @Test
+    public void synchronousTrajectoryIsReadyAtOnce() {
+        service_.setSynchronous(true) ;
+
+        CompletableFuture<Trajectory> future = service_.generate(path(1.0, 2.0, 0.0), config_) ;
+        assertTrue(future.isDone()) ;
+        assertSame(future, service_.generate(path(1.0, 2.0, 0.0), config_)) ;
+    }
+}
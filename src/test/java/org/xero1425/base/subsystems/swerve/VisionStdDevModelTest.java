@@ -0,0 +1,118 @@
+package org.xero1425.base.subsystems.swerve;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xero1425.base.IVisionLocalization.LocationData;
+import org.xero1425.base.subsystems.swerve.VisionStdDevModel.VisionParamsType;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.numbers.N3;
+
+public class VisionStdDevModelTest {
+    private static final double kXY = 0.1 ;
+    private static final double kHeading = 0.2 ;
+    private static final double kAmbiguity = 5.0 ;
+    private static final double kMaxAmbiguity = 0.3 ;
+
+    private Vector<N3> single_near_ ;
+    private Vector<N3> single_far_ ;
+    private Vector<N3> multi_near_ ;
+    private Vector<N3> multi_far_ ;
+    private VisionStdDevModel model_ ;
+
+    @BeforeEach
+    public void setup() {
+        single_near_ = VecBuilder.fill(0.01, 0.01, 9.0) ;
+        single_far_ = VecBuilder.fill(19.0, 19.0, 9.0) ;
+        multi_near_ = VecBuilder.fill(0.02, 0.02, 9.0) ;
+        multi_far_ = VecBuilder.fill(9.0, 9.0, 9.0) ;
+        model_ = new VisionStdDevModel(2.0, single_near_, single_far_, 4.0, multi_near_, multi_far_) ;
+    }
+
+    private static LocationData sample(int tags, double distance, double ambiguity) {
+        LocationData lc = new LocationData() ;
+        lc.tagCount = tags ;
+        lc.distance = distance ;
+        lc.ambiguity = ambiguity ;
+        return lc ;
+    }
+
+    private Vector<N3> stddevs(LocationData lc) {
+        return model_.getStdDevs(lc, model_.getParamsType(lc)) ;
+    }
+
+    @Test
+    public void tableIsTheDefault() {
+        assertFalse(model_.isDynamic()) ;
+
+        assertSame(single_near_, stddevs(sample(1, 1.9, 0.0))) ;
+        assertSame(single_far_, stddevs(sample(1, 2.0, 0.0))) ;
+        assertSame(multi_near_, stddevs(sample(2, 3.9, 0.0))) ;
+        assertSame(multi_far_, stddevs(sample(3, 4.0, 0.0))) ;
+        assertEquals(VisionParamsType.SingleFar, model_.getParamsType(sample(0, 0.0, 0.0))) ;
+    }
+
+    @Test
+    public void tableDoesNotRejectAmbiguousTags() {
+        assertFalse(model_.isAmbiguous(sample(1, 1.0, 0.9))) ;
+    }
+
+    @Test
+    public void dynamicGrowsWithDistanceSquared() {
+        model_.setDynamic(kXY, kHeading, kAmbiguity, kMaxAmbiguity) ;
+
+        Vector<N3> near = stddevs(sample(2, 0.0, 0.0)) ;
+        Vector<N3> far = stddevs(sample(2, 3.0, 0.0)) ;
+
+        assertEquals(kXY / 2.0, near.get(0, 0), 1.0e-9) ;
+        assertEquals(kXY / 2.0, near.get(1, 0), 1.0e-9) ;
+        assertEquals(kHeading / 2.0, near.get(2, 0), 1.0e-9) ;
+        assertEquals(kXY * 10.0 / 2.0, far.get(0, 0), 1.0e-9) ;
+        assertEquals(kHeading * 10.0 / 2.0, far.get(2, 0), 1.0e-9) ;
+    }
+
+    @Test
+    public void dynamicShrinksWithTagCount() {
+        model_.setDynamic(kXY, kHeading, kAmbiguity, kMaxAmbiguity) ;
+
+        double two = stddevs(sample(2, 2.0, 0.0)).get(0, 0) ;
+        double four = stddevs(sample(4, 2.0, 0.0)).get(0, 0) ;
+
+        assertEquals(kXY * 5.0 / 2.0, two, 1.0e-9) ;
+        assertEquals(two / 2.0, four, 1.0e-9) ;
+    }
+
+    @Test
+    public void dynamicIgnoresSingleTagHeading() {
+        model_.setDynamic(kXY, kHeading, kAmbiguity, kMaxAmbiguity) ;
+
+        Vector<N3> single = stddevs(sample(1, 1.0, 0.0)) ;
+        assertEquals(kXY * 2.0, single.get(0, 0), 1.0e-9) ;
+        assertEquals(VisionStdDevModel.kIgnoreHeading, single.get(2, 0), 0.0) ;
+    }
+
+    @Test
+    public void dynamicScalesWithAmbiguity() {
+        model_.setDynamic(kXY, kHeading, kAmbiguity, kMaxAmbiguity) ;
+
+        Vector<N3> clear = stddevs(sample(1, 0.0, 0.0)) ;
+        Vector<N3> ambiguous = stddevs(sample(1, 0.0, 0.2)) ;
+
+        assertEquals(clear.get(0, 0) * (1.0 + kAmbiguity * 0.2), ambiguous.get(0, 0), 1.0e-9) ;
+    }
+
+    @Test
+    public void dynamicRejectsOnlyAmbiguousSingleTags() {
+        model_.setDynamic(kXY, kHeading, kAmbiguity, kMaxAmbiguity) ;
+
+        assertFalse(model_.isAmbiguous(sample(1, 1.0, kMaxAmbiguity))) ;
+        assertTrue(model_.isAmbiguous(sample(1, 1.0, kMaxAmbiguity + 0.01))) ;
+        assertFalse(model_.isAmbiguous(sample(2, 1.0, 0.9))) ;
+    }
+}
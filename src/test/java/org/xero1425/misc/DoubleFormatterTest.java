@@ -0,0 +1,117 @@
+package org.xero1425.misc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class DoubleFormatterTest {
+    // The number of random values compared against String.format() for each format
+    private static final int kValueCount = 400000 ;
+
+    // DoubleFormatter rounds using double arithmetic, String.format() rounds the exact decimal value of the
+    // double.  They can disagree in the last digit when a value is within a rounding error of a half way point.
+    private static final double kMaxMismatchRate = 1.0e-3 ;
+
+    private static String fixed(double value, int decimals) {
+        return DoubleFormatter.appendFixed(new StringBuilder(), value, decimals).toString() ;
+    }
+
+    private static String significant(double value, int digits) {
+        return DoubleFormatter.appendSignificant(new StringBuilder(), value, digits).toString() ;
+    }
+
+    //
+    // Values spread over the magnitudes the robot logs, from tiny errors to encoder counts, with both signs
+    //
+    private static double randomValue(Random rnd) {
+        double mag = Math.pow(10.0, rnd.nextInt(14) - 6) ;
+        double value = rnd.nextDouble() * mag ;
+        return rnd.nextBoolean() ? value : -value ;
+    }
+
+    private static void checkParity(String format, int digits, boolean sig) {
+        Random rnd = new Random(1425) ;
+        int mismatches = 0 ;
+
+        for(int i = 0 ; i < kValueCount ; i++) {
+            double value = randomValue(rnd) ;
+            String expected = String.format(Locale.US, format, value) ;
+            String actual = sig ? significant(value, digits) : fixed(value, digits) ;
+
+            if (!expected.equals(actual)) {
+                mismatches++ ;
+
+                //
+                // A mismatch must only be a one digit rounding difference in the last place
+                //
+                double e = Double.parseDouble(expected) ;
+                double a = Double.parseDouble(actual) ;
+                double ulp ;
+                if (sig) {
+                    int exp = (int)Math.floor(Math.log10(Math.abs(e))) ;
+                    ulp = Math.pow(10.0, exp - digits + 1) ;
+                }
+                else {
+                    ulp = Math.pow(10.0, -digits) ;
+                }
+                assertTrue(Math.abs(e - a) <= ulp * 1.0001, "value " + value + " expected " + expected + " got " + actual) ;
+            }
+        }
+
+        assertTrue(mismatches <= kValueCount * kMaxMismatchRate, format + " had " + mismatches + " mismatches") ;
+    }
+
+    @Test
+    public void significantMatchesStringFormat() {
+        checkParity("%.4g", 4, true) ;
+    }
+
+    @Test
+    public void fixedMatchesStringFormat() {
+        checkParity("%.4f", 4, false) ;
+        checkParity("%.3f", 3, false) ;
+        checkParity("%.1f", 1, false) ;
+    }
+
+    @Test
+    public void significantSwitchesToScientificNotation() {
+        assertEquals("1.235e+05", significant(123456.0, 4)) ;
+        assertEquals("1.000e-05", significant(0.00001, 4)) ;
+        assertEquals("0.0001000", significant(0.0001, 4)) ;
+        assertEquals("1234", significant(1234.0, 4)) ;
+        assertEquals("-2.500", significant(-2.5, 4)) ;
+    }
+
+    @Test
+    public void significantCarriesIntoNextDigit() {
+        assertEquals("10.00", significant(9.99999, 4)) ;
+        assertEquals("1.000e+04", significant(9999.9, 4)) ;
+    }
+
+    @Test
+    public void fixedPadsIntegerDigits() {
+        assertEquals("003.1416", DoubleFormatter.appendFixed(new StringBuilder(), Math.PI, 4, 3).toString()) ;
+        assertEquals("1234.5000", DoubleFormatter.appendFixed(new StringBuilder(), 1234.5, 4, 3).toString()) ;
+    }
+
+    @Test
+    public void zerosAndSpecialValues() {
+        assertEquals("0.0000", fixed(0.0, 4)) ;
+        assertEquals("-0.0000", fixed(-0.0, 4)) ;
+        assertEquals("0.000", significant(0.0, 4)) ;
+        assertEquals("NaN", fixed(Double.NaN, 4)) ;
+        assertEquals("Infinity", significant(Double.POSITIVE_INFINITY, 4)) ;
+        assertEquals("-Infinity", fixed(Double.NEGATIVE_INFINITY, 2)) ;
+    }
+
+    @Test
+    public void appendsToExistingText() {
+        StringBuilder bld = new StringBuilder("x = ") ;
+        DoubleFormatter.appendFixed(bld, 1.5, 2) ;
+        assertEquals("x = 1.50", bld.toString()) ;
+    }
+}
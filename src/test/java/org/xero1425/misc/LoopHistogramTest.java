@@ -0,0 +1,56 @@
+package org.xero1425.misc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class LoopHistogramTest {
+    @Test
+    public void emptyHistogramReportsZero() {
+        LoopHistogram h = new LoopHistogram("empty") ;
+
+        assertEquals(0, h.getCount()) ;
+        assertEquals(0, h.getMin()) ;
+        assertEquals(0, h.getMax()) ;
+        assertEquals(0.0, h.getMean(), 0.0) ;
+        assertEquals(0, h.getValueAtPercentile(50.0)) ;
+    }
+
+    @Test
+    public void smallTimesAreExact() {
+        LoopHistogram h = new LoopHistogram("small") ;
+        for(int i = 1 ; i <= 50 ; i++)
+            h.record(i) ;
+
+        assertEquals(1, h.getMin()) ;
+        assertEquals(50, h.getMax()) ;
+        assertEquals(25, h.getValueAtPercentile(50.0)) ;
+        assertEquals(45, h.getValueAtPercentile(90.0)) ;
+        assertEquals(1275, h.getTotal()) ;
+    }
+
+    @Test
+    public void largeTimesAreWithinTheBucketWidth() {
+        LoopHistogram h = new LoopHistogram("large") ;
+        for(long ns = 1000 ; ns <= 20000000 ; ns = ns * 3 / 2) {
+            h.reset() ;
+            h.record(ns) ;
+            h.record(ns * 2) ;
+
+            long p50 = h.getValueAtPercentile(50.0) ;
+            assertTrue(p50 >= ns && p50 <= ns + ns / 16, "p50 " + p50 + " for " + ns) ;
+            assertEquals(ns * 2, h.getValueAtPercentile(100.0)) ;
+        }
+    }
+
+    @Test
+    public void negativeTimesAreRecordedAsZero() {
+        LoopHistogram h = new LoopHistogram("negative") ;
+        h.record(-5) ;
+
+        assertEquals(1, h.getCount()) ;
+        assertEquals(0, h.getMin()) ;
+        assertEquals(0, h.getTotal()) ;
+    }
+}
@@ -0,0 +1,251 @@
+package org.xero1425.misc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class MessageLogDecoderTest {
+
+    // Keeps the text lines the logger writes, to compare with the decoded binary log
+    private static class TextCapture implements MessageDestination {
+        public final List<String> lines_ = new ArrayList<String>() ;
+
+        public void displayMessage(MessageType type, int subsystem, String msg) {
+            lines_.add(msg) ;
+        }
+    }
+
+    private Path dir_ ;
+    private Path file_ ;
+    private MessageLogger logger_ ;
+    private TextCapture text_ ;
+    private MessageDestinationBinary binary_ ;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        dir_ = Files.createTempDirectory("xlog") ;
+        file_ = dir_.resolve("test.xlog") ;
+
+        logger_ = new MessageLogger() ;
+        logger_.setTimeSource(() -> 12.5) ;
+        text_ = new TextCapture() ;
+        binary_ = new MessageDestinationBinary(file_.toString()) ;
+        logger_.addDestination(text_) ;
+        logger_.addDestination(binary_) ;
+    }
+
+    @AfterEach
+    public void cleanup() {
+        binary_.close() ;
+
+        //
+        // The decoder maps the file, and a mapped file cannot be deleted on some systems
+        //
+        file_.toFile().deleteOnExit() ;
+        dir_.toFile().deleteOnExit() ;
+    }
+
+    private String decode(boolean csv) throws IOException {
+        binary_.close() ;
+
+        StringWriter out = new StringWriter() ;
+        MessageLogDecoder decoder = new MessageLogDecoder(file_.toString()) ;
+        if (csv)
+            decoder.decodeCSV(out) ;
+        else
+            decoder.decodeText(out) ;
+
+        return out.toString() ;
+    }
+
+    private void logAllKinds(int id) {
+        logger_.startMessage(MessageType.Info, id) ;
+        logger_.add("plain text").add(' ').add(42).add(7L).add(true).add(1.5) ;
+        logger_.addQuoted("quoted") ;
+        logger_.endMessage() ;
+
+        logger_.startMessage(MessageType.Warning, id) ;
+        logger_.add("speed", 3.14159) ;
+        logger_.add("count", 12) ;
+        logger_.add("ready", false) ;
+        logger_.add("name", "front-left") ;
+        logger_.add("quoted", "back-right", true) ;
+        logger_.add("angle", Rotation2d.fromDegrees(45.0)) ;
+        logger_.add("pose", new Pose2d(1.25, 2.5, Rotation2d.fromDegrees(90.0))) ;
+        logger_.add("target", new Translation2d(3.0, 4.0)) ;
+        logger_.add("formatted", 0.125, "%.2f") ;
+        logger_.endMessage() ;
+    }
+
+    @Test
+    public void textRoundTripMatchesTextLog() throws IOException {
+        int id = logger_.registerSubsystem("drivebase") ;
+        logger_.enableSubsystem("drivebase") ;
+
+        logAllKinds(id) ;
+
+        logger_.startMessage(MessageType.Error) ;
+        logger_.add("first line\nsecond line") ;
+        logger_.endMessage() ;
+
+        StringBuilder expected = new StringBuilder() ;
+        for(String line : text_.lines_)
+            expected.append(line).append('\n') ;
+
+        assertEquals(expected.toString(), decode(false)) ;
+    }
+
+    @Test
+    public void nonAsciiTextSurvivesRoundTrip() throws IOException {
+        logger_.startMessage(MessageType.Info) ;
+        logger_.add("caf\u00e9 \u2192 \ud83e\udd16") ;
+        logger_.add("\u00e9t\u00e9", "\u00fcber", true) ;
+        logger_.endMessage() ;
+
+        assertEquals(text_.lines_.get(0) + "\n", decode(false)) ;
+    }
+
+    @Test
+    public void csvHasOneRowPerNamedField() throws IOException {
+        int id = logger_.registerSubsystem("shooter") ;
+        logger_.enableSubsystem("shooter") ;
+
+        logger_.startMessage(MessageType.Info, id) ;
+        logger_.add("unnamed") ;
+        logger_.add("velocity", 2.5) ;
+        logger_.add("label", "a,b") ;
+        logger_.endMessage() ;
+
+        String[] rows = decode(true).split("\n") ;
+        long thread = Thread.currentThread().getId() ;
+
+        assertEquals(3, rows.length) ;
+        assertEquals("time,thread,type,subsystem,name,value", rows[0]) ;
+        assertEquals("12.5000," + thread + ",Info,shooter,velocity,2.500", rows[1]) ;
+        assertEquals("12.5000," + thread + ",Info,shooter,label,\"a,b\"", rows[2]) ;
+    }
+
+    @Test
+    public void namesAreWrittenOnce() throws IOException {
+        for(int i = 0 ; i < 100 ; i++) {
+            logger_.startMessage(MessageType.Info) ;
+            logger_.add("a-long-field-name-that-repeats", i) ;
+            logger_.endMessage() ;
+        }
+
+        String text = decode(false) ;
+        assertEquals(100, text.split("\n").length) ;
+
+        byte[] data = Files.readAllBytes(file_) ;
+        String raw = new String(data, java.nio.charset.StandardCharsets.ISO_8859_1) ;
+        assertEquals(raw.indexOf("a-long-field-name-that-repeats"), raw.lastIndexOf("a-long-field-name-that-repeats")) ;
+    }
+
+    //
+    // Cut bytes off the end of the closed log file, as a power loss would
+    //
+    private void truncate(int bytes) throws IOException {
+        binary_.close() ;
+        byte[] data = Files.readAllBytes(file_) ;
+        Files.write(file_, Arrays.copyOf(data, data.length - bytes)) ;
+    }
+
+    @Test
+    public void truncatedFileKeepsTheCompleteRecords() throws IOException {
+        for(int i = 0 ; i < 10 ; i++) {
+            logger_.startMessage(MessageType.Info) ;
+            logger_.add("sample", i) ;
+            logger_.endMessage() ;
+        }
+        truncate(3) ;
+
+        StringWriter out = new StringWriter() ;
+        MessageLogDecoder decoder = new MessageLogDecoder(file_.toString()) ;
+        decoder.decodeText(out) ;
+
+        String[] lines = out.toString().split("\n") ;
+        assertEquals(10, lines.length) ;
+        for(int i = 0 ; i < 9 ; i++)
+            assertEquals(text_.lines_.get(i), lines[i]) ;
+        assertTrue(lines[9].contains("truncated")) ;
+        assertTrue(decoder.isTruncated()) ;
+    }
+
+    @Test
+    public void truncatedFileKeepsTheCompleteCSVRows() throws IOException {
+        for(int i = 0 ; i < 5 ; i++) {
+            logger_.startMessage(MessageType.Info) ;
+            logger_.add("label", "value-" + i) ;
+            logger_.endMessage() ;
+        }
+        truncate(4) ;
+
+        StringWriter out = new StringWriter() ;
+        MessageLogDecoder decoder = new MessageLogDecoder(file_.toString()) ;
+        decoder.decodeCSV(out) ;
+
+        String[] rows = out.toString().split("\n") ;
+        assertEquals(5, rows.length) ;
+        assertTrue(rows[4].endsWith(",label,value-3")) ;
+        assertTrue(decoder.isTruncated()) ;
+    }
+
+    @Test
+    public void fileCutAtAnyRecordByteDecodes() throws IOException {
+        int id = logger_.registerSubsystem("drivebase") ;
+        logger_.enableSubsystem("drivebase") ;
+        logAllKinds(id) ;
+        binary_.close() ;
+
+        byte[] data = Files.readAllBytes(file_) ;
+        int header = MessageDestinationBinary.kMagic.length + Short.BYTES ;
+
+        for(int length = header ; length < data.length ; length++) {
+            Files.write(file_, Arrays.copyOf(data, length)) ;
+
+            MessageLogDecoder decoder = new MessageLogDecoder(file_.toString()) ;
+            decoder.decodeText(new StringWriter()) ;
+            decoder.decodeCSV(new StringWriter()) ;
+        }
+    }
+
+    @Test
+    public void completeFileIsNotTruncated() throws IOException {
+        logger_.startMessage(MessageType.Info) ;
+        logger_.add("done") ;
+        logger_.endMessage() ;
+        binary_.close() ;
+
+        MessageLogDecoder decoder = new MessageLogDecoder(file_.toString()) ;
+        decoder.decodeText(new StringWriter()) ;
+        assertFalse(decoder.isTruncated()) ;
+        assertEquals(-1, decoder.getTruncatedOffset()) ;
+    }
+
+    @Test
+    public void rejectsFileThatIsNotABinaryLog() throws IOException {
+        binary_.close() ;
+        Files.write(file_, "not a log".getBytes()) ;
+
+        MessageLogDecoder decoder = new MessageLogDecoder(file_.toString()) ;
+        IOException ex = assertThrows(IOException.class, () -> decoder.decodeText(new StringWriter())) ;
+        assertTrue(ex.getMessage().contains("not a binary log file")) ;
+    }
+}
@@ -0,0 +1,95 @@
+package org.xero1425.misc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class SPSCQueueTest {
+    // The number of objects handed from one thread to the other in the threaded test
+    private static final int kTransferCount = 100000 ;
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(1, new SPSCQueue<Integer>(1).getCapacity()) ;
+        assertEquals(32, new SPSCQueue<Integer>(32).getCapacity()) ;
+        assertEquals(64, new SPSCQueue<Integer>(33).getCapacity()) ;
+    }
+
+    @Test
+    public void objectsComeOutInOrder() {
+        SPSCQueue<Integer> queue = new SPSCQueue<Integer>(4) ;
+        assertNull(queue.poll()) ;
+
+        for(int i = 0 ; i < 3 ; i++)
+            assertTrue(queue.offer(i)) ;
+        assertEquals(3, queue.size()) ;
+
+        for(int i = 0 ; i < 3 ; i++)
+            assertEquals(Integer.valueOf(i), queue.poll()) ;
+        assertNull(queue.poll()) ;
+        assertEquals(0, queue.size()) ;
+    }
+
+    @Test
+    public void fullQueueDropsAndCounts() {
+        SPSCQueue<Integer> queue = new SPSCQueue<Integer>(2) ;
+
+        assertTrue(queue.offer(1)) ;
+        assertTrue(queue.offer(2)) ;
+        assertFalse(queue.offer(3)) ;
+        assertFalse(queue.offer(4)) ;
+        assertEquals(2, queue.getDroppedCount()) ;
+
+        //
+        // The objects already in the queue are kept, the new ones are dropped
+        //
+        assertEquals(Integer.valueOf(1), queue.poll()) ;
+        assertTrue(queue.offer(5)) ;
+        assertEquals(Integer.valueOf(2), queue.poll()) ;
+        assertEquals(Integer.valueOf(5), queue.poll()) ;
+        assertNull(queue.poll()) ;
+    }
+
+    @Test
+    public void positionsWrapAroundTheSlots() {
+        SPSCQueue<Integer> queue = new SPSCQueue<Integer>(4) ;
+
+        for(int i = 0 ; i < 100 ; i++) {
+            assertTrue(queue.offer(i)) ;
+            assertTrue(queue.offer(i + 1000)) ;
+            assertEquals(Integer.valueOf(i), queue.poll()) ;
+            assertEquals(Integer.valueOf(i + 1000), queue.poll()) ;
+        }
+        assertEquals(0, queue.getDroppedCount()) ;
+    }
+
+    @Test
+    public void producerAndConsumerThreadsSeeEveryObjectInOrder() throws InterruptedException {
+        SPSCQueue<Integer> queue = new SPSCQueue<Integer>(16) ;
+
+        Thread producer = new Thread(() -> {
+            for(int i = 0 ; i < kTransferCount ; i++) {
+                while (!queue.offer(i))
+                    Thread.yield() ;
+            }
+        }, "producer") ;
+        producer.start() ;
+
+        int expected = 0 ;
+        while (expected < kTransferCount) {
+            Integer value = queue.poll() ;
+            if (value == null) {
+                Thread.yield() ;
+                continue ;
+            }
+            assertEquals(Integer.valueOf(expected), value) ;
+            expected++ ;
+        }
+
+        producer.join() ;
+        assertNull(queue.poll()) ;
+    }
+}
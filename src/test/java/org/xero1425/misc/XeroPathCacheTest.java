@@ -0,0 +1,185 @@
+package org.xero1425.misc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class XeroPathCacheTest {
+    private static final String kName = "test" ;
+    private static final String kExt = "-main.csv" ;
+
+    // More segments than a path has room for when it is created, so the columns have to grow
+    private static final int kSegments = 150 ;
+
+    // Keeps the text of each message, to see which paths were read from the cache
+    private static class TextCapture implements MessageDestination {
+        public final List<String> lines_ = new ArrayList<String>() ;
+
+        public void displayMessage(MessageType type, int subsystem, String msg) {
+            lines_.add(msg) ;
+        }
+    }
+
+    private Path dir_ ;
+    private Path csv_ ;
+    private Path cache_ ;
+    private MessageLogger logger_ ;
+    private TextCapture text_ ;
+    private XeroPathManager mgr_ ;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        dir_ = Files.createTempDirectory("xpath") ;
+        csv_ = dir_.resolve(kName + kExt) ;
+        cache_ = dir_.resolve("cache").resolve(kName + ".xpath") ;
+
+        logger_ = new MessageLogger() ;
+        text_ = new TextCapture() ;
+        logger_.addDestination(text_) ;
+
+        mgr_ = new XeroPathManager(logger_, dir_.toString(), XeroPathType.SwerveHolonomic, dir_.resolve("cache").toString()) ;
+        logger_.enableMessageType(MessageType.Debug) ;
+        logger_.enableSubsystem("pathmanager") ;
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        //
+        // The cache is read through a mapped file, and a mapped file cannot be deleted on some systems
+        //
+        try (Stream<Path> files = Files.walk(dir_)) {
+            files.sorted(Comparator.reverseOrder()).forEach((p) -> p.toFile().deleteOnExit()) ;
+        }
+    }
+
+    private static double value(int seg, int col) {
+        return seg * 0.02 + col * 0.125 ;
+    }
+
+    private void writeCSV() throws IOException {
+        StringBuilder bld = new StringBuilder("time,x,y,position,velocity,acceleration,heading,curvature,rotation\n") ;
+        for(int seg = 0 ; seg < kSegments ; seg++) {
+            for(int col = 0 ; col < 9 ; col++) {
+                if (col != 0)
+                    bld.append(',') ;
+                bld.append(value(seg, col)) ;
+            }
+            bld.append('\n') ;
+        }
+        Files.write(csv_, bld.toString().getBytes()) ;
+    }
+
+    private XeroPath load() throws Exception {
+        text_.lines_.clear() ;
+
+        assertTrue(mgr_.loadPath(kName)) ;
+        return mgr_.getPath(kName) ;
+    }
+
+    private boolean loadedFromCache() {
+        for(String line : text_.lines_) {
+            if (line.contains("loaded path '" + kName + "' from cache"))
+                return true ;
+        }
+        return false ;
+    }
+
+    private static void assertSamePath(XeroPath expected, XeroPath actual) {
+        assertEquals(expected.getTrajectoryEntryCount(), actual.getTrajectoryEntryCount()) ;
+        for(int seg = 0 ; seg < expected.getTrajectoryEntryCount() ; seg++) {
+            for(int col = 0 ; col < XeroPath.ColumnCount ; col++)
+                assertEquals(expected.getValue(0, col, seg), actual.getValue(0, col, seg), 0.0) ;
+        }
+    }
+
+    @Test
+    public void cachedPathMatchesCSVPath() throws Exception {
+        writeCSV() ;
+
+        XeroPath csv = load() ;
+        assertTrue(!loadedFromCache()) ;
+        assertTrue(Files.exists(cache_)) ;
+        assertEquals(kSegments, csv.getTrajectoryEntryCount()) ;
+
+        XeroPath cached = load() ;
+        assertTrue(loadedFromCache()) ;
+        assertSamePath(csv, cached) ;
+        assertEquals(value(kSegments - 1, 1), cached.getValue(0, XeroPath.XColumn, kSegments - 1), 0.0) ;
+    }
+
+    @Test
+    public void changedCSVIsReadAgain() throws Exception {
+        writeCSV() ;
+        load() ;
+
+        //
+        // Same size, different contents, and a different modification time, so only the hash tells them apart
+        //
+        long size = Files.size(csv_) ;
+        String text = new String(Files.readAllBytes(csv_)).replaceFirst("\n0\\.0,", "\n5.0,") ;
+        Files.write(csv_, text.getBytes()) ;
+        Files.setLastModifiedTime(csv_, FileTime.fromMillis(Files.getLastModifiedTime(csv_).toMillis() + 10000)) ;
+        assertEquals(size, Files.size(csv_)) ;
+
+        XeroPath path = load() ;
+        assertTrue(!loadedFromCache()) ;
+        assertEquals(5.0, path.getValue(0, XeroPath.TimeColumn, 0), 0.0) ;
+    }
+
+    @Test
+    public void touchedCSVStillUsesCache() throws Exception {
+        writeCSV() ;
+        load() ;
+
+        long mtime = Files.getLastModifiedTime(csv_).toMillis() + 10000 ;
+        Files.setLastModifiedTime(csv_, FileTime.fromMillis(mtime)) ;
+
+        load() ;
+        assertTrue(loadedFromCache()) ;
+
+        //
+        // The new modification time is stored, after the magic number, version, and source count
+        //
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(cache_)) ;
+        assertEquals(mtime, buf.getLong(8)) ;
+    }
+
+    @Test
+    public void storingPathLeavesItUnchanged() throws Exception {
+        XeroPath path = new XeroPath(kName, 1) ;
+        for(int i = 0 ; i < 10 ; i++)
+            path.addPathSegment(0, new XeroPathSegment(i, i, 0, 0, 0, 0, 0, 0, 0, 0)) ;
+
+        double[][] cols = path.getColumns(0) ;
+        assertEquals(10, cols[XeroPath.TimeColumn].length) ;
+
+        cols[XeroPath.XColumn][0] = 100.0 ;
+        assertEquals(0.0, path.getValue(0, XeroPath.XColumn, 0), 0.0) ;
+
+        for(int i = 10 ; i < 200 ; i++)
+            path.addPathSegment(0, new XeroPathSegment(i, i, 0, 0, 0, 0, 0, 0, 0, 0)) ;
+        assertEquals(200, path.getTrajectoryEntryCount()) ;
+    }
+
+    @Test
+    public void emptyPathCanGrowAfterItIsStored() throws Exception {
+        XeroPath path = new XeroPath(kName, 1) ;
+        assertEquals(0, path.getColumns(0)[XeroPath.TimeColumn].length) ;
+
+        path.addPathSegment(0, new XeroPathSegment(1, 2, 3, 0, 0, 0, 0, 0, 0, 0)) ;
+        assertEquals(2.0, path.getValue(0, XeroPath.XColumn, 0), 0.0) ;
+    }
+}
@@ -0,0 +1,212 @@
+package org.xero1425.misc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class XeroPathTest {
+    private static final double kEpsilon = 1.0e-9 ;
+    private static final double kFieldLength = 16.54 ;
+    private static final double kFieldWidth = 8.21 ;
+
+    // Segments every 0.02 seconds, long enough that the binary search takes several steps
+    private static final int kSegments = 101 ;
+    private static final double kDT = 0.02 ;
+
+    private XeroPath path_ ;
+    private XeroPathSample sample_ ;
+
+    //
+    // A path along x at 2 m/s with y at 1 + x, the heading turning 1 degree per segment, and the
+    // rotation turning -1.5 degrees per segment
+    //
+    private static XeroPathSegment segment(int i) {
+        double t = i * kDT ;
+        double x = t * 2.0 ;
+        return new XeroPathSegment(t, x, 1.0 + x, x, 2.0, 0.0, 0.0, i, 0.5, -1.5 * i) ;
+    }
+
+    @BeforeEach
+    public void setup() throws Exception {
+        path_ = new XeroPath("test", 1) ;
+        for(int i = 0 ; i < kSegments ; i++)
+            path_.addPathSegment(0, segment(i)) ;
+
+        sample_ = new XeroPathSample() ;
+    }
+
+    @Test
+    public void sampleAtASegmentTimeReturnsTheSegment() {
+        for(int i = 0 ; i < kSegments ; i++) {
+            path_.sample(0, i * kDT, sample_) ;
+
+            XeroPathSegment seg = segment(i) ;
+            assertEquals(seg.getX(), sample_.getX(), kEpsilon) ;
+            assertEquals(seg.getY(), sample_.getY(), kEpsilon) ;
+            assertEquals(seg.getHeading(), sample_.getHeading(), kEpsilon) ;
+            assertEquals(seg.getRotation(), sample_.getRotation(), kEpsilon) ;
+        }
+    }
+
+    @Test
+    public void sampleInterpolatesBetweenSegments() {
+        double t = 37.25 * kDT ;
+        path_.sample(0, t, sample_) ;
+
+        assertEquals(37, sample_.getIndex()) ;
+        assertEquals(t, sample_.getTime(), kEpsilon) ;
+        assertEquals(t * 2.0, sample_.getX(), kEpsilon) ;
+        assertEquals(1.0 + t * 2.0, sample_.getY(), kEpsilon) ;
+        assertEquals(2.0, sample_.getVelocity(), kEpsilon) ;
+        assertEquals(37.25, sample_.getHeading(), kEpsilon) ;
+        assertEquals(-55.875, sample_.getRotation(), kEpsilon) ;
+    }
+
+    @Test
+    public void binarySearchFindsTheSegmentBeforeEveryTime() {
+        for(int i = 0 ; i < kSegments - 1 ; i++) {
+            path_.sample(0, (i + 0.5) * kDT, sample_) ;
+            assertEquals(i, sample_.getIndex()) ;
+        }
+    }
+
+    @Test
+    public void sampleBeforeTheStartReturnsTheFirstSegment() {
+        path_.sample(0, -1.0, sample_) ;
+
+        assertEquals(0, sample_.getIndex()) ;
+        assertEquals(0.0, sample_.getTime(), kEpsilon) ;
+        assertEquals(0.0, sample_.getX(), kEpsilon) ;
+        assertEquals(1.0, sample_.getY(), kEpsilon) ;
+    }
+
+    @Test
+    public void sampleAfterTheEndReturnsTheLastSegment() {
+        path_.sample(0, path_.getDuration() + 5.0, sample_) ;
+
+        XeroPathSegment last = segment(kSegments - 1) ;
+        assertEquals(kSegments - 1, sample_.getIndex()) ;
+        assertEquals(last.getTime(), sample_.getTime(), kEpsilon) ;
+        assertEquals(last.getX(), sample_.getX(), kEpsilon) ;
+        assertEquals(last.getHeading(), sample_.getHeading(), kEpsilon) ;
+    }
+
+    @Test
+    public void sampleOfAnEmptyPathThrows() throws Exception {
+        XeroPath empty = new XeroPath("empty", 1) ;
+
+        boolean thrown = false ;
+        try {
+            empty.sample(0.0) ;
+        }
+        catch(IndexOutOfBoundsException ex) {
+            thrown = true ;
+        }
+        assertTrue(thrown) ;
+    }
+
+    @Test
+    public void headingIsInterpolatedTheShortWayAcross180() throws Exception {
+        XeroPath path = new XeroPath("wrap", 1) ;
+        path.addPathSegment(0, new XeroPathSegment(0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 170.0, 0.0, -170.0)) ;
+        path.addPathSegment(0, new XeroPathSegment(1.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -170.0, 0.0, 170.0)) ;
+
+        path.sample(0, 0.25, sample_) ;
+        assertEquals(175.0, sample_.getHeading(), kEpsilon) ;
+        assertEquals(-175.0, sample_.getRotation(), kEpsilon) ;
+
+        path.sample(0, 0.5, sample_) ;
+        assertEquals(180.0, sample_.getHeading(), kEpsilon) ;
+        assertEquals(180.0, sample_.getRotation(), kEpsilon) ;
+
+        path.sample(0, 0.75, sample_) ;
+        assertEquals(-175.0, sample_.getHeading(), kEpsilon) ;
+        assertEquals(175.0, sample_.getRotation(), kEpsilon) ;
+    }
+
+    @Test
+    public void mirroredXSamplesTheMirroredPath() {
+        XeroPath mirrored = path_.mirroredX(kFieldLength) ;
+        assertTrue(mirrored.isMirrored()) ;
+
+        double t = 37.25 * kDT ;
+        path_.sample(0, t, sample_) ;
+        XeroPathSample ms = mirrored.sample(t) ;
+
+        assertEquals(kFieldLength - sample_.getX(), ms.getX(), kEpsilon) ;
+        assertEquals(sample_.getY(), ms.getY(), kEpsilon) ;
+        assertEquals(sample_.getVelocity(), ms.getVelocity(), kEpsilon) ;
+        assertEquals(180.0 - 37.25, ms.getHeading(), kEpsilon) ;
+        assertEquals(XeroMath.normalizeAngleDegrees(180.0 + 55.875), ms.getRotation(), kEpsilon) ;
+    }
+
+    @Test
+    public void mirroredXMatchesMirroringEverySegment() throws Exception {
+        XeroPath mirrored = path_.mirroredX(kFieldLength) ;
+
+        XeroPath copy = new XeroPath("copy", 1) ;
+        for(int i = 0 ; i < kSegments ; i++)
+            copy.addPathSegment(0, segment(i)) ;
+        copy.mirrorX(kFieldLength) ;
+
+        XeroPathSample expected = new XeroPathSample() ;
+        for(int i = 0 ; i < kSegments ; i++) {
+            mirrored.sample(0, i * kDT, sample_) ;
+            copy.sample(0, i * kDT, expected) ;
+
+            assertEquals(expected.getX(), sample_.getX(), kEpsilon) ;
+            assertEquals(expected.getY(), sample_.getY(), kEpsilon) ;
+            assertEquals(expected.getHeading(), sample_.getHeading(), kEpsilon) ;
+            assertEquals(expected.getRotation(), sample_.getRotation(), kEpsilon) ;
+
+            XeroPathSegment seg = mirrored.getSegment(0, i) ;
+            assertEquals(expected.getX(), seg.getX(), kEpsilon) ;
+            assertEquals(expected.getHeading(), seg.getHeading(), kEpsilon) ;
+        }
+    }
+
+    @Test
+    public void mirroredXClampsOutsideThePath() {
+        XeroPath mirrored = path_.mirroredX(kFieldLength) ;
+
+        mirrored.sample(0, -1.0, sample_) ;
+        assertEquals(kFieldLength, sample_.getX(), kEpsilon) ;
+        assertEquals(180.0, sample_.getHeading(), kEpsilon) ;
+
+        mirrored.sample(0, mirrored.getDuration() + 1.0, sample_) ;
+        assertEquals(kFieldLength - segment(kSegments - 1).getX(), sample_.getX(), kEpsilon) ;
+    }
+
+    @Test
+    public void mirroringDoesNotChangeTheOriginalPath() {
+        path_.mirroredX(kFieldLength) ;
+        path_.mirroredY(kFieldWidth) ;
+
+        assertFalse(path_.isMirrored()) ;
+        path_.sample(0, 10 * kDT, sample_) ;
+        assertEquals(segment(10).getX(), sample_.getX(), kEpsilon) ;
+        assertEquals(segment(10).getHeading(), sample_.getHeading(), kEpsilon) ;
+    }
+
+    @Test
+    public void mirroredYNegatesTheAngles() {
+        XeroPathSample ms = path_.mirroredY(kFieldWidth).sample(37.25 * kDT) ;
+        path_.sample(0, 37.25 * kDT, sample_) ;
+
+        assertEquals(sample_.getX(), ms.getX(), kEpsilon) ;
+        assertEquals(kFieldWidth - sample_.getY(), ms.getY(), kEpsilon) ;
+        assertEquals(-37.25, ms.getHeading(), kEpsilon) ;
+        assertEquals(55.875, ms.getRotation(), kEpsilon) ;
+    }
+
+    @Test
+    public void mirroredViewOfAMirroredViewMirrorsTheOriginal() {
+        XeroPath twice = path_.mirroredX(kFieldLength).mirroredX(kFieldLength) ;
+
+        twice.sample(0, 10 * kDT, sample_) ;
+        assertEquals(kFieldLength - segment(10).getX(), sample_.getX(), kEpsilon) ;
+    }
+}
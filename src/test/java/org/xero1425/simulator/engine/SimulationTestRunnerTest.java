@@ -0,0 +1,226 @@
+package org.xero1425.simulator.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SimulationTestRunnerTest {
+    //
+    // Stands in for the robot main class, so the runner starts real processes without a robot.  It
+    // behaves according to the name of the simulation, and records its port and stepped argument.
+    //
+    public static class FakeSimulation {
+        public static void main(String... args) throws Exception {
+            String input = null ;
+            String results = null ;
+            String port = null ;
+            boolean stepped = false ;
+
+            for(int i = 0 ; i < args.length ; i++) {
+                if (args[i].equals("--input"))
+                    input = args[++i] ;
+                else if (args[i].equals("--results"))
+                    results = args[++i] ;
+                else if (args[i].equals("--ntport"))
+                    port = args[++i] ;
+                else if (args[i].equals("--stepped"))
+                    stepped = true ;
+            }
+
+            String extra = "port=" + port + "\nstepped=" + (stepped ? 1 : 0) + "\n" ;
+            if (input.startsWith("pass")) {
+                Files.write(Path.of(results), ("passed=3\nfailed=0\nstatus=0\n" + extra).getBytes()) ;
+                System.exit(0) ;
+            }
+            else if (input.startsWith("fail")) {
+                Files.write(Path.of(results), ("passed=1\nfailed=2\nstatus=1\n" + extra).getBytes()) ;
+                System.exit(1) ;
+            }
+            else if (input.startsWith("hang")) {
+                Thread.sleep(60000) ;
+            }
+
+            System.exit(3) ;
+        }
+    }
+
+    private Path dir_ ;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        dir_ = Files.createTempDirectory("simresults") ;
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(dir_)) {
+            files.sorted(Comparator.reverseOrder()).forEach((p) -> p.toFile().delete()) ;
+        }
+    }
+
+    private File write(String name, String... lines) throws IOException {
+        Path file = dir_.resolve(name + ".results") ;
+        Files.write(file, List.of(lines)) ;
+        return file.toFile() ;
+    }
+
+    private SimulationTestRunner.Result read(String name, int code, String... lines) throws Exception {
+        SimulationTestRunner.Result result = new SimulationTestRunner.Result(name) ;
+        SimulationTestRunner.readResults(result, write(name, lines), code) ;
+        return result ;
+    }
+
+    @Test
+    public void readsTheCountsFromTheResultsFile() throws Exception {
+        SimulationTestRunner.Result result = read("auto", 0, "passed=12", "failed=0", "pending=0", "errors=0", "status=0") ;
+
+        assertEquals(12, result.passed_) ;
+        assertEquals(0, result.failed_) ;
+        assertEquals(0, result.status_) ;
+        assertTrue(result.passed()) ;
+    }
+
+    @Test
+    public void failedAssertsFailTheSimulation() throws Exception {
+        SimulationTestRunner.Result result = read("shoot", 1, "passed=3", "failed=2", "pending=1", "errors=4", "status=1") ;
+
+        assertEquals(2, result.failed_) ;
+        assertEquals(1, result.pending_) ;
+        assertEquals(4, result.errors_) ;
+        assertFalse(result.passed()) ;
+    }
+
+    @Test
+    public void exitStatusMustMatchTheReportedStatus() throws Exception {
+        SimulationTestRunner.Result result = read("trap", 1, "passed=5", "failed=0", "status=0") ;
+
+        assertFalse(result.passed()) ;
+        assertTrue(result.problem_.contains("exited with status 1")) ;
+    }
+
+    @Test
+    public void missingResultsFileFailsTheSimulation() throws Exception {
+        SimulationTestRunner.Result result = new SimulationTestRunner.Result("init") ;
+        SimulationTestRunner.readResults(result, dir_.resolve("init.results").toFile(), 0) ;
+
+        assertFalse(result.passed()) ;
+        assertTrue(result.problem_.contains("without writing results")) ;
+    }
+
+    @Test
+    public void reportMergesTheCountsOfEverySimulation() throws Exception {
+        SimulationTestRunner runner = new SimulationTestRunner() ;
+        runner.addResult(read("shoot", 1, "passed=3", "failed=1", "status=1")) ;
+        runner.addResult(read("auto", 0, "passed=12", "failed=0", "status=0")) ;
+        runner.addResult(read("init", 0, "passed=2", "failed=0", "status=0")) ;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+        int status = runner.report(new PrintStream(bytes, true), List.of("auto", "init", "shoot"), 2.0) ;
+        String text = bytes.toString() ;
+
+        assertEquals(1, status) ;
+        assertTrue(text.contains("2 of 3 simulations passed, 17 asserts passed, 1 asserts failed")) ;
+
+        //
+        // The simulations are reported in name order, whatever order they finished in
+        //
+        assertTrue(text.indexOf("auto") < text.indexOf("init")) ;
+        assertTrue(text.indexOf("init") < text.indexOf("shoot")) ;
+        assertTrue(text.contains("FAILED")) ;
+    }
+
+    @Test
+    public void reportSucceedsWhenEverySimulationPasses() throws Exception {
+        SimulationTestRunner runner = new SimulationTestRunner() ;
+        runner.addResult(read("auto", 0, "passed=12", "status=0")) ;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+        assertEquals(0, runner.report(new PrintStream(bytes, true), List.of("auto"), 1.0)) ;
+        assertTrue(bytes.toString().contains("1 of 1 simulations passed, 12 asserts passed, 0 asserts failed")) ;
+    }
+
+    //
+    // Create a runner for a set of stimulus files, using FakeSimulation as the robot
+    //
+    private SimulationTestRunner runFake(String... args) throws IOException {
+        Path sims = dir_.resolve("sims") ;
+        Files.createDirectories(sims) ;
+        for(String name : List.of("pass1", "pass2", "fail", "crash", "hang"))
+            Files.write(sims.resolve(name + ".json"), "{}".getBytes()) ;
+
+        SimulationTestRunner runner = new SimulationTestRunner() ;
+        runner.processArgs("--sims", sims.toString(), "--outdir", dir_.resolve("out").toString(), "--main", FakeSimulation.class.getName(), "--timeout", "5") ;
+        runner.processArgs(args) ;
+        return runner ;
+    }
+
+    private int readKey(String sim, String key) throws IOException {
+        for(String line : Files.readAllLines(dir_.resolve("out").resolve(sim + ".results"))) {
+            if (line.startsWith(key + "="))
+                return Integer.parseInt(line.substring(key.length() + 1)) ;
+        }
+        return -1 ;
+    }
+
+    @Test
+    public void workersRunRealProcessesAndMergeTheirResults() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+        SimulationTestRunner runner = runFake("--jobs", "2") ;
+
+        int status = runner.run(new PrintStream(bytes, true)) ;
+        String text = bytes.toString() ;
+
+        assertEquals(1, status) ;
+        assertTrue(text.contains("2 of 5 simulations passed, 7 asserts passed, 2 asserts failed"), text) ;
+        assertTrue(text.contains("exited with status 3 without writing results"), text) ;
+        assertTrue(text.contains("timed out after 5 seconds"), text) ;
+
+        //
+        // Two workers use two ports each, starting at the first port, and stepped mode is not the default
+        //
+        Set<Integer> ports = new HashSet<Integer>() ;
+        for(String sim : List.of("pass1", "pass2", "fail")) {
+            ports.add(readKey(sim, "port")) ;
+            assertEquals(0, readKey(sim, "stepped")) ;
+        }
+        assertTrue(Set.of(5820, 5822).containsAll(ports), ports.toString()) ;
+    }
+
+    @Test
+    public void passingSimulationsSucceedAndSteppedIsPassedOn() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+        SimulationTestRunner runner = runFake("--jobs", "1", "--stepped", "pass") ;
+
+        assertEquals(0, runner.run(new PrintStream(bytes, true))) ;
+        assertTrue(bytes.toString().contains("2 of 2 simulations passed, 6 asserts passed, 0 asserts failed"), bytes.toString()) ;
+        assertEquals(5820, readKey("pass1", "port")) ;
+        assertEquals(1, readKey("pass2", "stepped")) ;
+    }
+
+    @Test
+    public void simulationWithoutAResultFails() throws Exception {
+        SimulationTestRunner runner = new SimulationTestRunner() ;
+        runner.addResult(read("auto", 0, "passed=12", "status=0")) ;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+        assertEquals(1, runner.report(new PrintStream(bytes, true), List.of("auto", "lost"), 1.0)) ;
+        assertTrue(bytes.toString().contains("1 of 2 simulations passed")) ;
+        assertTrue(bytes.toString().contains("no result was reported")) ;
+    }
+}